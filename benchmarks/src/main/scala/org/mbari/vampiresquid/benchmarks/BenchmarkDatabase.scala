@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.benchmarks
+
+import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.repository.jpa.entity.{VideoEntity, VideoReferenceEntity, VideoSequenceEntity}
+import org.mbari.vampiresquid.repository.jpa.{EntityManagerFactories, JPADAOFactory, JPADAOFactoryImpl}
+import org.testcontainers.containers.PostgreSQLContainer
+
+import java.net.URI
+import java.time.{Duration, Instant}
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import scala.concurrent.duration.Duration as ScalaDuration
+import scala.concurrent.{Await, ExecutionContext}
+import scala.jdk.CollectionConverters.*
+import scala.util.Random
+
+/**
+ * The database used by the benchmarks. It is created and seeded once per JVM (i.e. per JMH fork).
+ *
+ * By default a Postgres Testcontainer is started (with reuse enabled, so a container left over from a previous run
+ * is picked up along with its data). Set `bench.database.url`, `bench.database.user` and `bench.database.password`
+ * to run against an existing Postgres instead.
+ *
+ * The synthetic dataset is `bench.sequences` video sequences x `bench.videos` videos x `bench.references` video
+ * references (default 1000 x 100 x 3). Sequences are spread over `bench.cameras` cameras. The videos in a sequence
+ * are contiguous, one hour each, so every camera has long runs of continuous recordings.
+ *
+ * These are system properties of the forked benchmark JVM, so pass them with `-jvmArgsAppend`, e.g.
+ * {{{
+ * sbt "benchmarks/Jmh/run -jvmArgsAppend -Dbench.sequences=100 DatabaseBenchmarks"
+ * }}}
+ */
+object BenchmarkDatabase:
+
+    private val log = System.getLogger(getClass.getName)
+
+    val NumSequences: Int  = Integer.getInteger("bench.sequences", 1000)
+    val NumVideos: Int     = Integer.getInteger("bench.videos", 100)
+    val NumReferences: Int = Integer.getInteger("bench.references", 3)
+    val NumCameras: Int    = Integer.getInteger("bench.cameras", 10)
+
+    val Epoch: Instant          = Instant.parse("2000-01-01T00:00:00Z")
+    val VideoDuration: Duration = Duration.ofHours(1)
+
+    given ExecutionContext = ExecutionContext.global
+
+    lazy val daoFactory: JPADAOFactory =
+        val (url, user, password) = sys.props.get("bench.database.url") match
+            case Some(url) =>
+                val user     = sys.props.getOrElse("bench.database.user", "postgres")
+                val password = sys.props.getOrElse("bench.database.password", "")
+                (url, user, password)
+            case None      =>
+                val container = new PostgreSQLContainer("postgres:17")
+                container.withReuse(true)
+                container.start()
+                Runtime.getRuntime.addShutdownHook(new Thread(() => container.stop()))
+                (container.getJdbcUrl, container.getUsername, container.getPassword)
+        val emf     = EntityManagerFactories(url, user, password, "org.postgresql.Driver")
+        val factory = new JPADAOFactoryImpl(emf)
+        seed(factory)
+        factory
+
+    def sequenceName(i: Int): String        = f"bench-sequence-$i%06d"
+    def cameraId(i: Int): String            = f"bench-camera-${i % NumCameras}%03d"
+    def videoStart(i: Int, j: Int): Instant =
+        Epoch.plus(VideoDuration.multipliedBy(i.toLong * NumVideos + j))
+
+    /** Uuids of every seeded video reference. Loaded once. */
+    lazy val videoReferenceUuids: IndexedSeq[UUID] =
+        val dao = daoFactory.newVideoReferenceDAO()
+        val f   = dao.runReadOnlyTransaction(d =>
+            d.entityManager
+                .createQuery("SELECT v.uuid FROM VideoReference v", classOf[UUID])
+                .getResultList
+                .asScala
+                .toIndexedSeq
+        )
+        f.onComplete(_ => dao.close())
+        Await.result(f, ScalaDuration(5, TimeUnit.MINUTES))
+
+    /** Inserts the synthetic dataset unless the last sequence already exists */
+    private def seed(factory: JPADAOFactory): Unit =
+        val dao     = factory.newVideoSequenceDAO()
+        val timeout = ScalaDuration(1, TimeUnit.MINUTES)
+        val exists  = Await.result(dao.runReadOnlyTransaction(_.findByName(sequenceName(NumSequences - 1))), timeout)
+        if exists.isEmpty then
+            log.atInfo.log(s"Seeding $NumSequences x $NumVideos x $NumReferences media")
+            val random = new Random(42)
+            for i <- 0 until NumSequences do
+                val vs = new VideoSequenceEntity(sequenceName(i), cameraId(i))
+                for j <- 0 until NumVideos do
+                    val v = new VideoEntity(s"${sequenceName(i)}-video-$j", videoStart(i, j), VideoDuration)
+                    vs.addVideo(v)
+                    for k <- 0 until NumReferences do
+                        val vr = new VideoReferenceEntity(URI.create(s"http://bench.mbari.org/$i/$j/$k.mp4"))
+                        vr.setContainer("video/mp4")
+                        vr.setVideoCodec("h264")
+                        vr.setWidth(1920)
+                        vr.setHeight(1080)
+                        vr.setFrameRate(29.97)
+                        vr.setSize(random.nextLong(Long.MaxValue))
+                        vr.setSha512(Array.fill[Byte](64)(random.nextInt(256).toByte))
+                        v.addVideoReference(vr)
+                Await.result(dao.runTransaction(_.create(vs)), timeout)
+                // Don't keep every seeded entity in the persistence context
+                dao.entityManager.clear()
+            log.atInfo.log("Seeding complete")
+        dao.close()
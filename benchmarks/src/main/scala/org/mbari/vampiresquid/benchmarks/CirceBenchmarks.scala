@@ -0,0 +1,83 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.benchmarks
+
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonEncoder
+import org.openjdk.jmh.annotations.*
+
+import java.net.URI
+import java.time.Instant
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import scala.util.Random
+
+/**
+ * Encoding of large media lists, as returned by the media endpoints. Doesn't need a database. `encodeMedia` goes
+ * through circe's `Json` tree and `writeMedia` through [[JsonEncoder]], which the endpoints use. `-prof gc` reports
+ * the bytes allocated per operation of each.
+ * {{{
+ * sbt "benchmarks/Jmh/run -prof gc CirceBenchmarks"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 5, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class CirceBenchmarks:
+
+    @Param(Array("1000", "10000", "100000"))
+    var size: Int = 0
+
+    private var media: List[Media] = Nil
+
+    @Setup(Level.Trial)
+    def setup(): Unit =
+        val random = new Random(42)
+        val start  = Instant.parse("2000-01-01T00:00:00Z")
+        media = (0 until size).map(i =>
+            Media(
+                video_sequence_uuid = Some(UUID.randomUUID()),
+                video_uuid = Some(UUID.randomUUID()),
+                video_reference_uuid = Some(UUID.randomUUID()),
+                video_sequence_name = Some(s"Ventana ${i / 100}"),
+                camera_id = Some("Ventana"),
+                video_name = Some(s"Ventana ${i / 100} ${i % 100}"),
+                uri = Some(URI.create(s"http://m3.shore.mbari.org/videos/M3/mezzanine/Ventana/$i.mov")),
+                start_timestamp = Some(start.plusSeconds(i * 600L)),
+                duration_millis = Some(600000L),
+                container = Some("video/quicktime"),
+                video_codec = Some("ProRes HQ"),
+                audio_codec = Some("AAC"),
+                width = Some(1920),
+                height = Some(1080),
+                frame_rate = Some(59.94),
+                size_bytes = Some(random.nextLong(Long.MaxValue)),
+                description = Some(s"Reference $i"),
+                sha512 = Some(Array.fill[Byte](64)(random.nextInt(256).toByte))
+            )
+        ).toList
+
+    @Benchmark
+    def encodeMedia(): String = media.stringify
+
+    @Benchmark
+    def writeMedia(): Array[Byte] = JsonEncoder.encode(media)
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.benchmarks
+
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.repository.jpa.JPADAOFactory
+import org.openjdk.jmh.annotations.*
+
+import java.util.UUID
+import java.util.concurrent.{ThreadLocalRandom, TimeUnit}
+import scala.concurrent.duration.Duration as ScalaDuration
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+/**
+ * Benchmarks of the DAO and controller read paths. See [[BenchmarkDatabase]] for the dataset, which these never
+ * modify; writes are measured by [[DatabaseWriteBenchmarks]]. Run with the gc profiler to get allocation rates:
+ * {{{
+ * sbt "benchmarks/Jmh/run -prof gc DatabaseBenchmarks"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class DatabaseBenchmarks:
+
+    private given ec: ExecutionContext = ExecutionContext.global
+
+    private val Timeout = ScalaDuration(1, TimeUnit.MINUTES)
+
+    private var daoFactory: JPADAOFactory             = scala.compiletime.uninitialized
+    private var mediaController: MediaController      = scala.compiletime.uninitialized
+    private var videoReferenceUuids: IndexedSeq[UUID] = scala.compiletime.uninitialized
+
+    @Setup(Level.Trial)
+    def setup(): Unit =
+        daoFactory = BenchmarkDatabase.daoFactory
+        mediaController = new MediaController(daoFactory)
+        videoReferenceUuids = BenchmarkDatabase.videoReferenceUuids
+
+    private def await[T](f: Future[T]): T = Await.result(f, Timeout)
+
+    private def randomSequence(): Int = ThreadLocalRandom.current().nextInt(BenchmarkDatabase.NumSequences)
+
+    @Benchmark
+    def mediaControllerFindByVideoSequenceNames(): Seq[Media] =
+        val names = Seq.fill(10)(BenchmarkDatabase.sequenceName(randomSequence()))
+        await(mediaController.findByVideoSequenceNames(names))
+
+    @Benchmark
+    def videoReferenceDaoFindConcurrent(): Int =
+        val uuid = videoReferenceUuids(ThreadLocalRandom.current().nextInt(videoReferenceUuids.size))
+        val dao  = daoFactory.newVideoReferenceDAO()
+        val f    = dao.runReadOnlyTransaction(_.findConcurrent(uuid).size)
+        f.onComplete(_ => dao.close())
+        await(f)
+
+    @Benchmark
+    def videoSequenceDaoFindByCameraIDAndTimestamp(): Int =
+        val random    = ThreadLocalRandom.current()
+        val i         = randomSequence()
+        val timestamp = BenchmarkDatabase
+            .videoStart(i, random.nextInt(BenchmarkDatabase.NumVideos))
+            .plusSeconds(random.nextLong(BenchmarkDatabase.VideoDuration.toSeconds))
+        val dao       = daoFactory.newVideoSequenceDAO()
+        val f         =
+            dao.runReadOnlyTransaction(_.findByCameraIDAndTimestamp(BenchmarkDatabase.cameraId(i), timestamp).size)
+        f.onComplete(_ => dao.close())
+        await(f)
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.benchmarks
+
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.repository.jpa.JPADAOFactory
+import org.openjdk.jmh.annotations.*
+
+import java.net.URI
+import java.time.Duration
+import java.util.UUID
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+import scala.concurrent.duration.Duration as ScalaDuration
+import scala.concurrent.{Await, ExecutionContext, Future}
+
+/**
+ * Benchmarks of the write paths. These are kept apart from [[DatabaseBenchmarks]] so that they never change the
+ * seeded dataset that the read benchmarks measure: every iteration writes into its own scratch video sequence, on a
+ * camera that the dataset does not use, and deletes that sequence when it ends.
+ * {{{
+ * sbt "benchmarks/Jmh/run -prof gc DatabaseWriteBenchmarks"
+ * }}}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Array(Mode.Throughput, Mode.SampleTime))
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10, timeUnit = TimeUnit.SECONDS)
+@Measurement(iterations = 5, time = 10, timeUnit = TimeUnit.SECONDS)
+@Fork(1)
+class DatabaseWriteBenchmarks:
+
+    private given ec: ExecutionContext = ExecutionContext.global
+
+    private val Timeout = ScalaDuration(1, TimeUnit.MINUTES)
+
+    private val ScratchPrefix = "bench-writes-"
+    private val ScratchCamera = "bench-writes-camera"
+
+    private val videoCount = new AtomicLong()
+
+    private var daoFactory: JPADAOFactory        = scala.compiletime.uninitialized
+    private var mediaController: MediaController = scala.compiletime.uninitialized
+    private var sequenceName: String             = scala.compiletime.uninitialized
+
+    @Setup(Level.Trial)
+    def setup(): Unit =
+        daoFactory = BenchmarkDatabase.daoFactory
+        mediaController = new MediaController(daoFactory)
+        // Remove the scratch sequences of a run that was killed before its tear down
+        val dao = daoFactory.newVideoSequenceDAO()
+        await(
+            dao.runTransaction(d =>
+                d.findAllNamesByCameraID(ScratchCamera).flatMap(d.findByName).foreach(d.delete)
+            )
+        )
+        dao.close()
+
+    @Setup(Level.Iteration)
+    def newScratchSequence(): Unit =
+        sequenceName = s"$ScratchPrefix${UUID.randomUUID()}"
+
+    @TearDown(Level.Iteration)
+    def deleteScratchSequence(): Unit =
+        val dao = daoFactory.newVideoSequenceDAO()
+        await(dao.runTransaction(d => d.findByName(sequenceName).foreach(d.delete)))
+        dao.close()
+
+    private def await[T](f: Future[T]): T = Await.result(f, Timeout)
+
+    @Benchmark
+    def mediaControllerCreate(): Media =
+        // Every invocation adds a new video and video reference to the iteration's scratch sequence
+        val n    = videoCount.getAndIncrement()
+        val uuid = UUID.randomUUID()
+        await(
+            mediaController.create(
+                sequenceName,
+                ScratchCamera,
+                s"$ScratchPrefix$uuid",
+                URI.create(s"http://bench.mbari.org/writes/$uuid.mp4"),
+                BenchmarkDatabase.Epoch.plus(Duration.ofMinutes(10).multipliedBy(n)),
+                Some(Duration.ofMinutes(10))
+            )
+        )
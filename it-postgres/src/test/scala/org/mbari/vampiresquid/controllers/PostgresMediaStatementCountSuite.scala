@@ -0,0 +1,87 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.controllers
+
+import org.hibernate.SessionFactory
+import org.mbari.vampiresquid.repository.jpa.{BaseDAOSuite, JPADAOFactory, PostgresqlTestDAOFactory, TestUtils}
+
+import java.time.Duration
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.Future
+import scala.jdk.CollectionConverters.*
+
+/**
+ * Checks that the media finders read their results with a bounded number of statements, no matter how many videos and
+ * video references are involved, instead of lazily loading the entity graph one collection at a time.
+ */
+class PostgresMediaStatementCountSuite extends BaseDAOSuite:
+
+    override def daoFactory = PostgresqlTestDAOFactory
+
+    given JPADAOFactory = daoFactory
+
+    lazy val controller = MediaController(daoFactory)
+
+    private lazy val statistics = daoFactory.entityManagerFactory.unwrap(classOf[SessionFactory]).getStatistics
+
+    /** The projection itself. Allows for one more in case the driver issues a statement to start the transaction */
+    private val MaxStatements = 2L
+
+    override def beforeAll(): Unit =
+        daoFactory.beforeAll()
+        statistics.setStatisticsEnabled(true)
+
+    override def afterAll(): Unit =
+        statistics.setStatisticsEnabled(false)
+        daoFactory.afterAll()
+
+    /** Runs the future and returns its result along with the number of JDBC statements it prepared */
+    private def countStatements[T](f: => Future[T]): (T, Long) =
+        statistics.clear()
+        val t = exec(f)
+        (t, statistics.getPrepareStatementCount)
+
+    test("findByVideoSequenceName uses a bounded number of statements"):
+        val vs      = TestUtils.create(1, 4, 3).head
+        val (xs, n) = countStatements(controller.findByVideoSequenceName(vs.getName))
+        assertEquals(xs.size, 12)
+        assert(n <= MaxStatements, s"Expected at most $MaxStatements statements but $n were prepared")
+
+    test("findByVideoName uses a bounded number of statements"):
+        val video   = TestUtils.create(1, 1, 5).head.getVideos.get(0)
+        val (xs, n) = countStatements(controller.findByVideoName(video.getName))
+        assertEquals(xs.size, 5)
+        assert(n <= MaxStatements, s"Expected at most $MaxStatements statements but $n were prepared")
+
+    test("findByCameraIdAndTimestamp uses a bounded number of statements"):
+        val vs       = TestUtils.create(1, 4, 3).head
+        val video    = vs.getVideos.get(0)
+        val ts       = video.getStart.plus(video.getDuration.dividedBy(2))
+        val (xs, n)  = countStatements(controller.findByCameraIdAndTimestamp(vs.getCameraID, ts))
+        val expected = video.getVideoReferences.asScala.map(_.getUuid).toSet
+        assert(expected.subsetOf(xs.flatMap(_.video_reference_uuid).toSet))
+        assert(xs.forall(_.contains(ts)))
+        assert(n <= MaxStatements, s"Expected at most $MaxStatements statements but $n were prepared")
+
+    test("findByCameraIdAndTimestamps uses a bounded number of statements"):
+        val vs      = TestUtils.create(1, 4, 3).head
+        val starts  = vs.getVideos.asScala.map(_.getStart)
+        val (xs, n) = countStatements(
+            controller.findByCameraIdAndTimestamps(vs.getCameraID, starts.min, starts.max.plus(Duration.ofSeconds(1)))
+        )
+        assertEquals(xs.size, 12)
+        assert(n <= MaxStatements, s"Expected at most $MaxStatements statements but $n were prepared")
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.reactive
+
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.repository.jpa.{BaseDAOSuite, JPADAOFactory, PostgresqlTestDAOFactory, TestUtils}
+import org.mbari.vampiresquid.{Constants, DatabaseParams, ReactiveParams}
+
+import java.time.{Duration, ZoneId, ZoneOffset}
+import java.util.HexFormat
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.jdk.CollectionConverters.*
+
+/** Checks that the non-blocking reader returns the same media as the JPA finders */
+class PostgresMediaReaderSuite extends BaseDAOSuite:
+
+    override def daoFactory = PostgresqlTestDAOFactory
+
+    given JPADAOFactory = daoFactory
+
+    lazy val controller = MediaController(daoFactory)
+
+    lazy val reader: PgMediaReader =
+        val container = daoFactory.container
+        val params    = DatabaseParams(
+            container.getDriverClassName,
+            "INFO",
+            container.getPassword,
+            container.getJdbcUrl,
+            container.getUsername
+        )
+        PgMediaReader.create(params, ReactiveParams(enabled = true, poolSize = 2)).get
+
+    override def beforeAll(): Unit =
+        // Hibernate writes the timestamp columns in the JVM's zone, which build.sbt pins to UTC for the tests as Main
+        // does for the server. Check the pin so that a reader test can't pass by accident in some other zone.
+        assertEquals(ZoneId.systemDefault().normalized(), ZoneOffset.UTC)
+        daoFactory.beforeAll()
+
+    override def afterAll(): Unit =
+        reader.close()
+        daoFactory.afterAll()
+
+    /** Media holds the sha512 as an array, which doesn't compare by value */
+    private def comparable(media: Iterable[Media]): Seq[(Media, Option[String])] =
+        media.toSeq.map(m => (m.copy(sha512 = None), m.sha512.map(HexFormat.of().formatHex)))
+
+    test("findByVideoReferenceUuid"):
+        val vr = TestUtils.create(1, 1, 1).head.getVideos.get(0).getVideoReferences.get(0)
+        assertEquals(
+            comparable(exec(reader.findByVideoReferenceUuid(vr.getUuid))),
+            comparable(exec(controller.findByVideoReferenceUuid(vr.getUuid)))
+        )
+
+    test("findVersionedByVideoReferenceUuid"):
+        val vr        = TestUtils.create(1, 1, 1).head.getVideos.get(0).getVideoReferences.get(0)
+        val version   = exec(controller.findVersionByVideoReferenceUuid(vr.getUuid))
+        val versioned = exec(reader.findVersionedByVideoReferenceUuid(vr.getUuid))
+        assertEquals(exec(reader.findMediaVersion(vr.getUuid)), version)
+        assertEquals(versioned.map(_._1), version)
+        assertEquals(
+            comparable(versioned.map(_._2)),
+            comparable(exec(controller.findByVideoReferenceUuid(vr.getUuid)))
+        )
+
+    test("findBySha512"):
+        val vr = TestUtils.create(1, 1, 1).head.getVideos.get(0).getVideoReferences.get(0)
+        val xs = exec(reader.findBySha512(vr.getSha512))
+        assertEquals(xs.flatMap(_.video_reference_uuid), Some(vr.getUuid))
+        assertEquals(comparable(xs), comparable(exec(controller.findBySha512(vr.getSha512))))
+
+    test("findByURI"):
+        val vr = TestUtils.create(1, 1, 1).head.getVideos.get(0).getVideoReferences.get(0)
+        assertEquals(
+            comparable(exec(reader.findByURI(vr.getUri))),
+            comparable(exec(controller.findByURI(vr.getUri)))
+        )
+
+    test("findByVideoSequenceName"):
+        val vs = TestUtils.create(1, 3, 2).head
+        val xs = exec(reader.findByVideoSequenceName(vs.getName))
+        assertEquals(xs.size, 6)
+        assertEquals(comparable(xs), comparable(exec(controller.findByVideoSequenceName(vs.getName))))
+
+    test("findByVideoName"):
+        val video = TestUtils.create(1, 1, 3).head.getVideos.get(0)
+        val xs    = exec(reader.findByVideoName(video.getName))
+        assertEquals(xs.size, 3)
+        assertEquals(comparable(xs), comparable(exec(controller.findByVideoName(video.getName))))
+
+    test("findByCameraIdAndTimestamp"):
+        val vs    = TestUtils.create(1, 3, 2).head
+        val video = vs.getVideos.get(0)
+        val ts    = video.getStart.plus(video.getDuration.dividedBy(2))
+        val xs    = exec(reader.findByCameraIdAndTimestamp(vs.getCameraID, ts, Constants.DEFAULT_DURATION_WINDOW))
+        assert(xs.nonEmpty)
+        assert(xs.forall(_.contains(ts)))
+        assertEquals(comparable(xs), comparable(exec(controller.findByCameraIdAndTimestamp(vs.getCameraID, ts))))
+
+    test("findByCameraIdAndTimestamps"):
+        val vs     = TestUtils.create(1, 3, 2).head
+        val starts = vs.getVideos.asScala.map(_.getStart)
+        val end    = starts.max.plus(Duration.ofSeconds(1))
+        val xs     = exec(reader.findByCameraIdAndTimestamps(vs.getCameraID, starts.min, end))
+        assertEquals(xs.size, 6)
+        assertEquals(
+            comparable(xs),
+            comparable(exec(controller.findByCameraIdAndTimestamps(vs.getCameraID, starts.min, end)))
+        )
+
+    test("returns nothing for unknown keys"):
+        assertEquals(exec(reader.findByVideoReferenceUuid(java.util.UUID.randomUUID())), None)
+        assert(exec(reader.findByVideoSequenceName("not a video sequence")).isEmpty)
@@ -17,15 +17,15 @@
 package org.mbari.vampiresquid.controllers
 
 import org.junit.Assert
-import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.domain.{BulkMediaResult, CameraTimestamp, Media, MediaChange}
 import org.mbari.vampiresquid.etc.jdk.Uris
 import org.mbari.vampiresquid.repository.VideoReferenceDAO
-import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
+import org.mbari.vampiresquid.repository.jpa.entity.{VideoReferenceEntity, VideoSequenceEntity}
 import org.mbari.vampiresquid.repository.jpa.{BaseDAOSuite, JPADAOFactory, TestUtils, VideoSequenceDAOImpl}
 
 import java.net.URI
-import java.time.{Duration, Instant}
-import java.util.UUID
+import java.time.{Clock, Duration, Instant}
+import java.util.{HexFormat, UUID}
 import scala.concurrent.ExecutionContext.Implicits.global
 import scala.jdk.CollectionConverters.*
 
@@ -97,6 +97,38 @@ trait MediaControllerITSuite extends BaseDAOSuite:
         )
         assertSameValues(m1, m0)
 
+    test("createBulk"):
+        val existing = createMedia()
+        val m0       = buildMedia()
+        val m1       = m0.copy(
+            uri = Some(URI.create(s"http://www.mbari.org/video/bulk/${UUID.randomUUID()}.mp4")),
+            sha512 = Some(TestUtils.randomSha512())
+        )
+        val bad      = Media(uri = Some(URI.create(s"http://www.mbari.org/video/bulk/${UUID.randomUUID()}.mp4")))
+        val results  = exec(controller.createBulk(Seq(existing, m0, m1, bad)))
+        assertEquals(results.map(_.index), Seq(0, 1, 2, 3))
+        assertEquals(
+            results.map(_.status),
+            Seq(BulkMediaResult.Exists, BulkMediaResult.Created, BulkMediaResult.Created, BulkMediaResult.Failed)
+        )
+        assertSameValues(results(0).media.get, existing)
+        assertSameValues(results(1).media.get, m0)
+        assertSameValues(results(2).media.get, m1)
+        assert(results(3).message.isDefined)
+
+        // m0 and m1 share a video so they should be registered together
+        assertEquals(results(1).media.flatMap(_.video_uuid), results(2).media.flatMap(_.video_uuid))
+        val found = exec(controller.findByVideoName(m0.video_name.get))
+        assertEquals(found.size, 2)
+
+    test("createBulk - checksum mismatch fails only that media"):
+        val existing = createMedia()
+        val m0       = existing.copy(sha512 = Some(TestUtils.randomSha512()))
+        val m1       = buildMedia()
+        val results  = exec(controller.createBulk(Seq(m0, m1)))
+        assertEquals(results.map(_.status), Seq(BulkMediaResult.Failed, BulkMediaResult.Created))
+        assertSameValues(results(1).media.get, m1)
+
     test("updateMedia"):
         val m0  = createMedia()
         val m1  = m0.copy(
@@ -225,6 +257,16 @@ trait MediaControllerITSuite extends BaseDAOSuite:
         val ys = exec(controller.findByVideoSequenceNames(xs.map(_.video_sequence_name.get).toSet))
         assertEquals(ys.size, xs.size)
 
+    test("foreachMedia"):
+        val xs    = TestUtils.create(4, 2, 2).flatMap(vs => vs.getVideoReferences().asScala.map(Media.from))
+        val uuids = xs.flatMap(_.video_reference_uuid).toSet
+        val seen  = scala.collection.mutable.ListBuffer.empty[Media]
+        val n     = exec(controller.foreachMedia(fetchSize = 3)(m => seen += m))
+        assertEquals(n, seen.size.toLong)
+        val found = seen.filter(m => m.video_reference_uuid.exists(uuids.contains)).toSeq
+        assertEquals(found.size, xs.size)
+        for x <- xs do assertSameValues(found.find(_.video_reference_uuid == x.video_reference_uuid).get, x)
+
     test("findByVideoSequenceNameAndTimestamp"):
         val m0 = createMedia()
         val xs = exec(
@@ -260,6 +302,39 @@ trait MediaControllerITSuite extends BaseDAOSuite:
         assertEquals(xs.size, 1)
         assertSameValues(xs.head, m0)
 
+    test("findByCameraTimestamps"):
+        val m0      = createMedia()
+        val m1      = createMedia()
+        val inside0 = m0.start_timestamp.get.plus(m0.duration.get.dividedBy(2))
+        val inside1 = m1.start_timestamp.get.plus(m1.duration.get.dividedBy(2))
+        val before0 = m0.start_timestamp.get.minusSeconds(1)
+        val pairs   = List(
+            CameraTimestamp(m1.camera_id.get, inside1),
+            CameraTimestamp(m0.camera_id.get, before0),
+            CameraTimestamp(m0.camera_id.get, inside0),
+            CameraTimestamp(m0.camera_id.get, m0.start_timestamp.get)
+        )
+        val xs      = exec(controller.findByCameraTimestamps(pairs))
+        assertEquals(xs.map(x => CameraTimestamp(x.camera_id, x.timestamp)), pairs)
+        assertEquals(xs.map(_.media.size), List(1, 0, 1, 1))
+        assertSameValues(xs(0).media.head, m1)
+        assertSameValues(xs(2).media.head, m0)
+        assertSameValues(xs(3).media.head, m0)
+
+    test("findBySha512s"):
+        val m0        = createMedia()
+        val m1        = createMedia()
+        val sha0      = m0.sha512.get
+        // Shares its sha512_prefix with m0, so it must be dropped after the prefix lookup
+        val collision = sha0.clone()
+        collision(63) = (collision(63) ^ 1).toByte
+        val shas      = List(m1.sha512.get, collision, sha0, TestUtils.randomSha512())
+        val xs        = exec(controller.findBySha512s(shas.map(s => HexFormat.of().formatHex(s) -> s)))
+        assertEquals(xs.map(_.sha512), shas.map(HexFormat.of().formatHex))
+        assertEquals(xs.map(_.media.size), List(1, 0, 1, 0))
+        assertSameValues(xs(0).media.head, m1)
+        assertSameValues(xs(2).media.head, m0)
+
     test("findConcurrent (simple case)"):
         val m0 = createMedia()
         val xs = exec(controller.findConcurrent(m0.video_reference_uuid.get))
@@ -300,6 +375,28 @@ trait MediaControllerITSuite extends BaseDAOSuite:
         assertEquals(xs.size, 1)
         assertSameValues(xs.head, m0)
 
+    test("findByVideoReferenceUuids"):
+        val m0    = createMedia()
+        val m1    = createMedia()
+        val uuid0 = m0.video_reference_uuid.get
+        val uuid1 = m1.video_reference_uuid.get
+        // More than one IN chunk, with the media in different chunks
+        val uuids = uuid1 :: List.fill(1500)(UUID.randomUUID()) ++ List(uuid0, uuid1)
+        val xs    = exec(controller.findByVideoReferenceUuids(uuids))
+        assertEquals(xs.size, 3)
+        assertSameValues(xs(0), m1)
+        assertSameValues(xs(1), m0)
+        assertSameValues(xs(2), m1)
+
+    test("findByURIs"):
+        val m0   = createMedia()
+        val m1   = createMedia()
+        val uris = List(m1.uri.get, URI.create(s"http://www.mbari.org/missing/${UUID.randomUUID()}.mp4"), m0.uri.get)
+        val xs   = exec(controller.findByURIs(uris))
+        assertEquals(xs.size, 2)
+        assertSameValues(xs(0), m1)
+        assertSameValues(xs(1), m0)
+
     test("findByFileName"):
         val m0       = createMedia()
         val filename = Uris.filename(m0.uri.get)
@@ -392,3 +489,37 @@ trait MediaControllerITSuite extends BaseDAOSuite:
         val y                 = exec(controller.findByVideoSequenceName(videoSequenceName))
         assertEquals(y.size, 1)
         assertSameValues(y.head, x)
+
+    test("findChanges"):
+        // Clocks that run ahead of and behind the settle time, so that the revisions just written have settled for
+        // one feed and not yet for the other
+        val feed    = MediaController(daoFactory, clock = Clock.offset(Clock.systemUTC(), Duration.ofHours(1)))
+        val lagging = MediaController(daoFactory, clock = Clock.offset(Clock.systemUTC(), Duration.ofHours(-1)))
+        val start   = exec(feed.findChanges(None, 10))
+        assert(start.changes.isEmpty)
+        val media   = createMedia()
+        val vrUuid  = media.video_reference_uuid.get
+        val updated = exec(controller.updateMedia(media.copy(description = Some("Changed"))))
+        assert(updated.isDefined)
+        // Recent revisions are held back until they have settled
+        assert(exec(lagging.findChanges(Some(start.cursor), 1000)).changes.isEmpty)
+        val page    = exec(feed.findChanges(Some(start.cursor), 1000))
+        assert(page.cursor > start.cursor)
+        val changes = page.changes.filter(_.video_reference_uuid == vrUuid)
+        assertEquals(changes.map(_.change).headOption, Some(MediaChange.Created))
+        assert(changes.forall(_.media.flatMap(_.description).contains("Changed")))
+
+    test("findChanges moves the cursor past revisions that change no media"):
+        val feed  = MediaController(daoFactory, clock = Clock.offset(Clock.systemUTC(), Duration.ofHours(1)))
+        val start = exec(feed.findChanges(None, 10))
+        // A video sequence without videos is audited but holds no media
+        for _ <- 0 until 3 do
+            val dao = daoFactory.newVideoSequenceDAO()
+            exec(dao.runTransaction(d => d.create(new VideoSequenceEntity(s"empty ${UUID.randomUUID()}", "empty"))))
+            dao.close()
+        val page  = exec(feed.findChanges(Some(start.cursor), 3))
+        assert(page.changes.isEmpty)
+        assert(page.cursor > start.cursor)
+        val rest  = exec(feed.findChanges(Some(page.cursor), 1000))
+        assert(rest.changes.isEmpty)
+        assertEquals(rest.cursor, exec(feed.findChanges(None, 1)).cursor)
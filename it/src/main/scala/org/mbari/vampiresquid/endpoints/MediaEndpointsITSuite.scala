@@ -18,8 +18,10 @@ package org.mbari.vampiresquid.endpoints
 
 import io.circe.*
 import io.circe.parser.*
+import org.mbari.vampiresquid.MediaCacheParams
 import org.mbari.vampiresquid.controllers.MediaController
-import org.mbari.vampiresquid.domain.{Media, MoveVideoParams}
+import org.mbari.vampiresquid.domain.{BulkMediaResult, Media, MoveVideoParams}
+import org.mbari.vampiresquid.etc.cache.MediaCache
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
 import org.mbari.vampiresquid.etc.jdk.Logging.given
 import org.mbari.vampiresquid.etc.jdk.{Logging, Uris}
@@ -31,7 +33,7 @@ import org.mbari.vampiresquid.repository.jpa.AssertUtil.assertSameMedia
 import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, TestUtils}
 import sttp.client3.testing.SttpBackendStub
 import sttp.client3.{SttpBackend, *}
-import sttp.model.StatusCode
+import sttp.model.{HeaderNames, StatusCode}
 import sttp.tapir.server.stub.TapirStubInterpreter
 
 import java.net.URI
@@ -110,6 +112,61 @@ trait MediaEndpointsITSuite extends EndpointsSuite:
             )
             .join
 
+    test("createMediaBulk - Create media using a JSON array body"):
+
+        val jwt         = jwtService.authorize("foo").orNull
+        val backendStub = newBackendStub(mediaEndpoints.createMediaBulkImpl)
+
+        val now    = Instant.now()
+        val medias = (0 until 3).map(i =>
+            Media(
+                video_sequence_name = Some("Test Dive Bulk 01"),
+                video_name = Some(s"Test Dive Bulk 01 $i $now"),
+                camera_id = Some("Tester 01"),
+                uri = Some(URI.create(s"http://foo.org/v1/bulk/movie01_$i.mp4")),
+                start_timestamp = Some(now.plusSeconds(i))
+            )
+        )
+
+        val request = basicRequest
+            .post(uri"http://test.com/v1/media/bulk")
+            .header("Authorization", s"Bearer $jwt")
+            .header("Content-Type", "application/json")
+            .body(medias.toList.stringify)
+
+        val response = request.send(backendStub).join
+        assertEquals(response.code, StatusCode.Ok)
+        val results  = checkResponse[List[BulkMediaResult]](response.body)
+        assertEquals(results.size, 3)
+        assert(results.forall(_.status == BulkMediaResult.Created))
+
+    test("createMediaBulk - Create media using a NDJSON body with a malformed line"):
+
+        val jwt         = jwtService.authorize("foo").orNull
+        val backendStub = newBackendStub(mediaEndpoints.createMediaBulkImpl)
+
+        val now   = Instant.now()
+        val media = Media(
+            video_sequence_name = Some("Test Dive Bulk 02"),
+            video_name = Some(s"Test Dive Bulk 02 $now"),
+            camera_id = Some("Tester 02"),
+            uri = Some(URI.create("http://foo.org/v1/bulk/movie02.mp4")),
+            start_timestamp = Some(now)
+        )
+        val body  = media.stringify + "\n{not json}\n"
+
+        val request = basicRequest
+            .post(uri"http://test.com/v1/media/bulk")
+            .header("Authorization", s"Bearer $jwt")
+            .header("Content-Type", "application/x-ndjson")
+            .body(body)
+
+        val response = request.send(backendStub).join
+        assertEquals(response.code, StatusCode.Ok)
+        val results  = checkResponse[List[BulkMediaResult]](response.body)
+        assertEquals(results.map(_.status), List(BulkMediaResult.Created, BulkMediaResult.Failed))
+        assertEquals(results.map(_.index), List(0, 1))
+
     test("updateMedia - Update an existing media's start timestamp using form body"):
         val jwt         = jwtService
             .authorize("foo")
@@ -415,6 +472,29 @@ trait MediaEndpointsITSuite extends EndpointsSuite:
                 assertSameMedia(media, media0)
         )
 
+    test("findMediaByVideoReferenceUuid - the ETag and the body change when the media is updated"):
+        // A caching instance, and an update made through another instance that can't invalidate its cache
+        val params         = MediaCacheParams(enabled = true, maxSize = 100, ttl = Duration.ofMinutes(10))
+        val cached         = new MediaController(daoFactory, mediaCache = new MediaCache(params))
+        val endpoints      = new MediaEndpoints(cached, jwtService)
+        val backendStub    = newBackendStub(endpoints.findMediaByVideoReferenceUuidImpl)
+        val videoReference = TestUtils.create(1, 1, 1).head.getVideoReferences().get(0)
+        val uuid           = videoReference.getUuid()
+
+        def get(): (String, Media) =
+            val response = basicRequest.get(uri"http://test.com/v1/media/videoreference/$uuid").send(backendStub).join
+            assertEquals(response.code, StatusCode.Ok)
+            (response.header(HeaderNames.Etag).orNull, checkResponse[Media](response.body))
+
+        val (etag0, media0) = get()
+        assert(etag0 != null)
+        controller.update(videoReference.getSha512(), videoRefDescription = Some("Updated")).join
+
+        val (etag1, media1) = get()
+        assertNotEquals(etag1, etag0)
+        assertEquals(media1.description, Some("Updated"))
+        assertNotEquals(media1.description, media0.description)
+
     test("findMediaByFileName"):
         val videoSequence  = TestUtils.create(1, 1, 1).head
         val videoReference = videoSequence.getVideoReferences().get(0)
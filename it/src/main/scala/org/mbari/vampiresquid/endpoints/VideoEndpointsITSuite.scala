@@ -17,7 +17,7 @@
 package org.mbari.vampiresquid.endpoints
 
 import org.mbari.vampiresquid.controllers.{VideoController, VideoSequenceController}
-import org.mbari.vampiresquid.domain.{LastUpdatedTime, Video, VideoUpdate}
+import org.mbari.vampiresquid.domain.{LastUpdatedTime, PageCursor, Video, VideoUpdate}
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
 import org.mbari.vampiresquid.etc.jdk.Instants
 import org.mbari.vampiresquid.etc.jwt.JwtService
@@ -67,6 +67,39 @@ trait VideoEndpointsITSuite extends EndpointsSuite:
                 assertEquals(videos.size, 2)
         )
 
+    test("findAllVideos with cursor"):
+        val videoSequence = TestUtils.create(1, 5, 1).head
+        val expected      = videoSequence.getVideos.asScala.map(_.getUuid).toSet
+        val backendStub   = newBackendStub(videoEndpoints.findAllVideosImpl)
+
+        def page(cursor: Option[String]): (List[Video], Option[String]) =
+            val u        = cursor.fold(uri"http://test.com/v1/videos?limit=2")(c =>
+                uri"http://test.com/v1/videos?limit=2&cursor=$c"
+            )
+            val response = basicRequest.get(u).send(backendStub).join
+            assertEquals(response.code, StatusCode.Ok)
+            (checkResponse[List[Video]](response.body), response.header(PageCursor.Header))
+
+        val (p1, c1) = page(None)
+        val (p2, c2) = page(c1)
+        val (p3, c3) = page(c2)
+        assertEquals(p1.size, 2)
+        assertEquals(p2.size, 2)
+        assertEquals(p3.size, 1)
+        assert(c1.isDefined)
+        assert(c2.isDefined)
+        assert(c3.isEmpty)
+        val all      = p1 ++ p2 ++ p3
+        assertEquals(all.map(_.uuid).toSet, expected)
+        assertEquals(all.map(_.start_timestamp), all.map(_.start_timestamp).sorted)
+
+    test("findAllVideos with invalid cursor"):
+        runGet(
+            videoEndpoints.findAllVideosImpl,
+            "http://test.com/v1/videos?cursor=garbage",
+            response => assertEquals(response.code, StatusCode.BadRequest)
+        )
+
     test("findOne"):
         val videoSequence = TestUtils.create(1, 1, 1).head
         val video         = Video.from(videoSequence.getVideos.asScala.head)
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.{Media, MediaEvent}
+import org.mbari.vampiresquid.repository.jpa.entity.OutboxEventEntity
+import org.mbari.vampiresquid.repository.jpa.{BaseDAOSuite, TestUtils}
+
+import java.time.Duration
+import scala.collection.mutable
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.Future
+
+trait OutboxPublisherITSuite extends BaseDAOSuite:
+
+    override def beforeAll(): Unit = daoFactory.beforeAll()
+    override def afterAll(): Unit  = daoFactory.afterAll()
+
+    lazy val controller = MediaController(daoFactory, outbox = Outbox.Enabled)
+
+    /** Local stand-in for a broker. Keeps every event it accepts */
+    class RecordingMessagingService(failing: Boolean = false) extends MessagingService:
+        val received = mutable.ArrayBuffer.empty[MediaEvent]
+
+        def publish(events: Seq[MediaEvent]): Future[Unit] =
+            if failing then Future.failed(new RuntimeException("The broker is down"))
+            else
+                received ++= events
+                Future.unit
+
+    def newPublisher(service: MessagingService): OutboxPublisher =
+        new OutboxPublisher(daoFactory, service, 100, Duration.ofSeconds(2))
+
+    def createMedia(): Media =
+        val vs = TestUtils.build(1, 1, 1)
+        exec(controller.createMedia(Media.from(vs.head.getVideoReferences().get(0))))
+
+    override def beforeEach(context: BeforeEach): Unit =
+        super.beforeEach(context)
+        // Drain anything left by other suites
+        while newPublisher(new NoopMessagingService).publishPending() > 0 do ()
+
+    test("publishPending publishes each new video reference once"):
+        val media   = createMedia()
+        val service = new RecordingMessagingService
+        val n       = newPublisher(service).publishPending()
+        assertEquals(n, 1)
+        assertEquals(service.received.size, 1)
+        val event   = service.received.head
+        assertEquals(event.event, OutboxEventEntity.NEW_VIDEO_REFERENCE)
+        assertEquals(event.media.video_reference_uuid, media.video_reference_uuid)
+        assertEquals(event.media.uri, media.uri)
+        assertEquals(newPublisher(service).publishPending(), 0)
+        assertEquals(service.received.size, 1)
+
+    test("publishPending keeps the events when the service fails"):
+        val media   = createMedia()
+        assertEquals(newPublisher(new RecordingMessagingService(failing = true)).publishPending(), 0)
+        val service = new RecordingMessagingService
+        assertEquals(newPublisher(service).publishPending(), 1)
+        assertEquals(service.received.toList.map(_.media.video_reference_uuid), List(media.video_reference_uuid))
+
+    test("an existing video reference is not announced again"):
+        val media   = createMedia()
+        exec(controller.createMedia(media))
+        val service = new RecordingMessagingService
+        assertEquals(newPublisher(service).publishPending(), 1)
+
+    test("a batch that is being published is not claimed by another publisher"):
+        createMedia()
+        val other   = new RecordingMessagingService
+        val service = new MessagingService:
+            def publish(events: Seq[MediaEvent]): Future[Unit] =
+                // No rows are locked while publishing, so this returns at once
+                assertEquals(newPublisher(other).publishPending(), 0)
+                Future.unit
+        assertEquals(newPublisher(service).publishPending(), 1)
+        assert(other.received.isEmpty)
+        assertEquals(newPublisher(other).publishPending(), 0)
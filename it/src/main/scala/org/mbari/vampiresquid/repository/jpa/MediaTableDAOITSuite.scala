@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter
+import org.mbari.vampiresquid.repository.MediaDAO
+import org.mbari.vampiresquid.repository.jpa.extensions.*
+
+import java.time.Duration
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.jdk.CollectionConverters.*
+
+/** Checks that the trigger-maintained media table answers the same as the joins it replaces */
+trait MediaTableDAOITSuite extends BaseDAOSuite:
+
+    given JPADAOFactory = daoFactory
+
+    /** Media holds the checksum as an array, so it is compared as hex */
+    private def comparable(m: Media) = (m.copy(sha512 = None), m.sha512.map(ByteArrayConverter.encode))
+
+    private def viaJoins[T](fn: MediaDAO => T): T = read(new MediaDAOImpl(daoFactory.newReadOnlyVideoSequenceDAO()))(fn)
+
+    private def viaTable[T](fn: MediaDAO => T): T =
+        read(new MediaTableDAOImpl(daoFactory.newReadOnlyVideoSequenceDAO()))(fn)
+
+    private def read[T](dao: MediaDAO)(fn: MediaDAO => T): T =
+        try exec(dao.entityManager.runReadOnlyTransaction(_ => fn(dao)))
+        finally dao.close()
+
+    private def assertSame(fn: MediaDAO => Seq[Media]): Unit =
+        val expected = viaJoins(fn)
+        assert(expected.nonEmpty)
+        assertEquals(viaTable(fn).map(comparable), expected.map(comparable))
+
+    test("findByVideoReferenceUuid, findBySha512 and findByURI"):
+        val videoSequence = TestUtils.create(1, 2, 2).head
+        for
+            v  <- videoSequence.getVideos.asScala
+            vr <- v.getVideoReferences.asScala
+        do
+            assertSame(_.findByVideoReferenceUuid(vr.getUuid).toSeq)
+            assertSame(_.findBySha512(vr.getSha512).toSeq)
+            assertSame(_.findByURI(vr.getUri).toSeq)
+
+    test("findByVideoReferenceUuids, findByURIs and findBySha512s"):
+        val videoReferences = TestUtils.create(2, 2, 2).flatMap(_.getVideoReferences.asScala)
+        val uuids           = videoReferences.map(_.getUuid)
+        val found           = viaTable(_.findByVideoReferenceUuids(uuids))
+        assertEquals(found.flatMap(_.video_reference_uuid).toSet, uuids.toSet)
+        assertEquals(viaTable(_.findByURIs(videoReferences.map(_.getUri))).size, videoReferences.size)
+        assertEquals(viaTable(_.findBySha512s(videoReferences.map(_.getSha512))).size, videoReferences.size)
+
+    test("findByVideoSequenceName and findByVideoName"):
+        val videoSequence = TestUtils.create(1, 3, 2).head
+        assertSame(_.findByVideoSequenceName(videoSequence.getName))
+        val video         = videoSequence.getVideos.get(0)
+        assertSame(_.findByVideoName(video.getName))
+
+    test("findByCameraIdAndTimestamp, findByCameraIdAndTimestamps and findByCameraIdCovering"):
+        val videoSequence = TestUtils.create(1, 3, 1).head
+        val cameraId      = videoSequence.getCameraID
+        val videos        = videoSequence.getVideos.asScala.sortBy(_.getStart)
+        val first         = videos.head
+        val last          = videos.last
+        val window        = Duration.ofMinutes(5)
+        assertSame(_.findByCameraIdAndTimestamp(cameraId, first.getStart.plusSeconds(30), window))
+        assertSame(_.findByCameraIdAndTimestamps(cameraId, first.getStart, last.getStart))
+        assertSame(_.findByCameraIdCovering(cameraId, first.getStart, last.getStart.plusSeconds(30), window))
+
+    test("triggers keep media in step with renames, updates and deletes"):
+        val videoSequence  = TestUtils.create(1, 1, 1).head
+        val video          = videoSequence.getVideos.get(0)
+        val videoReference = video.getVideoReferences.get(0)
+        val uuid           = videoReference.getUuid
+
+        val vsDao = daoFactory.newVideoSequenceDAO()
+        exec(vsDao.runTransaction(d => d.findByUUID(videoSequence.getUuid).foreach(_.setName("renamed sequence"))))
+        vsDao.close()
+
+        val vDao = daoFactory.newVideoDAO()
+        exec(vDao.runTransaction(d => d.findByUUID(video.getUuid).foreach(_.setName("renamed video"))))
+        vDao.close()
+
+        val vrDao = daoFactory.newVideoReferenceDAO()
+        exec(vrDao.runTransaction(d => d.findByUUID(uuid).foreach(_.setDescription("updated description"))))
+
+        val media = viaTable(_.findByVideoReferenceUuid(uuid))
+        assertEquals(media.flatMap(_.video_sequence_name), Some("renamed sequence"))
+        assertEquals(media.flatMap(_.video_name), Some("renamed video"))
+        assertEquals(media.flatMap(_.description), Some("updated description"))
+        assertSame(_.findByVideoReferenceUuid(uuid).toSeq)
+
+        exec(vrDao.runTransaction(d => d.findByUUID(uuid).foreach(d.delete)))
+        vrDao.close()
+        assert(viaTable(_.findByVideoReferenceUuid(uuid)).isEmpty)
@@ -188,3 +188,14 @@ trait VideoDAOITSuite extends BaseDAOSuite:
         assertEquals(xs.size, 3)
         val names               = videoSequence.getVideos.asScala.map(_.getName).sorted.toSeq
         assertEquals(xs, names)
+        dao.close()
+
+    test("newUnitOfWork shares one EntityManager and closes it"):
+        val uow = daoFactory.newUnitOfWork()
+        assert(uow.videoDAO.entityManager eq uow.entityManager)
+        assert(uow.videoSequenceDAO.entityManager eq uow.entityManager)
+        assert(uow.videoReferenceDAO.entityManager eq uow.entityManager)
+        val n   = run(() => uow.videoDAO.findAll().size)(using uow.videoDAO)
+        assert(n >= 0)
+        uow.close()
+        assert(!uow.entityManager.isOpen)
@@ -16,10 +16,10 @@
 
 package org.mbari.vampiresquid.repository.jpa
 
-import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.domain.{FileNameMatch, Media}
 import org.mbari.vampiresquid.etc.jdk.Uris
 import org.mbari.vampiresquid.repository.VideoReferenceDAO
-import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
+import org.mbari.vampiresquid.repository.jpa.entity.{VideoEntity, VideoReferenceEntity, VideoSequenceEntity}
 
 import java.net.URI
 import java.time.{Duration, Instant}
@@ -176,6 +176,23 @@ trait VideoReferenceDAOITSuite extends BaseDAOSuite:
         assertEquals(entity.getUri, videoReference.getUri)
         dao.close()
 
+    test("findByFileName(name, matchType, limit)"):
+        given dao: VideoReferenceDAO[VideoReferenceEntity] = daoFactory.newVideoReferenceDAO()
+        val videoSequence                                  = TestUtils.create(1, 3, 3).head
+        val videoReference                                 = videoSequence.getVideoReferences.get(0)
+        val filename                                       = Uris.filename(videoReference.getUri)
+
+        def search(name: String, matchType: FileNameMatch, limit: Int = 100) =
+            run(() => dao.findByFileName(name, matchType, limit)).map(_.getUri).toSeq
+
+        assert(search(filename.dropRight(4), FileNameMatch.Prefix).contains(videoReference.getUri))
+        assert(search(filename.drop(3), FileNameMatch.Suffix).contains(videoReference.getUri))
+        assert(search(filename.drop(2).dropRight(2), FileNameMatch.Contains).contains(videoReference.getUri))
+        assert(search("video/", FileNameMatch.Contains).isEmpty)
+        assert(search("%", FileNameMatch.Contains).isEmpty)
+        assertEquals(search("video_", FileNameMatch.Prefix, 2).size, 2)
+        dao.close()
+
     test("findBySha512"):
         given dao: VideoReferenceDAO[VideoReferenceEntity] = daoFactory.newVideoReferenceDAO()
 
@@ -190,3 +207,24 @@ trait VideoReferenceDAOITSuite extends BaseDAOSuite:
         assertEquals(entity.getUuid, videoReference.getUuid)
 
         dao.close()
+
+    test("findConcurrent returns only the references whose video overlaps"):
+        val t0            = Instant.parse("2024-06-01T00:00:00Z")
+        val videoSequence = new VideoSequenceEntity(s"concurrent-${Random.nextInt()}", s"camera-${Random.nextInt()}")
+        def addVideo(offset: Duration, duration: Duration): VideoReferenceEntity =
+            val video          = new VideoEntity(s"${videoSequence.getName}-${offset}", t0.plus(offset), duration)
+            val videoReference = TestUtils.randomVideoReference()
+            video.addVideoReference(videoReference)
+            videoSequence.addVideo(video)
+            videoReference
+        val target        = addVideo(Duration.ZERO, Duration.ofMinutes(10))
+        val overlapping   = addVideo(Duration.ofMinutes(5), Duration.ofMinutes(10))
+        val long          = addVideo(Duration.ofHours(-2), Duration.ofMinutes(125))
+        val touching      = addVideo(Duration.ofMinutes(10), Duration.ofMinutes(10))
+        val later         = addVideo(Duration.ofHours(1), Duration.ofMinutes(10))
+        TestUtils.save(videoSequence)
+
+        given dao: VideoReferenceDAO[VideoReferenceEntity] = daoFactory.newVideoReferenceDAO()
+        val xs = run(() => dao.findConcurrent(target.getUuid).map(_.getUuid).toSet)
+        assertEquals(xs, Set(target.getUuid, overlapping.getUuid, long.getUuid))
+        dao.close()
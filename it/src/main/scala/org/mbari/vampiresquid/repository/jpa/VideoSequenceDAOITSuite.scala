@@ -176,6 +176,18 @@ trait VideoSequenceDAOITSuite extends BaseDAOSuite:
         assertEquals(xs.size, 1)
         dao.close()
 
+    test("findByTimestamp excludes videos that ended before the timestamp"):
+        given dao: VideoSequenceDAOImpl = daoFactory.newVideoSequenceDAO()
+        val videoSequence               = TestUtils.create(1, 1, 1).head
+        val video                       = videoSequence.getVideos.get(0)
+        val end                         = video.getStart.plus(video.getDuration)
+        val xs                          = run(() => dao.findByTimestamp(end).toSeq)
+        assert(xs.exists(_.getUuid == videoSequence.getUuid))
+        assertEquals(xs.find(_.getUuid == videoSequence.getUuid).get.getVideos.size(), 1)
+        val ys                          = run(() => dao.findByTimestamp(end.plusMillis(1)).toSeq)
+        assert(!ys.exists(_.getUuid == videoSequence.getUuid))
+        dao.close()
+
     test("findAllNames"):
         given dao: VideoSequenceDAOImpl = daoFactory.newVideoSequenceDAO()
 
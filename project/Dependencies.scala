@@ -1,6 +1,9 @@
 import sbt.*
 object Dependencies {
 
+    private val caffeineVersion       = "3.2.3"
+    lazy val caffeine                 = "com.github.ben-manes.caffeine"  % "caffeine"                   % caffeineVersion
+    lazy val caffeineJCache           = "com.github.ben-manes.caffeine"  % "jcache"                     % caffeineVersion
     private val circeVersion          = "0.14.15"
     lazy val circeCore                = "io.circe"                      %% "circe-core"                 % circeVersion
     lazy val circeGeneric             = "io.circe"                      %% "circe-generic"              % circeVersion
@@ -12,6 +15,7 @@ object Dependencies {
     lazy val hibernateCore            = "org.hibernate.orm"              % "hibernate-core"             % hibernateVersion
     lazy val hibernateEnvers          = "org.hibernate.orm"              % "hibernate-envers"           % hibernateVersion
     lazy val hibernateHikari          = "org.hibernate.orm"              % "hibernate-hikaricp"         % hibernateVersion
+    lazy val hibernateJCache          = "org.hibernate.orm"              % "hibernate-jcache"           % hibernateVersion
     lazy val jansi                    = "org.fusesource.jansi"           % "jansi"                      % "2.4.2"
     lazy val javaJwt                  = "com.auth0"                      % "java-jwt"                   % "4.5.1"
     private val logbackVersion        = "1.5.32"
@@ -39,5 +43,8 @@ object Dependencies {
     lazy val testcontainersOracle     = "org.testcontainers"             % "testcontainers-oracle-xe"   % testcontainersVersion
     lazy val testcontainersPostgres   = "org.testcontainers"             % "testcontainers-postgresql"  % testcontainersVersion
     lazy val typesafeConfig           = "com.typesafe"                   % "config"                     % "1.4.6"
+    // Keep in step with the Vert.x version that tapir-vertx-server is built against
+    private val vertxVersion          = "5.0.5"
+    lazy val vertxPgClient            = "io.vertx"                       % "vertx-pg-client"            % vertxVersion
 
 }
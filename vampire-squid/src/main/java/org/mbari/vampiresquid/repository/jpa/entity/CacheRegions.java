@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa.entity;
+
+/**
+ * Names of the Hibernate second-level cache regions. Each region is a JCache cache whose size is configured under
+ * {@code caffeine.jcache} in reference.conf.
+ */
+public final class CacheRegions {
+
+    public static final String VIDEO_SEQUENCES = "video-sequences";
+    public static final String VIDEO_SEQUENCE_VIDEOS = "video-sequence-videos";
+    public static final String VIDEOS = "videos";
+    public static final String VIDEO_VIDEO_REFERENCES = "video-video-references";
+    public static final String VIDEO_REFERENCES = "video-references";
+
+    /** Hint value used on named queries whose results may be stored in the query cache */
+    public static final String CACHEABLE = "org.hibernate.cacheable";
+
+    public static final String[] ALL = {
+            VIDEO_SEQUENCES,
+            VIDEO_SEQUENCE_VIDEOS,
+            VIDEOS,
+            VIDEO_VIDEO_REFERENCES,
+            VIDEO_REFERENCES
+    };
+
+    private CacheRegions() {}
+}
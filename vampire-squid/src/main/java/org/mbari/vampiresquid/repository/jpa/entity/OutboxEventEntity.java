@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa.entity;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * A notification waiting to be published. A row is written in the same transaction as the change it announces and
+ * is deleted once it has been published (see org.mbari.vampiresquid.messaging.OutboxPublisher). Only the video
+ * reference is recorded; the media is read when the row is published.
+ */
+@Entity(name = "OutboxEvent")
+@Table(name = "media_outbox")
+@NamedQueries(
+        {
+                @NamedQuery(
+                        name = "OutboxEvent.findPending",
+                        query = "SELECT e FROM OutboxEvent e WHERE e.claimedUntil IS NULL OR e.claimedUntil < :now " +
+                                "ORDER BY e.id ASC"
+                ),
+                @NamedQuery(
+                        name = "OutboxEvent.claimByIds",
+                        query = "UPDATE OutboxEvent e SET e.claimedUntil = :until WHERE e.id IN :ids"
+                ),
+                @NamedQuery(
+                        name = "OutboxEvent.releaseByIds",
+                        query = "UPDATE OutboxEvent e SET e.claimedUntil = NULL WHERE e.id IN :ids"
+                ),
+                @NamedQuery(
+                        name = "OutboxEvent.deleteByIds",
+                        query = "DELETE FROM OutboxEvent e WHERE e.id IN :ids"
+                )
+        }
+)
+public class OutboxEventEntity {
+
+    public static final String NEW_VIDEO_REFERENCE = "new_video_reference";
+
+    // A sequence, not an identity column, so that the rows can be batched with the inserts they are written with
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "media_outbox_seq")
+    @SequenceGenerator(name = "media_outbox_seq", sequenceName = "media_outbox_seq", allocationSize = 50)
+    @Column(name = "id", nullable = false, updatable = false)
+    Long id;
+
+    @Basic(optional = false)
+    @Column(name = "event_type", nullable = false, length = 64, updatable = false)
+    String eventType;
+
+    @Basic(optional = false)
+    @Column(name = "video_reference_uuid", nullable = false, updatable = false)
+    UUID videoReferenceUuid;
+
+    @Basic(optional = false)
+    @Column(name = "created_time", nullable = false, updatable = false)
+    Instant createdTime;
+
+    // Set while an instance of OutboxPublisher is publishing the row
+    @Column(name = "claimed_until")
+    Instant claimedUntil;
+
+    public OutboxEventEntity() {
+    }
+
+    public OutboxEventEntity(String eventType, UUID videoReferenceUuid) {
+        this.eventType = eventType;
+        this.videoReferenceUuid = videoReferenceUuid;
+        this.createdTime = Instant.now();
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public UUID getVideoReferenceUuid() {
+        return videoReferenceUuid;
+    }
+
+    public Instant getCreatedTime() {
+        return createdTime;
+    }
+
+    public Instant getClaimedUntil() {
+        return claimedUntil;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEventEntity{" +
+                "id=" + id +
+                ", eventType='" + eventType + '\'' +
+                ", videoReferenceUuid=" + videoReferenceUuid +
+                '}';
+    }
+}
@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository.jpa.entity;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
 import org.mbari.vampiresquid.etc.jpa.TransactionLogger;
 import org.mbari.vampiresquid.etc.jpa.InstantConverter;
@@ -35,7 +36,17 @@ import java.util.UUID;
         indexes = {
                 @Index(name = "idx_videos__name", columnList = "name"),
                 @Index(name = "idx_videos__start_time", columnList = "start_time"),
-                @Index(name = "idx_videos__video_sequence_uuid", columnList = "video_sequence_uuid")
+                @Index(name = "idx_videos__end_time", columnList = "end_time"),
+                @Index(name = "idx_videos__start_time__uuid", columnList = "start_time, uuid"),
+                @Index(name = "idx_videos__video_sequence_uuid", columnList = "video_sequence_uuid"),
+                @Index(
+                        name = "idx_videos__video_sequence_uuid__start_time__end_time",
+                        columnList = "video_sequence_uuid, start_time, end_time"
+                ),
+                @Index(
+                        name = "idx_videos__video_sequence_uuid__duration_millis",
+                        columnList = "video_sequence_uuid, duration_millis"
+                )
         }
 )
 @EntityListeners({TransactionLogger.class})
@@ -58,9 +69,26 @@ import java.util.UUID;
 )
 @NamedQueries(
         {
-                @NamedQuery(name = "Video.findAll", query = "SELECT v FROM Video v ORDER BY v.start"),
-                @NamedQuery(name = "Video.findByName", query = "SELECT v FROM Video v WHERE v.name = :name"),
+                @NamedQuery(name = "Video.findAll", query = "SELECT v FROM Video v ORDER BY v.start, v.uuid"),
+                @NamedQuery(
+                        name = "Video.findAllAfter",
+                        query = "SELECT v FROM Video v WHERE v.start > :start OR (v.start = :start AND v.uuid > :uuid) ORDER BY v.start, v.uuid"
+                ),
+                @NamedQuery(
+                        name = "Video.findByName",
+                        query = "SELECT v FROM Video v WHERE v.name = :name",
+                        hints = @QueryHint(name = CacheRegions.CACHEABLE, value = "true")
+                ),
+                @NamedQuery(name = "Video.findByNames", query = "SELECT v FROM Video v WHERE v.name IN :names"),
                 @NamedQuery(name = "Video.findByUUID", query = "SELECT v FROM Video v WHERE v.uuid = :uuid"),
+                @NamedQuery(
+                        name = "Video.findVersion",
+                        query = "SELECT v.lastUpdatedTime, COUNT(r), MAX(r.lastUpdatedTime) FROM Video v LEFT JOIN v.videoReferences r WHERE v.uuid = :uuid GROUP BY v.uuid, v.lastUpdatedTime"
+                ),
+                @NamedQuery(
+                        name = "Video.findMaxDurationByVideoSequenceUUID",
+                        query = "SELECT MAX(v.duration) FROM Video v WHERE v.videoSequence.uuid = :uuid"
+                ),
                 @NamedQuery(
                         name = "Video.findByVideoReferenceUUID",
                         query = "SELECT v FROM Video v LEFT JOIN v.videoReferences w WHERE w.uuid = :uuid"
@@ -73,6 +101,10 @@ import java.util.UUID;
                         name = "Video.findBetweenDates",
                         query = "SELECT v FROM Video v WHERE v.start >= :startDate AND v.start <= :endDate"
                 ),
+                @NamedQuery(
+                        name = "Video.findByTimestamp",
+                        query = "SELECT v FROM Video v WHERE v.start BETWEEN :startDate AND :timestamp AND v.endTime >= :timestamp"
+                ),
                 @NamedQuery(
                         name = "Video.findAllNamesAndStartDates",
                         query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.NameAndDate(v.name, v.start) FROM Video v ORDER BY v.start"
@@ -80,6 +112,8 @@ import java.util.UUID;
         }
 )
 @org.hibernate.envers.Audited
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.VIDEOS)
 public class VideoEntity implements IPersistentObject {
 
     @Id
@@ -106,6 +140,17 @@ public class VideoEntity implements IPersistentObject {
     @Convert(converter = DurationConverter.class)
     Duration duration;
 
+    /**
+     * start + duration, or start when there is no duration. This is a generated column maintained by the database (see the V1.1.0 migrations) so that
+     * timestamp containment can be evaluated in SQL. It is mapped only so that JPQL can query it and is never written
+     * by JPA. The loaded value is not refreshed after a write, so {@link #getEndTime()} computes it from start and
+     * duration instead of re-reading the row.
+     */
+    @Column(name = "end_time", insertable = false, updatable = false)
+    @Temporal(value = TemporalType.TIMESTAMP)
+    @org.hibernate.envers.NotAudited
+    Instant endTime;
+
     @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.DETACH}, optional = false)
     @JoinColumn(name = "video_sequence_uuid", nullable = false, foreignKey = @ForeignKey(name = "fk_videos__video_sequence_uuid"))
     VideoSequenceEntity videoSequence;
@@ -126,6 +171,7 @@ public class VideoEntity implements IPersistentObject {
             orphanRemoval = true
     )
     @OrderBy("uri ASC")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.VIDEO_VIDEO_REFERENCES)
     protected List<VideoReferenceEntity> videoReferences = new ArrayList<>();
 
     public VideoEntity(String name, Instant start) {
@@ -221,6 +267,17 @@ public class VideoEntity implements IPersistentObject {
         return duration;
     }
 
+    /**
+     * @return start + duration, the same value the database keeps in end_time. A video without a duration ends at its
+     *     start.
+     */
+    public Instant getEndTime() {
+        if (start == null) {
+            return null;
+        }
+        return duration == null ? start : start.plus(duration);
+    }
+
     public void setDuration(Duration duration) {
         this.duration = duration;
     }
@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository.jpa.entity;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
 import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter;
 import org.mbari.vampiresquid.etc.jpa.TransactionLogger;
@@ -23,6 +24,7 @@ import org.mbari.vampiresquid.etc.jpa.URIConverter;
 
 import jakarta.persistence.*;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.sql.Timestamp;
 import java.util.UUID;
 
@@ -31,6 +33,9 @@ import java.util.UUID;
         name = "video_references",
         indexes = {
                 @Index(name = "idx_video_references__uri", columnList = "uri"),
+                @Index(name = "idx_video_references__filename", columnList = "filename"),
+                @Index(name = "idx_video_references__filename_reversed", columnList = "filename_reversed"),
+                @Index(name = "idx_video_references__sha512_prefix", columnList = "sha512_prefix"),
                 @Index(name = "idx_video_references__video_uuid", columnList = "video_uuid")
         }
 )
@@ -49,26 +54,61 @@ import java.util.UUID;
 )
 @NamedQueries(
         {
-                @NamedQuery(name = "VideoReference.findAll", query = "SELECT v FROM VideoReference v"),
+                @NamedQuery(name = "VideoReference.findAll", query = "SELECT v FROM VideoReference v ORDER BY v.uri"),
+                @NamedQuery(
+                        name = "VideoReference.findAllAfter",
+                        query = "SELECT v FROM VideoReference v WHERE v.uri > :uri ORDER BY v.uri"
+                ),
+                @NamedQuery(
+                        name = "VideoReference.findVersion",
+                        query = "SELECT v.lastUpdatedTime FROM VideoReference v WHERE v.uuid = :uuid"
+                ),
+                @NamedQuery(
+                        name = "VideoReference.findMediaVersion",
+                        query = "SELECT s.lastUpdatedTime, w.lastUpdatedTime, v.lastUpdatedTime FROM VideoReference v JOIN v.video w JOIN w.videoSequence s WHERE v.uuid = :uuid"
+                ),
                 @NamedQuery(
                         name = "VideoReference.findBySha512",
                         query = "SELECT v FROM VideoReference v WHERE v.sha512 = :sha512"
                 ),
+                @NamedQuery(
+                        name = "VideoReference.findBySha512Prefix",
+                        query = "SELECT v FROM VideoReference v WHERE v.sha512Prefix = :prefix AND v.sha512 = :sha512"
+                ),
                 @NamedQuery(
                         name = "VideoReference.findByVideoUUID",
                         query = "SELECT v FROM VideoReference v JOIN v.video w WHERE w.uuid = :uuid"
                 ),
+                @NamedQuery(
+                        name = "VideoReference.findConcurrent",
+                        query = "SELECT x FROM VideoReference x JOIN FETCH x.video w JOIN FETCH w.videoSequence s WHERE s.uuid = :videoSequenceUuid AND w.duration IS NOT NULL AND w.start BETWEEN :earliestStart AND :endDate AND ((w.start < :endDate AND w.endTime > :startDate) OR w.start = :startDate OR w.endTime = :endDate) ORDER BY w.start ASC, x.uri ASC"
+                ),
                 @NamedQuery(
                         name = "VideoReference.findByURI",
-                        query = "SELECT v FROM VideoReference v WHERE v.uri = :uri"
+                        query = "SELECT v FROM VideoReference v WHERE v.uri = :uri",
+                        hints = @QueryHint(name = CacheRegions.CACHEABLE, value = "true")
+                ),
+                @NamedQuery(
+                        name = "VideoReference.findByURIs",
+                        query = "SELECT v FROM VideoReference v WHERE v.uri IN :uris"
                 ),
                 @NamedQuery(
                         name = "VideoReference.findByFileName",
                         query = "SELECT v FROM VideoReference v WHERE CAST(v.uri as string) LIKE :filename"
                 ),
+                @NamedQuery(
+                        name = "VideoReference.findByFileNamePattern",
+                        query = "SELECT v FROM VideoReference v WHERE v.filename LIKE :pattern ESCAPE '!' ORDER BY v.filename"
+                ),
+                @NamedQuery(
+                        name = "VideoReference.findByReversedFileNamePattern",
+                        query = "SELECT v FROM VideoReference v WHERE v.filenameReversed LIKE :pattern ESCAPE '!' ORDER BY v.filename"
+                ),
         }
 )
 @org.hibernate.envers.Audited
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.VIDEO_REFERENCES)
 public class VideoReferenceEntity implements IPersistentObject {
 
 
@@ -127,6 +167,27 @@ public class VideoReferenceEntity implements IPersistentObject {
     @Column(name = "description", length = 2048)
     String description;
 
+    /**
+     * The last path segment of the uri, and the same text reversed. Both are maintained by the database so that
+     * filename prefix and suffix searches can use an index. They are only used in queries, so they are not read back
+     * after an insert or update.
+     */
+    @Column(name = "filename", length = 1024, insertable = false, updatable = false)
+    @org.hibernate.envers.NotAudited
+    String filename;
+
+    @Column(name = "filename_reversed", length = 1024, insertable = false, updatable = false)
+    @org.hibernate.envers.NotAudited
+    String filenameReversed;
+
+    /**
+     * The first 8 bytes of the sha512, maintained by the database so that checksum lookups can use a narrow index.
+     * Like filename, it is only used in queries.
+     */
+    @Column(name = "sha512_prefix", insertable = false, updatable = false)
+    @org.hibernate.envers.NotAudited
+    Long sha512Prefix;
+
     /** Optimistic lock to prevent concurrent overwrites */
     @Version
     @Column(name = "last_updated_time")
@@ -287,6 +348,18 @@ public class VideoReferenceEntity implements IPersistentObject {
         this.sha512 = sha512;
     }
 
+    /**
+     * @param sha512 A checksum
+     * @return The value the database stores in sha512_prefix for the checksum: its first 8 bytes as a big-endian
+     * long. null if the checksum is shorter than 8 bytes.
+     */
+    public static Long sha512Prefix(byte[] sha512) {
+        if (sha512 == null || sha512.length < 8) {
+            return null;
+        }
+        return ByteBuffer.wrap(sha512, 0, 8).getLong();
+    }
+
     public Timestamp getLastUpdatedTime() {
         return lastUpdatedTime;
     }
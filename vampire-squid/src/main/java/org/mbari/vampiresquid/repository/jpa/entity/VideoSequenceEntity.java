@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository.jpa.entity;
 
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.hibernate.annotations.UuidGenerator;
 import org.mbari.vampiresquid.etc.jpa.TransactionLogger;
 
@@ -53,7 +54,15 @@ import java.util.UUID;
 )
 @NamedQueries(
         {
-                @NamedQuery(name = "VideoSequence.findAll", query = "SELECT v FROM VideoSequence v"),
+                @NamedQuery(name = "VideoSequence.findAll", query = "SELECT v FROM VideoSequence v ORDER BY v.name"),
+                @NamedQuery(
+                        name = "VideoSequence.findAllAfter",
+                        query = "SELECT v FROM VideoSequence v WHERE v.name > :name ORDER BY v.name"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findVersion",
+                        query = "SELECT s.lastUpdatedTime, COUNT(DISTINCT v.uuid), MAX(v.lastUpdatedTime), COUNT(r), MAX(r.lastUpdatedTime) FROM VideoSequence s LEFT JOIN s.videos v LEFT JOIN v.videoReferences r WHERE s.uuid = :uuid GROUP BY s.uuid, s.lastUpdatedTime"
+                ),
                 @NamedQuery(name = "VideoSequence.listEmpty", 
                            query = """
                             SELECT vs
@@ -75,7 +84,12 @@ import java.util.UUID;
                 ),
                 @NamedQuery(
                         name = "VideoSequence.findByName",
-                        query = "SELECT v FROM VideoSequence v WHERE v.name = :name"
+                        query = "SELECT v FROM VideoSequence v WHERE v.name = :name",
+                        hints = @QueryHint(name = CacheRegions.CACHEABLE, value = "true")
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findByNames",
+                        query = "SELECT v FROM VideoSequence v WHERE v.name IN :names"
                 ),
                 @NamedQuery(
                         name = "VideoSequence.findByVideoUUID",
@@ -100,14 +114,86 @@ import java.util.UUID;
                         query =
                                 "SELECT v FROM VideoSequence v LEFT JOIN v.videos w WHERE v.cameraID = :cameraID AND w.start BETWEEN :startDate AND :endDate"
                 ),
+                @NamedQuery(
+                        name = "VideoSequence.findByTimestamp",
+                        query =
+                                "SELECT v FROM VideoSequence v LEFT JOIN FETCH v.videos WHERE EXISTS (SELECT w FROM Video w WHERE w.videoSequence = v AND w.start BETWEEN :startDate AND :timestamp AND w.endTime >= :timestamp)"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findByNameAndTimestamp",
+                        query =
+                                "SELECT v FROM VideoSequence v LEFT JOIN FETCH v.videos WHERE v.name = :name AND EXISTS (SELECT w FROM Video w WHERE w.videoSequence = v AND w.start BETWEEN :startDate AND :timestamp AND w.endTime >= :timestamp)"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findByCameraIDAndTimestamp",
+                        query =
+                                "SELECT v FROM VideoSequence v LEFT JOIN FETCH v.videos WHERE v.cameraID = :cameraID AND EXISTS (SELECT w FROM Video w WHERE w.videoSequence = v AND w.start BETWEEN :startDate AND :timestamp AND w.endTime >= :timestamp)"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findAllMedia",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x ORDER BY x.uuid ASC"
+                ),
                 @NamedQuery(
                         name = "VideoSequence.findMediaByNames",
                         query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v LEFT JOIN v.videos w LEFT JOIN w.videoReferences x WHERE v.name IN :names ORDER BY w.start ASC"
-
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByName",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE v.name = :name ORDER BY w.start ASC, x.uri ASC"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByVideoName",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE w.name = :name ORDER BY x.uri ASC"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByFileNamePattern",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.filename LIKE :pattern ESCAPE '!' ORDER BY x.filename"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByReversedFileNamePattern",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.filenameReversed LIKE :pattern ESCAPE '!' ORDER BY x.filename"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByCameraIDAndTimestamp",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE v.cameraID = :cameraID AND w.start BETWEEN :startDate AND :timestamp AND w.endTime >= :timestamp AND w.duration IS NOT NULL ORDER BY w.start ASC, x.uri ASC"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByCameraIDCovering",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE v.cameraID = :cameraID AND w.start BETWEEN :startDate AND :endDate AND w.endTime >= :earliestEnd AND w.duration IS NOT NULL ORDER BY w.start ASC, x.uri ASC"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByCameraIDAndTimestamps",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE v.cameraID = :cameraID AND w.start BETWEEN :startDate AND :endDate ORDER BY w.start ASC, x.uri ASC"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByVideoReferenceUUIDs",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findVersionedMediaByVideoReferenceUUID",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512), v.lastUpdatedTime, w.lastUpdatedTime, x.lastUpdatedTime FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.uuid = :uuid"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByURIs",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.uri IN :uris"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByVideoUUIDs",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE w.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaByUUIDs",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE v.uuid IN :uuids"
+                ),
+                @NamedQuery(
+                        name = "VideoSequence.findMediaBySha512Prefixes",
+                        query = "SELECT new org.mbari.vampiresquid.repository.jpa.entity.Media(v.uuid, w.uuid, x.uuid, v.name, v.cameraID, w.name, x.uri, w.start, w.duration, x.container, x.videoCodec, x.audioCodec, x.width, x.height, x.frameRate, x.size, x.description, v.description, w.description, x.sha512) FROM VideoSequence v JOIN v.videos w JOIN w.videoReferences x WHERE x.sha512Prefix IN :prefixes"
                 )
         }
 )
 @org.hibernate.envers.Audited
+@Cacheable
+@org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.VIDEO_SEQUENCES)
 public class VideoSequenceEntity implements IPersistentObject {
 
     @Id
@@ -132,6 +218,7 @@ public class VideoSequenceEntity implements IPersistentObject {
             orphanRemoval = true
     )
     @OrderBy("start ASC")
+    @org.hibernate.annotations.Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.VIDEO_SEQUENCE_VIDEOS)
     List<VideoEntity> videos = new ArrayList<>();
 
     @Column(name = "description", length = 2048)
@@ -0,0 +1,12 @@
+/*
+end_time is start_time + duration_millis, maintained by the database so that
+timestamp containment queries can be answered from an index instead of loading
+every video near the timestamp and filtering in memory. Videos without a
+duration end at their start_time.
+*/
+ALTER TABLE videos
+    ADD COLUMN "end_time" timestamp
+    GENERATED ALWAYS AS (start_time + COALESCE(duration_millis, 0) * INTERVAL '1 millisecond') STORED;
+
+CREATE INDEX "idx__videos__end_time"
+	ON "videos"("end_time");
@@ -0,0 +1,7 @@
+/*
+Supports keyset pagination of videos, which are ordered by (start_time, uuid).
+video_sequences and video_references are paged by their unique name and uri
+columns, which are already indexed.
+*/
+CREATE INDEX "idx__videos__start_time__uuid"
+	ON "videos"("start_time", "uuid");
@@ -0,0 +1,11 @@
+/*
+Supports finding the videos of a video sequence that overlap a time interval
+(VideoReference.findConcurrent). The overlap query is a range scan on
+start_time within a sequence, bounded below by the longest duration in the
+sequence, which is read from the second index.
+*/
+CREATE INDEX "idx__videos__video_sequence_uuid__start_time__end_time"
+	ON "videos"("video_sequence_uuid", "start_time", "end_time");
+
+CREATE INDEX "idx__videos__video_sequence_uuid__duration_millis"
+	ON "videos"("video_sequence_uuid", "duration_millis");
@@ -0,0 +1,14 @@
+/*
+Transactional outbox for notifications about new video references. Rows are
+written in the same transaction as the video reference and deleted by
+OutboxPublisher once they have been published.
+*/
+CREATE SEQUENCE media_outbox_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE "media_outbox" (
+	"id"                  	bigint NOT NULL,
+	"event_type"          	varchar(64) NOT NULL,
+	"video_reference_uuid"	uuid NOT NULL,
+	"created_time"        	timestamp NOT NULL,
+	CONSTRAINT "pk_media_outbox" PRIMARY KEY("id")
+);
@@ -0,0 +1,34 @@
+/*
+filename is the last path segment of the uri and filename_reversed is the same
+text reversed, both maintained by the database. A filename prefix search uses the
+index on filename and a suffix search uses a prefix search of filename_reversed,
+instead of a leading-wildcard LIKE over every uri. The pattern_ops indexes are
+needed for LIKE to use them under a non-C collation.
+*/
+ALTER TABLE video_references
+    ADD COLUMN "filename" varchar(1024)
+    GENERATED ALWAYS AS (regexp_replace(uri, '^.*/', '')) STORED;
+
+ALTER TABLE video_references
+    ADD COLUMN "filename_reversed" varchar(1024)
+    GENERATED ALWAYS AS (reverse(regexp_replace(uri, '^.*/', ''))) STORED;
+
+CREATE INDEX "idx__video_references__filename"
+	ON "video_references"("filename" varchar_pattern_ops);
+
+CREATE INDEX "idx__video_references__filename_reversed"
+	ON "video_references"("filename_reversed" varchar_pattern_ops);
+
+/*
+Substring searches use a trigram index when the pg_trgm extension can be
+installed. Without it they fall back to scanning the filename index.
+*/
+DO $$
+BEGIN
+    CREATE EXTENSION IF NOT EXISTS pg_trgm;
+    CREATE INDEX "idx__video_references__filename_trgm"
+        ON "video_references" USING gin ("filename" gin_trgm_ops);
+EXCEPTION WHEN OTHERS THEN
+    RAISE NOTICE 'pg_trgm is not available. Filename substring searches will not be indexed: %', SQLERRM;
+END
+$$;
@@ -0,0 +1,16 @@
+/*
+sha512_prefix is the first 8 bytes of the sha512 checksum as a bigint, maintained
+by the database. A checksum lookup seeks the small index on sha512_prefix and then
+compares the full hex sha512 of the few rows it finds, instead of scanning every
+128 character checksum. Values that are not hex are left without a prefix.
+*/
+ALTER TABLE video_references
+    ADD COLUMN "sha512_prefix" bigint
+    GENERATED ALWAYS AS (
+        CASE
+            WHEN sha512 ~ '^[0-9a-fA-F]{16}' THEN ('x' || substr(sha512, 1, 16))::bit(64)::bigint
+        END
+    ) STORED;
+
+CREATE INDEX "idx__video_references__sha512_prefix"
+	ON "video_references"("sha512_prefix");
@@ -0,0 +1,112 @@
+/*
+media is a denormalized copy of video_sequences JOIN videos JOIN video_references
+with one row per video reference and exactly the columns of a Media. It is
+maintained by triggers in the same transaction as the writes, so media lookups
+read one indexed row instead of joining three tables. Deleting a video reference
+deletes its row through the foreign key.
+*/
+CREATE TABLE "media"  (
+	"video_reference_uuid"      	uuid PRIMARY KEY NOT NULL,
+	"video_sequence_uuid"       	uuid NOT NULL,
+	"video_uuid"                	uuid NOT NULL,
+	"video_sequence_name"       	varchar(512) NOT NULL,
+	"camera_id"                 	varchar(256) NOT NULL,
+	"video_name"                	varchar(512) NOT NULL,
+	"uri"                       	varchar(1024) NOT NULL,
+	"start_time"                	timestamp NOT NULL,
+	"duration_millis"           	bigint NULL,
+	"container"                 	varchar(128) NULL,
+	"video_codec"               	varchar(128) NULL,
+	"audio_codec"               	varchar(128) NULL,
+	"width"                     	integer NULL,
+	"height"                    	integer NULL,
+	"frame_rate"                	DOUBLE PRECISION NULL,
+	"size_bytes"                	bigint NULL,
+	"description"               	varchar(2048) NULL,
+	"video_sequence_description"	varchar(2048) NULL,
+	"video_description"         	varchar(2048) NULL,
+	"sha512"                    	varchar(128) NULL,
+	CONSTRAINT fk__media__video_references__uuid
+	  FOREIGN KEY(video_reference_uuid)
+		REFERENCES video_references("uuid") ON DELETE CASCADE);
+
+/* The rows of media as they should be. Same columns, in the same order, as media */
+CREATE VIEW "media_source"
+AS
+SELECT
+  r.uuid AS video_reference_uuid,
+  s.uuid AS video_sequence_uuid,
+  v.uuid AS video_uuid,
+  s.name AS video_sequence_name,
+  s.camera_id,
+  v.name AS video_name,
+  r.uri,
+  v.start_time,
+  v.duration_millis,
+  r.container,
+  r.video_codec,
+  r.audio_codec,
+  r.width,
+  r.height,
+  r.frame_rate,
+  r.size_bytes,
+  r.description,
+  s.description AS video_sequence_description,
+  v.description AS video_description,
+  r.sha512
+FROM
+    video_sequences AS s JOIN
+    videos AS v ON v.video_sequence_uuid = s.uuid JOIN
+    video_references AS r ON r.video_uuid = v.uuid;
+
+INSERT INTO "media" SELECT * FROM "media_source";
+
+CREATE INDEX "idx__media__uri"
+	ON "media"("uri");
+
+CREATE INDEX "idx__media__sha512"
+	ON "media"("sha512");
+
+CREATE INDEX "idx__media__camera_id__start_time"
+	ON "media"("camera_id", "start_time");
+
+CREATE INDEX "idx__media__video_sequence_name"
+	ON "media"("video_sequence_name");
+
+CREATE INDEX "idx__media__video_name"
+	ON "media"("video_name");
+
+/*
+Rewrites the rows of media that depend on the inserted or updated row. A video or
+video sequence that is moved or renamed rewrites the rows of all of its video
+references.
+*/
+CREATE FUNCTION "media__refresh"() RETURNS trigger
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    IF TG_TABLE_NAME = 'video_references' THEN
+        DELETE FROM "media" WHERE "video_reference_uuid" = NEW.uuid;
+        INSERT INTO "media" SELECT * FROM "media_source" WHERE "video_reference_uuid" = NEW.uuid;
+    ELSIF TG_TABLE_NAME = 'videos' THEN
+        DELETE FROM "media" WHERE "video_uuid" = NEW.uuid;
+        INSERT INTO "media" SELECT * FROM "media_source" WHERE "video_uuid" = NEW.uuid;
+    ELSE
+        DELETE FROM "media" WHERE "video_sequence_uuid" = NEW.uuid;
+        INSERT INTO "media" SELECT * FROM "media_source" WHERE "video_sequence_uuid" = NEW.uuid;
+    END IF;
+    RETURN NULL;
+END
+$$;
+
+CREATE TRIGGER "trg__video_references__media"
+	AFTER INSERT OR UPDATE ON "video_references"
+	FOR EACH ROW EXECUTE FUNCTION "media__refresh"();
+
+CREATE TRIGGER "trg__videos__media"
+	AFTER UPDATE ON "videos"
+	FOR EACH ROW EXECUTE FUNCTION "media__refresh"();
+
+CREATE TRIGGER "trg__video_sequences__media"
+	AFTER UPDATE ON "video_sequences"
+	FOR EACH ROW EXECUTE FUNCTION "media__refresh"();
@@ -0,0 +1,16 @@
+/*
+The media change feed (v1/media/changes) pages through REVINFO in REV order. That
+is only close to commit order when every revision number comes from the database
+sequence itself. With "increment by 50" each server instance reserves its own
+block of 50 numbers, so two instances write revisions that are far apart in REV
+but close in time. Hand out one number at a time instead; Hibernate is set to
+follow the sequence's increment (see EntityManagerFactories). Stop every instance
+before migrating. The setval keeps numbers that were already used or reserved
+from being handed out again.
+*/
+ALTER SEQUENCE REVINFO_SEQ INCREMENT BY 1;
+
+SELECT setval(
+    'revinfo_seq',
+    GREATEST((SELECT COALESCE(MAX(REV), 0) FROM REVINFO), (SELECT last_value FROM revinfo_seq))
+);
@@ -0,0 +1,6 @@
+/*
+Lease on an outbox row. OutboxPublisher claims a batch in a short transaction
+and publishes it with no rows locked; rows whose lease has run out are claimed
+again.
+*/
+ALTER TABLE "media_outbox" ADD "claimed_until" timestamp NULL;
@@ -0,0 +1,16 @@
+-- end_time is start_time + duration_millis, maintained by the database so that
+-- timestamp containment queries can be answered from an index instead of loading
+-- every video near the timestamp and filtering in memory. Videos without a
+-- duration end at their start_time. DATEADD only accepts an int, so the duration
+-- is added as whole seconds plus the remaining milliseconds.
+ALTER TABLE "dbo"."videos"
+	ADD "end_time" AS DATEADD(
+		millisecond,
+		CAST(COALESCE("duration_millis", 0) % 1000 AS int),
+		DATEADD(second, CAST(COALESCE("duration_millis", 0) / 1000 AS int), "start_time")
+	) PERSISTED
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__videos__end_time"
+	ON "dbo"."videos"("end_time")
+GO
@@ -0,0 +1,14 @@
+-- Transactional outbox for notifications about new video references. Rows are
+-- written in the same transaction as the video reference and deleted by
+-- OutboxPublisher once they have been published.
+CREATE SEQUENCE "dbo"."media_outbox_seq" AS bigint START WITH 1 INCREMENT BY 50
+GO
+
+CREATE TABLE "dbo"."media_outbox"  (
+	"id"                  	bigint NOT NULL,
+	"event_type"          	varchar(64) NOT NULL,
+	"video_reference_uuid"	uniqueidentifier NOT NULL,
+	"created_time"        	datetime2 NOT NULL,
+	CONSTRAINT "PK_media_outbox__id" PRIMARY KEY CLUSTERED("id")
+ ON [PRIMARY])
+GO
@@ -0,0 +1,21 @@
+-- filename is the last path segment of the uri and filename_reversed is the same
+-- text reversed, both maintained by the database. A filename prefix search uses the
+-- index on filename and a suffix search uses a prefix search of filename_reversed,
+-- instead of a leading-wildcard LIKE over every uri. SQL Server has no trigram
+-- index, so a substring search scans the filename index, which is much narrower
+-- than the table.
+ALTER TABLE "dbo"."video_references"
+	ADD "filename" AS RIGHT("uri", CHARINDEX('/', REVERSE("uri") + '/') - 1) PERSISTED
+GO
+
+ALTER TABLE "dbo"."video_references"
+	ADD "filename_reversed" AS REVERSE(RIGHT("uri", CHARINDEX('/', REVERSE("uri") + '/') - 1)) PERSISTED
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__video_references__filename"
+	ON "dbo"."video_references"("filename")
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__video_references__filename_reversed"
+	ON "dbo"."video_references"("filename_reversed")
+GO
@@ -0,0 +1,17 @@
+-- sha512_prefix is the first 8 bytes of the sha512 checksum as a bigint, maintained
+-- by the database. A checksum lookup seeks the small index on sha512_prefix and then
+-- compares the full hex sha512 of the few rows it finds. sha512 already has a
+-- filtered unique index, but its keys are 16 times wider. Values that are not hex
+-- are left without a prefix.
+ALTER TABLE "dbo"."video_references"
+	ADD "sha512_prefix" AS (
+		CASE
+			WHEN LEN("sha512") >= 16 AND LEFT("sha512", 16) NOT LIKE '%[^0-9a-fA-F]%'
+			THEN CONVERT(bigint, CONVERT(binary(8), LEFT("sha512", 16), 2))
+		END
+	) PERSISTED
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__video_references__sha512_prefix"
+	ON "dbo"."video_references"("sha512_prefix")
+GO
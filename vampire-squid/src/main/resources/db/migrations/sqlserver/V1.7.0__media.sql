@@ -0,0 +1,127 @@
+-- media is a denormalized copy of video_sequences JOIN videos JOIN video_references
+-- with one row per video reference and exactly the columns of a Media. It is
+-- maintained by triggers in the same transaction as the writes, so media lookups
+-- read one indexed row instead of joining three tables. Deleting a video reference
+-- deletes its row through the foreign key. The triggers SET NOCOUNT ON so that the
+-- row counts Hibernate checks after each batched statement are not changed.
+CREATE TABLE "dbo"."media"  (
+	"video_reference_uuid"      	uniqueidentifier NOT NULL,
+	"video_sequence_uuid"       	uniqueidentifier NOT NULL,
+	"video_uuid"                	uniqueidentifier NOT NULL,
+	"video_sequence_name"       	varchar(512) NOT NULL,
+	"camera_id"                 	varchar(256) NOT NULL,
+	"video_name"                	varchar(512) NOT NULL,
+	"uri"                       	varchar(1024) NOT NULL,
+	"start_time"                	datetimeoffset(6) NOT NULL,
+	"duration_millis"           	bigint NULL,
+	"container"                 	varchar(128) NULL,
+	"video_codec"               	varchar(128) NULL,
+	"audio_codec"               	varchar(128) NULL,
+	"width"                     	int NULL,
+	"height"                    	int NULL,
+	"frame_rate"                	float NULL,
+	"size_bytes"                	bigint NULL,
+	"description"               	varchar(2048) NULL,
+	"video_sequence_description"	varchar(2048) NULL,
+	"video_description"         	varchar(2048) NULL,
+	"sha512"                    	varchar(128) NULL,
+	CONSTRAINT "PK_media__video_reference_uuid" PRIMARY KEY CLUSTERED("video_reference_uuid")
+ ON [PRIMARY])
+GO
+
+ALTER TABLE "dbo"."media"
+	ADD CONSTRAINT "fk__media__video_references__uuid"
+	FOREIGN KEY("video_reference_uuid")
+	REFERENCES "dbo"."video_references"("uuid")
+	ON DELETE CASCADE
+GO
+
+-- The rows of media as they should be. Same columns, in the same order, as media
+CREATE VIEW "dbo"."media_source"
+AS
+SELECT
+  r.uuid AS video_reference_uuid,
+  s.uuid AS video_sequence_uuid,
+  v.uuid AS video_uuid,
+  s.name AS video_sequence_name,
+  s.camera_id,
+  v.name AS video_name,
+  r.uri,
+  v.start_time,
+  v.duration_millis,
+  r.container,
+  r.video_codec,
+  r.audio_codec,
+  r.width,
+  r.height,
+  r.frame_rate,
+  r.size_bytes,
+  r.description,
+  s.description AS video_sequence_description,
+  v.description AS video_description,
+  r.sha512
+FROM
+    dbo.video_sequences AS s JOIN
+    dbo.videos AS v ON v.video_sequence_uuid = s.uuid JOIN
+    dbo.video_references AS r ON r.video_uuid = v.uuid
+GO
+
+INSERT INTO "dbo"."media" SELECT * FROM "dbo"."media_source"
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__media__uri"
+	ON "dbo"."media"("uri")
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__media__sha512"
+	ON "dbo"."media"("sha512")
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__media__camera_id__start_time"
+	ON "dbo"."media"("camera_id", "start_time")
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__media__video_sequence_name"
+	ON "dbo"."media"("video_sequence_name")
+GO
+
+CREATE NONCLUSTERED INDEX "IDX__media__video_name"
+	ON "dbo"."media"("video_name")
+GO
+
+CREATE TRIGGER "dbo"."TRG__video_references__media"
+	ON "dbo"."video_references"
+	AFTER INSERT, UPDATE
+AS
+BEGIN
+	SET NOCOUNT ON;
+	DELETE m FROM "dbo"."media" m JOIN inserted i ON m."video_reference_uuid" = i."uuid";
+	INSERT INTO "dbo"."media"
+		SELECT src.* FROM "dbo"."media_source" src JOIN inserted i ON src."video_reference_uuid" = i."uuid";
+END
+GO
+
+-- A video or video sequence that is moved or renamed rewrites the rows of all of its video references
+CREATE TRIGGER "dbo"."TRG__videos__media"
+	ON "dbo"."videos"
+	AFTER UPDATE
+AS
+BEGIN
+	SET NOCOUNT ON;
+	DELETE m FROM "dbo"."media" m JOIN inserted i ON m."video_uuid" = i."uuid";
+	INSERT INTO "dbo"."media"
+		SELECT src.* FROM "dbo"."media_source" src JOIN inserted i ON src."video_uuid" = i."uuid";
+END
+GO
+
+CREATE TRIGGER "dbo"."TRG__video_sequences__media"
+	ON "dbo"."video_sequences"
+	AFTER UPDATE
+AS
+BEGIN
+	SET NOCOUNT ON;
+	DELETE m FROM "dbo"."media" m JOIN inserted i ON m."video_sequence_uuid" = i."uuid";
+	INSERT INTO "dbo"."media"
+		SELECT src.* FROM "dbo"."media_source" src JOIN inserted i ON src."video_sequence_uuid" = i."uuid";
+END
+GO
@@ -0,0 +1,4 @@
+-- The media change feed (v1/media/changes) pages through REVINFO in REV order,
+-- which needs revision numbers to come from a single counter in the database.
+-- On PostgreSQL this migration makes REVINFO_SEQ hand them out one at a time.
+-- REVINFO.REV is already an identity column on SQL Server, so nothing changes here.
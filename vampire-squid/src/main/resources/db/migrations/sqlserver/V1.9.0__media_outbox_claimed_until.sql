@@ -0,0 +1,5 @@
+-- Lease on an outbox row. OutboxPublisher claims a batch in a short transaction
+-- and publishes it with no rows locked; rows whose lease has run out are claimed
+-- again.
+ALTER TABLE "dbo"."media_outbox" ADD "claimed_until" datetime2 NULL
+GO
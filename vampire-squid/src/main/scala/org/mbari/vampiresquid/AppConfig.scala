@@ -19,6 +19,7 @@ package org.mbari.vampiresquid
 import com.typesafe.config.ConfigFactory
 import org.mbari.vampiresquid.etc.jwt.JwtService
 
+import java.time.Duration
 import scala.util.Try
 
 object AppConfig:
@@ -30,10 +31,17 @@ object AppConfig:
 
     val Description: String = "Video Asset Manager"
 
-    val NumberOfVertxWorkers: Int = 20
-
     private lazy val Config = ConfigFactory.load()
 
+    lazy val ExecutionParameters: ExecutionParams =
+        ExecutionParams(
+            mode = ExecutionMode.parse(Config.getString("vampiresquid.execution.mode")),
+            vertxWorkers = Config.getInt("vampiresquid.execution.vertx.workers"),
+            databasePoolSize = Config.getInt("database.pool.size")
+        )
+
+    lazy val NumberOfVertxWorkers: Int = ExecutionParameters.vertxWorkers
+
     lazy val JwtParameters: JwtParams =
         JwtParams(
             clientSecret = Config.getString("basicjwt.client.secret"),
@@ -56,6 +64,58 @@ object AppConfig:
             user = Config.getString("database.user")
         )
 
+    /** The read replica, if one is configured. See database.replica in reference.conf */
+    lazy val ReplicaParameters: Option[ReplicaParams] =
+        Option(Config.getString("database.replica.url"))
+            .filter(_.nonEmpty)
+            .map(url =>
+                ReplicaParams(
+                    database = DatabaseParameters.copy(
+                        url = url,
+                        user = Config.getString("database.replica.user"),
+                        password = Config.getString("database.replica.password")
+                    ),
+                    poolSize = Config.getInt("database.replica.pool.size"),
+                    maxLag = Config.getDuration("database.replica.max.lag"),
+                    lagCheckInterval = Config.getDuration("database.replica.lag.check.interval")
+                )
+            )
+
+    /** true to enable the Hibernate second-level and query cache */
+    lazy val SecondLevelCacheEnabled: Boolean = Config.getBoolean("database.cache.enabled")
+
+    /** true to read media lookups from the denormalized media table instead of joining the entity tables */
+    lazy val MediaTableEnabled: Boolean = Config.getBoolean("database.media.table.enabled")
+
+    lazy val ReactiveParameters: ReactiveParams =
+        ReactiveParams(
+            enabled = Config.getBoolean("database.reactive.enabled"),
+            poolSize = Config.getInt("database.reactive.pool.size")
+        )
+
+    lazy val MessagingParameters: MessagingParams =
+        MessagingParams(
+            service = Config.getString("messaging.service"),
+            eventBusAddress = Config.getString("messaging.eventbus.address"),
+            webhookUrl = Config.getString("messaging.webhook.url"),
+            batchSize = Config.getInt("messaging.batch.size"),
+            interval = Config.getDuration("messaging.interval"),
+            timeout = Config.getDuration("messaging.timeout")
+        )
+
+    lazy val MediaCacheParameters: MediaCacheParams =
+        MediaCacheParams(
+            enabled = Config.getBoolean("vampiresquid.cache.media.enabled"),
+            maxSize = Config.getLong("vampiresquid.cache.media.size"),
+            ttl = Config.getDuration("vampiresquid.cache.media.ttl")
+        )
+
+    lazy val CatalogIndexParameters: CatalogIndexParams =
+        CatalogIndexParams(
+            enabled = Config.getBoolean("vampiresquid.cache.catalog.enabled"),
+            ttl = Config.getDuration("vampiresquid.cache.catalog.ttl")
+        )
+
 final case class JwtParams(
     clientSecret: String,
     issuer: String,
@@ -63,3 +123,47 @@ final case class JwtParams(
 )
 
 final case class DatabaseParams(driver: String, logLevel: String, password: String, url: String, user: String)
+
+final case class ReplicaParams(
+    database: DatabaseParams,
+    poolSize: Int,
+    maxLag: Duration,
+    lagCheckInterval: Duration
+)
+
+/** The non-blocking reader used for media lookups. See database.reactive in reference.conf */
+final case class ReactiveParams(enabled: Boolean, poolSize: Int)
+
+final case class MediaCacheParams(enabled: Boolean, maxSize: Long, ttl: Duration)
+
+final case class CatalogIndexParams(enabled: Boolean, ttl: Duration)
+
+/** Where new video references are announced. See messaging in reference.conf */
+final case class MessagingParams(
+    service: String,
+    eventBusAddress: String,
+    webhookUrl: String,
+    batchSize: Int,
+    interval: Duration,
+    timeout: Duration
+)
+
+final case class ExecutionParams(mode: ExecutionMode, vertxWorkers: Int, databasePoolSize: Int)
+
+/** Where blocking database work is run */
+enum ExecutionMode:
+    /** The Scala global fork-join pool */
+    case Global
+
+    /** A new virtual thread for each task */
+    case Virtual
+
+object ExecutionMode:
+    def parse(s: String): ExecutionMode =
+        values
+            .find(_.toString.equalsIgnoreCase(s.trim))
+            .getOrElse(
+                throw new IllegalArgumentException(
+                    s"Unknown execution mode '$s'. Expected one of ${values.mkString(", ").toLowerCase}"
+                )
+            )
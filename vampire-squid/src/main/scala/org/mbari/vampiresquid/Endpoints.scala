@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid
 
+import io.vertx.core.Vertx
 import org.mbari.vampiresquid.controllers.{
     MediaController,
     VideoController,
@@ -26,27 +27,46 @@ import org.mbari.vampiresquid.endpoints.{
     AuthorizationEndpoints,
     HealthEndpoints,
     MediaEndpoints,
+    MediaExportHandler,
     VideoEndpoints,
     VideoReferenceEndpoints,
     VideoSequenceEndpoints
 }
+import org.mbari.vampiresquid.etc.cache.{CatalogIndex, MediaCache}
+import org.mbari.vampiresquid.etc.jdk.ExecutionContexts
+import org.mbari.vampiresquid.etc.metrics.RequestMetrics
 import org.mbari.vampiresquid.etc.jwt.JwtService
-import org.mbari.vampiresquid.repository.jpa.JPADAOFactory
+import org.mbari.vampiresquid.messaging.{MessagingService, Outbox, OutboxPublisher}
+import org.mbari.vampiresquid.repository.MediaReader
+import org.mbari.vampiresquid.repository.jpa.{EntityManagerMetrics, JPADAOFactory, SecondLevelCacheMetrics}
+import org.mbari.vampiresquid.repository.reactive.PgMediaReader
 import sttp.tapir.server.ServerEndpoint
 import sttp.tapir.server.metrics.prometheus.PrometheusMetrics
 import sttp.tapir.swagger.bundle.SwaggerInterpreter
 
-import scala.concurrent.ExecutionContext.Implicits.global
-import scala.concurrent.Future
+import scala.concurrent.{ExecutionContext, Future}
 
 object Endpoints:
 
+    // Used by the controllers to run transactions. See vampiresquid.execution.mode in reference.conf
+    given ExecutionContext = ExecutionContexts(AppConfig.ExecutionParameters.mode)
+
+    // Non-blocking media lookups. See database.reactive in reference.conf
+    val mediaReader: Option[MediaReader] =
+        PgMediaReader.create(AppConfig.DatabaseParameters, AppConfig.ReactiveParameters)
+
+    // Notifications about new video references. See messaging in reference.conf
+    val outbox: Outbox =
+        if MessagingService.isNoop(AppConfig.MessagingParameters.service) then Outbox.Disabled else Outbox.Enabled
+
     // ----------------------------
     val daoFactory               = JPADAOFactory
-    val mediaController          = new MediaController(daoFactory)
-    val videoSequenceController  = new VideoSequenceController(daoFactory)
-    val videoController          = new VideoController(daoFactory)
-    val videoReferenceController = new VideoReferenceController(daoFactory)
+    val mediaCache               = new MediaCache(AppConfig.MediaCacheParameters)
+    val catalogIndex             = new CatalogIndex(AppConfig.CatalogIndexParameters)
+    val mediaController          = new MediaController(daoFactory, mediaCache, mediaReader, outbox, catalogIndex)
+    val videoSequenceController  = new VideoSequenceController(daoFactory, mediaCache, catalogIndex)
+    val videoController          = new VideoController(daoFactory, mediaCache, catalogIndex)
+    val videoReferenceController = new VideoReferenceController(daoFactory, mediaCache, outbox)
 
     // ----------------------------
     val jwtParams                = AppConfig.JwtParameters
@@ -60,6 +80,9 @@ object Endpoints:
     val videoEndpoints          = new VideoEndpoints(videoController, videoSequenceController)
     val videoReferenceEndpoints = new VideoReferenceEndpoints(videoReferenceController)
 
+    // Raw Vert.x handler for streaming NDJSON. Not part of the tapir endpoints.
+    val mediaExportHandler = new MediaExportHandler(mediaController)
+
     // For VertX, we need to separate the non-blocking endpoints from the blocking ones
     val nonBlockingEndpoints = List(
         authEndpoints.allImpl,
@@ -73,6 +96,10 @@ object Endpoints:
         videoReferenceEndpoints.allImpl
     ).flatten
 
+    // Blocking endpoints that don't block after all, because they read with the mediaReader. They stay in
+    // blockingEndpoints so that the routes are registered in the same order, but are routed on the event loop
+    val eventLoopEndpoints: Set[ServerEndpoint[Any, Future]] = mediaEndpoints.eventLoopImpl.toSet
+
     val apiEndpoints = nonBlockingEndpoints ++ blockingEndpoints
 
 //    val apiEndpoints =
@@ -88,5 +115,24 @@ object Endpoints:
 
     val prometheusMetrics: PrometheusMetrics[Future] = PrometheusMetrics.default[Future]()
     val metricsEndpoint: ServerEndpoint[Any, Future] = prometheusMetrics.metricsEndpoint
+    mediaCache.register(prometheusMetrics.registry)
+    catalogIndex.register(prometheusMetrics.registry)
+    EntityManagerMetrics.register(prometheusMetrics.registry, daoFactory.entityManagerFactory)
+    SecondLevelCacheMetrics.register(prometheusMetrics.registry, daoFactory.entityManagerFactory)
+    daoFactory.replica.foreach(_.register(prometheusMetrics.registry))
+    RequestMetrics.register(prometheusMetrics.registry)
 
     val all: List[ServerEndpoint[Any, Future]] = apiEndpoints ++ docEndpoints ++ List(metricsEndpoint)
+
+    /**
+     * Starts publishing the outbox to the configured messaging service. Does nothing when the outbox is disabled.
+     * @param vertx
+     *   Used by the `eventbus` messaging service
+     */
+    def startOutboxPublisher(vertx: Vertx): Unit =
+        if outbox.enabled then
+            val params    = AppConfig.MessagingParameters
+            val service   = MessagingService(params, vertx)
+            val publisher = new OutboxPublisher(daoFactory, service, params.batchSize, params.timeout)
+            publisher.register(prometheusMetrics.registry)
+            publisher.start(params.interval)
@@ -19,8 +19,10 @@ package org.mbari.vampiresquid
 import io.vertx.core.http.HttpServerOptions
 import io.vertx.core.{Vertx, VertxOptions}
 import io.vertx.ext.web.Router
+import org.mbari.vampiresquid.endpoints.MediaExportHandler
 import org.mbari.vampiresquid.etc.jdk.Logging
 import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.metrics.RequestMetrics
 import sttp.tapir.server.vertx.VertxFutureServerInterpreter.VertxFutureToScalaFuture
 import sttp.tapir.server.vertx.{VertxFutureServerInterpreter, VertxFutureServerOptions}
 
@@ -43,10 +45,12 @@ def run(): Unit =
 
     val log = Logging("org.mbari.vampiresquid.Main")
     log.atInfo.log(s"Starting ${AppConfig.Name} v${AppConfig.Version}")
+    log.atInfo.log(s"Execution: ${AppConfig.ExecutionParameters}")
 
     val serverOptions = VertxFutureServerOptions
         .customiseInterceptors
         .metricsInterceptor(Endpoints.prometheusMetrics.metricsInterceptor())
+        .appendInterceptor(RequestMetrics.interceptor)
         .options
 
     val port = sys.env.get("HTTP_PORT").flatMap(_.toIntOption).getOrElse(8080)
@@ -56,6 +60,9 @@ def run(): Unit =
     val server            = vertx.createHttpServer(httpServerOptions)
     val router            = Router.router(vertx)
 
+    // Publish the notifications written to the outbox. See messaging in reference.conf
+    Endpoints.startOutboxPublisher(vertx)
+
     // Log all requests at DEBUG, and log the time taken for each request at INFO. This 
     // gives us visibility into all requests and their performance without overwhelming 
     // the logs with INFO-level messages.
@@ -63,6 +70,7 @@ def run(): Unit =
     val infoLogger  = log.atInfo  // Avoid object allocation
     router.route()
         .handler(ctx => {
+            ctx.put(RequestMetrics.ArrivedAt, System.nanoTime())
             val start  = System.currentTimeMillis()
             val method = ctx.request().method()
             val path   = ctx.request().uri()
@@ -75,6 +83,10 @@ def run(): Unit =
             ctx.next()
         })
 
+    // Streams the whole media catalog as NDJSON. This is a plain Vert.x route so that it can write to the
+    // response with back-pressure. It is registered before the tapir routes so that v1/media/{uuid} doesn't see it.
+    router.get(MediaExportHandler.Path).handler(Endpoints.mediaExportHandler)
+
     val interpreter = VertxFutureServerInterpreter(serverOptions)
 
     // For VertX, we need to separate the non-blocking endpoints from the blocking ones
@@ -89,9 +101,10 @@ def run(): Unit =
     Endpoints
         .blockingEndpoints
         .foreach(endpoint =>
-            interpreter
-                .blockingRoute(endpoint)
-                .apply(router)
+            val route =
+                if Endpoints.eventLoopEndpoints.contains(endpoint) then interpreter.route(endpoint)
+                else interpreter.blockingRoute(endpoint)
+            route.apply(router)
         )
 
     // Add our metrics endpoints
@@ -16,27 +16,57 @@
 
 package org.mbari.vampiresquid.controllers
 
-import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.Constants
+import org.mbari.vampiresquid.domain.{
+    BulkMediaResult,
+    CameraTimestamp,
+    CameraTimestampMedia,
+    FileNameMatch,
+    Media,
+    MediaChangePage,
+    ResourceVersion,
+    Sha512Media
+}
+import org.mbari.vampiresquid.etc.cache.{CatalogIndex, MediaCache}
 import org.mbari.vampiresquid.etc.jdk.Logging.given
-import org.mbari.vampiresquid.repository.VideoReferenceDAO
-import org.mbari.vampiresquid.repository.jpa.JPADAOFactory
+import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter
+import org.mbari.vampiresquid.messaging.Outbox
+import org.mbari.vampiresquid.repository.{MediaDAO, MediaReader, VideoReferenceDAO}
+import org.mbari.vampiresquid.repository.jpa.{BaseDAO, JPADAOFactory, VideoSequenceDAOImpl}
 import org.mbari.vampiresquid.repository.jpa.entity.{VideoEntity, VideoReferenceEntity, VideoSequenceEntity}
 
 import java.net.URI
-import java.time.{Duration, Instant}
+import java.time.{Clock, Duration, Instant}
 import java.util as ju
 import java.util.{Arrays as JArrays, UUID}
-import scala.concurrent.{ExecutionContext, Future}
-import scala.jdk.CollectionConverters.*
+import java.util.concurrent.{Executors, ScheduledExecutorService, TimeUnit}
+import scala.collection.mutable
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Success
+import scala.util.control.NonFatal
 
 /**
  * Convenience API for registering a video
  *
+ * @param reader
+ *   When defined, the media lookups by video reference, sha512, uri, video sequence, video and camera are read with
+ *   it instead of JPA
+ * @param outbox
+ *   Records a notification for each video reference that is created
+ * @param clock
+ *   Decides which audit revisions have settled for [[findChanges]]
  * @author
  *   Brian Schlining
  * @since 2017-03-06T09:20:00
  */
-class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
+class MediaController(
+    val daoFactory: JPADAOFactory,
+    val mediaCache: MediaCache = MediaCache.Disabled,
+    val reader: Option[MediaReader] = None,
+    val outbox: Outbox = Outbox.Disabled,
+    val catalog: CatalogIndex = CatalogIndex.Disabled,
+    val clock: Clock = Clock.systemUTC()
+) extends BaseController:
 
     private val log = System.getLogger(getClass.getName)
 
@@ -86,11 +116,11 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
         videoDescription: Option[String] = None
     )(implicit ec: ExecutionContext): Future[Media] =
 
-        val dao = daoFactory.newVideoSequenceDAO()
+        val uow = daoFactory.newUnitOfWork()
 
-        dao.runTransaction(vsDao =>
-            val vDao  = daoFactory.newVideoDAO(vsDao)
-            val vrDao = daoFactory.newVideoReferenceDAO(vsDao)
+        val f = uow.videoSequenceDAO.runTransaction(vsDao =>
+            val vDao  = uow.videoDAO
+            val vrDao = uow.videoReferenceDAO
 
             var didCreatedVR = false
 
@@ -152,12 +182,154 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
                     vrDao.create(vr)
 
                     // Notify messaging service of new video reference
-//          if (didCreatedVR) Constants.MESSAGING_SERVICE.newVideoReference(Media.from(vr))
+                    if didCreatedVR then outbox.newVideoReference(uow.entityManager, vr.getUuid)
 
                     vr
 
             Media.from(videoReference)
         )
+        f.onComplete(_ => uow.close())
+        f.andThen:
+            case Success(media) => catalog.mediaCreated(media)
+
+    /**
+     * Register many media at once. Existing video sequences, videos and video references are looked up with set-based
+     * queries and the new rows are inserted in chunks, each chunk in a single transaction so that Hibernate can batch
+     * the inserts. If a chunk fails to commit, its items are retried one at a time so that a bad row does not take the
+     * rest of the chunk down with it.
+     *
+     * @param media
+     *   The media to register
+     * @return
+     *   One result per media, in the same order as the input. The `index` of each result is the position of the media
+     *   in the input
+     */
+    def createBulk(media: Seq[Media])(implicit ec: ExecutionContext): Future[Seq[BulkMediaResult]] =
+        media
+            .zipWithIndex
+            .grouped(MediaController.BulkChunkSize)
+            .foldLeft(Future.successful(Vector.empty[BulkMediaResult]))((acc, chunk) =>
+                acc.flatMap(results => createBulkChunk(chunk).map(results ++ _))
+            )
+            .andThen:
+                case Success(results) => catalog.mediaCreated(results.flatMap(_.media))
+
+    private def createBulkChunk(chunk: Seq[(Media, Int)])(implicit ec: ExecutionContext): Future[Seq[BulkMediaResult]] =
+        val (invalid, valid) = chunk.partitionMap((m, i) =>
+            validateForCreate(m) match
+                case Some(msg) => Left(BulkMediaResult.failed(i, msg))
+                case None      => Right((m, i))
+        )
+
+        val dao = daoFactory.newVideoSequenceDAO()
+        val f   =
+            if valid.isEmpty then Future.successful(Nil)
+            else dao.runTransaction(vsDao => insertBulkChunk(vsDao, valid))
+        f.onComplete(_ => dao.close())
+
+        f.recoverWith:
+            case NonFatal(e) =>
+                log.atWarn
+                    .withCause(e)
+                    .log(s"Bulk insert of ${valid.size} media failed. Retrying each media individually.")
+                valid.foldLeft(Future.successful(Vector.empty[BulkMediaResult]))((acc, item) =>
+                    acc.flatMap(results => createOne(item._1, item._2).map(results :+ _))
+                )
+        .map(results => (invalid ++ results).sortBy(_.index))
+
+    /**
+     * Registers a single media, reporting whether it was created or already existed.
+     */
+    private def createOne(media: Media, index: Int)(implicit ec: ExecutionContext): Future[BulkMediaResult] =
+        findByURI(media.uri.get)
+            .flatMap(existing =>
+                createMedia(media).map(m =>
+                    if existing.isDefined then BulkMediaResult.exists(index, m)
+                    else BulkMediaResult.created(index, m)
+                )
+            )
+            .recover:
+                case NonFatal(e) => BulkMediaResult.failed(index, e.getMessage)
+
+    private def insertBulkChunk(
+        vsDao: VideoSequenceDAOImpl,
+        items: Seq[(Media, Int)]
+    ): Seq[BulkMediaResult] =
+        val vDao  = daoFactory.newVideoDAO(vsDao)
+        val vrDao = daoFactory.newVideoReferenceDAO(vsDao)
+
+        // Resolve everything that already exists with one query per entity type
+        val videoReferences = mutable.Map.from(vrDao.findByURIs(items.map(_._1.uri.get)).map(vr => vr.getUri -> vr))
+        val videos          = mutable.Map.from(vDao.findByNames(items.map(_._1.videoName)).map(v => v.getName -> v))
+        val videoSequences  =
+            mutable.Map.from(vsDao.findByNames(items.map(_._1.videoSequenceName)).map(vs => vs.getName -> vs))
+
+        items.map((media, index) =>
+            val uri = media.uri.get
+            videoReferences.get(uri) match
+                case Some(vr) =>
+                    if media.sha512.isDefined && !JArrays.equals(vr.getSha512, media.sha512.get) then
+                        BulkMediaResult.failed(
+                            index,
+                            s"A video with a URI of $uri exists, but it has a different checksum than the one you provided"
+                        )
+                    else BulkMediaResult.exists(index, Media.from(vr))
+                case None     =>
+                    videos.get(media.videoName) match
+                        case Some(v) if !hasSameStartAndDuration(v, media) =>
+                            BulkMediaResult.failed(
+                                index,
+                                s"A video with name ${media.videoName} exists, but it has a different duration and/or start time than the one you provided."
+                            )
+                        case existingVideo                                 =>
+                            val video = existingVideo.getOrElse:
+                                val v  = new VideoEntity(media.videoName, media.startTimestamp, media.duration.orNull)
+                                media.videoDescription.foreach(v.setDescription)
+                                val vs = videoSequences.getOrElseUpdate(
+                                    media.videoSequenceName, {
+                                        val vs = new VideoSequenceEntity(media.videoSequenceName, media.cameraId)
+                                        media.videoSequenceDescription.foreach(vs.setDescription)
+                                        vsDao.create(vs)
+                                        vs
+                                    }
+                                )
+                                vs.addVideo(v)
+                                vDao.create(v)
+                                videos.put(v.getName, v)
+                                v
+                            val vr    = newVideoReferenceEntity(media)
+                            video.addVideoReference(vr)
+                            vrDao.create(vr)
+                            outbox.newVideoReference(vsDao.entityManager, vr.getUuid)
+                            videoReferences.put(uri, vr)
+                            BulkMediaResult.created(index, Media.from(vr))
+        )
+
+    private def validateForCreate(media: Media): Option[String] =
+        if media.video_sequence_name.isEmpty then Some("videoSequenceName is required")
+        else if media.camera_id.isEmpty then Some("cameraId is required")
+        else if media.video_name.isEmpty then Some("videoName is required")
+        else if media.uri.isEmpty then Some("uri is required")
+        else if media.start_timestamp.isEmpty then Some("startTimestamp is required")
+        else None
+
+    private def hasSameStartAndDuration(video: VideoEntity, media: Media): Boolean =
+        media.start_timestamp.contains(video.getStart) &&
+            media.duration.forall(d => Option(video.getDuration).exists(_.toMillis == d.toMillis))
+
+    private def newVideoReferenceEntity(media: Media): VideoReferenceEntity =
+        new VideoReferenceEntity(
+            media.uri.get,
+            media.container.orNull,
+            media.videoCodec.orNull,
+            media.audioCodec.orNull,
+            media.width.map(Integer.valueOf).orNull,
+            media.height.map(Integer.valueOf).orNull,
+            media.frameRate.map(java.lang.Double.valueOf).orNull,
+            media.sizeBytes.map(java.lang.Long.valueOf).orNull,
+            media.description.orNull,
+            media.sha512.orNull
+        )
 
     def updateMedia(media: Media)(implicit ec: ExecutionContext): Future[Option[Media]] =
         update(
@@ -250,9 +422,10 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
         videoDescription: Option[String] = None
     )(implicit ec: ExecutionContext): Future[Option[Media]] =
 
-        val vrDao = daoFactory.newVideoReferenceDAO()
-        val vsDao = daoFactory.newVideoSequenceDAO(vrDao)
-        val vDao  = daoFactory.newVideoDAO(vrDao)
+        val uow   = daoFactory.newUnitOfWork()
+        val vrDao = uow.videoReferenceDAO
+        val vsDao = uow.videoSequenceDAO
+        val vDao  = uow.videoDAO
 
         def updateVideoReference(): Option[VideoReferenceEntity] =
             findFn(vrDao)
@@ -340,8 +513,11 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
                 vr
             )
         )
-        f.onComplete(_ => vrDao.close())
-        f.map(_.map(Media.from))
+        f.onComplete(_ => uow.close())
+        f.map(_.map(Media.from)).andThen:
+            case Success(Some(media)) =>
+                mediaCache.invalidate(media)
+                catalog.invalidate()
 
     /**
      * Mostly this is to deal with video files that have been moved
@@ -417,8 +593,9 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
         ec: ExecutionContext
     ): Future[Option[Media]] =
 
-        val vrDao = daoFactory.newVideoReferenceDAO()
-        val vDao  = daoFactory.newVideoDAO(vrDao)
+        val uow   = daoFactory.newUnitOfWork()
+        val vrDao = uow.videoReferenceDAO
+        val vDao  = uow.videoDAO
 
         val f = vrDao.runTransaction(d =>
             d.findByUUID(videoReferenceUuid) match
@@ -467,52 +644,129 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
                                         )
                                     None
         )
-        f.onComplete(_ => vrDao.close())
-        f
+        f.onComplete(_ => uow.close())
+        f.andThen: _ =>
+            mediaCache.invalidateVideoReference(videoReferenceUuid)
+            catalog.invalidate()
+
+    /**
+     * @return
+     *   The version of the media of a video reference, read without loading the media. It changes when the video
+     *   sequence, video or video reference is updated.
+     */
+    def findVersionByVideoReferenceUuid(
+        videoReferenceUuid: UUID
+    )(implicit ec: ExecutionContext): Future[Option[ResourceVersion]] =
+        read(_.findMediaVersion(videoReferenceUuid)):
+            val dao = daoFactory.newReadOnlyVideoReferenceDAO()
+            val f   = dao.runReadOnlyTransaction(d => d.findMediaVersion(videoReferenceUuid))
+            f.onComplete(_ => dao.close())
+            f
+
+    /**
+     * @param version
+     *   The current version of the media, from [[findVersionByVideoReferenceUuid]]
+     * @return
+     *   The media of a video reference with the version that it was read with. A cached media is only used if it was
+     *   cached with `version`.
+     */
+    def findVersionedByVideoReferenceUuid(videoReferenceUuid: UUID, version: ResourceVersion)(implicit
+        ec: ExecutionContext
+    ): Future[Option[(ResourceVersion, Media)]] =
+        mediaCache.getOrLoadVersioned(videoReferenceUuid, version):
+            read(_.findVersionedByVideoReferenceUuid(videoReferenceUuid)):
+                execCacheable(_.findVersionedByVideoReferenceUuid(videoReferenceUuid))
 
     def findByVideoReferenceUuid(
         videoReferenceUuid: UUID
     )(implicit ec: ExecutionContext): Future[Option[Media]] =
-        val dao = daoFactory.newVideoReferenceDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findByUUID(videoReferenceUuid)
-                .map(Media.from(_))
-        )
-        f.onComplete(_ => dao.close())
-        f
+        mediaCache.getOrLoad(MediaCache.Key.VideoReferenceUuid(videoReferenceUuid)):
+            read(_.findByVideoReferenceUuid(videoReferenceUuid)):
+                execCacheable(_.findByVideoReferenceUuid(videoReferenceUuid))
 
     def findBySha512(sha512: Array[Byte])(implicit ec: ExecutionContext): Future[Option[Media]] =
-        val dao = daoFactory.newVideoReferenceDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findBySha512(sha512)
-                .map(Media.from(_))
-        )
-        f.onComplete(_ => dao.close())
-        f
+        mediaCache.getOrLoad(MediaCache.Key.sha512(sha512)):
+            read(_.findBySha512(sha512))(execCacheable(_.findBySha512(sha512)))
+
+    /**
+     * Resolves many checksums at once. The checksums are read with one indexed query per chunk instead of one query
+     * each, so this suits deduplication jobs that check thousands of files.
+     *
+     * @param sha512s
+     *   The checksums, paired with the text the client sent for each
+     * @return
+     *   One result per checksum, in the same order as the input
+     */
+    def findBySha512s(
+        sha512s: Seq[(String, Array[Byte])]
+    )(implicit ec: ExecutionContext): Future[Seq[Sha512Media]] =
+        if sha512s.isEmpty then Future.successful(Nil)
+        else
+            execMedia(dao =>
+                val found = dao
+                    .findBySha512s(sha512s.map(_._2))
+                    .groupBy(_.sha512.map(ByteArrayConverter.encode).getOrElse(""))
+                sha512s.map((text, bytes) =>
+                    Sha512Media(text, found.getOrElse(ByteArrayConverter.encode(bytes), Nil).toList)
+                )
+            )
+
+    /**
+     * Reads the media of many video references at once, in parallel chunks. See [[findInChunks]]
+     * @return
+     *   The media of each uuid that exists, in the same order as the input
+     */
+    def findByVideoReferenceUuids(uuids: Seq[UUID])(implicit ec: ExecutionContext): Future[Seq[Media]] =
+        findInChunks(uuids, _.video_reference_uuid)((dao, chunk) => dao.findByVideoReferenceUuids(chunk))
+
+    /**
+     * Reads the media of many URIs at once, in parallel chunks. See [[findInChunks]]
+     * @return
+     *   The media of each uri that exists, in the same order as the input
+     */
+    def findByURIs(uris: Seq[URI])(implicit ec: ExecutionContext): Future[Seq[Media]] =
+        findInChunks(uris, _.uri)((dao, chunk) => dao.findByURIs(chunk))
+
+    /**
+     * Splits the keys into chunks small enough for one `IN` clause on every database (SQL Server allows 2100
+     * parameters). Each chunk is read with a single query in its own transaction and the chunks run in parallel.
+     *
+     * @param key
+     *   The key of a media, used to put the results back in the order of `keys`
+     */
+    private def findInChunks[A](keys: Seq[A], key: Media => Option[A])(
+        find: (MediaDAO, Seq[A]) => Seq[Media]
+    )(implicit ec: ExecutionContext): Future[Seq[Media]] =
+        val chunks = keys.distinct.grouped(BaseDAO.MaxInParameters).toSeq
+        Future
+            .traverse(chunks)(chunk => execMedia(dao => find(dao, chunk)))
+            .map(found =>
+                val byKey = found.flatten.flatMap(m => key(m).map(_ -> m)).toMap
+                keys.flatMap(byKey.get)
+            )
 
     def findByVideoSequenceName(
         name: String
     )(implicit ec: ExecutionContext): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoSequenceDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findByName(name)
-                .map(v => v.getVideoReferences.asScala)
-                .map(v => v.map(Media.from))
-                .getOrElse(Nil)
-        )
-        f.onComplete(_ => dao.close())
-        f
+        read(_.findByVideoSequenceName(name))(execMedia(_.findByVideoSequenceName(name)))
 
     def findByVideoSequenceNames(
         names: Iterable[String],
         offset: Option[Int] = None,
         limit: Option[Int] = None
     )(implicit ec: ExecutionContext): Future[Seq[Media]] =
-        import org.mbari.vampiresquid.repository.jpa.extensions.* // add runTransaction to EntityManager
-        val dao = daoFactory.newMediaDAO()
-        val f   = dao.entityManager.runReadOnlyTransaction(_ => dao.findByNames(names, offset, limit))
-        f.onComplete(_ => dao.close())
-        f
+        execMedia(_.findByNames(names, offset, limit))
+
+    /**
+     * Visits every media in the database without materializing the full catalog. `f` is called on the calling
+     * thread of the returned future, once per media, so it may block (e.g. to wait for a slow client).
+     * @return
+     *   The number of media visited
+     */
+    def foreachMedia(fetchSize: Int = MediaController.ExportFetchSize)(f: Media => Unit)(implicit
+        ec: ExecutionContext
+    ): Future[Long] =
+        execMedia(_.foreachMedia(fetchSize)(f))
 
     def findByVideoSequenceNameAndTimestamp(name: String, ts: Instant)(implicit
         ec: ExecutionContext
@@ -523,28 +777,42 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
     def findByCameraIdAndTimestamp(cameraId: String, ts: Instant)(implicit
         ec: ExecutionContext
     ): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoSequenceDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findByCameraIDAndTimestamp(cameraId, ts)
-                .flatMap(vs => vs.getVideoReferences.asScala)
-                .map(Media.from(_))
-                .filter(m => m.contains(ts))
+        val window = Constants.DEFAULT_DURATION_WINDOW
+        read(_.findByCameraIdAndTimestamp(cameraId, ts, window))(
+            execMedia(_.findByCameraIdAndTimestamp(cameraId, ts, window))
         )
-        f.onComplete(_ => dao.close())
-        f
 
     def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant)(implicit
         ec: ExecutionContext
     ): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findBetweenTimestamps(startTime, endTime)
-                .filter(v => v.getVideoSequence.getCameraID == cameraId)
-                .flatMap(v => v.getVideoReferences.asScala)
-                .map(Media.from(_))
+        read(_.findByCameraIdAndTimestamps(cameraId, startTime, endTime))(
+            execMedia(_.findByCameraIdAndTimestamps(cameraId, startTime, endTime))
         )
-        f.onComplete(_ => dao.close())
-        f
+
+    /**
+     * Resolves many camera/timestamp pairs at once. The pairs are grouped by camera and sorted by time; each camera's
+     * media are read with a single range scan and swept once against its timestamps. A pair resolves to the same media
+     * as [[findByCameraIdAndTimestamp]] would return for it.
+     *
+     * @return
+     *   One result per pair, in the same order as the input
+     */
+    def findByCameraTimestamps(
+        pairs: Seq[CameraTimestamp]
+    )(implicit ec: ExecutionContext): Future[Seq[CameraTimestampMedia]] =
+        val window = Constants.DEFAULT_DURATION_WINDOW
+        if pairs.isEmpty then Future.successful(Nil)
+        else
+            execMedia(dao =>
+                val found = new Array[List[Media]](pairs.size)
+                for (cameraId, items) <- pairs.zipWithIndex.groupBy(_._1.camera_id)
+                do
+                    val timestamps = items.map((p, i) => (p.timestamp, i)).sortBy(_._1)
+                    val (from, to) = (timestamps.head._1, timestamps.last._1)
+                    val media      = dao.findByCameraIdCovering(cameraId, from, to, window)
+                    for (i, ms) <- MediaController.sweep(media, timestamps, window) do found(i) = ms
+                pairs.zip(found).map((p, ms) => CameraTimestampMedia(p.camera_id, p.timestamp, ms))
+            )
 
     /**
      * Finds all videoreferences that overlap in time with the provided one. Be aware that the returned media will
@@ -560,7 +828,7 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
     def findConcurrent(
         videoReferenceUuid: UUID
     )(implicit ec: ExecutionContext): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoReferenceDAO()
+        val dao = daoFactory.newReadOnlyVideoReferenceDAO()
         val f   = dao.runReadOnlyTransaction(d =>
             d.findConcurrent(videoReferenceUuid)
                 .map(Media.from(_))
@@ -569,23 +837,154 @@ class MediaController(val daoFactory: JPADAOFactory) extends BaseController:
         f
 
     def findByVideoName(name: String)(implicit ec: ExecutionContext): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoDAO()
-        val f   = dao.runReadOnlyTransaction(d =>
-            d.findByName(name) match
-                case None    => Nil
-                case Some(v) => v.getVideoReferences.asScala.map(Media.from(_))
-        )
+        read(_.findByVideoName(name))(execMedia(_.findByVideoName(name)))
+
+    def findByURI(uri: URI)(implicit ec: ExecutionContext): Future[Option[Media]] =
+        mediaCache.getOrLoad(MediaCache.Key.Uri(uri)):
+            read(_.findByURI(uri))(execCacheable(_.findByURI(uri)))
+
+    def findByFileName(filename: String)(implicit ec: ExecutionContext): Future[Iterable[Media]] =
+        val dao = daoFactory.newReadOnlyVideoReferenceDAO()
+        val f   = dao.runReadOnlyTransaction(d => d.findByFileName(filename).map(Media.from(_)))
         f.onComplete(_ => dao.close())
         f
 
-    def findByURI(uri: URI)(implicit ec: ExecutionContext): Future[Option[Media]] =
-        val dao = daoFactory.newVideoReferenceDAO()
-        val f   = dao.runReadOnlyTransaction(d => d.findByURI(uri).map(Media.from(_)))
+    /**
+     * Searches the filenames (the last path segment of the URIs) of all video references.
+     * @param name
+     *   The text to search for
+     * @param matchType
+     *   Whether the filename must start with, end with or contain `name`
+     * @param limit
+     *   The maximum number of media returned
+     */
+    def findByFileName(name: String, matchType: FileNameMatch, limit: Int)(implicit
+        ec: ExecutionContext
+    ): Future[Seq[Media]] =
+        execMedia(_.findByFileName(name, matchType, limit))
+
+    /**
+     * Reads a page of the media change feed. The feed is read from the audit history on the primary database.
+     * @param after
+     *   The `cursor` of the previous page. When absent, no changes are returned and the cursor of the latest revision
+     *   is, so a client can start following the feed from now.
+     * @param limit
+     *   The maximum number of revisions in the page
+     * @param wait
+     *   How long to hold the request open while there are no new changes (long-poll). Zero returns at once.
+     */
+    def findChanges(after: Option[Long], limit: Int, wait: Duration = Duration.ZERO)(implicit
+        ec: ExecutionContext
+    ): Future[MediaChangePage] =
+        after match
+            case None         => execChanges(dao => MediaChangePage(Nil, dao.findLatestRevision()))
+            case Some(cursor) =>
+                val deadline = System.nanoTime() + wait.toNanos
+                def poll(from: Long): Future[MediaChangePage] =
+                    execChanges(dao =>
+                        dao.findChanges(from, limit, Instant.now(clock).minus(MediaController.ChangeSettleTime))
+                    ).flatMap(page =>
+                        val remaining = deadline - System.nanoTime()
+                        if page.changes.nonEmpty || remaining <= 0 then Future.successful(page)
+                        // Revisions that changed no media were read past. Read on at once from there
+                        else if page.cursor > from then poll(page.cursor)
+                        else
+                            val pause = math.min(remaining, MediaController.ChangePollInterval.toNanos)
+                            MediaController.delay(pause).flatMap(_ => poll(from))
+                    )
+                poll(cursor)
+
+    /** Reads the audit history for [[findChanges]] from the primary, where revisions are numbered */
+    private def execChanges[T](fn: MediaDAO => T)(implicit ec: ExecutionContext): Future[T] =
+        import org.mbari.vampiresquid.repository.jpa.extensions.* // add runTransaction to EntityManager
+        val dao = daoFactory.newMediaDAO()
+        val f   = dao.entityManager.runReadOnlyTransaction(_ => fn(dao))
         f.onComplete(_ => dao.close())
         f
 
-    def findByFileName(filename: String)(implicit ec: ExecutionContext): Future[Iterable[Media]] =
-        val dao = daoFactory.newVideoReferenceDAO()
-        val f   = dao.runReadOnlyTransaction(d => d.findByFileName(filename).map(Media.from(_)))
+    /** Runs a read-only query against a MediaDAO on the primary database, never the replica */
+    private def execPrimaryMedia[T](fn: MediaDAO => T)(implicit ec: ExecutionContext): Future[T] =
+        import org.mbari.vampiresquid.repository.jpa.extensions.* // add runTransaction to EntityManager
+        val dao = daoFactory.newPrimaryMediaDAO()
+        val f   = dao.entityManager.runReadOnlyTransaction(_ => fn(dao))
+        f.onComplete(_ => dao.close())
+        f
+
+    /** Reads with the non-blocking [[reader]] when there is one. Otherwise runs `viaJpa` */
+    private def read[T](viaReader: MediaReader => Future[T])(viaJpa: => Future[T]): Future[T] =
+        reader match
+            case Some(r) => viaReader(r)
+            case None    => viaJpa
+
+    /**
+     * Reads media that the [[mediaCache]] will keep. These are read from the primary while the cache is enabled: a
+     * media read from a lagging replica would otherwise be served from the cache until it expires.
+     */
+    private def execCacheable[T](fn: MediaDAO => T)(implicit ec: ExecutionContext): Future[T] =
+        if mediaCache.enabled then execPrimaryMedia(fn) else execMedia(fn)
+
+    /** Runs a read-only query against a MediaDAO, whose finders read media with a single projection query */
+    private def execMedia[T](fn: MediaDAO => T)(implicit ec: ExecutionContext): Future[T] =
+        import org.mbari.vampiresquid.repository.jpa.extensions.* // add runTransaction to EntityManager
+        val dao = daoFactory.newReadOnlyMediaDAO()
+        val f   = dao.entityManager.runReadOnlyTransaction(_ => fn(dao))
         f.onComplete(_ => dao.close())
         f
+
+object MediaController:
+
+    /** Number of media registered per transaction by [[MediaController.createBulk]] */
+    val BulkChunkSize = 500
+
+    /** JDBC fetch size used when streaming the full catalog with [[MediaController.foreachMedia]] */
+    val ExportFetchSize = 1000
+
+    /**
+     * Audit revisions younger than this are not read by [[MediaController.findChanges]]. Revision numbers are handed
+     * out before commit, so a younger revision could become visible after a higher one that was already read. This
+     * only bounds the reordering because every instance draws its numbers from the same database counter, one at a
+     * time (REVINFO_SEQ with an increment of 1 on PostgreSQL, an identity column on SQL Server). Blocks of revision
+     * numbers reserved per instance would break it.
+     */
+    val ChangeSettleTime: Duration = Duration.ofSeconds(2)
+
+    /** How often a long-polling [[MediaController.findChanges]] re-reads the audit history */
+    val ChangePollInterval: Duration = Duration.ofSeconds(1)
+
+    private lazy val scheduler: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor(r =>
+        val thread = new Thread(r, "media-changes-poll")
+        thread.setDaemon(true)
+        thread
+    )
+
+    /** @return A future that completes after `nanos` without holding a thread while it waits */
+    private def delay(nanos: Long): Future[Unit] =
+        val promise = Promise[Unit]()
+        scheduler.schedule((() => promise.success(())): Runnable, nanos, TimeUnit.NANOSECONDS)
+        promise.future
+
+    /**
+     * Matches sorted timestamps against media sorted by start time in a single pass. A media becomes active once the
+     * sweep reaches its start and is dropped for good once it has ended or started more than `window / 2` before the
+     * current timestamp, so each media is added and removed once.
+     *
+     * @param media
+     *   Media ordered by `start_timestamp`
+     * @param timestamps
+     *   Timestamps, each with a caller-defined key, ordered by timestamp
+     * @return
+     *   For each key, the media that contain its timestamp
+     */
+    def sweep[K](media: Seq[Media], timestamps: Seq[(Instant, K)], window: Duration): Seq[(K, List[Media])] =
+        val lookback = window.dividedBy(2)
+        val pending  = media.iterator.buffered
+        val active   = mutable.ArrayBuffer.empty[Media]
+        timestamps.map((ts, key) =>
+            while pending.hasNext && pending.head.start_timestamp.forall(s => !s.isAfter(ts)) do
+                active += pending.next()
+            val earliest = ts.minus(lookback)
+            active.filterInPlace(m =>
+                m.start_timestamp.exists(s => !s.isBefore(earliest)) && m.endTimestamp.exists(e => !e.isBefore(ts))
+            )
+            (key, active.toList)
+        )
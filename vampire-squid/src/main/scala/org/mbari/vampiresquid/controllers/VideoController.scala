@@ -17,7 +17,9 @@
 package org.mbari.vampiresquid.controllers
 
 import org.mbari.vampiresquid.Constants
-import org.mbari.vampiresquid.domain.{Video as VDTO, VideoSequence as VSDTO, VideoUpdate}
+import org.mbari.vampiresquid.domain.{PageCursor, ResourceVersion, Video as VDTO, VideoSequence as VSDTO, VideoUpdate}
+import org.mbari.vampiresquid.etc.cache.CatalogIndex.Snapshot
+import org.mbari.vampiresquid.etc.cache.{CatalogIndex, MediaCache}
 import org.mbari.vampiresquid.repository.VideoDAO
 import org.mbari.vampiresquid.repository.jpa.entity.VideoEntity
 import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastoreException}
@@ -25,32 +27,51 @@ import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastore
 import java.time.{Duration, Instant}
 import java.util.UUID
 import scala.concurrent.{ExecutionContext, Future}
+import scala.util.Success
 
 /**
  * @author
  *   Brian Schlining
  * @since 2016-05-26T08:27:00
  */
-class VideoController(val daoFactory: JPADAOFactory) extends BaseController:
+class VideoController(
+    val daoFactory: JPADAOFactory,
+    val mediaCache: MediaCache = MediaCache.Disabled,
+    val catalog: CatalogIndex = CatalogIndex.Disabled
+) extends BaseController:
 
     private type VDAO = VideoDAO[VideoEntity]
 
     def findAll(offset: Int, limit: Int)(implicit ec: ExecutionContext): Future[Seq[VDTO]] =
         execReadOnly(d => d.findAll(offset, limit).toSeq.map(VDTO.from))
 
+    def findAllAfter(cursor: Option[PageCursor], limit: Int)(implicit ec: ExecutionContext): Future[Seq[VDTO]] =
+        execReadOnly(d => d.findAllAfter(cursor, limit).toSeq.map(VDTO.from))
+
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[VDTO]] =
         execReadOnly(d => d.findByUUID(uuid).map(VDTO.from))
 
+    def findVersion(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[ResourceVersion]] =
+        execReadOnly(d => d.findVersion(uuid))
+
     def findVideoSequenceByVideoUuid(videoUuid: UUID)(implicit
         executionContext: ExecutionContext
     ): Future[Option[VSDTO]] =
         execReadOnly(d => d.findByUUID(videoUuid).map(_.getVideoSequence).map(VSDTO.from))
 
     def findAllNames()(implicit ec: ExecutionContext): Future[Seq[String]] =
-        execReadOnly(d => d.findAllNames().toSeq)
+        findAllNamesSnapshot().map(_.values)
 
+    /** All video names, sorted. Served from the catalog index when it's enabled */
+    def findAllNamesSnapshot()(implicit ec: ExecutionContext): Future[Snapshot[String]] =
+        if catalog.enabled then catalog.getOrLoad(CatalogIndex.load(daoFactory)).map(_.videoNamesSnapshot)
+        else execReadOnly(d => Snapshot(d.findAllNames().toList))
+
+    /** All video names and start times, ordered by start time */
     def findAllNamesAndTimestamps()(implicit ec: ExecutionContext): Future[Seq[(String, Instant)]] =
-        execReadOnly(d => d.findAllNamesAndTimestamps().toSeq)
+        if catalog.enabled then
+            catalog.getOrLoad(CatalogIndex.load(daoFactory)).map(_.videoNamesAndStartsSnapshot.values)
+        else execReadOnly(d => d.findAllNamesAndTimestamps().toSeq)
 
     def findBetweenTimestamps(t0: Instant, t1: Instant)(implicit
         ec: ExecutionContext
@@ -100,7 +121,8 @@ class VideoController(val daoFactory: JPADAOFactory) extends BaseController:
                             videoSequence.addVideo(video)
                             dao.create(video)
                             VDTO.from(video)
-        exec(fn)
+        exec(fn).andThen:
+            case Success(v) => catalog.videoCreated(v.name, v.start_timestamp)
 
     def update(uuid: UUID, videoUpdate: VideoUpdate)(implicit
         ec: ExecutionContext
@@ -149,7 +171,9 @@ class VideoController(val daoFactory: JPADAOFactory) extends BaseController:
                                     videoSequence.addVideo(video)
                                     VDTO.from(video)
 
-        exec(fn)
+        exec(fn).andThen: _ =>
+            mediaCache.invalidateVideo(uuid)
+            catalog.invalidate()
 
     def delete(uuid: UUID)(implicit ec: ExecutionContext): Future[Boolean] =
         def fn(dao: VDAO): Boolean =
@@ -159,7 +183,9 @@ class VideoController(val daoFactory: JPADAOFactory) extends BaseController:
                     true
                 case None    =>
                     false
-        exec(fn)
+        exec(fn).andThen: _ =>
+            mediaCache.invalidateVideo(uuid)
+            catalog.invalidate()
 
     private def exec[T](fn: VDAO => T)(implicit ec: ExecutionContext): Future[T] =
         val dao = daoFactory.newVideoDAO()
@@ -168,7 +194,7 @@ class VideoController(val daoFactory: JPADAOFactory) extends BaseController:
         f
 
     private def execReadOnly[T](fn: VDAO => T)(implicit ec: ExecutionContext): Future[T] =
-        val dao = daoFactory.newVideoDAO()
+        val dao = daoFactory.newReadOnlyVideoDAO()
         val f   = dao.runReadOnlyTransaction(fn)
         f.onComplete(t => dao.close())
         f
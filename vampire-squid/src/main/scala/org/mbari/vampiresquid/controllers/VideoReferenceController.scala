@@ -16,10 +16,11 @@
 
 package org.mbari.vampiresquid.controllers
 
-import org.mbari.vampiresquid.domain.{Media, VideoReference as VRDTO}
-import org.mbari.vampiresquid.repository.VideoReferenceDAO
+import org.mbari.vampiresquid.domain.{PageCursor, ResourceVersion, VideoReference as VRDTO}
+import org.mbari.vampiresquid.etc.cache.MediaCache
+import org.mbari.vampiresquid.messaging.Outbox
 import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
-import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastoreException}
+import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastoreException, VideoReferenceDAOImpl}
 
 import java.net.URI
 import java.util.UUID
@@ -30,19 +31,29 @@ import scala.concurrent.{ExecutionContext, Future}
  *   Brian Schlining
  * @since 2016-06-06T16:14:00
  */
-class VideoReferenceController(val daoFactory: JPADAOFactory) extends BaseController:
+class VideoReferenceController(
+    val daoFactory: JPADAOFactory,
+    val mediaCache: MediaCache = MediaCache.Disabled,
+    val outbox: Outbox = Outbox.Disabled
+) extends BaseController:
 
-    private type VRDAO = VideoReferenceDAO[VideoReferenceEntity]
+    private type VRDAO = VideoReferenceDAOImpl
 
     def findAll(offset: Int, limit: Int)(implicit ec: ExecutionContext): Future[Seq[VRDTO]] =
         execReadOnly(d => d.findAll(offset, limit).toSeq.map(VRDTO.from))
 
+    def findAllAfter(cursor: Option[PageCursor], limit: Int)(implicit ec: ExecutionContext): Future[Seq[VRDTO]] =
+        execReadOnly(d => d.findAllAfter(cursor, limit).toSeq.map(VRDTO.from))
+
     def findAllURIs()(implicit ec: ExecutionContext): Future[Seq[URI]] =
         execReadOnly(d => d.findAllURIs().toSeq)
 
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[VRDTO]] =
         execReadOnly(d => d.findByUUID(uuid).map(VRDTO.from))
 
+    def findVersion(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[ResourceVersion]] =
+        execReadOnly(d => d.findVersion(uuid))
+
     def findByVideoUUID(
         videoUUID: UUID
     )(implicit ec: ExecutionContext): Future[Iterable[VRDTO]] =
@@ -97,11 +108,9 @@ class VideoReferenceController(val daoFactory: JPADAOFactory) extends BaseContro
                             video.addVideoReference(videoReference)
                             sha512.foreach(videoReference.setSha512)
                             dao.create(videoReference)
-                            val vr             = VRDTO.from(videoReference)
-                            val media          = Media.from(videoReference)
                             // Notify messaging service of new video reference
-                            // Constants.MESSAGING_SERVICE.newVideoReference(media)
-                            vr
+                            outbox.newVideoReference(dao.entityManager, videoReference.getUuid)
+                            VRDTO.from(videoReference)
         exec(fn)
 
     def update(
@@ -148,7 +157,7 @@ class VideoReferenceController(val daoFactory: JPADAOFactory) extends BaseContro
                                     videoReference.getVideo.removeVideoReference(videoReference)
                                     video.addVideoReference(videoReference)
                                     VRDTO.from(videoReference)
-        exec(fn)
+        exec(fn).andThen(_ => mediaCache.invalidateVideoReference(uuid))
 
     def delete(uuid: UUID)(implicit ec: ExecutionContext): Future[Boolean] =
         def fn(dao: VRDAO): Boolean =
@@ -158,7 +167,7 @@ class VideoReferenceController(val daoFactory: JPADAOFactory) extends BaseContro
                     true
                 case None    =>
                     false
-        exec(fn)
+        exec(fn).andThen(_ => mediaCache.invalidateVideoReference(uuid))
 
     private def exec[T](fn: VRDAO => T)(implicit ec: ExecutionContext): Future[T] =
         val dao = daoFactory.newVideoReferenceDAO()
@@ -167,7 +176,7 @@ class VideoReferenceController(val daoFactory: JPADAOFactory) extends BaseContro
         f
 
     private def execReadOnly[T](fn: VRDAO => T)(implicit ec: ExecutionContext): Future[T] =
-        val dao = daoFactory.newVideoReferenceDAO()
+        val dao = daoFactory.newReadOnlyVideoReferenceDAO()
         val f   = dao.runReadOnlyTransaction(fn)
         f.onComplete(t => dao.close())
         f
@@ -17,7 +17,9 @@
 package org.mbari.vampiresquid.controllers
 
 import org.mbari.vampiresquid.Constants
-import org.mbari.vampiresquid.domain.VideoSequence as VSDTO
+import org.mbari.vampiresquid.domain.{PageCursor, ResourceVersion, VideoSequence as VSDTO}
+import org.mbari.vampiresquid.etc.cache.CatalogIndex.Snapshot
+import org.mbari.vampiresquid.etc.cache.{CatalogIndex, MediaCache}
 import org.mbari.vampiresquid.repository.VideoSequenceDAO
 import org.mbari.vampiresquid.repository.jpa.entity.VideoSequenceEntity
 import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastoreException}
@@ -25,22 +27,35 @@ import org.mbari.vampiresquid.repository.jpa.{JPADAOFactory, NotFoundInDatastore
 import java.time.{Duration, Instant}
 import java.util.UUID
 import scala.concurrent.{ExecutionContext, Future}
+import scala.util.Success
 
 /**
  * @author
  *   Brian Schlining
  * @since 2016-05-23T11:30:00
  */
-class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseController:
+class VideoSequenceController(
+    val daoFactory: JPADAOFactory,
+    val mediaCache: MediaCache = MediaCache.Disabled,
+    val catalog: CatalogIndex = CatalogIndex.Disabled
+) extends BaseController:
 
     private type VSDAO = VideoSequenceDAO[VideoSequenceEntity]
 
     def findAll(offset: Int, limit: Int)(implicit ec: ExecutionContext): Future[List[VSDTO]] =
-        execReadOnly(d => d.findAll(offset, limit).toList.sortBy(_.getName()).map(VSDTO.from))
+        execReadOnly(d => d.findAll(offset, limit).toList.map(VSDTO.from))
+
+    def findAllAfter(cursor: Option[PageCursor], limit: Int)(implicit ec: ExecutionContext): Future[List[VSDTO]] =
+        execReadOnly(d => d.findAllAfter(cursor, limit).toList.map(VSDTO.from))
 
     def findAllNames()(implicit ec: ExecutionContext): Future[Seq[String]] =
-        execReadOnly(d => d.findAllNames().toSeq.sorted)
-        
+        findAllNamesSnapshot().map(_.values)
+
+    /** All video sequence names, sorted. Served from the catalog index when it's enabled */
+    def findAllNamesSnapshot()(implicit ec: ExecutionContext): Future[Snapshot[String]] =
+        if catalog.enabled then catalog.getOrLoad(CatalogIndex.load(daoFactory)).map(_.videoSequenceNamesSnapshot)
+        else execReadOnly(d => Snapshot(d.findAllNames().toList.sorted))
+
     def findAllEmptyNames()(implicit ec: ExecutionContext): Future[Seq[String]] =
         execReadOnly(d => d.findEmptyNames().toSeq.sorted)
 
@@ -48,11 +63,19 @@ class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseControl
         execReadOnly(d => d.findAllNamesByCameraID(cameraID).toSeq)
 
     def findAllCameraIDs()(implicit ec: ExecutionContext): Future[Seq[String]] =
-        execReadOnly(d => d.findAllCameraIDs().toSeq.sorted)
+        findAllCameraIDsSnapshot().map(_.values)
+
+    /** All camera ids, sorted. Served from the catalog index when it's enabled */
+    def findAllCameraIDsSnapshot()(implicit ec: ExecutionContext): Future[Snapshot[String]] =
+        if catalog.enabled then catalog.getOrLoad(CatalogIndex.load(daoFactory)).map(_.cameraIdsSnapshot)
+        else execReadOnly(d => Snapshot(d.findAllCameraIDs().toList.sorted))
 
     def findByUUID(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[VSDTO]] =
         execReadOnly(d => d.findByUUID(uuid).map(VSDTO.from))
 
+    def findVersion(uuid: UUID)(implicit ec: ExecutionContext): Future[Option[ResourceVersion]] =
+        execReadOnly(d => d.findVersion(uuid))
+
     def findByName(name: String)(implicit ec: ExecutionContext): Future[Option[VSDTO]] =
         execReadOnly(d => d.findByName(name).map(VSDTO.from))
 
@@ -80,7 +103,8 @@ class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseControl
                     val vs = new VideoSequenceEntity(name, cameraID, description.getOrElse(null))
                     dao.create(vs)
                     VSDTO.from(vs)
-        exec(fn)
+        exec(fn).andThen:
+            case Success(vs) => catalog.videoSequenceCreated(vs.name, vs.camera_id)
 
     def delete(uuid: UUID)(implicit ec: ExecutionContext): Future[Boolean] =
         def fn(dao: VSDAO): Boolean =
@@ -90,7 +114,9 @@ class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseControl
                     true
                 case None     =>
                     false
-        exec(fn)
+        exec(fn).andThen: _ =>
+            mediaCache.invalidateVideoSequence(uuid)
+            catalog.invalidate()
 
     def update(
         uuid: UUID,
@@ -109,7 +135,9 @@ class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseControl
                     cameraID.foreach(vs.setCameraID)
                     description.foreach(vs.setDescription)
                     VSDTO.from(vs)
-        exec(fn)
+        exec(fn).andThen: _ =>
+            mediaCache.invalidateVideoSequence(uuid)
+            catalog.invalidate()
 
     private def exec[T](fn: VSDAO => T)(implicit ec: ExecutionContext): Future[T] =
         val dao = daoFactory.newVideoSequenceDAO()
@@ -118,7 +146,7 @@ class VideoSequenceController(val daoFactory: JPADAOFactory) extends BaseControl
         f
 
     private def execReadOnly[T](fn: VSDAO => T)(implicit ec: ExecutionContext): Future[T] =
-        val dao = daoFactory.newVideoSequenceDAO()
+        val dao = daoFactory.newReadOnlyVideoSequenceDAO()
         val f   = dao.runReadOnlyTransaction(fn)
         f.onComplete(t => dao.close())
         f
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+/**
+ * The outcome of registering a single media as part of a bulk request
+ *
+ * @param index
+ *   The position of the media in the request
+ * @param status
+ *   One of `created`, `exists` or `failed`
+ * @param media
+ *   The registered media. Empty if the item failed
+ * @param message
+ *   Why the item failed. Empty if the item succeeded
+ */
+final case class BulkMediaResult(
+    index: Int,
+    status: String,
+    media: Option[Media] = None,
+    message: Option[String] = None
+)
+
+object BulkMediaResult:
+
+    val Created = "created"
+    val Exists  = "exists"
+    val Failed  = "failed"
+
+    def created(index: Int, media: Media): BulkMediaResult = BulkMediaResult(index, Created, Some(media))
+    def exists(index: Int, media: Media): BulkMediaResult  = BulkMediaResult(index, Exists, Some(media))
+    def failed(index: Int, message: String): BulkMediaResult =
+        BulkMediaResult(index, Failed, message = Some(message))
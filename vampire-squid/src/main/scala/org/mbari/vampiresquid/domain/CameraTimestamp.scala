@@ -0,0 +1,41 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.time.Instant
+
+/**
+ * A moment recorded by a camera. Used to look up the media that cover many timestamps in one request
+ *
+ * @param camera_id
+ *   The camera (i.e. the video sequence's camera_id)
+ * @param timestamp
+ *   The moment to resolve
+ */
+final case class CameraTimestamp(camera_id: String, timestamp: Instant)
+
+/**
+ * The media that cover a [[CameraTimestamp]]
+ *
+ * @param camera_id
+ *   The camera from the request
+ * @param timestamp
+ *   The timestamp from the request
+ * @param media
+ *   The media of the camera whose video contains the timestamp. Empty if none do
+ */
+final case class CameraTimestampMedia(camera_id: String, timestamp: Instant, media: List[Media])
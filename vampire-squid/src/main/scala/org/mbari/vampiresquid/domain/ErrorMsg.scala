@@ -16,6 +16,8 @@
 
 package org.mbari.vampiresquid.domain
 
+import java.time.Instant
+
 sealed trait ErrorMsg:
     def message: String
     def responseCode: Int
@@ -35,3 +37,17 @@ final case class NotFound(message: String, responseCode: Int = 404)     extends
 final case class ServerError(message: String, responseCode: Int = 500)  extends ErrorMsg
 final case class Unauthorized(message: String, responseCode: Int = 401) extends ErrorMsg
 final case class BadRequest(message: String, responseCode: Int = 400)   extends ErrorMsg
+
+/**
+ * Not an error, but returned on the error channel so that a conditional GET can answer 304 with no body.
+ * @param etag
+ *   The current ETag of the resource
+ * @param lastModified
+ *   When the resource last changed, if it's known
+ */
+final case class NotModified(
+    etag: String,
+    lastModified: Option[Instant] = None,
+    message: String = "Not modified",
+    responseCode: Int = 304
+) extends ErrorMsg
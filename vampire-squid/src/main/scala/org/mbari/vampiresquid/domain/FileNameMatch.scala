@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+/**
+ * How a filename search matches the last path segment of a video reference's URI.
+ */
+enum FileNameMatch:
+    case Prefix, Suffix, Contains
+
+    /**
+     * @param name
+     *   The text to search for. LIKE wildcards in it are matched literally.
+     * @return
+     *   The LIKE pattern to use with `ESCAPE '!'`. A suffix pattern is for the reversed filename.
+     */
+    def pattern(name: String): String =
+        this match
+            case Prefix   => s"${FileNameMatch.escape(name)}%"
+            case Suffix   => s"${FileNameMatch.escape(name.reverse)}%"
+            case Contains => s"%${FileNameMatch.escape(name)}%"
+
+object FileNameMatch:
+
+    def parse(s: String): Option[FileNameMatch] = values.find(_.toString.equalsIgnoreCase(s))
+
+    /** Escapes the LIKE wildcards of both PostgreSQL and SQL Server, which also treats `[` as one */
+    def escape(s: String): String =
+        s.flatMap:
+            case c @ ('!' | '%' | '_' | '[') => s"!$c"
+            case c                            => c.toString
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.time.Instant
+import java.util.UUID
+
+/**
+ * A change to one media (i.e. one video reference), read from the audit history
+ *
+ * @param revision
+ *   The audit revision (transaction) that made the change
+ * @param timestamp
+ *   When the revision was made
+ * @param change
+ *   One of `created`, `updated` or `deleted`. A change to a video or video sequence is reported as `updated` for
+ *   each of its media.
+ * @param video_reference_uuid
+ *   The media that changed
+ * @param media
+ *   The current state of the media. Absent if it has been deleted since.
+ */
+final case class MediaChange(
+    revision: Long,
+    timestamp: Instant,
+    change: String,
+    video_reference_uuid: UUID,
+    media: Option[Media] = None
+)
+
+object MediaChange:
+    val Created = "created"
+    val Updated = "updated"
+    val Deleted = "deleted"
+
+/**
+ * A page of the change feed
+ *
+ * @param changes
+ *   The changes, ordered by revision. A revision is never split across pages.
+ * @param cursor
+ *   The revision to pass as `after` to read the next page
+ */
+final case class MediaChangePage(changes: List[MediaChange], cursor: Long)
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.time.Instant
+
+/**
+ * A notification published to the configured messaging service
+ *
+ * @param id
+ *   Identifies the event. Delivery is at-least-once, so a consumer may see the same id more than once.
+ * @param event
+ *   The kind of event, e.g. `new_video_reference`
+ * @param timestamp
+ *   When the outbox row was written, inside the transaction of the change, shortly before it was committed
+ * @param media
+ *   The media as it was when the event was published
+ */
+final case class MediaEvent(id: Long, event: String, timestamp: Instant, media: Media)
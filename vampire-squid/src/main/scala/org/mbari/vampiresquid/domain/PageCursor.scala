@@ -0,0 +1,64 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.{Base64, UUID}
+import scala.util.Try
+
+/**
+ * Keyset pagination cursor. Identifies the last item of a page by its sort key and uuid so that the next page can
+ * be read with a `WHERE (key, uuid) > (:key, :uuid)` range scan instead of an OFFSET. Clients should treat the
+ * encoded form as opaque.
+ *
+ * @param key
+ *   The sort key of the last item (e.g. a name, URI or ISO-8601 timestamp)
+ * @param uuid
+ *   The uuid of the last item
+ */
+final case class PageCursor(key: String, uuid: UUID):
+
+    def encode: String =
+        PageCursor.encoder.encodeToString(s"$uuid$key".getBytes(StandardCharsets.UTF_8))
+
+object PageCursor:
+
+    /** Response header that carries the cursor for the next page */
+    val Header = "X-Next-Cursor"
+
+    private val encoder    = Base64.getUrlEncoder.withoutPadding()
+    private val decoder    = Base64.getUrlDecoder
+    private val UuidLength = 36
+
+    /**
+     * @param keyIsValid
+     *   Checks that the key can be read back as the sort key of the list, e.g. [[isInstant]]. Cursors are sent by
+     *   clients, so a tampered key must be rejected here rather than fail the query.
+     */
+    def decode(token: String, keyIsValid: String => Boolean = _ => true): Either[String, PageCursor] =
+        Try(new String(decoder.decode(token), StandardCharsets.UTF_8))
+            .toOption
+            .filter(_.length >= UuidLength)
+            .flatMap(s => Try(PageCursor(s.substring(UuidLength), UUID.fromString(s.substring(0, UuidLength)))).toOption)
+            .filter(c => keyIsValid(c.key))
+            .toRight(s"Invalid cursor: $token")
+
+    def isInstant(key: String): Boolean = Try(Instant.parse(key)).isSuccess
+
+    def isUri(key: String): Boolean = Try(URI.create(key)).isSuccess
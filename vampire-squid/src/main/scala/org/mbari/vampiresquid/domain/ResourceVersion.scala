@@ -0,0 +1,46 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.time.Instant
+
+/**
+ * The version of a resource, used to answer conditional GETs. It is built from the `last_updated_time` of every row
+ * that makes up the resource, plus the number of child rows so that removing a child changes it too.
+ *
+ * @param etag
+ *   A strong ETag
+ * @param lastModified
+ *   The newest `last_updated_time` of the rows
+ */
+final case class ResourceVersion(etag: String, lastModified: Instant)
+
+object ResourceVersion:
+
+    /**
+     * @param lastUpdatedTimes
+     *   The `last_updated_time` of the rows, in a fixed order. None for an aggregate over no rows.
+     * @param counts
+     *   The number of child rows, in a fixed order
+     */
+    def from(lastUpdatedTimes: Seq[Option[Instant]], counts: Seq[Long] = Nil): ResourceVersion =
+        // Millisecond precision is kept by every database we support
+        val parts = lastUpdatedTimes.map(_.map(_.toEpochMilli).getOrElse(0L)) ++ counts
+        ResourceVersion(
+            parts.map(java.lang.Long.toHexString).mkString("\"", "-", "\""),
+            lastUpdatedTimes.flatten.maxOption.getOrElse(Instant.EPOCH)
+        )
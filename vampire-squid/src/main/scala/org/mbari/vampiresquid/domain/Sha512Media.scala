@@ -0,0 +1,27 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+/**
+ * The media that have a checksum. Used to resolve many checksums in one request
+ *
+ * @param sha512
+ *   The checksum from the request, as it was sent
+ * @param media
+ *   The media whose video reference has the checksum. Empty if none do
+ */
+final case class Sha512Media(sha512: String, media: List[Media])
@@ -16,24 +16,37 @@
 
 package org.mbari.vampiresquid.endpoints
 
-import io.circe.Printer
+import io.circe.{Decoder, Printer}
 import org.mbari.vampiresquid.domain.{
     BadRequest,
+    BulkMediaResult,
+    CameraTimestamp,
+    CameraTimestampMedia,
     ErrorMsg,
     Media,
+    MediaChange,
+    MediaChangePage,
     MoveVideoParams,
     NotFound,
+    NotModified,
+    PageCursor,
+    ResourceVersion,
     ServerError,
+    Sha512Media,
     Unauthorized,
     Video,
     VideoReference,
     VideoUpdate
 }
+import org.mbari.vampiresquid.etc.cache.CatalogIndex.Snapshot
+import org.mbari.vampiresquid.etc.cbor.CborEncoder
 import org.mbari.vampiresquid.etc.circe.CirceCodecs
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
 import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.json.JsonEncoder
 import org.mbari.vampiresquid.etc.jwt.JwtService
-import sttp.model.StatusCode
+import org.mbari.vampiresquid.etc.tapir.TapirCodecs
+import sttp.model.{HeaderNames, StatusCode}
 import sttp.model.headers.WWWAuthenticateChallenge
 import sttp.tapir.generic.auto.*
 import sttp.tapir.json.circe.*
@@ -41,11 +54,18 @@ import sttp.tapir.server.ServerEndpoint
 import sttp.tapir.{Endpoint, *}
 
 import java.net.URI
+import java.time.Instant
+import java.time.temporal.ChronoUnit
 import scala.concurrent.{ExecutionContext, Future}
 import scala.util.{Failure, Success}
 
 case class Paging(offset: Option[Int] = Some(0), limit: Option[Int] = Some(100))
 
+/** The conditional headers of a GET. See [[Endpoints.versionedEndpoint]] */
+case class Preconditions(ifNoneMatch: Option[String] = None, ifModifiedSince: Option[String] = None)
+
+case class CursorPaging(offset: Option[Int] = None, limit: Option[Int] = Some(100), cursor: Option[String] = None)
+
 object CustomTapirJsonCirce extends TapirJsonCirce:
     override def jsonPrinter: Printer = CirceCodecs.CustomPrinter
 
@@ -55,13 +75,19 @@ trait Endpoints:
 
     val log = System.getLogger(getClass.getName)
 
-    given Schema[URI]             = Schema.string
-    given Schema[Option[URI]]     = Schema.string
-    given Schema[VideoReference]  = Schema.derived[VideoReference]
-    given Schema[Video]           = Schema.derived[Video]
-    given Schema[VideoUpdate]     = Schema.derived[VideoUpdate]
-    given Schema[Media]           = Schema.derived[Media]
-    given Schema[MoveVideoParams] = Schema.derived[MoveVideoParams]
+    given Schema[URI]                  = Schema.string
+    given Schema[Option[URI]]          = Schema.string
+    given Schema[VideoReference]       = Schema.derived[VideoReference]
+    given Schema[Video]                = Schema.derived[Video]
+    given Schema[VideoUpdate]          = Schema.derived[VideoUpdate]
+    given Schema[Media]                = Schema.derived[Media]
+    given Schema[MoveVideoParams]      = Schema.derived[MoveVideoParams]
+    given Schema[BulkMediaResult]      = Schema.derived[BulkMediaResult]
+    given Schema[CameraTimestamp]      = Schema.derived[CameraTimestamp]
+    given Schema[CameraTimestampMedia] = Schema.derived[CameraTimestampMedia]
+    given Schema[MediaChange]          = Schema.derived[MediaChange]
+    given Schema[MediaChangePage]      = Schema.derived[MediaChangePage]
+    given Schema[Sha512Media]          = Schema.derived[Sha512Media]
 
     def all: List[Endpoint[?, ?, ?, ?, ?]]
     def allImpl: List[ServerEndpoint[Any, Future]]
@@ -99,6 +125,52 @@ trait Endpoints:
             .and(query[Option[Int]]("limit"))
             .mapTo[Paging]
 
+    val cursorPaging: EndpointInput[CursorPaging] =
+        query[Option[Int]]("offset")
+            .and(query[Option[Int]]("limit"))
+            .and(
+                query[Option[String]]("cursor")
+                    .description(s"Opaque cursor from the ${PageCursor.Header} header of the previous page")
+            )
+            .mapTo[CursorPaging]
+
+    /** Output for list endpoints that support cursor paging. The cursor for the next page is sent in a header. */
+    val nextCursor: EndpointOutput[Option[String]] =
+        header[Option[String]](PageCursor.Header)
+            .description("Cursor for the next page. Absent on the last page.")
+
+    /**
+     * Reads a page using keyset pagination. A request with an `offset` but no `cursor` falls back to offset paging
+     * so that existing clients keep working. Either way, a full page is returned with the cursor of its last item.
+     *
+     * @param page
+     *   The paging parameters from the request
+     * @param toCursor
+     *   Builds the cursor of an item
+     * @param keyIsValid
+     *   Checks the key of a cursor sent by the client. An invalid cursor is a 400 Bad Request
+     * @param byOffset
+     *   Reads a page by (offset, limit)
+     * @param byCursor
+     *   Reads a page by (cursor, limit)
+     */
+    def handlePage[A](page: CursorPaging, toCursor: A => PageCursor, keyIsValid: String => Boolean = _ => true)(
+        byOffset: (Int, Int) => Future[Seq[A]],
+        byCursor: (Option[PageCursor], Int) => Future[Seq[A]]
+    )(using ec: ExecutionContext): Future[Either[ErrorMsg, (List[A], Option[String])]] =
+        val limit = page.limit.getOrElse(100)
+        page.cursor.map(PageCursor.decode(_, keyIsValid)) match
+            case Some(Left(msg)) => Future.successful(Left(BadRequest(msg)))
+            case cursor          =>
+                val items = (cursor, page.offset) match
+                    case (Some(Right(c)), _)                 => byCursor(Some(c), limit)
+                    case (None, Some(offset)) if offset > 0 => byOffset(offset, limit)
+                    case _                                   => byCursor(None, limit)
+                handleErrors(items.map { xs =>
+                    val next = if xs.size >= limit then xs.lastOption.map(toCursor(_).encode) else None
+                    (xs.toList, next)
+                })
+
     val openEndpoint: Endpoint[Unit, Unit, ErrorMsg, Unit, Any] = endpoint.errorOut(
         oneOf[ErrorMsg](
             oneOfVariant(statusCode(StatusCode.BadRequest).and(jsonBody[BadRequest])),
@@ -107,6 +179,134 @@ trait Endpoints:
         )
     )
 
+    /**
+     * Like [[openEndpoint]], but reads `If-None-Match` and can answer 304 Not Modified. Use [[handleConditional]] in
+     * the server logic and send the ETag with the response.
+     */
+    val conditionalEndpoint: Endpoint[Unit, Option[String], ErrorMsg, Unit, Any] = endpoint
+        .in(header[Option[String]](HeaderNames.IfNoneMatch))
+        .errorOut(conditionalErrors)
+
+    val preconditions: EndpointInput[Preconditions] =
+        header[Option[String]](HeaderNames.IfNoneMatch)
+            .and(header[Option[String]](HeaderNames.IfModifiedSince))
+            .mapTo[Preconditions]
+
+    /**
+     * Like [[openEndpoint]], but reads `If-None-Match` and `If-Modified-Since` and can answer 304 Not Modified. Use
+     * [[handleVersioned]] in the server logic and [[versioned]] for the output.
+     */
+    val versionedEndpoint: Endpoint[Unit, Preconditions, ErrorMsg, Unit, Any] = endpoint
+        .in(preconditions)
+        .errorOut(conditionalErrors)
+
+    private lazy val conditionalErrors: EndpointOutput[ErrorMsg] =
+        oneOf[ErrorMsg](
+            oneOfVariant(
+                statusCode(StatusCode.NotModified)
+                    .and(header[String](HeaderNames.Etag))
+                    .and(header[Option[String]](HeaderNames.LastModified))
+                    .map(t => NotModified(t._1, t._2.flatMap(TapirCodecs.parseHttpDate)))(n =>
+                        (n.etag, n.lastModified.map(TapirCodecs.encodeHttpDate))
+                    )
+            ),
+            oneOfVariant(statusCode(StatusCode.BadRequest).and(jsonBody[BadRequest])),
+            oneOfVariant(statusCode(StatusCode.NotFound).and(jsonBody[NotFound])),
+            oneOfVariant(statusCode(StatusCode.InternalServerError).and(jsonBody[ServerError]))
+        )
+
+    private lazy val lastModified: EndpointIO.Header[Instant] =
+        header[String](HeaderNames.LastModified).mapDecode(TapirCodecs.decodeHttpDate)(TapirCodecs.encodeHttpDate)
+
+    /**
+     * JSON written with [[org.mbari.vampiresquid.etc.json.JsonCodecs]], or CBOR for clients that send
+     * `Accept: application/cbor`. CBOR carries UUIDs and checksums as bytes and timestamps as numbers, so large lists
+     * are smaller and cheaper to write and parse.
+     */
+    def jsonOrCborBody[A: JsonEncoder: Decoder: Schema: CborEncoder]: EndpointIO.OneOfBody[A, A] =
+        oneOfBody(TapirCodecs.jsonWriterBody[A], TapirCodecs.cborBody[A])
+
+    /** Sends the version of a resource in the `ETag` and `Last-Modified` headers */
+    def versioned[A](body: EndpointIO[A]): EndpointOutput[(ResourceVersion, A)] =
+        header[String](HeaderNames.Etag)
+            .and(lastModified)
+            .and(body)
+            .map(t => (ResourceVersion(t._1, t._2), t._3))(t => (t._1.etag, t._1.lastModified, t._2))
+
+    /**
+     * Answers a GET of a versioned resource. The version is read first, with a query that doesn't load the resource,
+     * so that a client whose copy is current gets a 304 without the resource being read.
+     *
+     * @param version
+     *   Reads the version of the resource. None if it does not exist
+     * @param read
+     *   Reads the resource
+     */
+    def handleVersioned[T](preconditions: Preconditions, version: => Future[Option[ResourceVersion]])(
+        read: => Future[Option[T]]
+    )(using ec: ExecutionContext): Future[Either[ErrorMsg, (ResourceVersion, T)]] =
+        handleVersionedRead(preconditions, version)(v => read.map(_.map(t => (v, t))))
+
+    /**
+     * Like [[handleVersioned]], for a resource that is read together with its version. The ETag sent with the body is
+     * the one that was read with it, so a change committed after `version` was read can not pair a new ETag with an
+     * old body.
+     *
+     * @param version
+     *   Reads the version of the resource. None if it does not exist
+     * @param read
+     *   Reads the resource and its version, given the version that was just read
+     */
+    def handleVersionedRead[T](preconditions: Preconditions, version: => Future[Option[ResourceVersion]])(
+        read: ResourceVersion => Future[Option[(ResourceVersion, T)]]
+    )(using ec: ExecutionContext): Future[Either[ErrorMsg, (ResourceVersion, T)]] =
+        val f: Future[Option[Either[ErrorMsg, (ResourceVersion, T)]]] = version.flatMap:
+            case None                                       => Future.successful(None)
+            case Some(v) if isNotModified(preconditions, v) =>
+                Future.successful(Some(Left(NotModified(v.etag, Some(v.lastModified)))))
+            case Some(v)                                    => read(v).map(_.map(Right(_)))
+        handleOption(f).map(_.flatMap(identity))
+
+    /**
+     * RFC 9110 13.2.2: If-Modified-Since is only evaluated when there is no If-None-Match, and an unparseable date is
+     * ignored.
+     */
+    def isNotModified(preconditions: Preconditions, version: ResourceVersion): Boolean =
+        preconditions.ifNoneMatch match
+            case Some(_) => etagMatches(preconditions.ifNoneMatch, version.etag)
+            case None    =>
+                preconditions
+                    .ifModifiedSince
+                    .flatMap(TapirCodecs.parseHttpDate)
+                    .exists(since => !version.lastModified.truncatedTo(ChronoUnit.SECONDS).isAfter(since))
+
+    /**
+     * @param ifNoneMatch
+     *   The If-None-Match header of the request
+     * @param etag
+     *   The ETag of the value
+     * @return
+     *   The value, or NotModified when the client already has it
+     */
+    def handleConditional[T](ifNoneMatch: Option[String], f: Future[T])(etag: T => String)(using
+        ec: ExecutionContext
+    ): Future[Either[ErrorMsg, T]] =
+        handleErrors(f).map:
+            case Right(value) if etagMatches(ifNoneMatch, etag(value)) => Left(NotModified(etag(value)))
+            case other                                                 => other
+
+    /** A sorted list of names, sent with its ETag */
+    val namesSnapshot: EndpointOutput[Snapshot[String]] =
+        header[String](HeaderNames.Etag)
+            .and(jsonBody[List[String]])
+            .map(t => Snapshot(t._2))(s => (s.etag, s.values))
+
+    /** Weak comparison, as used for If-None-Match (RFC 9110 13.1.2) */
+    def etagMatches(ifNoneMatch: Option[String], etag: String): Boolean =
+        ifNoneMatch.exists(
+            _.split(",").iterator.map(_.trim.stripPrefix("W/")).exists(t => t == "*" || t == etag.stripPrefix("W/"))
+        )
+
     def verify(
         jwtOpt: Option[String]
     )(using jwtService: JwtService, ec: ExecutionContext): Future[Either[Unauthorized, Unit]] =
@@ -16,12 +16,29 @@
 
 package org.mbari.vampiresquid.endpoints
 
+import io.circe.{parser, Json}
 import org.mbari.vampiresquid.controllers.MediaController
-import org.mbari.vampiresquid.domain.{BadRequest, ErrorMsg, Media, MoveVideoParams, NotFound, ServerError}
+import org.mbari.vampiresquid.domain.{
+    BadRequest,
+    BulkMediaResult,
+    CameraTimestamp,
+    CameraTimestampMedia,
+    ErrorMsg,
+    FileNameMatch,
+    Media,
+    MediaChangePage,
+    MoveVideoParams,
+    NotFound,
+    ResourceVersion,
+    ServerError,
+    Sha512Media
+}
 import org.mbari.vampiresquid.endpoints.CustomTapirJsonCirce.*
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
 import org.mbari.vampiresquid.etc.jdk.Logging
 import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
 import org.mbari.vampiresquid.etc.jwt.JwtService
 import org.mbari.vampiresquid.etc.tapir.TapirCodecs
 import org.mbari.vampiresquid.etc.tapir.TapirCodecs.given
@@ -29,8 +46,8 @@ import sttp.tapir.*
 import sttp.tapir.server.ServerEndpoint
 
 import java.net.{URI, URLDecoder}
-import java.time.Instant
-import java.util.{HexFormat, UUID}
+import java.time.{Duration, Instant}
+import java.util.{Base64, HexFormat, UUID}
 import scala.concurrent.{ExecutionContext, Future}
 import scala.util.{Failure, Success, Try}
 
@@ -56,7 +73,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
             .post
             .in("v1" / "media")
             .in(oneOfBody(formBody[Media], jsonBody[Media]))
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("createMedia")
             .description("Create a new media.(The `uuid` param will be ignored if present.)")
             .tag("media")
@@ -66,13 +83,47 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
             .serverSecurityLogic(jwtOpt => verify(jwtOpt))
             .serverLogic(_ => media => handleErrors(mediaController.createMedia(media)))
 
+    // POST v1/media/bulk ----------------------------------------
+    val createMediaBulk: Endpoint[Option[String], String, ErrorMsg, List[BulkMediaResult], Any] =
+        secureEndpoint
+            .post
+            .in("v1" / "media" / "bulk")
+            .in(stringBody.description("A JSON array of media or newline-delimited JSON with one media per line"))
+            .out(jsonBody[List[BulkMediaResult]])
+            .name("createMediaBulk")
+            .description(
+                "Create many media in one request. Accepts a JSON array or newline-delimited JSON (NDJSON). " +
+                    "Returns one result per media reporting if it was created, already existed, or failed."
+            )
+            .tag("media")
+
+    val createMediaBulkImpl: ServerEndpoint[Any, Future] =
+        createMediaBulk
+            .serverSecurityLogic(jwtOpt => verify(jwtOpt))
+            .serverLogic(_ =>
+                body =>
+                    MediaEndpoints.parseBulkMedia(body) match
+                        case Left(msg)    => Future.successful(Left(BadRequest(msg)))
+                        case Right(items) =>
+                            val indexed  = items.zipWithIndex
+                            val valid    = indexed.collect { case (Right(m), i) => (m, i) }
+                            val invalid  = indexed.collect { case (Left(msg), i) => BulkMediaResult.failed(i, msg) }
+                            log.atTrace.log(s"createMediaBulk received ${items.size} media")
+                            handleErrors(
+                                mediaController
+                                    .createBulk(valid.map(_._1))
+                                    .map(results => results.map(r => r.copy(index = valid(r.index)._2)))
+                                    .map(results => (invalid ++ results).sortBy(_.index).toList)
+                            )
+            )
+
     // PUT v1/media ----------------------------------------
     val updateMedia: Endpoint[Option[String], Media, ErrorMsg, Media, Any] =
         secureEndpoint
             .put
             .in("v1" / "media")
             .in(oneOfBody(formBody[Media], jsonBody[Media]))
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("updateMedia")
             .description("Update an existing media. (All uuid params will be ignored if present.)")
             .tag("media")
@@ -88,7 +139,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
             .put
             .in("v1" / "media" / path[UUID]("videoReferenceUuid"))
             .in(oneOfBody(formBody[Media], jsonBody[Media]))
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("updateMediaByVideoReferenceUuid")
             .description("Update an existing media by videoReferenceUuid and form data")
             .tag("media")
@@ -115,7 +166,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
             .put
             .in("v1" / "media" / "move" / path[UUID]("videoReferenceUuid"))
             .in(formBody[MoveVideoParams])
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("moveMediaByVideoReferenceUuid")
             .description("Move an existing media by videoReferenceUuid and form data")
             .tag("media")
@@ -142,7 +193,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
         openEndpoint
             .get
             .in("v1" / "media" / "sha512" / path[String]("sha512"))
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("findMediaBySha512")
             .description("Find media by sha512")
             .tag("media")
@@ -155,21 +206,83 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                 handleMediaOption(mediaController.findBySha512(bytes))
             )
 
-    // GET v1/media/videoreference/{videoReferenceUuid} --------------------------------
-    val findMediaByVideoReferenceUuid: Endpoint[Unit, UUID, ErrorMsg, Media, Any] =
+    // POST v1/media/sha512 -----------------------------------------------------------
+    val findMediaBySha512s: Endpoint[Unit, List[String], ErrorMsg, List[Sha512Media], Any] =
         openEndpoint
+            .post
+            .in("v1" / "media" / "sha512")
+            .in(jsonBody[List[String]].description("The hex or base64 encoded sha512 checksums to resolve"))
+            .out(jsonOrCborBody[List[Sha512Media]])
+            .name("findMediaBySha512s")
+            .description(
+                "Find the media of each of many sha512 checksums. Returns one result per checksum, in the same " +
+                    s"order. At most ${MediaEndpoints.MaxSha512s} checksums per request."
+            )
+            .tag("media")
+
+    val findMediaBySha512sImpl: ServerEndpoint[Any, Future] =
+        findMediaBySha512s
+            .serverLogic((sha512s: List[String]) =>
+                log.atTrace.log(s"findMediaBySha512s received ${sha512s.size} checksums")
+                if sha512s.size > MediaEndpoints.MaxSha512s then
+                    Future.successful(
+                        Left(BadRequest(s"At most ${MediaEndpoints.MaxSha512s} checksums are allowed per request"))
+                    )
+                else
+                    val decoded = sha512s.map(s => s -> MediaEndpoints.decodeSha512(s))
+                    decoded.collectFirst { case (s, None) => s } match
+                        case Some(s) => Future.successful(Left(BadRequest(s"$s is not a hex or base64 encoded sha512")))
+                        case None    =>
+                            handleErrors(
+                                mediaController.findBySha512s(decoded.map((s, bytes) => s -> bytes.get)).map(_.toList)
+                            )
+            )
+
+    // GET v1/media/videoreference/{videoReferenceUuid} --------------------------------
+    val findMediaByVideoReferenceUuid: Endpoint[Unit, (Preconditions, UUID), ErrorMsg, (ResourceVersion, Media), Any] =
+        versionedEndpoint
             .get
             .in("v1" / "media" / "videoreference" / path[UUID]("videoReferenceUuid"))
-            .out(jsonBody[Media])
+            .out(versioned(jsonOrCborBody[Media]))
             .name("findMediaByVideoReferenceUuid")
-            .description("Find media by videoReferenceUuid")
+            .description(
+                "Find media by videoReferenceUuid. The ETag changes when the video sequence, video or video " +
+                    "reference changes. Responds 304 when If-None-Match or If-Modified-Since is current"
+            )
             .tag("media")
 
     val findMediaByVideoReferenceUuidImpl: ServerEndpoint[Any, Future] =
         findMediaByVideoReferenceUuid
-            .serverLogic((videoReferenceUuid: UUID) =>
+            .serverLogic((preconditions: Preconditions, videoReferenceUuid: UUID) =>
                 log.atTrace.log("findByVideoReferenceUuid received " + videoReferenceUuid)
-                handleMediaOption(mediaController.findByVideoReferenceUuid(videoReferenceUuid))
+                handleVersionedRead(preconditions, mediaController.findVersionByVideoReferenceUuid(videoReferenceUuid))(
+                    version => mediaController.findVersionedByVideoReferenceUuid(videoReferenceUuid, version)
+                )
+            )
+
+    // POST v1/media/videoreference ---------------------------------------------------
+    val findMediaByVideoReferenceUuids: Endpoint[Unit, List[UUID], ErrorMsg, List[Media], Any] =
+        openEndpoint
+            .post
+            .in("v1" / "media" / "videoreference")
+            .in(jsonBody[List[UUID]].description("The video reference uuids to look up"))
+            .out(jsonOrCborBody[List[Media]])
+            .name("findMediaByVideoReferenceUuids")
+            .description(
+                "Find the media of many video reference uuids. Returns the media of each uuid that exists, in the " +
+                    s"same order. At most ${MediaEndpoints.MaxLookups} uuids per request."
+            )
+            .tag("media")
+
+    val findMediaByVideoReferenceUuidsImpl: ServerEndpoint[Any, Future] =
+        findMediaByVideoReferenceUuids
+            .serverLogic((uuids: List[UUID]) =>
+                log.atTrace.log(s"findMediaByVideoReferenceUuids received ${uuids.size} uuids")
+                if uuids.size > MediaEndpoints.MaxLookups then
+                    Future.successful(
+                        Left(BadRequest(s"At most ${MediaEndpoints.MaxLookups} uuids are allowed per request"))
+                    )
+                else handleErrors(mediaController.findByVideoReferenceUuids(uuids).map(_.toList))
             )
 
     // GET v1/media/videoreference/filename/{filename} ---------------------------------
@@ -177,7 +290,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
         openEndpoint
             .get
             .in("v1" / "media" / "videoreference" / "filename" / path[String]("filename"))
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByFileName")
             .description("Find media by filename")
             .tag("media")
@@ -189,12 +302,52 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                 handleErrors(mediaController.findByFileName(filename).map(_.toList))
             )
 
+    // GET v1/media/search/filename?name={name}&match={prefix|suffix|contains}&limit={n} ---------------
+    val searchMediaByFileName: Endpoint[Unit, (String, Option[String], Option[Int]), ErrorMsg, List[Media], Any] =
+        openEndpoint
+            .get
+            .in("v1" / "media" / "search" / "filename")
+            .in(query[String]("name").description("The text to search for"))
+            .in(
+                query[Option[String]]("match").description(
+                    "Whether the filename starts with (prefix), ends with (suffix) or contains (contains) the name. " +
+                        "Defaults to prefix."
+                )
+            )
+            .in(
+                query[Option[Int]]("limit").description(
+                    s"Maximum number of media (default ${MediaEndpoints.DefaultFileNameLimit}, at most " +
+                        s"${MediaEndpoints.MaxFileNameLimit})"
+                )
+            )
+            .out(jsonOrCborBody[List[Media]])
+            .name("searchMediaByFileName")
+            .description("Find media by a prefix, suffix or substring of the filename of the video reference URI")
+            .tag("media")
+
+    val searchMediaByFileNameImpl: ServerEndpoint[Any, Future] =
+        searchMediaByFileName
+            .serverLogic((name: String, matchType: Option[String], limit: Option[Int]) =>
+                val n = limit.getOrElse(MediaEndpoints.DefaultFileNameLimit)
+                matchType.map(FileNameMatch.parse).getOrElse(Some(FileNameMatch.Prefix)) match
+                    case None                                                    =>
+                        Future.successful(Left(BadRequest("match must be one of prefix, suffix or contains")))
+                    case Some(_) if n < 1 || n > MediaEndpoints.MaxFileNameLimit =>
+                        Future.successful(
+                            Left(BadRequest(s"limit must be between 1 and ${MediaEndpoints.MaxFileNameLimit}"))
+                        )
+                    case Some(_) if name.isBlank                                 =>
+                        Future.successful(Left(BadRequest("name must not be empty")))
+                    case Some(m)                                                 =>
+                        handleErrors(mediaController.findByFileName(name, m, n).map(_.toList))
+            )
+
     // GET v1/media/videoreference/videosequence/{name} -----------------------
     val findMediaByVideoSequenceName: Endpoint[Unit, String, ErrorMsg, List[Media], Any] =
         openEndpoint
             .get
             .in("v1" / "media" / "videosequence" / path[String]("name"))
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByVideoSequenceName")
             .description("Find media by video sequence name")
             .tag("media")
@@ -213,7 +366,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
             .in("v1" / "media" / "videosequence")
             .in(paging)
             .in(jsonBody[Seq[String]])
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByVideoSequenceNames")
             .description("Find media by a list of video sequence names")
             .tag("media")
@@ -234,7 +387,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
         openEndpoint
             .get
             .in("v1" / "media" / "video" / path[String]("name"))
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByVideoName")
             .description("Find media by video name")
             .tag("media")
@@ -257,7 +410,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                     "endTimestamp"
                 )(using TapirCodecs.instantCodec)
             )
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByCameraIdAndTimestamps")
             .description("Find media by cameraId and timestamps")
             .tag("media")
@@ -274,12 +427,37 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                 )
             )
 
+    // POST v1/media/camera/timestamps -----------------------------------------------
+    val findMediaByCameraTimestamps: Endpoint[Unit, List[CameraTimestamp], ErrorMsg, List[CameraTimestampMedia], Any] =
+        openEndpoint
+            .post
+            .in("v1" / "media" / "camera" / "timestamps")
+            .in(jsonBody[List[CameraTimestamp]].description("The camera_id/timestamp pairs to resolve"))
+            .out(jsonOrCborBody[List[CameraTimestampMedia]])
+            .name("findMediaByCameraTimestamps")
+            .description(
+                "Find the media that cover each of many camera_id/timestamp pairs. Returns one result per pair, in " +
+                    s"the same order. At most ${MediaEndpoints.MaxCameraTimestamps} pairs per request."
+            )
+            .tag("media")
+
+    val findMediaByCameraTimestampsImpl: ServerEndpoint[Any, Future] =
+        findMediaByCameraTimestamps
+            .serverLogic((pairs: List[CameraTimestamp]) =>
+                log.atTrace.log(s"findMediaByCameraTimestamps received ${pairs.size} pairs")
+                if pairs.size > MediaEndpoints.MaxCameraTimestamps then
+                    Future.successful(
+                        Left(BadRequest(s"At most ${MediaEndpoints.MaxCameraTimestamps} pairs are allowed per request"))
+                    )
+                else handleErrors(mediaController.findByCameraTimestamps(pairs).map(_.toList))
+            )
+
     // GET v1/media/concurrent/{videoReferenceUuid} -----------------------------------
     val findConcurrentMediaByVideoReferenceUuid: Endpoint[Unit, UUID, ErrorMsg, List[Media], Any] =
         openEndpoint
             .get
             .in("v1" / "media" / "concurrent" / path[UUID]("videoReferenceUuid"))
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findConcurrentMediaByVideoReferenceUuid")
             .description("Find concurrent media by videoReferenceUuid")
             .tag("media")
@@ -304,7 +482,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                     TapirCodecs.instantCodec
                 )
             )
-            .out(jsonBody[List[Media]])
+            .out(jsonOrCborBody[List[Media]])
             .name("findMediaByCameraIdAndDatetime")
             .description("Find media by cameraId and datetime")
             .tag("media")
@@ -325,7 +503,7 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
         openEndpoint
             .get
             .in("v1" / "media" / "uri" / path[String]("uri"))
-            .out(jsonBody[Media])
+            .out(jsonOrCborBody[Media])
             .name("findMediaByUri")
             .description("Find media by uri")
             .tag("media")
@@ -345,15 +523,86 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
                         )
             )
 
+    // POST v1/media/uri ----------------------------------------------------------------
+    val findMediaByUris: Endpoint[Unit, List[URI], ErrorMsg, List[Media], Any] =
+        openEndpoint
+            .post
+            .in("v1" / "media" / "uri")
+            .in(jsonBody[List[URI]].description("The uris to look up"))
+            .out(jsonOrCborBody[List[Media]])
+            .name("findMediaByUris")
+            .description(
+                "Find the media of many uris. Returns the media of each uri that exists, in the same order. At most " +
+                    s"${MediaEndpoints.MaxLookups} uris per request."
+            )
+            .tag("media")
+
+    val findMediaByUrisImpl: ServerEndpoint[Any, Future] =
+        findMediaByUris
+            .serverLogic((uris: List[URI]) =>
+                log.atTrace.log(s"findMediaByUris received ${uris.size} uris")
+                if uris.size > MediaEndpoints.MaxLookups then
+                    Future.successful(
+                        Left(BadRequest(s"At most ${MediaEndpoints.MaxLookups} uris are allowed per request"))
+                    )
+                else handleErrors(mediaController.findByURIs(uris).map(_.toList))
+            )
+
+    // GET v1/media/changes?after={revision}&limit={n}&wait={seconds} ----------------
+    val findMediaChanges: Endpoint[Unit, (Option[Long], Option[Int], Option[Int]), ErrorMsg, MediaChangePage, Any] =
+        openEndpoint
+            .get
+            .in("v1" / "media" / "changes")
+            .in(query[Option[Long]]("after").description("The cursor of the previous page. Omit to start from now."))
+            .in(
+                query[Option[Int]]("limit").description(
+                    s"Maximum number of revisions in the page (default ${MediaEndpoints.DefaultChangesLimit}, at " +
+                        s"most ${MediaEndpoints.MaxChangesLimit})"
+                )
+            )
+            .in(
+                query[Option[Int]]("wait").description(
+                    s"Seconds to wait for a change when there are none (at most ${MediaEndpoints.MaxChangesWait})"
+                )
+            )
+            .out(jsonBody[MediaChangePage])
+            .name("findMediaChanges")
+            .description(
+                "Read the media that were created, updated or deleted after a cursor, in revision order. Pass the " +
+                    "returned cursor as `after` to read the next page."
+            )
+            .tag("media")
+
+    val findMediaChangesImpl: ServerEndpoint[Any, Future] =
+        findMediaChanges
+            .serverLogic((after: Option[Long], limit: Option[Int], wait: Option[Int]) =>
+                val n = limit.getOrElse(MediaEndpoints.DefaultChangesLimit)
+                val w = wait.getOrElse(0)
+                if n < 1 || n > MediaEndpoints.MaxChangesLimit then
+                    Future.successful(
+                        Left(BadRequest(s"limit must be between 1 and ${MediaEndpoints.MaxChangesLimit}"))
+                    )
+                else if w < 0 || w > MediaEndpoints.MaxChangesWait then
+                    Future.successful(Left(BadRequest(s"wait must be between 0 and ${MediaEndpoints.MaxChangesWait}")))
+                else handleErrors(mediaController.findChanges(after, n, Duration.ofSeconds(w)))
+            )
+
     override def all: List[Endpoint[?, ?, ?, ?, ?]] = List(
+        findMediaChanges,
+        createMediaBulk,
+        findMediaByCameraTimestamps,
         findMediaByCameraIdAndTimestamps,
         findMediaByCameraIdAndDatetime,
         findConcurrentMediaByVideoReferenceUuid,
         moveMediaByVideoReferenceUuid,
         findMediaBySha512,
+        findMediaBySha512s,
         findMediaByUri,
+        findMediaByUris,
+        searchMediaByFileName,
         findMediaByFileName,
         findMediaByVideoReferenceUuid,
+        findMediaByVideoReferenceUuids,
         findMediaByVideoSequenceName,
         findMediaByVideoName,
         updateMediaByVideoReferenceUuid,
@@ -362,17 +611,100 @@ class MediaEndpoints(mediaController: MediaController, jwtService: JwtService)(u
     )
 
     override def allImpl: List[ServerEndpoint[Any, concurrent.Future]] = List(
+        findMediaChangesImpl,
+        createMediaBulkImpl,
+        findMediaByCameraTimestampsImpl,
         findMediaByCameraIdAndTimestampsImpl,
         findMediaByCameraIdAndDatetimeImpl,
         findConcurrentMediaByVideoReferenceUuidImpl,
         moveMediaByVideoReferenceUuidImpl,
         findMediaBySha512Impl,
+        findMediaBySha512sImpl,
         findMediaByUriImpl,
+        findMediaByUrisImpl,
+        searchMediaByFileNameImpl,
         findMediaByFileNameImpl,
         findMediaByVideoReferenceUuidImpl,
+        findMediaByVideoReferenceUuidsImpl,
         findMediaByVideoSequenceNameImpl,
         findMediaByVideoNameImpl,
         updateMediaByVideoReferenceUuidImpl,
         updateMediaImpl,
         createMediaImpl
     )
+
+    /**
+     * The endpoints in [[allImpl]] that never block when the controller reads media with a non-blocking reader. They
+     * can be routed on the event loop. Empty when the controller reads through JPA.
+     */
+    def eventLoopImpl: List[ServerEndpoint[Any, concurrent.Future]] =
+        if mediaController.reader.isEmpty then Nil
+        else
+            List(
+                findMediaByCameraIdAndTimestampsImpl,
+                findMediaByCameraIdAndDatetimeImpl,
+                findMediaBySha512Impl,
+                findMediaByUriImpl,
+                findMediaByVideoReferenceUuidImpl,
+                findMediaByVideoSequenceNameImpl,
+                findMediaByVideoNameImpl
+            )
+
+object MediaEndpoints:
+
+    /** Largest batch accepted by `POST v1/media/camera/timestamps` */
+    val MaxCameraTimestamps = 100000
+
+    /** Largest batch accepted by `POST v1/media/videoreference` and `POST v1/media/uri` */
+    val MaxLookups = 10000
+
+    /** Largest batch accepted by `POST v1/media/sha512` */
+    val MaxSha512s = 10000
+
+    /** Revisions per page of `GET v1/media/changes` */
+    val DefaultChangesLimit = 100
+    val MaxChangesLimit     = 1000
+
+    /** Longest long-poll, in seconds, accepted by `GET v1/media/changes` */
+    val MaxChangesWait = 60
+
+    /** Results of `GET v1/media/search/filename` */
+    val DefaultFileNameLimit = 100
+    val MaxFileNameLimit     = 1000
+
+    /**
+     * Decodes a checksum sent as text. Like the JSON codec for byte arrays, it accepts hex and falls back to base64.
+     * @return
+     *   None unless the text decodes to the 64 bytes of a sha512
+     */
+    def decodeSha512(s: String): Option[Array[Byte]] =
+        Try(HexFormat.of().parseHex(s)).orElse(Try(Base64.getDecoder.decode(s))).toOption.filter(_.length == 64)
+
+    /**
+     * Parse the body of a bulk media request. The body can be either a JSON array of media or newline-delimited JSON
+     * with one media per line. Each media is decoded on its own so that a malformed item does not invalidate the rest
+     * of the request.
+     *
+     * @param body
+     *   The request body
+     * @return
+     *   Left if the body is not a JSON array or NDJSON. Otherwise, one Either per item in the body with the decoded
+     *   media or the reason it could not be decoded
+     */
+    def parseBulkMedia(body: String): Either[String, Vector[Either[String, Media]]] =
+        val trimmed = body.trim
+        if trimmed.startsWith("[") then
+            parser
+                .decode[Vector[Json]](trimmed)
+                .left
+                .map(e => s"Unable to parse the JSON array: ${e.getMessage}")
+                .map(_.map(json => json.as[Media].left.map(_.getMessage)))
+        else
+            Right(
+                trimmed
+                    .linesIterator
+                    .map(_.trim)
+                    .filter(_.nonEmpty)
+                    .map(line => parser.decode[Media](line).left.map(_.getMessage))
+                    .toVector
+            )
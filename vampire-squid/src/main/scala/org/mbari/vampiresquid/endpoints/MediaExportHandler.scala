@@ -0,0 +1,116 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.endpoints
+
+import io.vertx.core.Handler
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.http.HttpServerResponse
+import io.vertx.ext.web.RoutingContext
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.ServerError
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
+import org.mbari.vampiresquid.etc.jdk.Logging
+import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonEncoder
+
+import java.util.concurrent.{CancellationException, CountDownLatch, TimeUnit}
+import scala.concurrent.{blocking, ExecutionContext}
+import scala.util.{Failure, Success}
+
+/**
+ * GET v1/media/export. Streams every media in the database as newline-delimited JSON (one media per line).
+ *
+ * This is a plain Vert.x handler rather than a tapir endpoint so that rows can be written to the response as they
+ * are read from a database cursor. Lines are accumulated into chunks of about `chunkBytes` and written to the
+ * response. When the response's write queue is full, the reading thread waits for the drain handler, so a slow
+ * client slows down the database cursor instead of filling the heap. If the client disconnects, the cursor is
+ * abandoned.
+ *
+ * @param mediaController
+ *   The controller used to walk the catalog
+ * @param chunkBytes
+ *   The approximate size of each chunk written to the response
+ */
+class MediaExportHandler(mediaController: MediaController, chunkBytes: Int = MediaExportHandler.ChunkBytes)(using
+    ec: ExecutionContext
+) extends Handler[RoutingContext]:
+
+    private val log = Logging(getClass)
+
+    override def handle(ctx: RoutingContext): Unit =
+        val response = ctx.response()
+        response
+            .setChunked(true)
+            .putHeader("Content-Type", MediaExportHandler.ContentType)
+        val sink     = new ResponseSink(response, chunkBytes)
+        mediaController
+            .foreachMedia()(media => sink.write(JsonEncoder.encode(media)))
+            .onComplete {
+                case Success(n)                        =>
+                    sink.flush()
+                    response.end()
+                    log.atDebug.log(s"Exported $n media")
+                case Failure(e: CancellationException) =>
+                    log.atInfo.log(s"Media export stopped: ${e.getMessage}")
+                case Failure(e)                        =>
+                    log.atError.withCause(e).log("Media export failed")
+                    if response.headWritten() then
+                        // Part of the stream has already been sent. Drop the connection so that the client can
+                        // tell a truncated export from a complete one.
+                        response.reset()
+                    else
+                        response
+                            .setStatusCode(500)
+                            .putHeader("Content-Type", "application/json")
+                            .end(ServerError(s"Media export failed: ${e.getMessage}").stringify)
+            }
+
+/**
+ * Buffers NDJSON lines and writes them to the response, blocking the calling thread while the response's write
+ * queue is full. Must not be used from an event loop thread.
+ */
+private class ResponseSink(response: HttpServerResponse, chunkBytes: Int):
+
+    private var buffer = Buffer.buffer(chunkBytes)
+
+    def write(line: Array[Byte]): Unit =
+        buffer.appendBytes(line).appendString("\n")
+        if buffer.length() >= chunkBytes then flush()
+
+    def flush(): Unit =
+        if response.closed() then throw new CancellationException("Client disconnected")
+        if buffer.length() > 0 then
+            response.write(buffer)
+            buffer = Buffer.buffer(chunkBytes)
+        awaitDrain()
+
+    private def awaitDrain(): Unit =
+        if response.writeQueueFull() then
+            val latch = new CountDownLatch(1)
+            response.drainHandler(_ => latch.countDown())
+            // Re-check in case the queue drained before the handler was set. The wait is marked as blocking so
+            // that a ForkJoin-backed ExecutionContext can compensate for the parked thread.
+            blocking {
+                while response.writeQueueFull() && !response.closed() do latch.await(1, TimeUnit.SECONDS)
+            }
+
+object MediaExportHandler:
+
+    val Path        = "/v1/media/export"
+    val ContentType = "application/x-ndjson"
+    val ChunkBytes  = 64 * 1024
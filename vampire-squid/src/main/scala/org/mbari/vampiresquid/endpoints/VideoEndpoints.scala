@@ -18,9 +18,20 @@ package org.mbari.vampiresquid.endpoints
 
 import org.mbari.vampiresquid.Endpoints.videoController
 import org.mbari.vampiresquid.controllers.{VideoController, VideoSequenceController}
-import org.mbari.vampiresquid.domain.{BadRequest, ErrorMsg, LastUpdatedTime, Video, VideoUpdate}
+import org.mbari.vampiresquid.domain.{
+    BadRequest,
+    ErrorMsg,
+    LastUpdatedTime,
+    PageCursor,
+    ResourceVersion,
+    Video,
+    VideoUpdate
+}
 import org.mbari.vampiresquid.endpoints.CustomTapirJsonCirce.*
+import org.mbari.vampiresquid.etc.cache.CatalogIndex.Snapshot
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
 import org.mbari.vampiresquid.etc.jwt.JwtService
 import org.mbari.vampiresquid.etc.tapir.TapirCodecs
 import sttp.model.StatusCode
@@ -38,43 +49,48 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
 ) extends Endpoints:
 
     // GET v1/videos
-    val findAllVideos: Endpoint[Unit, Paging, ErrorMsg, List[Video], Any] =
+    val findAllVideos: Endpoint[Unit, CursorPaging, ErrorMsg, (List[Video], Option[String]), Any] =
         openEndpoint
             .get
             .in("v1" / "videos")
-            .in(paging)
-            .out(jsonBody[List[Video]])
+            .in(cursorPaging)
+            .out(jsonOrCborBody[List[Video]])
+            .out(nextCursor)
             .name("findAllVideos")
-            .description("Find all videos")
+            .description("Find all videos, ordered by start time")
             .tag("videos")
-    // TODO add limit and offset params
 
     val findAllVideosImpl: ServerEndpoint[Any, Future] =
         findAllVideos
             .serverLogic(page =>
-                handleErrors(controller.findAll(page.offset.getOrElse(0), page.limit.getOrElse(100)).map(_.toList))
+                handlePage[Video](page, v => PageCursor(v.start_timestamp.toString, v.uuid), PageCursor.isInstant)(
+                    (offset, limit) => controller.findAll(offset, limit),
+                    (cursor, limit) => controller.findAllAfter(cursor, limit)
+                )
             )
 
     // GET v1/videos/:uuid
-    val findOneVideo: Endpoint[Unit, UUID, ErrorMsg, Video, Any] =
-        openEndpoint
+    val findOneVideo: Endpoint[Unit, (Preconditions, UUID), ErrorMsg, (ResourceVersion, Video), Any] =
+        versionedEndpoint
             .get
             .in("v1" / "videos" / path[UUID]("uuid"))
-            .out(jsonBody[Video])
+            .out(versioned(jsonOrCborBody[Video]))
             .name("findOneVideo")
-            .description("Find a video by UUID")
+            .description("Find a video by UUID. Responds 304 when If-None-Match or If-Modified-Since is current")
             .tag("videos")
 
     val findOneVideoImpl: ServerEndpoint[Any, Future] =
         findOneVideo
-            .serverLogic(req => handleOption(controller.findByUUID(req)))
+            .serverLogic((preconditions, uuid) =>
+                handleVersioned(preconditions, controller.findVersion(uuid))(controller.findByUUID(uuid))
+            )
 
     // GET v1/videos/videosequence/:uuid
     val findVideoByVideoSequenceUuid: Endpoint[Unit, UUID, ErrorMsg, List[Video], Any] =
         openEndpoint
             .get
             .in("v1" / "videos" / "videosequence" / path[UUID]("videoSequenceUuid"))
-            .out(jsonBody[List[Video]])
+            .out(jsonOrCborBody[List[Video]])
             .name("findVideoByVideoSequenceUuid")
             .description("Find a videos by its video sequence UUID")
             .tag("videos")
@@ -88,7 +104,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         openEndpoint
             .get
             .in("v1" / "videos" / "videoreference" / path[UUID]("videoReferenceUuid"))
-            .out(jsonBody[Video])
+            .out(jsonOrCborBody[Video])
             .name("findVideoByVideoReferenceUuid")
             .description("Find a videos by its video reference UUID")
             .tag("videos")
@@ -127,7 +143,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         openEndpoint
             .get
             .in("v1" / "videos" / "name" / path[String]("name"))
-            .out(jsonBody[List[Video]])
+            .out(jsonOrCborBody[List[Video]])
             .name("findVideoByName")
             .description("Find a videos by its name")
             .tag("videos")
@@ -141,7 +157,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         openEndpoint
             .get
             .in("v1" / "videos" / "videosequence" / "name" / path[String]("videoSequenceName"))
-            .out(jsonBody[List[Video]])
+            .out(jsonOrCborBody[List[Video]])
             .name("findVideoByVideoSequenceByName")
             .description("Find videos by its video sequence name")
             .tag("videos")
@@ -158,6 +174,20 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
                 handleErrors(future)
             )
 
+    // GET v1/videos/names
+    val findAllVideoNames: Endpoint[Unit, Option[String], ErrorMsg, Snapshot[String], Any] =
+        conditionalEndpoint
+            .get
+            .in("v1" / "videos" / "names")
+            .out(namesSnapshot)
+            .name("findAllVideoNames")
+            .description("Find all video names. Responds 304 when If-None-Match has the current ETag")
+            .tag("videos")
+
+    val findAllVideoNamesImpl: ServerEndpoint[Any, Future] =
+        findAllVideoNames
+            .serverLogic { ifNoneMatch => handleConditional(ifNoneMatch, controller.findAllNamesSnapshot())(_.etag) }
+
     // GET v1/videos/names/videosequence/:name
     val findVideoNamesByVideoSequenceName =
         openEndpoint
@@ -180,7 +210,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         openEndpoint
             .get
             .in("v1" / "videos" / "timestamp" / path[Instant]("timestamp")(using TapirCodecs.instantCodec))
-            .out(jsonBody[List[Video]])
+            .out(jsonOrCborBody[List[Video]])
             .name("findVideoByTimestamp")
             .description("Find videos by its timestamp")
             .tag("videos")
@@ -200,7 +230,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
                     TapirCodecs.instantCodec
                 )
             )
-            .out(jsonBody[List[Video]])
+            .out(jsonOrCborBody[List[Video]])
             .name("findVideoByTimestampRange")
             .description("Find videos by its timestamp range")
             .tag("videos")
@@ -217,7 +247,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
             .post
             .in("v1" / "videos")
             .in(formBody[Map[String, String]])
-            .out(jsonBody[Video])
+            .out(jsonOrCborBody[Video])
             .name("createOneVideo")
             .description(
                 "Create a video. Required form fields: name, video_sequence_uuid, start_timestamp (or start), duration_millis. Optional fields: description"
@@ -273,7 +303,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
             .put
             .in("v1" / "videos" / path[UUID]("uuid"))
             .in(oneOfBody(formBody[VideoUpdate], jsonBody[VideoUpdate]))
-            .out(jsonBody[Video])
+            .out(jsonOrCborBody[Video])
             .name("updateVideo")
             .description(
                 "Update a video by UUID. Updateable fields: name, video_sequence_uuid, start_timestamp (or start), duration_millis, description"
@@ -305,6 +335,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         findVideoByVideoReferenceUuid,
         findLastUpdateForVideo,
         findVideoByName,
+        findAllVideoNames,
         findVideoNamesByVideoSequenceName,
         findVideoByTimestampRange,
         findVideoByTimestamp,
@@ -321,6 +352,7 @@ class VideoEndpoints(controller: VideoController, videoSequenceController: Video
         findVideoByVideoReferenceUuidImpl,
         findLastUpdateForVideoImpl,
         findVideoByNameImpl,
+        findAllVideoNamesImpl,
         findVideoNamesByVideoSequenceNameImpl,
         findVideoByTimestampRangeImpl,
         findVideoByTimestampImpl,
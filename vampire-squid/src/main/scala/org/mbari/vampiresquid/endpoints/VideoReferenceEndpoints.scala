@@ -20,12 +20,15 @@ import org.mbari.vampiresquid.controllers.VideoReferenceController
 import org.mbari.vampiresquid.domain.{
     ErrorMsg,
     LastUpdatedTime,
+    PageCursor,
     VideoReference,
     VideoReferenceCreate,
     VideoReferenceUpdate
 }
 import org.mbari.vampiresquid.endpoints.CustomTapirJsonCirce.*
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
 import org.mbari.vampiresquid.etc.jwt.JwtService
 import org.mbari.vampiresquid.etc.tapir.TapirCodecs.given
 import sttp.model.StatusCode
@@ -43,34 +46,41 @@ class VideoReferenceEndpoints(controller: VideoReferenceController)(using ec: Ex
     private val hex = HexFormat.of()
 
     // GET "v1/videoreferences"
-    val findAllVideoReferences: Endpoint[Unit, Paging, ErrorMsg, List[VideoReference], Any] =
+    val findAllVideoReferences: Endpoint[Unit, CursorPaging, ErrorMsg, (List[VideoReference], Option[String]), Any] =
         openEndpoint
             .get
             .in("v1" / "videoreferences")
-            .in(paging)
-            .out(jsonBody[List[VideoReference]])
+            .in(cursorPaging)
+            .out(jsonOrCborBody[List[VideoReference]])
+            .out(nextCursor)
             .name("findAllVideoReferences")
-            .description("Find all video references")
+            .description("Find all video references, ordered by URI")
             .tag("video references")
 
     val findAllVideoReferencesImpl: ServerEndpoint[Any, Future] =
         findAllVideoReferences.serverLogic { page =>
-            handleErrors(controller.findAll(page.offset.getOrElse(0), page.limit.getOrElse(100)).map(_.toList))
+            handlePage[VideoReference](page, v => PageCursor(v.uri.toString, v.uuid), PageCursor.isUri)(
+                (offset, limit) => controller.findAll(offset, limit),
+                (cursor, limit) => controller.findAllAfter(cursor, limit)
+            )
         }
 
     // GET "v1/videoreferences/:uuid"
-    val findOneVideoReference: Endpoint[Unit, UUID, ErrorMsg, VideoReference, Any] =
-        openEndpoint
+    val findOneVideoReference
+        : Endpoint[Unit, (Preconditions, UUID), ErrorMsg, (ResourceVersion, VideoReference), Any] =
+        versionedEndpoint
             .get
             .in("v1" / "videoreferences" / path[UUID]("uuid"))
-            .out(jsonBody[VideoReference])
+            .out(versioned(jsonOrCborBody[VideoReference]))
             .name("findOneVideoReference")
-            .description("Find a video reference by UUID")
+            .description(
+                "Find a video reference by UUID. Responds 304 when If-None-Match or If-Modified-Since is current"
+            )
             .tag("video references")
 
     val findOneVideoReferenceImpl: ServerEndpoint[Any, Future] =
-        findOneVideoReference.serverLogic { uuid =>
-            handleOption(controller.findByUUID(uuid))
+        findOneVideoReference.serverLogic { (preconditions, uuid) =>
+            handleVersioned(preconditions, controller.findVersion(uuid))(controller.findByUUID(uuid))
         }
 
     // GET "v1/videoreferences/lastupdate/:uuid"
@@ -95,7 +105,7 @@ class VideoReferenceEndpoints(controller: VideoReferenceController)(using ec: Ex
         openEndpoint
             .get
             .in("v1" / "videoreferences" / "uri" / path[URI]("uri"))
-            .out(jsonBody[VideoReference])
+            .out(jsonOrCborBody[VideoReference])
             .name("findVideoReferenceByUri")
             .description("Find a video reference by URI")
             .tag("video references")
@@ -125,7 +135,7 @@ class VideoReferenceEndpoints(controller: VideoReferenceController)(using ec: Ex
         openEndpoint
             .get
             .in("v1" / "videoreferences" / "sha512" / path[String]("sha512"))
-            .out(jsonBody[VideoReference])
+            .out(jsonOrCborBody[VideoReference])
             .name("findVideoReferenceBySha512")
             .description("Find a video reference by SHA512")
             .tag("video references")
@@ -157,7 +167,7 @@ class VideoReferenceEndpoints(controller: VideoReferenceController)(using ec: Ex
             .post
             .in("v1" / "videoreferences")
             .in(oneOfBody(formBody[VideoReferenceCreate], jsonBody[VideoReferenceCreate]))
-            .out(jsonBody[VideoReference])
+            .out(jsonOrCborBody[VideoReference])
             .name("createOneVideoReference")
             .description("Create a video reference")
             .tag("video references")
@@ -189,7 +199,7 @@ class VideoReferenceEndpoints(controller: VideoReferenceController)(using ec: Ex
             .put
             .in("v1" / "videoreferences" / path[UUID]("uuid"))
             .in(oneOfBody(formBody[VideoReferenceUpdate], jsonBody[VideoReferenceUpdate]))
-            .out(jsonBody[VideoReference])
+            .out(jsonOrCborBody[VideoReference])
             .name("update")
             .description("Update a video reference by UUID")
             .tag("video references")
@@ -20,12 +20,17 @@ import org.mbari.vampiresquid.controllers.VideoSequenceController
 import org.mbari.vampiresquid.domain.{
     ErrorMsg,
     LastUpdatedTime,
+    PageCursor,
+    ResourceVersion,
     VideoSequence,
     VideoSequenceCreate,
     VideoSequenceUpdate
 }
 import org.mbari.vampiresquid.endpoints.CustomTapirJsonCirce.*
+import org.mbari.vampiresquid.etc.cache.CatalogIndex.Snapshot
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
 import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
 import org.mbari.vampiresquid.etc.jwt.JwtService
 import org.mbari.vampiresquid.etc.tapir.TapirCodecs
 import sttp.model.StatusCode
@@ -41,20 +46,24 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
     extends Endpoints:
 
     // GET v1/videosequences
-    val findAllVideoSequences: Endpoint[Unit, Paging, ErrorMsg, List[VideoSequence], Any] =
+    val findAllVideoSequences: Endpoint[Unit, CursorPaging, ErrorMsg, (List[VideoSequence], Option[String]), Any] =
         openEndpoint
             .get
             .in("v1" / "videosequences")
-            .in(paging)
-            .out(jsonBody[List[VideoSequence]])
+            .in(cursorPaging)
+            .out(jsonOrCborBody[List[VideoSequence]])
+            .out(nextCursor)
             .name("findAllVideoSequences")
-            .description("Find all video sequences")
+            .description("Find all video sequences, ordered by name")
             .tag("video sequences")
 
     val findAllVideoSequencesImpl: ServerEndpoint[Any, Future] =
         findAllVideoSequences
             .serverLogic { page =>
-                handleErrors(controller.findAll(page.offset.getOrElse(0), page.limit.getOrElse(100)))
+                handlePage[VideoSequence](page, v => PageCursor(v.name, v.uuid))(
+                    (offset, limit) => controller.findAll(offset, limit),
+                    (cursor, limit) => controller.findAllAfter(cursor, limit)
+                )
             }
             
     val findEmptyVideoSequenceNames: Endpoint[Unit, Unit, ErrorMsg, List[String], Any] = 
@@ -102,7 +111,7 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
         openEndpoint
             .get
             .in("v1" / "videosequences" / "name" / path[String]("name"))
-            .out(jsonBody[VideoSequence])
+            .out(jsonOrCborBody[VideoSequence])
             .name("findVideoSequenceByName")
             .description("Find video sequences by name")
             .tag("video sequences")
@@ -111,24 +120,29 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
         findVideoSequenceByName
             .serverLogic { req => handleOption(controller.findByName(req)) }
 
-    val findVideoSequenceByUuid: Endpoint[Unit, UUID, ErrorMsg, VideoSequence, Any] =
-        openEndpoint
+    val findVideoSequenceByUuid
+        : Endpoint[Unit, (Preconditions, UUID), ErrorMsg, (ResourceVersion, VideoSequence), Any] =
+        versionedEndpoint
             .get
             .in("v1" / "videosequences" / path[UUID]("uuid"))
-            .out(jsonBody[VideoSequence])
+            .out(versioned(jsonOrCborBody[VideoSequence]))
             .name("findVideoSequenceByUuid")
-            .description("Find video sequences by UUID")
+            .description(
+                "Find video sequences by UUID. Responds 304 when If-None-Match or If-Modified-Since is current"
+            )
             .tag("video sequences")
 
     val findVideoSequenceByUuidImpl: ServerEndpoint[Any, Future] =
         findVideoSequenceByUuid
-            .serverLogic { req => handleOption(controller.findByUUID(req)) }
+            .serverLogic { (preconditions, uuid) =>
+                handleVersioned(preconditions, controller.findVersion(uuid))(controller.findByUUID(uuid))
+            }
 
     val findVideoSequenceByVideoReferenceUuid: Endpoint[Unit, UUID, ErrorMsg, VideoSequence, Any] =
         openEndpoint
             .get
             .in("v1" / "videosequences" / "videoreference" / path[UUID]("videoreferenceuuid"))
-            .out(jsonBody[VideoSequence])
+            .out(jsonOrCborBody[VideoSequence])
             .name("findVideoSequenceByVideoReferenceUuid")
             .description("Find video sequences by video reference UUID")
             .tag("video sequences")
@@ -138,18 +152,18 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
             .serverLogic { req => handleOption(controller.findByVideoReferenceUUID(req)) }
 
     // GET v1/videosequences/names
-    val findAllVideoSequenceNames: Endpoint[Unit, Unit, ErrorMsg, List[String], Any] =
-        openEndpoint
+    val findAllVideoSequenceNames: Endpoint[Unit, Option[String], ErrorMsg, Snapshot[String], Any] =
+        conditionalEndpoint
             .get
             .in("v1" / "videosequences" / "names")
-            .out(jsonBody[List[String]])
+            .out(namesSnapshot)
             .name("findAllVideoSequenceNames")
-            .description("Find all video sequence names")
+            .description("Find all video sequence names. Responds 304 when If-None-Match has the current ETag")
             .tag("video sequences")
 
     val findAllVideoSequenceNamesImpl: ServerEndpoint[Any, Future] =
         findAllVideoSequenceNames
-            .serverLogic { _ => handleErrors(controller.findAllNames().map(_.toList)) }
+            .serverLogic { ifNoneMatch => handleConditional(ifNoneMatch, controller.findAllNamesSnapshot())(_.etag) }
 
     // GET v1/videosequences/camera/:cameraid
     val findVideoSequenceNamesByCameraId: Endpoint[Unit, String, ErrorMsg, List[String], Any] =
@@ -166,25 +180,27 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
             .serverLogic { req => handleErrors(controller.findAllNamesByCameraID(req).map(_.toList)) }
 
     // GET v1/videosequences/cameras
-    val findAllCameraIds: Endpoint[Unit, Unit, ErrorMsg, List[String], Any] =
-        openEndpoint
+    val findAllCameraIds: Endpoint[Unit, Option[String], ErrorMsg, Snapshot[String], Any] =
+        conditionalEndpoint
             .get
             .in("v1" / "videosequences" / "cameras")
-            .out(jsonBody[List[String]])
+            .out(namesSnapshot)
             .name("findAllCameraIds")
-            .description("Find all camera ids")
+            .description("Find all camera ids. Responds 304 when If-None-Match has the current ETag")
             .tag("video sequences")
 
     val findAllCameraIdsImpl: ServerEndpoint[Any, Future] =
         findAllCameraIds
-            .serverLogic { _ => handleErrors(controller.findAllCameraIDs().map(_.toList)) }
+            .serverLogic { ifNoneMatch =>
+                handleConditional(ifNoneMatch, controller.findAllCameraIDsSnapshot())(_.etag)
+            }
 
     // GET v1/videosequences/camera/:cameraid
     val findVideoSequencesByCameraId: Endpoint[Unit, String, ErrorMsg, List[VideoSequence], Any] =
         openEndpoint
             .get
             .in("v1" / "videosequences" / "camera" / path[String]("cameraid"))
-            .out(jsonBody[List[VideoSequence]])
+            .out(jsonOrCborBody[List[VideoSequence]])
             .name("findVideoSequencesByCameraId")
             .description("Find video sequences by camera id")
             .tag("video sequences")
@@ -203,7 +219,7 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
                     TapirCodecs.instantCodec
                 )
             )
-            .out(jsonBody[List[VideoSequence]])
+            .out(jsonOrCborBody[List[VideoSequence]])
             .name("findVideoSequencesByCameraIdAndTimestamp")
             .description("Find video sequences by camera id and timestamp")
             .tag("video sequences")
@@ -220,7 +236,7 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
             .post
             .in("v1" / "videosequences")
             .in(oneOfBody(formBody[VideoSequenceCreate], jsonBody[VideoSequenceCreate]))
-            .out(jsonBody[VideoSequence])
+            .out(jsonOrCborBody[VideoSequence])
             .name("createOneVideoSequence")
             .description("Create a video sequence")
             .tag("video sequences")
@@ -236,7 +252,7 @@ class VideoSequenceEndpoints(controller: VideoSequenceController)(using ec: Exec
             .put
             .in("v1" / "videosequences" / path[UUID]("uuid"))
             .in(oneOfBody(formBody[VideoSequenceUpdate], jsonBody[VideoSequenceUpdate]))
-            .out(jsonBody[VideoSequence])
+            .out(jsonOrCborBody[VideoSequence])
             .name("updateOneVideoSequence")
             .description("Update a video sequence")
             .tag("video sequences")
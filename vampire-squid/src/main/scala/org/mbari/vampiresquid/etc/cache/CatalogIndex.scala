@@ -0,0 +1,169 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cache
+
+import io.prometheus.metrics.core.metrics.CounterWithCallback
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import org.mbari.vampiresquid.CatalogIndexParams
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.repository.jpa.JPADAOFactory
+
+import java.time.{Duration, Instant}
+import java.util.concurrent.atomic.{AtomicLong, AtomicReference}
+import scala.collection.immutable.{SortedSet, TreeMap, TreeSet}
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Success
+import scala.util.control.NonFatal
+import scala.util.hashing.MurmurHash3
+
+/**
+ * Holds the catalog-wide lists that UI dropdowns read constantly (video sequence names, camera ids and video names)
+ * as an immutable, sorted snapshot in memory.
+ *
+ * Creates made through the controllers are added to the snapshot as they commit. Any other write (an update, move or
+ * delete) marks it stale, and the next read reloads it with a single transaction. Writes made by other instances of
+ * the service are picked up when the snapshot expires after `ttl`.
+ */
+class CatalogIndex(params: CatalogIndexParams):
+
+    import CatalogIndex.*
+
+    private case class Entry(catalog: Catalog, loadedAt: Long, stale: Boolean)
+
+    private val ttlNanos = params.ttl.toNanos
+    private val current  = new AtomicReference[Option[Entry]](None)
+    private val loading  = new AtomicReference[Option[Future[Catalog]]](None)
+    private val writes   = new AtomicLong(0)
+    private val loads    = new AtomicLong(0)
+
+    def enabled: Boolean = params.enabled
+
+    /**
+     * @param load
+     *   Reads the whole catalog. Concurrent callers share a single load.
+     * @return
+     *   The current snapshot. It is loaded if there is none yet, or if it is stale or expired. When the index is
+     *   disabled, `load` is called every time.
+     */
+    def getOrLoad(load: => Future[Catalog])(using ec: ExecutionContext): Future[Catalog] =
+        if !params.enabled then load
+        else
+            current.get() match
+                case Some(e) if !e.stale && System.nanoTime() - e.loadedAt < ttlNanos => Future.successful(e.catalog)
+                case _                                                                => reload(load)
+
+    private def reload(load: => Future[Catalog])(using ec: ExecutionContext): Future[Catalog] =
+        val promise = Promise[Catalog]()
+        if loading.compareAndSet(None, Some(promise.future)) then
+            loads.incrementAndGet()
+            val writesBefore = writes.get()
+            // A load that throws instead of failing its future must still complete the promise and clear `loading`
+            val loaded       =
+                try load
+                catch case NonFatal(e) => Future.failed(e)
+            val f            = loaded
+                .andThen:
+                    case Success(catalog) =>
+                        // A write that committed while loading may be missing, so use the result only this once
+                        val stale = writes.get() != writesBefore
+                        current.set(Some(Entry(catalog, System.nanoTime(), stale)))
+                .andThen(_ => loading.set(None))
+            promise.completeWith(f).future
+        else loading.get().getOrElse(getOrLoad(load))
+
+    /** Adds the video sequence, camera and video of newly registered media */
+    def mediaCreated(media: Media): Unit = mediaCreated(Seq(media))
+
+    def mediaCreated(media: Iterable[Media]): Unit =
+        if media.nonEmpty then
+            update(c =>
+                c.copy(
+                    videoSequenceNames = c.videoSequenceNames ++ media.flatMap(_.video_sequence_name),
+                    cameraIds = c.cameraIds ++ media.flatMap(_.camera_id),
+                    videos = c.videos ++ media.flatMap(m => m.video_name.zip(m.start_timestamp))
+                )
+            )
+
+    def videoSequenceCreated(name: String, cameraId: String): Unit =
+        update(c => c.copy(videoSequenceNames = c.videoSequenceNames + name, cameraIds = c.cameraIds + cameraId))
+
+    def videoCreated(name: String, start: Instant): Unit =
+        update(c => c.copy(videos = c.videos + (name -> start)))
+
+    /** Call after any write that may rename or remove a video sequence, camera or video */
+    def invalidate(): Unit =
+        writes.incrementAndGet()
+        current.updateAndGet(_.map(_.copy(stale = true)))
+
+    private def update(f: Catalog => Catalog): Unit =
+        if params.enabled then
+            writes.incrementAndGet()
+            current.updateAndGet(_.map(e => e.copy(catalog = f(e.catalog))))
+
+    /** Registers `vampiresquid_catalog_index_loads`, the number of times the catalog was read from the database */
+    def register(registry: PrometheusRegistry): Unit =
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_catalog_index_loads")
+            .help("Number of times the catalog index was loaded from the database")
+            .callback(cb => cb.call(loads.get().toDouble))
+            .register(registry)
+
+object CatalogIndex:
+
+    val Disabled = new CatalogIndex(CatalogIndexParams(enabled = false, ttl = Duration.ZERO))
+
+    /**
+     * Reads the whole catalog in one transaction. It reads from the primary so that a create that just committed is
+     * never missing from the snapshot.
+     */
+    def load(daoFactory: JPADAOFactory)(using ec: ExecutionContext): Future[Catalog] =
+        val dao = daoFactory.newVideoSequenceDAO()
+        val f   = dao.runReadOnlyTransaction(d =>
+            val videos = daoFactory.newVideoDAO(d).findAllNamesAndTimestamps()
+            Catalog(
+                TreeSet.from(d.findAllNames()),
+                TreeSet.from(d.findAllCameraIDs()),
+                TreeMap.from(videos)
+            )
+        )
+        f.onComplete(_ => dao.close())
+        f
+
+    /**
+     * An immutable list with a strong ETag. The ETag is computed from the values, so every instance of the service
+     * gives the same list the same tag.
+     */
+    final case class Snapshot[A](values: List[A]):
+        lazy val etag: String = "\"%x-%08x\"".format(values.size, MurmurHash3.seqHash(values))
+
+    /**
+     * @param videos
+     *   The start of each video, by video name
+     */
+    final case class Catalog(
+        videoSequenceNames: SortedSet[String] = TreeSet.empty,
+        cameraIds: SortedSet[String] = TreeSet.empty,
+        videos: TreeMap[String, Instant] = TreeMap.empty
+    ):
+        lazy val videoSequenceNamesSnapshot: Snapshot[String] = Snapshot(videoSequenceNames.toList)
+        lazy val cameraIdsSnapshot: Snapshot[String]          = Snapshot(cameraIds.toList)
+        lazy val videoNamesSnapshot: Snapshot[String]         = Snapshot(videos.keys.toList)
+
+        /** Video names and starts, ordered by start */
+        lazy val videoNamesAndStartsSnapshot: Snapshot[(String, Instant)] =
+            Snapshot(videos.toList.sortBy(_._2))
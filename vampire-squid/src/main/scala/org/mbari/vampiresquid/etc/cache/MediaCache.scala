@@ -0,0 +1,243 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cache
+
+import com.github.benmanes.caffeine.cache.{Cache, Caffeine}
+import io.prometheus.metrics.core.metrics.{CounterWithCallback, GaugeWithCallback}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import org.mbari.vampiresquid.MediaCacheParams
+import org.mbari.vampiresquid.domain.{Media, ResourceVersion}
+
+import java.net.URI
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+import java.util.{HexFormat, UUID}
+import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.CollectionConverters.*
+import scala.util.Success
+
+/**
+ * A bounded, in-process, read-through cache of [[Media]]. Each media is stored under its video reference UUID, its URI
+ * and its sha512 so that a lookup by any one of them warms the others.
+ *
+ * A media looked up by video reference UUID for a versioned response is stored with its version (see
+ * [[getOrLoadVersioned]]), so that the ETag sent with a cached media is the one it was read with.
+ *
+ * Only found media are cached. Creating new media therefore can not make an entry stale, but any update, move or
+ * delete must call one of the `invalidate` methods after the transaction commits. The cache keys are also indexed by
+ * the video reference, video and video sequence UUIDs of their media, so an invalidation only visits the entries it
+ * removes.
+ *
+ * @param params
+ *   The size, TTL and on/off switch for the cache
+ */
+class MediaCache(params: MediaCacheParams):
+
+    /**
+     * The keys stored for the media of each video reference, video and video sequence UUID. A key may stay indexed a
+     * little longer than the entry it was added for, which at worst evicts an entry early.
+     */
+    private val index = new ConcurrentHashMap[UUID, java.util.Set[MediaCache.Key]]()
+
+    private val cache: Cache[MediaCache.Key, MediaCache.Entry] = Caffeine
+        .newBuilder()
+        .maximumSize(params.maxSize)
+        .expireAfterWrite(params.ttl)
+        .recordStats()
+        .removalListener[MediaCache.Key, MediaCache.Entry]((key, entry, _) =>
+            if key != null && entry != null then unindex(key, entry.media)
+        )
+        .build[MediaCache.Key, MediaCache.Entry]()
+
+    /**
+     * Bumped on every invalidation. A load that started before an invalidation will not be cached, otherwise it could
+     * put back a value that was read before the write committed.
+     */
+    private val generation = new AtomicLong(0)
+
+    def enabled: Boolean = params.enabled
+
+    /**
+     * Look up a media in the cache, falling back to `load` on a miss.
+     *
+     * @param key
+     *   The key to look up
+     * @param load
+     *   How to fetch the media from the database
+     * @return
+     *   The media, if found in the cache or the database
+     */
+    def getOrLoad(key: MediaCache.Key)(load: => Future[Option[Media]])(using
+        ec: ExecutionContext
+    ): Future[Option[Media]] =
+        if !enabled then load
+        else
+            Option(cache.getIfPresent(key)) match
+                case Some(entry) => Future.successful(Some(entry.media))
+                case None        =>
+                    val startGeneration = generation.get()
+                    load.andThen:
+                        case Success(Some(media)) => store(MediaCache.Entry(media, None), startGeneration)
+
+    /**
+     * Look up the media of a video reference for a response sent with its version. The cached media is only used if
+     * it was stored with `version`, the current version of the media. Otherwise `load` reads the media and its
+     * version together and both are cached.
+     *
+     * @param videoReferenceUuid
+     *   The video reference of the media
+     * @param version
+     *   The current version of the media
+     * @param load
+     *   How to fetch the media and its version from the database
+     * @return
+     *   The media and the version it was read with
+     */
+    def getOrLoadVersioned(videoReferenceUuid: UUID, version: ResourceVersion)(
+        load: => Future[Option[(ResourceVersion, Media)]]
+    )(using ec: ExecutionContext): Future[Option[(ResourceVersion, Media)]] =
+        if !enabled then load
+        else
+            val key = MediaCache.Key.VideoReferenceUuid(videoReferenceUuid)
+            Option(cache.getIfPresent(key)).filter(_.version.contains(version)) match
+                case Some(entry) => Future.successful(Some(version -> entry.media))
+                case None        =>
+                    val startGeneration = generation.get()
+                    load.andThen:
+                        case Success(Some((v, media))) => store(MediaCache.Entry(media, Some(v)), startGeneration)
+
+    /** Stores a loaded entry unless an invalidation ran since `startGeneration`, when the load started */
+    private def store(entry: MediaCache.Entry, startGeneration: Long): Unit =
+        if generation.get() == startGeneration then
+            putEntry(entry)
+            // An invalidation that ran while the entries were being added may not have seen them
+            if generation.get() != startGeneration then
+                cache.invalidateAll(MediaCache.keysFor(entry.media).asJava)
+
+    def put(media: Media): Unit = putEntry(MediaCache.Entry(media, None))
+
+    private def putEntry(entry: MediaCache.Entry): Unit =
+        if enabled then
+            val media = entry.media
+            val keys  = MediaCache.keysFor(media)
+            keys.foreach(key => cache.put(key, entry))
+            // Indexed after the put so that the removal of an older entry under the same key can't unindex this one
+            for uuid <- MediaCache.parentsOf(media) do
+                index.compute(
+                    uuid,
+                    (_, existing) =>
+                        val indexed =
+                            if existing == null then ConcurrentHashMap.newKeySet[MediaCache.Key]() else existing
+                        indexed.addAll(keys.asJava)
+                        indexed
+                )
+
+    def invalidateVideoReference(uuid: UUID): Unit = invalidateParents(Seq(uuid))
+
+    def invalidateVideo(uuid: UUID): Unit = invalidateParents(Seq(uuid))
+
+    def invalidateVideoSequence(uuid: UUID): Unit = invalidateParents(Seq(uuid))
+
+    /**
+     * Remove every entry that shares a video reference, video or video sequence with the given media.
+     */
+    def invalidate(media: Media): Unit = invalidateParents(MediaCache.parentsOf(media))
+
+    def invalidateAll(): Unit =
+        generation.incrementAndGet()
+        cache.invalidateAll()
+        index.clear()
+
+    private def invalidateParents(uuids: Seq[UUID]): Unit =
+        if enabled then
+            generation.incrementAndGet()
+            for uuid <- uuids do Option(index.remove(uuid)).foreach(keys => cache.invalidateAll(keys))
+
+    /**
+     * Called by the cache after an entry is removed for any reason. The key stays indexed under a UUID only while the
+     * cache holds a media of that video reference, video or video sequence under it.
+     */
+    private def unindex(key: MediaCache.Key, media: Media): Unit =
+        for uuid <- MediaCache.parentsOf(media) do
+            index.computeIfPresent(
+                uuid,
+                (_, indexed) =>
+                    val current = cache.asMap().get(key)
+                    if current == null || !MediaCache.parentsOf(current.media).contains(uuid) then indexed.remove(key)
+                    if indexed.isEmpty then null else indexed
+            )
+
+    def size: Long = cache.estimatedSize()
+
+    /**
+     * Export the hit, miss and eviction counts of this cache to prometheus
+     *
+     * @param registry
+     *   The registry used to scrape the metrics (e.g. `Endpoints.prometheusMetrics.registry`)
+     */
+    def register(registry: PrometheusRegistry): Unit =
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_media_cache_hits")
+            .help("Number of media lookups served from the cache")
+            .callback(cb => cb.call(cache.stats().hitCount().toDouble))
+            .register(registry)
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_media_cache_misses")
+            .help("Number of media lookups that were not found in the cache")
+            .callback(cb => cb.call(cache.stats().missCount().toDouble))
+            .register(registry)
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_media_cache_evictions")
+            .help("Number of media evicted from the cache because of its size or TTL")
+            .callback(cb => cb.call(cache.stats().evictionCount().toDouble))
+            .register(registry)
+        GaugeWithCallback
+            .builder()
+            .name("vampiresquid_media_cache_size")
+            .help("Approximate number of entries in the media cache")
+            .callback(cb => cb.call(cache.estimatedSize().toDouble))
+            .register(registry)
+
+object MediaCache:
+
+    private val hex = HexFormat.of()
+
+    /** A cached media, with its version when it was read for a versioned response */
+    final case class Entry(media: Media, version: Option[ResourceVersion])
+
+    enum Key:
+        case VideoReferenceUuid(uuid: UUID)
+        case Uri(uri: URI)
+        case Sha512(hex: String)
+
+    object Key:
+        def sha512(bytes: Array[Byte]): Key = Key.Sha512(hex.formatHex(bytes))
+
+    /** A cache that never stores anything. Used when no cache is configured */
+    val Disabled = new MediaCache(MediaCacheParams(enabled = false, maxSize = 0, ttl = java.time.Duration.ZERO))
+
+    /** The UUIDs that the entries of a media are indexed under */
+    def parentsOf(media: Media): Seq[UUID] =
+        media.video_reference_uuid.toSeq ++ media.video_uuid.toSeq ++ media.video_sequence_uuid.toSeq
+
+    def keysFor(media: Media): Seq[Key] =
+        media.video_reference_uuid.map(Key.VideoReferenceUuid(_)).toSeq ++
+            media.uri.map(Key.Uri(_)).toSeq ++
+            media.sha512.map(Key.sha512).toSeq
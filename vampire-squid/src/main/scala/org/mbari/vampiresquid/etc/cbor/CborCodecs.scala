@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cbor
+
+import org.mbari.vampiresquid.domain.{CameraTimestampMedia, Media, Sha512Media, Video, VideoReference, VideoSequence}
+
+/**
+ * CBOR encoders for the responses that bulk clients read. The field names are those of the JSON, but UUIDs (tag 37)
+ * and checksums are raw bytes and timestamps are seconds since the epoch (tag 1). Absent fields are left out, as they
+ * are in the JSON.
+ */
+object CborCodecs:
+
+    given CborEncoder[Media] = (w, m) =>
+        w.startMap()
+            .optionalField("video_sequence_uuid", m.video_sequence_uuid)
+            .optionalField("video_uuid", m.video_uuid)
+            .optionalField("video_reference_uuid", m.video_reference_uuid)
+            .optionalField("video_sequence_name", m.video_sequence_name)
+            .optionalField("camera_id", m.camera_id)
+            .optionalField("video_name", m.video_name)
+            .optionalField("uri", m.uri)
+            .optionalField("start_timestamp", m.start_timestamp)
+            .optionalField("duration_millis", m.duration_millis)
+            .optionalField("container", m.container)
+            .optionalField("video_codec", m.video_codec)
+            .optionalField("audio_codec", m.audio_codec)
+            .optionalField("width", m.width)
+            .optionalField("height", m.height)
+            .optionalField("frame_rate", m.frame_rate)
+            .optionalField("size_bytes", m.size_bytes)
+            .optionalField("description", m.description)
+            .optionalField("video_sequence_description", m.video_sequence_description)
+            .optionalField("video_description", m.video_description)
+            .optionalField("sha512", m.sha512)
+            .endMap()
+
+    given CborEncoder[VideoReference] = (w, v) =>
+        w.startMap()
+            .field("uuid", v.uuid)
+            .field("uri", v.uri)
+            .optionalField("container", v.container)
+            .optionalField("video_codec", v.video_codec)
+            .optionalField("audio_codec", v.audio_codec)
+            .optionalField("width", v.width)
+            .optionalField("height", v.height)
+            .optionalField("frame_rate", v.frame_rate)
+            .optionalField("size_bytes", v.size_bytes)
+            .optionalField("sha512", v.sha512)
+            .optionalField("description", v.description)
+            .optionalField("last_updated_time", v.last_updated_time)
+            .endMap()
+
+    given CborEncoder[Video] = (w, v) =>
+        w.startMap()
+            .field("uuid", v.uuid)
+            .field("name", v.name)
+            .field("start_timestamp", v.start_timestamp)
+            .optionalField("duration_millis", v.duration_millis)
+            .optionalField("description", v.description)
+            .optionalField("last_updated_time", v.last_updated_time)
+            .field("video_references", v.video_references)
+            .endMap()
+
+    given CborEncoder[VideoSequence] = (w, v) =>
+        w.startMap()
+            .field("uuid", v.uuid)
+            .field("name", v.name)
+            .field("camera_id", v.camera_id)
+            .optionalField("description", v.description)
+            .optionalField("last_updated_time", v.last_updated_time)
+            .field("videos", v.videos)
+            .endMap()
+
+    given CborEncoder[Sha512Media] = (w, s) =>
+        w.startMap()
+            .field("sha512", s.sha512)
+            .field("media", s.media)
+            .endMap()
+
+    given CborEncoder[CameraTimestampMedia] = (w, c) =>
+        w.startMap()
+            .field("camera_id", c.camera_id)
+            .field("timestamp", c.timestamp)
+            .field("media", c.media)
+            .endMap()
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cbor
+
+import java.net.URI
+import java.time.Instant
+import java.util.UUID
+
+/** Writes a value as a CBOR data item. See [[CborCodecs]] for the domain classes */
+trait CborEncoder[A]:
+    def write(writer: CborWriter, value: A): Unit
+
+object CborEncoder:
+
+    def encode[A](value: A)(using encoder: CborEncoder[A]): Array[Byte] =
+        val writer = CborWriter()
+        encoder.write(writer, value)
+        writer.toByteArray
+
+    given CborEncoder[String]      = (w, v) => w.string(v)
+    given CborEncoder[Int]         = (w, v) => w.long(v)
+    given CborEncoder[Long]        = (w, v) => w.long(v)
+    given CborEncoder[Double]      = (w, v) => w.double(v)
+    given CborEncoder[Array[Byte]] = (w, v) => w.bytes(v)
+    given CborEncoder[UUID]        = (w, v) => w.uuid(v)
+    given CborEncoder[Instant]     = (w, v) => w.instant(v)
+    given CborEncoder[URI]         = (w, v) => w.string(v.toString)
+
+    given [A](using encoder: CborEncoder[A]): CborEncoder[List[A]] = (w, vs) =>
+        w.startArray(vs.size)
+        vs.foreach(v => encoder.write(w, v))
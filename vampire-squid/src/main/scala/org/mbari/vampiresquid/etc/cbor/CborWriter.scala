@@ -0,0 +1,173 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cbor
+
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.{Arrays, UUID}
+
+/**
+ * Writes CBOR (RFC 8949) into a growable byte array. Integers and lengths use the shortest form, so small numbers
+ * cost a single byte. Objects are written as indefinite-length maps so that absent fields can be skipped without
+ * counting them first.
+ *
+ * {{{
+ * val bytes = CborWriter().startMap().field("name", "Doc Ricketts 1472").endMap().toByteArray
+ * }}}
+ */
+final class CborWriter(initialSize: Int = 256):
+
+    import CborWriter.*
+
+    private var buffer = new Array[Byte](initialSize)
+    private var size   = 0
+
+    def toByteArray: Array[Byte] = Arrays.copyOf(buffer, size)
+
+    def startMap(): CborWriter =
+        put(StartIndefiniteMap)
+        this
+
+    def endMap(): CborWriter =
+        put(Break)
+        this
+
+    def startArray(length: Int): CborWriter =
+        head(MajorArray, length)
+        this
+
+    def field[A](name: String, value: A)(using encoder: CborEncoder[A]): CborWriter =
+        string(name)
+        encoder.write(this, value)
+        this
+
+    /** Skips the field when there is no value, as the JSON printer drops nulls */
+    def optionalField[A](name: String, value: Option[A])(using encoder: CborEncoder[A]): CborWriter =
+        value match
+            case Some(v) => field(name, v)
+            case None    => this
+
+    def long(value: Long): CborWriter =
+        if value >= 0 then head(MajorUnsigned, value) else head(MajorNegative, -1 - value)
+        this
+
+    /** Written as a 32-bit float when that loses nothing, e.g. 30.0 or 23.5 */
+    def double(value: Double): CborWriter =
+        val f = value.toFloat
+        if f.toDouble == value || value.isNaN then
+            ensure(5)
+            put(Float32)
+            putBytes(java.lang.Float.floatToIntBits(f).toLong, 4)
+        else
+            ensure(9)
+            put(Float64)
+            putBytes(java.lang.Double.doubleToLongBits(value), 8)
+        this
+
+    def string(value: String): CborWriter =
+        val utf8 = value.getBytes(StandardCharsets.UTF_8)
+        head(MajorText, utf8.length)
+        append(utf8)
+        this
+
+    def bytes(value: Array[Byte]): CborWriter =
+        head(MajorBytes, value.length)
+        append(value)
+        this
+
+    /** Tag 37: the 16 bytes of the UUID */
+    def uuid(value: UUID): CborWriter =
+        head(MajorTag, TagUuid)
+        head(MajorBytes, 16)
+        ensure(16)
+        putBytes(value.getMostSignificantBits, 8)
+        putBytes(value.getLeastSignificantBits, 8)
+        this
+
+    /**
+     * Tag 1, an integer count of seconds since the epoch, for whole seconds. Otherwise tag 1001 (RFC 9581), a map of
+     * the epoch seconds (key 1) and the fraction as milliseconds (key -3) or nanoseconds (key -9), so that no
+     * precision is lost to a float.
+     */
+    def instant(value: Instant): CborWriter =
+        val nanos = value.getNano
+        if nanos == 0 then
+            head(MajorTag, TagEpoch)
+            long(value.getEpochSecond)
+        else
+            head(MajorTag, TagExtendedTime)
+            head(MajorMap, 2)
+            long(1).long(value.getEpochSecond)
+            if nanos % 1000000 == 0 then long(-3).long(nanos / 1000000)
+            else long(-9).long(nanos)
+
+    /** The initial byte of a data item, followed by its argument in the fewest bytes */
+    private def head(major: Int, argument: Long): Unit =
+        ensure(9)
+        if argument < 24 then put(major | argument.toInt)
+        else if argument < 0x100L then
+            put(major | 24)
+            put(argument.toInt)
+        else if argument < 0x10000L then
+            put(major | 25)
+            putBytes(argument, 2)
+        else if argument < 0x100000000L then
+            put(major | 26)
+            putBytes(argument, 4)
+        else
+            put(major | 27)
+            putBytes(argument, 8)
+
+    private def ensure(n: Int): Unit =
+        if size + n > buffer.length then buffer = Arrays.copyOf(buffer, math.max(buffer.length * 2, size + n))
+
+    private def put(b: Int): Unit =
+        ensure(1)
+        buffer(size) = b.toByte
+        size += 1
+
+    /** Big-endian, as CBOR requires. The caller has ensured the room */
+    private def putBytes(value: Long, n: Int): Unit =
+        var i = n - 1
+        while i >= 0 do
+            buffer(size) = (value >>> (8 * i)).toByte
+            size += 1
+            i -= 1
+
+    private def append(bs: Array[Byte]): Unit =
+        ensure(bs.length)
+        System.arraycopy(bs, 0, buffer, size, bs.length)
+        size += bs.length
+
+object CborWriter:
+
+    private val MajorUnsigned = 0 << 5
+    private val MajorNegative = 1 << 5
+    private val MajorBytes    = 2 << 5
+    private val MajorText     = 3 << 5
+    private val MajorArray    = 4 << 5
+    private val MajorMap      = 5 << 5
+    private val MajorTag      = 6 << 5
+
+    private val StartIndefiniteMap = 0xbf
+    private val Float32            = 0xfa
+    private val Float64            = 0xfb
+    private val Break              = 0xff
+
+    private val TagEpoch        = 1L
+    private val TagUuid         = 37L
+    private val TagExtendedTime = 1001L
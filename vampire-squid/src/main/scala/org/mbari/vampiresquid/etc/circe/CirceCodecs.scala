@@ -21,13 +21,21 @@ import io.circe.generic.semiauto.*
 import org.mbari.vampiresquid.domain.{
     Authorization,
     BadRequest,
+    BulkMediaResult,
+    CameraTimestamp,
+    CameraTimestampMedia,
     ErrorMsg,
     HealthStatus,
     LastUpdatedTime,
     Media,
+    MediaChange,
+    MediaChangePage,
+    MediaEvent,
     NotFound,
+    NotModified,
     ServerError,
     ServiceStatus,
+    Sha512Media,
     StatusMsg,
     Unauthorized,
     Video,
@@ -83,6 +91,27 @@ object CirceCodecs:
     given Decoder[Media] = deriveDecoder
     given Encoder[Media] = deriveEncoder
 
+    given Decoder[BulkMediaResult] = deriveDecoder
+    given Encoder[BulkMediaResult] = deriveEncoder
+
+    given Decoder[CameraTimestamp] = deriveDecoder
+    given Encoder[CameraTimestamp] = deriveEncoder
+
+    given Decoder[CameraTimestampMedia] = deriveDecoder
+    given Encoder[CameraTimestampMedia] = deriveEncoder
+
+    given Decoder[Sha512Media] = deriveDecoder
+    given Encoder[Sha512Media] = deriveEncoder
+
+    given Decoder[MediaChange] = deriveDecoder
+    given Encoder[MediaChange] = deriveEncoder
+
+    given Decoder[MediaChangePage] = deriveDecoder
+    given Encoder[MediaChangePage] = deriveEncoder
+
+    given Decoder[MediaEvent] = deriveDecoder
+    given Encoder[MediaEvent] = deriveEncoder
+
     given Decoder[Authorization] = deriveDecoder
     given Encoder[Authorization] = deriveEncoder
 
@@ -104,6 +133,9 @@ object CirceCodecs:
     given Decoder[NotFound] = deriveDecoder
     given Encoder[NotFound] = deriveEncoder
 
+    given Decoder[NotModified] = deriveDecoder
+    given Encoder[NotModified] = deriveEncoder
+
     given Decoder[ServerError] = deriveDecoder
     given Encoder[ServerError] = deriveEncoder
 
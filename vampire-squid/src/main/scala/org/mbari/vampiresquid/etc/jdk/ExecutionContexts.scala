@@ -0,0 +1,36 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.jdk
+
+import org.mbari.vampiresquid.ExecutionMode
+
+import java.util.concurrent.Executors
+import scala.concurrent.ExecutionContext
+
+object ExecutionContexts:
+
+    /**
+     * Virtual threads are cheap to block, so every task gets its own. Concurrent database work is still bounded by
+     * the transaction permits in [[org.mbari.vampiresquid.repository.jpa.extensions]].
+     */
+    lazy val Virtual: ExecutionContext =
+        ExecutionContext.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor())
+
+    def apply(mode: ExecutionMode): ExecutionContext =
+        mode match
+            case ExecutionMode.Global  => ExecutionContext.global
+            case ExecutionMode.Virtual => Virtual
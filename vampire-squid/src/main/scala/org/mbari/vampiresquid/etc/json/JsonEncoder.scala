@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.json
+
+import java.net.URI
+import java.time.Instant
+import java.util.UUID
+
+/** Writes a value with a [[JsonWriter]]. See [[JsonCodecs]] for the domain classes */
+trait JsonEncoder[A]:
+    def write(writer: JsonWriter, value: A): Unit
+
+    /** true if the value is written as null, so that [[JsonWriter.field]] can leave it out */
+    def isNull(value: A): Boolean = false
+
+object JsonEncoder:
+
+    def encode[A](value: A)(using encoder: JsonEncoder[A]): Array[Byte] =
+        val writer = JsonWriter()
+        encoder.write(writer, value)
+        writer.toByteArray
+
+    given JsonEncoder[String]      = (w, v) => w.string(v)
+    given JsonEncoder[Int]         = (w, v) => w.long(v)
+    given JsonEncoder[Long]        = (w, v) => w.long(v)
+    given JsonEncoder[Array[Byte]] = (w, v) => w.hex(v)
+    given JsonEncoder[UUID]        = (w, v) => w.string(v.toString)
+    given JsonEncoder[Instant]     = (w, v) => w.string(v.toString)
+    given JsonEncoder[URI]         = (w, v) => w.string(v.toString)
+
+    given JsonEncoder[Double] = new JsonEncoder[Double]:
+        def write(writer: JsonWriter, value: Double): Unit = writer.double(value)
+        override def isNull(value: Double): Boolean        = !value.isFinite
+
+    given [A](using encoder: JsonEncoder[A]): JsonEncoder[List[A]] = (w, vs) =>
+        w.startArray()
+        vs.foreach(v => encoder.write(w, v))
+        w.endArray()
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.json
+
+import java.util.Arrays
+
+/**
+ * Writes compact UTF-8 JSON straight into a growable byte array, without building circe's `Json` tree first. The
+ * output is the same, byte for byte, as `CirceCodecs.CustomPrinter`: no whitespace, absent fields left out, and
+ * strings escaped as circe escapes them.
+ *
+ * {{{
+ * val bytes = JsonWriter().startObject().field("name", "Doc Ricketts 1472").endObject().toByteArray
+ * }}}
+ */
+final class JsonWriter(initialSize: Int = 1024):
+
+    import JsonWriter.*
+
+    private var buffer     = new Array[Byte](initialSize)
+    private var size       = 0
+    private var needsComma = false
+
+    def toByteArray: Array[Byte] = Arrays.copyOf(buffer, size)
+
+    def startObject(): JsonWriter =
+        comma()
+        put('{')
+        needsComma = false
+        this
+
+    def endObject(): JsonWriter =
+        put('}')
+        needsComma = true
+        this
+
+    def startArray(): JsonWriter =
+        comma()
+        put('[')
+        needsComma = false
+        this
+
+    def endArray(): JsonWriter =
+        put(']')
+        needsComma = true
+        this
+
+    /** Skips the field when the value is written as null, as the printer drops null values */
+    def field[A](name: String, value: A)(using encoder: JsonEncoder[A]): JsonWriter =
+        if !encoder.isNull(value) then
+            key(name)
+            encoder.write(this, value)
+        this
+
+    def optionalField[A](name: String, value: Option[A])(using encoder: JsonEncoder[A]): JsonWriter =
+        value match
+            case Some(v) => field(name, v)
+            case None    => this
+
+    def nullValue(): JsonWriter = ascii("null")
+
+    def long(value: Long): JsonWriter = ascii(java.lang.Long.toString(value))
+
+    /** As circe does, a number that isn't finite is written as null */
+    def double(value: Double): JsonWriter =
+        if value.isFinite then ascii(java.lang.Double.toString(value)) else nullValue()
+
+    def string(value: String): JsonWriter =
+        comma()
+        quoted(value)
+        needsComma = true
+        this
+
+    /** Lower case hex, as `CirceCodecs` encodes byte arrays */
+    def hex(value: Array[Byte]): JsonWriter =
+        comma()
+        ensure(value.length * 2 + 2)
+        buffer(size) = Quote
+        size += 1
+        var i = 0
+        while i < value.length do
+            val b = value(i) & 0xff
+            buffer(size) = HexDigits(b >>> 4)
+            buffer(size + 1) = HexDigits(b & 0xf)
+            size += 2
+            i += 1
+        buffer(size) = Quote
+        size += 1
+        needsComma = true
+        this
+
+    private def key(name: String): Unit =
+        comma()
+        quoted(name)
+        put(':')
+        needsComma = false
+
+    /** A value whose text needs no escaping, such as a number */
+    private def ascii(s: String): JsonWriter =
+        comma()
+        ensure(s.length)
+        var i = 0
+        while i < s.length do
+            buffer(size) = s.charAt(i).toByte
+            size += 1
+            i += 1
+        needsComma = true
+        this
+
+    private def comma(): Unit =
+        if needsComma then put(',')
+
+    /**
+     * Escapes `"`, `\` and the ISO control characters as circe's printer does, and encodes the rest as UTF-8. A lone
+     * surrogate becomes `?`, as it does with `String.getBytes`.
+     */
+    private def quoted(s: String): Unit =
+        ensure(s.length + 2)
+        put('"')
+        var i = 0
+        while i < s.length do
+            val c = s.charAt(i)
+            if c < 0x7f && c >= 0x20 && c != '"' && c != '\\' then put(c)
+            else if c == '"' || c == '\\' then escape(c)
+            else if c == '\b' then escape('b')
+            else if c == '\f' then escape('f')
+            else if c == '\n' then escape('n')
+            else if c == '\r' then escape('r')
+            else if c == '\t' then escape('t')
+            else if Character.isISOControl(c) then unicodeEscape(c)
+            else if c < 0x800 then
+                ensure(2)
+                buffer(size) = (0xc0 | (c >> 6)).toByte
+                buffer(size + 1) = (0x80 | (c & 0x3f)).toByte
+                size += 2
+            else if Character.isHighSurrogate(c) && i + 1 < s.length && Character.isLowSurrogate(s.charAt(i + 1)) then
+                val cp = Character.toCodePoint(c, s.charAt(i + 1))
+                ensure(4)
+                buffer(size) = (0xf0 | (cp >> 18)).toByte
+                buffer(size + 1) = (0x80 | ((cp >> 12) & 0x3f)).toByte
+                buffer(size + 2) = (0x80 | ((cp >> 6) & 0x3f)).toByte
+                buffer(size + 3) = (0x80 | (cp & 0x3f)).toByte
+                size += 4
+                i += 1
+            else if Character.isSurrogate(c) then put('?')
+            else
+                ensure(3)
+                buffer(size) = (0xe0 | (c >> 12)).toByte
+                buffer(size + 1) = (0x80 | ((c >> 6) & 0x3f)).toByte
+                buffer(size + 2) = (0x80 | (c & 0x3f)).toByte
+                size += 3
+            i += 1
+        put('"')
+
+    private def escape(c: Char): Unit =
+        put('\\')
+        put(c)
+
+    private def unicodeEscape(c: Char): Unit =
+        ensure(6)
+        buffer(size) = '\\'.toByte
+        buffer(size + 1) = 'u'.toByte
+        buffer(size + 2) = HexDigits((c >> 12) & 0xf)
+        buffer(size + 3) = HexDigits((c >> 8) & 0xf)
+        buffer(size + 4) = HexDigits((c >> 4) & 0xf)
+        buffer(size + 5) = HexDigits(c & 0xf)
+        size += 6
+
+    private def ensure(n: Int): Unit =
+        if size + n > buffer.length then buffer = Arrays.copyOf(buffer, math.max(buffer.length * 2, size + n))
+
+    private def put(c: Char): Unit =
+        ensure(1)
+        buffer(size) = c.toByte
+        size += 1
+
+object JsonWriter:
+
+    private val Quote = '"'.toByte
+
+    private val HexDigits: Array[Byte] = "0123456789abcdef".getBytes(java.nio.charset.StandardCharsets.US_ASCII)
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.metrics
+
+import io.prometheus.metrics.core.metrics.Histogram
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import io.vertx.ext.web.RoutingContext
+import sttp.monad.MonadError
+import sttp.tapir.server.ServerEndpoint
+import sttp.tapir.server.interceptor.{
+    DecodeFailureContext,
+    DecodeSuccessContext,
+    EndpointHandler,
+    EndpointInterceptor,
+    Responder,
+    SecurityFailureContext
+}
+import sttp.tapir.server.interpreter.BodyListener
+import sttp.tapir.server.model.ServerResponse
+
+import scala.concurrent.{ExecutionContext, Future}
+
+/**
+ * Histograms, labelled by endpoint, that break down where the time of a request goes: waiting for a Vert.x worker,
+ * waiting for and running database transactions, JDBC, and encoding the response. The overall request duration is
+ * recorded by tapir's own metrics, and the connection pool's active and idle counts by `EntityManagerMetrics`.
+ */
+object RequestMetrics:
+
+    /** Key of the time (System.nanoTime) at which a request arrived, stored in its Vert.x RoutingContext by Main */
+    val ArrivedAt = "vampiresquid.arrivedAt"
+
+    private def histogram(name: String, help: String): Histogram =
+        Histogram.builder().name(name).help(help).labelNames("endpoint").classicOnly().build()
+
+    private val queue = histogram(
+        "vampiresquid_request_queue_seconds",
+        "Time from the arrival of a request until its endpoint's logic starts, e.g. waiting for a Vert.x worker"
+    )
+
+    private val dbQueue = histogram(
+        "vampiresquid_request_db_queue_seconds",
+        "Time the transactions of a request waited to start, in the executor queue and for a connection permit"
+    )
+
+    private val dbTransaction = histogram(
+        "vampiresquid_request_db_transaction_seconds",
+        "Time a request spent running database transactions"
+    )
+
+    private val dbConnectionWait = histogram(
+        "vampiresquid_request_db_connection_wait_seconds",
+        "Time a request waited for connections from the pool"
+    )
+
+    private val dbJdbc = histogram(
+        "vampiresquid_request_db_jdbc_seconds",
+        "Time a request spent executing JDBC statements"
+    )
+
+    private val dbStatements = Histogram
+        .builder()
+        .name("vampiresquid_request_db_statements")
+        .help("Number of JDBC statements prepared by a request")
+        .labelNames("endpoint")
+        .classicUpperBounds(1.0, 2.0, 5.0, 10.0, 20.0, 50.0, 100.0, 200.0, 500.0, 1000.0)
+        .classicOnly()
+        .build()
+
+    private val encode = histogram(
+        "vampiresquid_request_encode_seconds",
+        "Time from the result of an endpoint's logic to its encoded response, mostly JSON encoding"
+    )
+
+    def register(registry: PrometheusRegistry): Unit =
+        List(queue, dbQueue, dbTransaction, dbConnectionWait, dbJdbc, dbStatements, encode)
+            .foreach(h => registry.register(h))
+
+    /**
+     * Records the histograms of each request that reaches an endpoint's logic. It must run right around the logic (be
+     * appended after the other interceptors) so that the logic is called on the thread that sets
+     * [[RequestTimings.current]].
+     */
+    val interceptor: EndpointInterceptor[Future] = new EndpointInterceptor[Future]:
+        override def apply[B](
+            responder: Responder[Future, B],
+            handler: EndpointHandler[Future, B]
+        ): EndpointHandler[Future, B] = new EndpointHandler[Future, B]:
+
+            override def onDecodeSuccess[A, U, I](ctx: DecodeSuccessContext[Future, A, U, I])(implicit
+                monad: MonadError[Future],
+                bodyListener: BodyListener[Future, B]
+            ): Future[ServerResponse[B]] =
+                val started  = System.nanoTime()
+                val endpoint = ctx.endpoint.info.name.getOrElse(ctx.endpoint.showPathTemplate())
+                arrivedAt(ctx.request.underlying)
+                    .foreach(t => queue.labelValues(endpoint).observe(seconds(started - t)))
+                val timings  = new RequestTimings
+                val response = RequestTimings.withTimings(timings):
+                    handler.onDecodeSuccess(ctx.copy(serverEndpoint = timed(ctx.serverEndpoint, timings)))
+                response.onComplete(_ => record(endpoint, timings, System.nanoTime()))(using ExecutionContext.parasitic)
+                response
+
+            override def onSecurityFailure[A](ctx: SecurityFailureContext[Future, A])(implicit
+                monad: MonadError[Future],
+                bodyListener: BodyListener[Future, B]
+            ): Future[ServerResponse[B]] = handler.onSecurityFailure(ctx)
+
+            override def onDecodeFailure(ctx: DecodeFailureContext)(implicit
+                monad: MonadError[Future],
+                bodyListener: BodyListener[Future, B]
+            ): Future[Option[ServerResponse[B]]] = handler.onDecodeFailure(ctx)
+
+    /** The same endpoint, whose logic also notes when its result is available */
+    private def timed[R](
+        se: ServerEndpoint[R, Future],
+        timings: RequestTimings
+    ): ServerEndpoint.Full[se.SECURITY_INPUT, se.PRINCIPAL, se.INPUT, se.ERROR_OUTPUT, se.OUTPUT, R, Future] =
+        ServerEndpoint(
+            se.endpoint,
+            se.securityLogic,
+            monad =>
+                principal =>
+                    input =>
+                        se.logic(monad)(principal)(input)
+                            .andThen(_ => timings.logicDone())(using ExecutionContext.parasitic)
+        )
+
+    private def arrivedAt(underlying: Any): Option[Long] =
+        underlying match
+            case rc: RoutingContext => Option(rc.get[java.lang.Long](ArrivedAt)).map(_.longValue)
+            case _                  => None
+
+    private def record(endpoint: String, timings: RequestTimings, respondedAt: Long): Unit =
+        timings.logicDoneNanos.foreach(t => encode.labelValues(endpoint).observe(seconds(respondedAt - t)))
+        if timings.transactions > 0 then
+            dbQueue.labelValues(endpoint).observe(seconds(timings.transactionQueueNanos))
+            dbTransaction.labelValues(endpoint).observe(seconds(timings.transactionRunNanos))
+            dbConnectionWait.labelValues(endpoint).observe(seconds(timings.connectionWaitNanos))
+            dbJdbc.labelValues(endpoint).observe(seconds(timings.jdbcExecuteNanos))
+            dbStatements.labelValues(endpoint).observe(timings.statements.toDouble)
+
+    private def seconds(nanos: Long): Double = nanos / 1e9
@@ -0,0 +1,76 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.metrics
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Accumulates where the time of one request goes. The database work of a request runs on other threads than the
+ * request, so the timings are captured on the request's thread (see [[RequestTimings.current]]) when its
+ * EntityManagers and transactions are created and are then updated from whichever thread does the work.
+ */
+final class RequestTimings:
+
+    private val transactionCount = new AtomicLong(0)
+    private val queueNanos       = new AtomicLong(0)
+    private val transactionNanos = new AtomicLong(0)
+    private val connectionNanos  = new AtomicLong(0)
+    private val jdbcNanos        = new AtomicLong(0)
+    private val statementCount   = new AtomicLong(0)
+
+    @volatile private var logicDoneAt: Long = 0L
+
+    /** A transaction waited `waitNanos` to start (executor queue and connection permit) and then ran for `runNanos` */
+    def addTransaction(waitNanos: Long, runNanos: Long): Unit =
+        transactionCount.incrementAndGet()
+        queueNanos.addAndGet(waitNanos)
+        transactionNanos.addAndGet(runNanos)
+
+    /** Time spent waiting for a connection from the pool */
+    def addConnectionWait(nanos: Long): Unit = connectionNanos.addAndGet(nanos)
+
+    /** Time spent executing a JDBC statement or batch */
+    def addJdbc(nanos: Long): Unit = jdbcNanos.addAndGet(nanos)
+
+    def addStatement(): Unit = statementCount.incrementAndGet()
+
+    /** Called when the endpoint's logic has produced its result, before it is encoded */
+    def logicDone(): Unit = logicDoneAt = System.nanoTime()
+
+    def transactions: Long          = transactionCount.get()
+    def transactionQueueNanos: Long = queueNanos.get()
+    def transactionRunNanos: Long   = transactionNanos.get()
+    def connectionWaitNanos: Long   = connectionNanos.get()
+    def jdbcExecuteNanos: Long      = jdbcNanos.get()
+    def statements: Long            = statementCount.get()
+
+    /** @return The time the logic's result became available, if it has */
+    def logicDoneNanos: Option[Long] = Option(logicDoneAt).filter(_ != 0L)
+
+object RequestTimings:
+
+    private val local = new ThreadLocal[RequestTimings]
+
+    /** The timings of the request being handled on this thread, if any */
+    def current: Option[RequestTimings] = Option(local.get())
+
+    /** Runs `fn` with `timings` as the [[current]] timings of this thread */
+    def withTimings[T](timings: RequestTimings)(fn: => T): T =
+        val previous = local.get()
+        local.set(timings)
+        try fn
+        finally local.set(previous)
@@ -16,11 +16,17 @@
 
 package org.mbari.vampiresquid.etc.tapir
 
+import io.circe.Decoder
+import io.circe.parser.decode
+import org.mbari.vampiresquid.etc.cbor.CborEncoder
 import org.mbari.vampiresquid.etc.jdk.Instants
+import org.mbari.vampiresquid.etc.json.JsonEncoder
+import sttp.model.{Header, MediaType}
 import sttp.tapir.CodecFormat.TextPlain
-import sttp.tapir.{Codec, DecodeResult}
+import sttp.tapir.{Codec, CodecFormat, DecodeResult, EndpointIO, RawBodyType, Schema}
 
 import java.net.URI
+import java.nio.charset.StandardCharsets
 import java.time.Instant
 import java.util.HexFormat
 import scala.util.{Failure, Success, Try}
@@ -43,6 +49,14 @@ object TapirCodecs:
     private def encodeInstant(i: Instant): String               = i.toString
     given instantCodec: Codec[String, Instant, TextPlain]       = Codec.string.mapDecode(decodeInstant)(encodeInstant)
 
+    /** RFC 9110 HTTP-date, as used by Last-Modified and If-Modified-Since */
+    def decodeHttpDate(s: String): DecodeResult[Instant] =
+        Header.parseHttpDate(s) match
+            case Right(i) => DecodeResult.Value(i)
+            case Left(e)  => DecodeResult.Error(s, new IllegalArgumentException(e))
+    def encodeHttpDate(i: Instant): String        = Header.toHttpDateString(i)
+    def parseHttpDate(s: String): Option[Instant] = Header.parseHttpDate(s).toOption
+
     private def decodeByteArray(s: String): DecodeResult[Array[Byte]] =
         Try(hexFormat.parseHex(s)) match
             case Success(bytes) => DecodeResult.Value(bytes)
@@ -50,3 +64,37 @@ object TapirCodecs:
     private def encodeByteArray(bytes: Array[Byte]): String           = hexFormat.formatHex(bytes)
     given byteArrayCodec: Codec[String, Array[Byte], TextPlain]       =
         Codec.string.mapDecode(decodeByteArray)(encodeByteArray)
+
+    /**
+     * A JSON body written with a [[JsonEncoder]] instead of through circe's `Json` tree. The bytes are the same as
+     * those of `jsonBody`. Bodies are still read with circe.
+     */
+    def jsonWriterBody[A: JsonEncoder: Decoder: Schema]: EndpointIO.Body[Array[Byte], A] =
+        val codec = Codec
+            .byteArray
+            .mapDecode[A](bytes =>
+                decode[A](new String(bytes, StandardCharsets.UTF_8)) match
+                    case Right(a) => DecodeResult.Value(a)
+                    case Left(e)  => DecodeResult.Error(new String(bytes, StandardCharsets.UTF_8), e)
+            )(JsonEncoder.encode(_))
+            .schema(summon[Schema[A]])
+            .format(CodecFormat.Json())
+        EndpointIO.Body(RawBodyType.ByteArrayBody, codec, EndpointIO.Info.empty)
+
+    /** application/cbor (RFC 8949) */
+    case class Cbor() extends CodecFormat:
+        override val mediaType: MediaType = MediaType("application", "cbor")
+
+    /**
+     * A body written as CBOR with a [[CborEncoder]]. Only responses are written this way, so the body can't be read.
+     * Pair it with a JSON body in `oneOfBody` so that the `Accept` header chooses between them.
+     */
+    def cborBody[A: CborEncoder: Schema]: EndpointIO.Body[Array[Byte], A] =
+        val codec = Codec
+            .byteArray
+            .mapDecode[A](_ =>
+                DecodeResult.Error("application/cbor", new UnsupportedOperationException("CBOR bodies are not read"))
+            )(CborEncoder.encode(_))
+            .schema(summon[Schema[A]])
+            .format(Cbor())
+        EndpointIO.Body(RawBodyType.ByteArrayBody, codec, EndpointIO.Info.empty)
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import io.vertx.core.Vertx
+import org.mbari.vampiresquid.domain.MediaEvent
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
+
+import scala.concurrent.Future
+
+/**
+ * Publishes each event, as JSON, to every consumer of an address on the Vert.x event bus. In-process consumers (or
+ * clustered ones, if Vert.x is clustered) can register with `vertx.eventBus().consumer(address)`.
+ */
+class EventBusMessagingService(vertx: Vertx, val address: String) extends MessagingService:
+
+    def publish(events: Seq[MediaEvent]): Future[Unit] =
+        events.foreach(e => vertx.eventBus().publish(address, e.stringify))
+        Future.unit
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import io.vertx.core.Vertx
+import org.mbari.vampiresquid.MessagingParams
+import org.mbari.vampiresquid.domain.MediaEvent
+
+import java.net.URI
+import scala.concurrent.Future
+import scala.util.control.NonFatal
+
+/**
+ * A sink for the notifications written to the outbox. Events are handed to it in batches by [[OutboxPublisher]].
+ */
+trait MessagingService:
+
+    /**
+     * @return
+     *   A future that completes once every event has been delivered. If it fails, the whole batch is published again
+     *   later.
+     */
+    def publish(events: Seq[MediaEvent]): Future[Unit]
+
+object MessagingService:
+
+    val EventBus = "eventbus"
+    val Webhook  = "webhook"
+    val Noop     = "noop"
+
+    /** @return true if the service does nothing, in which case no notifications are written to the outbox */
+    def isNoop(service: String): Boolean = service == Noop || service == classOf[NoopMessagingService].getName
+
+    /**
+     * Creates the service named by `messaging.service` in reference.conf. Any name other than `noop`, `eventbus` or
+     * `webhook` is the class name of a [[MessagingService]] with a no-argument constructor.
+     *
+     * @throws IllegalArgumentException
+     *   If the class can not be instantiated. The outbox is written for any service but `noop`, so falling back to
+     *   one that drops the events would lose them
+     */
+    def apply(params: MessagingParams, vertx: Vertx): MessagingService =
+        params.service match
+            case s if isNoop(s) => new NoopMessagingService
+            case EventBus       => new EventBusMessagingService(vertx, params.eventBusAddress)
+            case Webhook        => new WebhookMessagingService(URI.create(params.webhookUrl), params.timeout)
+            case className      =>
+                try
+                    Class
+                        .forName(className)
+                        .getDeclaredConstructor()
+                        .newInstance()
+                        .asInstanceOf[MessagingService]
+                catch
+                    case NonFatal(e) =>
+                        throw new IllegalArgumentException(s"Failed to instantiate messaging service: $className", e)
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import jakarta.persistence.EntityManager
+import org.mbari.vampiresquid.repository.jpa.entity.OutboxEventEntity
+
+import java.util.UUID
+
+/**
+ * Writes notifications to the `media_outbox` table. Each row is written in the transaction of the EntityManager that
+ * is passed in, so it is committed, or rolled back, with the change it announces. [[OutboxPublisher]] publishes the
+ * rows later, off the write path.
+ *
+ * @param enabled
+ *   When false nothing is written. See messaging.service in reference.conf
+ */
+class Outbox(val enabled: Boolean):
+
+    /** Must be called inside the transaction that created the video reference */
+    def newVideoReference(entityManager: EntityManager, videoReferenceUuid: UUID): Unit =
+        if enabled then
+            entityManager.persist(new OutboxEventEntity(OutboxEventEntity.NEW_VIDEO_REFERENCE, videoReferenceUuid))
+
+object Outbox:
+
+    val Enabled  = new Outbox(true)
+    val Disabled = new Outbox(false)
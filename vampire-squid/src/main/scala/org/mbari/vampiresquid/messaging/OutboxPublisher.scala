@@ -0,0 +1,188 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import io.prometheus.metrics.core.metrics.CounterWithCallback
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import jakarta.persistence.{EntityManager, LockModeType}
+import org.mbari.vampiresquid.domain.MediaEvent
+import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.repository.jpa.{BaseDAO, JPADAOFactory, MediaDAOImpl}
+import org.mbari.vampiresquid.repository.jpa.entity.OutboxEventEntity
+
+import java.time.{Duration, Instant}
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.{Executors, TimeUnit}
+import scala.concurrent.Await
+import scala.concurrent.duration.Duration as SDuration
+import scala.jdk.CollectionConverters.*
+import scala.util.control.NonFatal
+
+/**
+ * Publishes the rows of the outbox (see [[Outbox]]) to a [[MessagingService]] in batches, on its own thread, and
+ * deletes them once the service has accepted them. Delivery is at-least-once: a batch that fails, or whose delete
+ * fails to commit, is published again.
+ *
+ * A batch is claimed in a short transaction: its rows are read with `SELECT ... FOR UPDATE SKIP LOCKED` and stamped
+ * with a `claimed_until` lease, so that several instances of the service can publish the same outbox without sending
+ * the same rows at the same time. The batch is then published with no transaction open and no rows locked, and
+ * deleted in a second transaction. Rows whose lease runs out, because the instance that claimed them stopped, are
+ * claimed again.
+ *
+ * @param batchSize
+ *   The maximum number of events per batch. At most 1000
+ * @param timeout
+ *   How long to wait for the service to accept a batch
+ */
+class OutboxPublisher(
+    daoFactory: JPADAOFactory,
+    val service: MessagingService,
+    batchSize: Int,
+    timeout: Duration
+):
+
+    require(
+        batchSize > 0 && batchSize <= BaseDAO.MaxInParameters,
+        s"batchSize must be between 1 and ${BaseDAO.MaxInParameters}"
+    )
+
+    private val log       = System.getLogger(getClass.getName)
+    private val published = new AtomicLong(0)
+    private val failed    = new AtomicLong(0)
+
+    /** How long a claimed batch is left to the instance that claimed it. Allows for some clock skew */
+    private val lease = timeout.plus(OutboxPublisher.LeaseMargin)
+
+    /**
+     * Publishes one batch
+     * @return
+     *   The number of outbox rows that were published and removed. 0 if there were none or the batch failed
+     */
+    def publishPending(): Int =
+        val dao = daoFactory.newMediaDAO()
+        try
+            val (ids, events) = claim(dao)
+            if ids.isEmpty then 0
+            else
+                try
+                    if events.nonEmpty then
+                        Await.result(service.publish(events), SDuration.fromNanos(timeout.toNanos))
+                    inTransaction(dao.entityManager)(em => updateByIds(em, "OutboxEvent.deleteByIds", ids))
+                    published.addAndGet(ids.size)
+                    ids.size
+                catch
+                    case NonFatal(e) =>
+                        // Hand the batch back at once instead of waiting for the lease to run out
+                        try inTransaction(dao.entityManager)(em => updateByIds(em, "OutboxEvent.releaseByIds", ids))
+                        catch case NonFatal(_) => ()
+                        throw e
+        catch
+            case NonFatal(e) =>
+                failed.incrementAndGet()
+                log.atWarn.withCause(e).log("Failed to publish the outbox. It will be retried.")
+                0
+        finally dao.close()
+
+    /**
+     * Claims the next batch and reads the media of its rows
+     * @return
+     *   The ids of the claimed rows, and the events to publish for them
+     */
+    private def claim(dao: MediaDAOImpl): (Seq[Long], Seq[MediaEvent]) =
+        inTransaction(dao.entityManager): entityManager =>
+            val now     = Instant.now()
+            val pending = entityManager
+                .createNamedQuery("OutboxEvent.findPending", classOf[OutboxEventEntity])
+                .setParameter("now", now)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setHint("jakarta.persistence.lock.timeout", OutboxPublisher.SkipLocked)
+                .setMaxResults(batchSize)
+                .getResultList
+                .asScala
+                .toSeq
+            if pending.isEmpty then (Nil, Nil)
+            else
+                val ids = pending.map(_.getId.longValue)
+                entityManager
+                    .createNamedQuery("OutboxEvent.claimByIds")
+                    .setParameter("until", now.plus(lease))
+                    .setParameter("ids", ids.map(Long.box).asJava)
+                    .executeUpdate()
+                // A video reference that was deleted before its notification went out is not announced
+                val media  = dao
+                    .findByVideoReferenceUuids(pending.map(_.getVideoReferenceUuid))
+                    .flatMap(m => m.video_reference_uuid.map(_ -> m))
+                    .toMap
+                val events = pending.flatMap(e =>
+                    media
+                        .get(e.getVideoReferenceUuid)
+                        .map(m => MediaEvent(e.getId, e.getEventType, e.getCreatedTime, m))
+                )
+                (ids, events)
+
+    private def updateByIds(entityManager: EntityManager, queryName: String, ids: Seq[Long]): Unit =
+        entityManager
+            .createNamedQuery(queryName)
+            .setParameter("ids", ids.map(Long.box).asJava)
+            .executeUpdate()
+
+    private def inTransaction[T](entityManager: EntityManager)(fn: EntityManager => T): T =
+        val transaction = entityManager.getTransaction
+        transaction.begin()
+        try
+            val t = fn(entityManager)
+            transaction.commit()
+            t
+        finally if transaction.isActive then transaction.rollback()
+
+    /** Publishes every `interval`, draining the outbox one batch after another while batches are full */
+    def start(interval: Duration): Unit =
+        val scheduler = Executors.newSingleThreadScheduledExecutor(r =>
+            val thread = new Thread(r, "outbox-publisher")
+            thread.setDaemon(true)
+            thread
+        )
+        scheduler.scheduleWithFixedDelay(
+            () => while publishPending() >= batchSize do (),
+            interval.toMillis,
+            interval.toMillis,
+            TimeUnit.MILLISECONDS
+        )
+        log.atInfo.log(s"Publishing the outbox to ${service.getClass.getSimpleName} every $interval")
+
+    /** Registers `vampiresquid_outbox_published` and `vampiresquid_outbox_failures` */
+    def register(registry: PrometheusRegistry): Unit =
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_outbox_published")
+            .help("Number of outbox rows published to the messaging service")
+            .callback(cb => cb.call(published.get().toDouble))
+            .register(registry)
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_outbox_failures")
+            .help("Number of outbox batches that failed to publish and will be retried")
+            .callback(cb => cb.call(failed.get().toDouble))
+            .register(registry)
+
+object OutboxPublisher:
+
+    /** The `jakarta.persistence.lock.timeout` that Hibernate renders as `SKIP LOCKED` (`READPAST` on SQL Server) */
+    val SkipLocked: Int = -2
+
+    /** Added to the publish timeout to get the lease of a claimed batch */
+    val LeaseMargin: Duration = Duration.ofSeconds(30)
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.messaging
+
+import org.mbari.vampiresquid.domain.MediaEvent
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.{*, given}
+
+import java.io.IOException
+import java.net.URI
+import java.net.http.HttpRequest.BodyPublishers
+import java.net.http.HttpResponse.BodyHandlers
+import java.net.http.{HttpClient, HttpRequest}
+import java.time.Duration
+import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.FutureConverters.*
+
+/**
+ * POSTs each batch of events to a URL as a JSON array. Any response other than 2xx fails the batch so that it is
+ * sent again; the receiver should use the event ids to drop duplicates.
+ */
+class WebhookMessagingService(val uri: URI, timeout: Duration) extends MessagingService:
+
+    private val client = HttpClient.newBuilder().connectTimeout(timeout).build()
+
+    def publish(events: Seq[MediaEvent]): Future[Unit] =
+        val request = HttpRequest
+            .newBuilder(uri)
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(BodyPublishers.ofString(events.toList.stringify))
+            .build()
+        client
+            .sendAsync(request, BodyHandlers.discarding())
+            .asScala
+            .map(response =>
+                if response.statusCode() / 100 != 2 then
+                    throw new IOException(s"POST $uri returned ${response.statusCode()}")
+            )(using ExecutionContext.parasitic)
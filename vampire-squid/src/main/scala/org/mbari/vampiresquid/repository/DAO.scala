@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository
 
+import org.mbari.vampiresquid.domain.PageCursor
 import org.mbari.vampiresquid.repository.jpa.entity.IPersistentObject
 
 import java.util.UUID
@@ -38,6 +39,14 @@ trait DAO[B <: IPersistentObject] extends AutoCloseable:
     def deleteByUUID(primaryKey: UUID): Unit
     def findByUUID(primaryKey: UUID): Option[B]
     def findAll(offset: Int, limit: Int): Iterable[B]
+
+    /**
+     * Keyset pagination. Returns up to `limit` entities that sort after the cursor, in the same order as `findAll`.
+     * Unlike `findAll` with an offset, the cost of a page does not grow with its depth.
+     * @param cursor
+     *   The cursor of the last entity of the previous page. None for the first page.
+     */
+    def findAllAfter(cursor: Option[PageCursor], limit: Int): Iterable[B]
     def runTransaction[R](fn: this.type => R)(using ec: ExecutionContext): Future[R]
     def runReadOnlyTransaction[R](fn: this.type => R)(using ec: ExecutionContext): Future[R]
     def close(): Unit
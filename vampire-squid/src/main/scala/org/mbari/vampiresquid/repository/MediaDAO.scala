@@ -17,7 +17,11 @@
 package org.mbari.vampiresquid.repository
 
 import jakarta.persistence.EntityManager
-import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.domain.{FileNameMatch, Media, MediaChangePage, ResourceVersion}
+
+import java.net.URI
+import java.time.{Duration, Instant}
+import java.util.UUID
 
 trait MediaDAO extends AutoCloseable:
 
@@ -25,4 +29,96 @@ trait MediaDAO extends AutoCloseable:
 
     def findByNames(names: Iterable[String], offset: Option[Int], limit: Option[Int]): Seq[Media]
 
+    /*
+     * The finders below each read their media with a single query instead of walking the lazy entity graph
+     */
+
+    def findByVideoSequenceName(name: String): Seq[Media]
+
+    def findByVideoReferenceUuid(uuid: UUID): Option[Media]
+
+    /**
+     * @return
+     *   The media of a video reference and its version, read by the same query so that the version describes the
+     *   media. The version is the one of `VideoReferenceDAO.findMediaVersion`.
+     */
+    def findVersionedByVideoReferenceUuid(uuid: UUID): Option[(ResourceVersion, Media)]
+
+    def findBySha512(sha512: Array[Byte]): Option[Media]
+
+    def findByURI(uri: URI): Option[Media]
+
+    /** @return The media of each video reference that exists, in no particular order */
+    def findByVideoReferenceUuids(uuids: Iterable[UUID]): Seq[Media]
+
+    /** @return The media of each uri that exists, in no particular order */
+    def findByURIs(uris: Iterable[URI]): Seq[Media]
+
+    /** @return The media of each video reference whose sha512 is one of the checksums, in no particular order */
+    def findBySha512s(sha512s: Iterable[Array[Byte]]): Seq[Media]
+
+    def findByVideoName(name: String): Seq[Media]
+
+    /**
+     * @param matchType
+     *   Whether the filename must start with, end with or contain `name`
+     * @param limit
+     *   The maximum number of media returned
+     * @return
+     *   The media whose filename matches, ordered by filename
+     */
+    def findByFileName(name: String, matchType: FileNameMatch, limit: Int): Seq[Media]
+
+    /**
+     * @param window
+     *   Only videos that started no earlier than `timestamp - window / 2` are considered
+     * @return
+     *   The media of the camera whose video contains the timestamp
+     */
+    def findByCameraIdAndTimestamp(cameraId: String, timestamp: Instant, window: Duration): Seq[Media]
+
+    /** @return The media of the camera whose video started between the two timestamps (inclusive) */
+    def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant): Seq[Media]
+
+    /**
+     * Reads, with one range scan, every media of a camera that could contain a timestamp between `from` and `to`
+     * @param window
+     *   Only videos that started no earlier than `from - window / 2` are considered
+     * @return
+     *   The media of the camera whose video ends at or after `from` and starts no later than `to`, ordered by the
+     *   video's start
+     */
+    def findByCameraIdCovering(cameraId: String, from: Instant, to: Instant, window: Duration): Seq[Media]
+
+    /**
+     * Walks every media in the database using a forward-only cursor so that only `fetchSize` rows are held in memory
+     * at a time. Must be called inside a transaction.
+     * @param fetchSize
+     *   The JDBC fetch size
+     * @param f
+     *   Called once for each media, in video reference uuid order
+     * @return
+     *   The number of media visited
+     */
+    def foreachMedia(fetchSize: Int)(f: Media => Unit): Long
+
+    /** @return The most recent audit revision, or 0 if nothing has been audited yet */
+    def findLatestRevision(): Long
+
+    /**
+     * Reads the media changes recorded in the audit history after a revision.
+     * @param after
+     *   Only revisions greater than this are read
+     * @param limit
+     *   The maximum number of revisions to read. A revision is never split, so more changes than this may be returned.
+     * @param settledBefore
+     *   Revisions stamped at or after this instant are left for a later read, as a transaction with a lower revision
+     *   number may still be committing
+     * @return
+     *   The changes, ordered by revision, and as cursor the highest revision that was read. The cursor moves past
+     *   revisions that changed no media (e.g. ones that only touched empty video sequences), so a page may be empty
+     *   while the cursor still advances.
+     */
+    def findChanges(after: Long, limit: Int, settledBefore: Instant): MediaChangePage
+
     def close(): Unit
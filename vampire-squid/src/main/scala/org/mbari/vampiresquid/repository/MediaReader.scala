@@ -0,0 +1,59 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository
+
+import org.mbari.vampiresquid.domain.{Media, ResourceVersion}
+
+import java.net.URI
+import java.time.{Duration, Instant}
+import java.util.UUID
+import scala.concurrent.Future
+
+/**
+ * Read-only access to media that never blocks the calling thread. The returned futures are completed by the database
+ * driver, so endpoints that only read through a MediaReader can be served on the Vert.x event loop instead of a
+ * worker thread. The finders return the same media, in the same order, as their counterparts in [[MediaDAO]] and
+ * [[VideoReferenceDAO]].
+ */
+trait MediaReader extends AutoCloseable:
+
+    def findByVideoReferenceUuid(uuid: UUID): Future[Option[Media]]
+
+    /** @return The version of the media of a video reference, the same as `VideoReferenceDAO.findMediaVersion` */
+    def findMediaVersion(uuid: UUID): Future[Option[ResourceVersion]]
+
+    /** @return The media of a video reference and its version, read by the same query */
+    def findVersionedByVideoReferenceUuid(uuid: UUID): Future[Option[(ResourceVersion, Media)]]
+
+    def findBySha512(sha512: Array[Byte]): Future[Option[Media]]
+
+    def findByURI(uri: URI): Future[Option[Media]]
+
+    def findByVideoSequenceName(name: String): Future[Seq[Media]]
+
+    def findByVideoName(name: String): Future[Seq[Media]]
+
+    /**
+     * @param window
+     *   Only videos that started no earlier than `timestamp - window / 2` are considered
+     * @return
+     *   The media of the camera whose video contains the timestamp
+     */
+    def findByCameraIdAndTimestamp(cameraId: String, timestamp: Instant, window: Duration): Future[Seq[Media]]
+
+    /** @return The media of the camera whose video started between the two timestamps (inclusive) */
+    def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant): Future[Seq[Media]]
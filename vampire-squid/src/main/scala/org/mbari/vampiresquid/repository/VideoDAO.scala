@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository
 
+import org.mbari.vampiresquid.domain.ResourceVersion
 import org.mbari.vampiresquid.repository.jpa.entity.IPersistentObject
 
 import java.time.{Duration, Instant}
@@ -30,8 +31,15 @@ import java.util.UUID
  */
 trait VideoDAO[T <: IPersistentObject] extends DAO[T]:
 
+    /**
+     * @return
+     *   The version of the video and its children, read without loading them. None if it does not exist
+     */
+    def findVersion(uuid: UUID): Option[ResourceVersion]
+
     def findByTimestamp(start: Instant, window: Duration): Iterable[T]
     def findByName(name: String): Option[T]
+    def findByNames(names: Iterable[String]): Iterable[T]
     def findByVideoSequenceUUID(uuid: UUID): Iterable[T]
     def findByVideoReferenceUUID(uuid: UUID): Option[T]
     def findAllNames(): Iterable[String]
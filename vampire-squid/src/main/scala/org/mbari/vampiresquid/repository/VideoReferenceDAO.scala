@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository
 
+import org.mbari.vampiresquid.domain.{FileNameMatch, ResourceVersion}
 import org.mbari.vampiresquid.repository.jpa.entity.IPersistentObject
 
 import java.net.URI
@@ -30,10 +31,37 @@ import java.util.UUID
  */
 trait VideoReferenceDAO[T <: IPersistentObject] extends DAO[T]:
 
+    /**
+     * @return
+     *   The version of the video reference, read without loading it. None if it does not exist
+     */
+    def findVersion(uuid: UUID): Option[ResourceVersion]
+
+    /**
+     * @return
+     *   The version of the media of the video reference (its video sequence, video and video reference). None if the
+     *   video reference does not exist
+     */
+    def findMediaVersion(uuid: UUID): Option[ResourceVersion]
+
     def findAll(offset: Int, limit: Int): Iterable[T]
     def findAllURIs(): Iterable[URI]
     def findByVideoUUID(uuid: UUID): Iterable[T]
     def findConcurrent(uuid: UUID): Iterable[T]
     def findByURI(uri: URI): Option[T]
+    def findByURIs(uris: Iterable[URI]): Iterable[T]
     def findByFileName(filename: String): Iterable[T]
+
+    /**
+     * Searches the last path segment of the URIs
+     * @param name
+     *   The text to search for
+     * @param matchType
+     *   Whether the filename must start with, end with or contain `name`
+     * @param limit
+     *   The maximum number of results
+     * @return
+     *   The matching video references, ordered by filename
+     */
+    def findByFileName(name: String, matchType: FileNameMatch, limit: Int): Iterable[T]
     def findBySha512(sha: Array[Byte]): Option[T]
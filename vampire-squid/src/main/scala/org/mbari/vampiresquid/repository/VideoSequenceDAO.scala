@@ -16,6 +16,7 @@
 
 package org.mbari.vampiresquid.repository
 
+import org.mbari.vampiresquid.domain.ResourceVersion
 import org.mbari.vampiresquid.repository.jpa.entity.IPersistentObject
 
 import java.time.{Duration, Instant}
@@ -30,7 +31,14 @@ import java.util.UUID
  */
 trait VideoSequenceDAO[T <: IPersistentObject] extends DAO[T]:
 
+    /**
+     * @return
+     *   The version of the video sequence and its children, read without loading them. None if it does not exist
+     */
+    def findVersion(uuid: UUID): Option[ResourceVersion]
+
     def findByName(name: String): Option[T]
+    def findByNames(names: Iterable[String]): Iterable[T]
     def findByCameraID(cameraID: String): Iterable[T]
     def findByVideoUUID(uuid: UUID): Option[T]
     def findByVideoReferenceUUID(uuid: UUID): Option[T]
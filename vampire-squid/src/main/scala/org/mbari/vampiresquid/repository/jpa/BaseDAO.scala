@@ -17,6 +17,7 @@
 package org.mbari.vampiresquid.repository.jpa
 
 import jakarta.persistence.EntityManager
+import org.mbari.vampiresquid.domain.ResourceVersion
 import org.mbari.vampiresquid.domain.extensions.*
 import org.mbari.vampiresquid.repository.DAO
 import org.mbari.vampiresquid.repository.jpa.entity.IPersistentObject
@@ -56,6 +57,58 @@ abstract class BaseDAO[B <: IPersistentObject: ClassTag](val entityManager: Enti
         limit.foreach(query.setMaxResults)
         query.getResultList.asScala.toList.map(_.asInstanceOf[B])
 
+    /**
+     * Run a named query that has an `IN` clause. The values are split into chunks so that a single statement never
+     * exceeds the bind parameter limits of the database (e.g. SQL Server allows about 2100 per statement).
+     *
+     * @param name
+     *   The name of the query
+     * @param parameter
+     *   The name of the collection-valued parameter used in the `IN` clause
+     * @param values
+     *   The values to bind to the `IN` clause. Duplicates are removed.
+     * @param namedParameters
+     *   Any other parameters used by the query
+     * @return
+     *   The combined results of all chunks
+     */
+    def findByNamedQueryIn[A](
+        name: String,
+        parameter: String,
+        values: Iterable[A],
+        namedParameters: Map[String, Any] = Map.empty
+    ): List[B] =
+        values
+            .toSeq
+            .distinct
+            .grouped(BaseDAO.MaxInParameters)
+            .flatMap(chunk => findByNamedQuery(name, namedParameters + (parameter -> chunk.asJava)))
+            .toList
+
+    /**
+     * Reads the version of a resource without loading it.
+     * @param name
+     *   A named query that takes a `uuid` and returns at most one row of `lastUpdatedTime`s and child row counts
+     */
+    protected def findVersionByNamedQuery(name: String, uuid: UUID): Option[ResourceVersion] =
+        entityManager
+            .createNamedQuery(name)
+            .setParameter("uuid", uuid)
+            .getResultList
+            .asScala
+            .headOption
+            .map(row =>
+                val values = row match
+                    case xs: Array[?] => xs.toSeq
+                    case x            => Seq(x)
+                val times  = values.collect:
+                    case t: java.util.Date => Some(t.toInstant)
+                    case null              => None
+                val counts = values.collect:
+                    case n: java.lang.Number => n.longValue()
+                ResourceVersion.from(times, counts)
+            )
+
     def executeNamedQuery(name: String, namedParameters: Map[String, Any] = Map.empty): Unit =
         val query = entityManager.createNamedQuery(name)
         namedParameters.foreach { case (a, b) => query.setParameter(a, b) }
@@ -89,3 +142,6 @@ abstract class BaseDAO[B <: IPersistentObject: ClassTag](val entityManager: Enti
 
 object BaseDAO:
     val JDBC_URL_KEY = "jakarta.persistence.jdbc.url"
+
+    /** Maximum number of values bound to a single `IN` clause */
+    val MaxInParameters = 1000
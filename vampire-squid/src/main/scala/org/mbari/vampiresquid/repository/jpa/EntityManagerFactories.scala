@@ -20,7 +20,7 @@ import com.typesafe.config.ConfigFactory
 import jakarta.persistence.{EntityManagerFactory, Persistence}
 import org.mbari.vampiresquid.etc.flyway.FlywayMigrator
 import org.mbari.vampiresquid.etc.jdk.Logging.given
-import org.mbari.vampiresquid.{AppConfig, DatabaseParams}
+import org.mbari.vampiresquid.{AppConfig, DatabaseParams, ReplicaParams}
 
 import java.lang.System.Logger.Level
 import scala.jdk.CollectionConverters.*
@@ -40,14 +40,49 @@ object EntityManagerFactories:
     private lazy val config = ConfigFactory.load()
     private val log         = System.getLogger(getClass.getName)
 
+    /**
+     * Makes Hibernate take the increment of REVINFO_SEQ from the database (1 since the V1.8.0 migration) instead of
+     * reserving blocks of 50 audit revision numbers in each instance. The media change feed relies on every instance
+     * drawing its revision numbers from that one sequence.
+     */
+    private val RevisionNumberProps: Map[String, String] = Map(
+        "hibernate.id.sequence.increment_size_mismatch_strategy" -> "fix"
+    )
+
     // https://juliuskrah.com/tutorial/2017/02/16/getting-started-with-hikaricp-hibernate-and-jpa/
     val PRODUCTION_PROPS: Map[String, String] = Map(
         "hibernate.connection.provider_class" -> "org.hibernate.hikaricp.internal.HikariCPConnectionProvider",
         "hibernate.hbm2ddl.auto"              -> "validate",
         "hibernate.hikari.idleTimeout"        -> "30000",
-        "hibernate.hikari.maximumPoolSize"    -> s"${AppConfig.NumberOfVertxWorkers}",
+        "hibernate.hikari.maximumPoolSize"    -> s"${AppConfig.ExecutionParameters.databasePoolSize}",
         "hibernate.hikari.minimumIdle"        -> "2"
-    )
+    ) ++ RevisionNumberProps ++ cacheProps(AppConfig.SecondLevelCacheEnabled)
+
+    /**
+     * Settings for the second-level and query cache. The regions are JCache caches provided by Caffeine, which reads
+     * their sizes from `caffeine.jcache` in the config. READ_WRITE regions are updated as part of each transaction's
+     * completion, so versioned (`@Version`) entities are never served stale. Envers' audit entities are not cached.
+     *
+     * @param enabled
+     *   false to switch both caches off
+     */
+    def cacheProps(enabled: Boolean): Map[String, String] =
+        if enabled then
+            Map(
+                "hibernate.cache.use_second_level_cache"       -> "true",
+                "hibernate.cache.use_query_cache"              -> "true",
+                "hibernate.cache.region.factory_class"         -> "jcache",
+                "hibernate.javax.cache.provider"               ->
+                    "com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider",
+                "hibernate.javax.cache.missing_cache_strategy" -> "create",
+                "hibernate.generate_statistics"                -> "true",
+                "jakarta.persistence.sharedCache.mode"         -> "ENABLE_SELECTIVE"
+            )
+        else
+            Map(
+                "hibernate.cache.use_second_level_cache" -> "false",
+                "hibernate.cache.use_query_cache"        -> "false"
+            )
 
     def apply(properties: Map[String, String]): EntityManagerFactory =
         val props = PRODUCTION_PROPS ++ properties
@@ -99,3 +134,22 @@ object EntityManagerFactories:
             password = dbParams.password,
             driverName = dbParams.driver
         )
+
+    /**
+     * Creates a factory for a read replica. The replica is not migrated, it receives the schema from the primary.
+     * Its connections are read-only and it does not use Hibernate's second-level cache, so that entities read from a
+     * lagging replica never end up in the second-level cache of the primary. That says nothing about application
+     * caches: anything that fills one (e.g. MediaCache) has to read from the primary itself.
+     */
+    def replica(params: ReplicaParams): EntityManagerFactory =
+        apply(
+            Map(
+                "jakarta.persistence.jdbc.url"      -> params.database.url,
+                "jakarta.persistence.jdbc.user"     -> params.database.user,
+                "jakarta.persistence.jdbc.password" -> params.database.password,
+                "jakarta.persistence.jdbc.driver"   -> params.database.driver,
+                "hibernate.hikari.maximumPoolSize"  -> s"${params.poolSize}",
+                "hibernate.hikari.readOnly"         -> "true",
+                "hibernate.hikari.poolName"         -> "replica"
+            ) ++ cacheProps(false)
+        )
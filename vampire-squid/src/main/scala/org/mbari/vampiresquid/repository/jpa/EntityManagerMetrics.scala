@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import com.zaxxer.hikari.{HikariDataSource, HikariPoolMXBean}
+import io.prometheus.metrics.core.metrics.{CounterWithCallback, GaugeWithCallback}
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import jakarta.persistence.{EntityManager, EntityManagerFactory}
+import org.hibernate.{Session, SessionEventListener}
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider
+import org.hibernate.engine.spi.SessionFactoryImplementor
+import org.mbari.vampiresquid.etc.metrics.RequestTimings
+
+import java.lang.ref.Cleaner
+import java.util.concurrent.atomic.{AtomicBoolean, AtomicLong}
+import scala.util.Try
+
+/**
+ * Keeps track of the EntityManagers handed out by [[JPADAOFactory]] so that a leak (an EntityManager that is never
+ * closed) shows up in the metrics instead of as a slowly exhausted connection pool.
+ *
+ * An EntityManager counts as open from the moment it is tracked until its session ends. If it becomes unreachable
+ * without having been closed it is counted as leaked.
+ */
+object EntityManagerMetrics:
+
+    private val cleaner = Cleaner.create()
+    private val open    = new AtomicLong(0)
+    private val leaked  = new AtomicLong(0)
+
+    /** Counts an EntityManager as open until it is closed (or garbage collected) */
+    private class Tracker extends SessionEventListener with Runnable:
+        private val closed = new AtomicBoolean(false)
+
+        override def end(): Unit =
+            if closed.compareAndSet(false, true) then open.decrementAndGet()
+
+        /** Run by the cleaner once the EntityManager is unreachable. Must not reference the EntityManager */
+        override def run(): Unit =
+            if closed.compareAndSet(false, true) then
+                open.decrementAndGet()
+                leaked.incrementAndGet()
+
+    /**
+     * Also adds the JDBC work of the EntityManager to the timings of the request being handled on this thread, if any.
+     * See [[RequestTimings]].
+     */
+    def track(entityManager: EntityManager): EntityManager =
+        val tracker = new Tracker
+        val session = entityManager.unwrap(classOf[Session])
+        open.incrementAndGet()
+        session.addEventListeners(tracker)
+        RequestTimings.current.foreach(timings => session.addEventListeners(new JdbcTimingListener(timings)))
+        cleaner.register(entityManager, tracker)
+        entityManager
+
+    def openCount: Long = open.get()
+
+    def leakedCount: Long = leaked.get()
+
+    /**
+     * Registers the EntityManager metrics, and the metrics of the Hikari pool behind the given factory, with the
+     * registry.
+     *
+     * @param registry
+     *   The registry used to scrape the metrics (e.g. `Endpoints.prometheusMetrics.registry`)
+     * @param entityManagerFactory
+     *   The factory whose connection pool should be reported
+     */
+    def register(registry: PrometheusRegistry, entityManagerFactory: => EntityManagerFactory): Unit =
+        GaugeWithCallback
+            .builder()
+            .name("vampiresquid_entitymanagers_open")
+            .help("Number of EntityManagers that have been created but not yet closed")
+            .callback(cb => cb.call(openCount.toDouble))
+            .register(registry)
+        CounterWithCallback
+            .builder()
+            .name("vampiresquid_entitymanagers_leaked")
+            .help("Number of EntityManagers that were garbage collected without being closed")
+            .callback(cb => cb.call(leakedCount.toDouble))
+            .register(registry)
+
+        // The pool is looked up on each scrape so that registering does not force the factory to initialize
+        def pool = Try(
+            entityManagerFactory
+                .unwrap(classOf[SessionFactoryImplementor])
+                .getServiceRegistry
+                .getService(classOf[ConnectionProvider])
+                .unwrap(classOf[HikariDataSource])
+                .getHikariPoolMXBean
+        ).toOption.flatMap(Option(_))
+
+        def poolGauge(name: String, help: String, value: HikariPoolMXBean => Int): Unit =
+            GaugeWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .callback(cb => pool.foreach(p => cb.call(value(p).toDouble)))
+                .register(registry)
+
+        poolGauge("vampiresquid_db_connections_active", "Number of database connections in use", _.getActiveConnections)
+        poolGauge("vampiresquid_db_connections_idle", "Number of idle database connections", _.getIdleConnections)
+        poolGauge("vampiresquid_db_connections_total", "Number of pooled database connections", _.getTotalConnections)
+        poolGauge(
+            "vampiresquid_db_connections_pending",
+            "Number of threads waiting for a database connection",
+            _.getThreadsAwaitingConnection
+        )
@@ -16,7 +16,7 @@
 
 package org.mbari.vampiresquid.repository.jpa
 
-import jakarta.persistence.EntityManagerFactory
+import jakarta.persistence.{EntityManager, EntityManagerFactory}
 import org.mbari.vampiresquid.AppConfig
 import org.mbari.vampiresquid.etc.flyway.FlywayMigrator
 import org.mbari.vampiresquid.repository.jpa.entity.{VideoEntity, VideoReferenceEntity, VideoSequenceEntity}
@@ -33,17 +33,67 @@ trait JPADAOFactory extends DAOFactory[VideoSequenceEntity, VideoEntity, VideoRe
 
     def entityManagerFactory: EntityManagerFactory
 
+    /**
+     * All EntityManagers used by the DAOs are created here so that they are counted by [[EntityManagerMetrics]]
+     */
+    def newEntityManager(): EntityManager =
+        EntityManagerMetrics.track(entityManagerFactory.createEntityManager())
+
+    /**
+     * The factory used by read-only transactions. It is the primary unless a read replica is configured and caught
+     * up.
+     */
+    def readOnlyEntityManagerFactory: EntityManagerFactory = entityManagerFactory
+
+    /** An EntityManager that must only be used with `runReadOnlyTransaction` */
+    def newReadOnlyEntityManager(): EntityManager =
+        EntityManagerMetrics.track(readOnlyEntityManagerFactory.createEntityManager())
+
+    /**
+     * Create a unit of work whose DAOs all share a single EntityManager. The caller is responsible for closing it,
+     * typically with `f.onComplete(_ => uow.close())`.
+     */
+    def newUnitOfWork(): UnitOfWork = new UnitOfWork(newEntityManager())
+
     override def newMediaDAO(): MediaDAOImpl =
         new MediaDAOImpl(newVideoSequenceDAO())
 
     override def newVideoSequenceDAO(): VideoSequenceDAOImpl =
-        new VideoSequenceDAOImpl(entityManagerFactory.createEntityManager())
+        new VideoSequenceDAOImpl(newEntityManager())
 
     override def newVideoDAO(): VideoDAOImpl =
-        new VideoDAOImpl(entityManagerFactory.createEntityManager())
+        new VideoDAOImpl(newEntityManager())
 
     override def newVideoReferenceDAO(): VideoReferenceDAOImpl =
-        new VideoReferenceDAOImpl(entityManagerFactory.createEntityManager())
+        new VideoReferenceDAOImpl(newEntityManager())
+
+    /*
+     * DAOs for read-only transactions. These may read from the replica.
+     */
+
+    /** true to read media lookups from the denormalized `media` table. See [[MediaTableDAOImpl]] */
+    def mediaTableEnabled: Boolean = false
+
+    def newReadOnlyMediaDAO(): MediaDAOImpl =
+        if mediaTableEnabled then new MediaTableDAOImpl(newReadOnlyVideoSequenceDAO())
+        else new MediaDAOImpl(newReadOnlyVideoSequenceDAO())
+
+    /**
+     * A MediaDAO for read-only transactions that must see the primary, e.g. to fill a cache. Like
+     * [[newReadOnlyMediaDAO]], it reads from the `media` table when that is enabled.
+     */
+    def newPrimaryMediaDAO(): MediaDAOImpl =
+        if mediaTableEnabled then new MediaTableDAOImpl(newVideoSequenceDAO())
+        else new MediaDAOImpl(newVideoSequenceDAO())
+
+    def newReadOnlyVideoSequenceDAO(): VideoSequenceDAOImpl =
+        new VideoSequenceDAOImpl(newReadOnlyEntityManager())
+
+    def newReadOnlyVideoDAO(): VideoDAOImpl =
+        new VideoDAOImpl(newReadOnlyEntityManager())
+
+    def newReadOnlyVideoReferenceDAO(): VideoReferenceDAOImpl =
+        new VideoReferenceDAOImpl(newReadOnlyEntityManager())
 
     /**
      * Create a new DAO that share the underlying connection (e.g. EntityManager)
@@ -77,3 +127,11 @@ class JPADAOFactoryImpl(val entityManagerFactory: EntityManagerFactory) extends
 object JPADAOFactory extends JPADAOFactory:
 
     lazy val entityManagerFactory: EntityManagerFactory = EntityManagerFactories()
+
+    /** The read replica. See database.replica in reference.conf */
+    lazy val replica: Option[ReplicaRouter] = AppConfig.ReplicaParameters.map(ReplicaRouter(_))
+
+    override def readOnlyEntityManagerFactory: EntityManagerFactory =
+        replica.flatMap(_.available).getOrElse(entityManagerFactory)
+
+    override def mediaTableEnabled: Boolean = AppConfig.MediaTableEnabled
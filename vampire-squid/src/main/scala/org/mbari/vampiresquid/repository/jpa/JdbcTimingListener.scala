@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import org.hibernate.SessionEventListener
+import org.mbari.vampiresquid.etc.metrics.RequestTimings
+
+/**
+ * Adds the JDBC work of one session (EntityManager) to the timings of the request that opened it. A session is used by
+ * one thread at a time, so the start times need no synchronization.
+ */
+class JdbcTimingListener(timings: RequestTimings) extends SessionEventListener:
+
+    private var connectionStart = 0L
+    private var executeStart    = 0L
+
+    override def jdbcConnectionAcquisitionStart(): Unit = connectionStart = System.nanoTime()
+
+    override def jdbcConnectionAcquisitionEnd(): Unit = timings.addConnectionWait(System.nanoTime() - connectionStart)
+
+    override def jdbcPrepareStatementEnd(): Unit = timings.addStatement()
+
+    override def jdbcExecuteStatementStart(): Unit = executeStart = System.nanoTime()
+
+    override def jdbcExecuteStatementEnd(): Unit = timings.addJdbc(System.nanoTime() - executeStart)
+
+    override def jdbcExecuteBatchStart(): Unit = executeStart = System.nanoTime()
+
+    override def jdbcExecuteBatchEnd(): Unit = timings.addJdbc(System.nanoTime() - executeStart)
@@ -17,11 +17,25 @@
 package org.mbari.vampiresquid.repository.jpa
 
 import jakarta.persistence.EntityManager
-import org.mbari.vampiresquid.domain.Media
+import org.hibernate.ScrollMode
+import org.hibernate.envers.query.AuditEntity
+import org.hibernate.envers.{AuditReaderFactory, RevisionType}
+import org.hibernate.query.Query
+import org.mbari.vampiresquid.domain.{FileNameMatch, Media, MediaChange, MediaChangePage, ResourceVersion}
+import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter
 import org.mbari.vampiresquid.repository.MediaDAO
-import org.mbari.vampiresquid.repository.jpa.entity.Media as MediaDTO
+import org.mbari.vampiresquid.repository.jpa.entity.{
+    Media as MediaDTO,
+    VideoEntity,
+    VideoReferenceEntity,
+    VideoSequenceEntity
+}
 
+import java.net.URI
+import java.time.{Duration, Instant}
+import java.util.UUID
 import scala.jdk.CollectionConverters.*
+import scala.util.Using
 
 class MediaDAOImpl(videoSequenceDao: VideoSequenceDAOImpl) extends MediaDAO:
 
@@ -31,6 +45,205 @@ class MediaDAOImpl(videoSequenceDao: VideoSequenceDAOImpl) extends MediaDAO:
         findByNamedQuery[MediaDTO]("VideoSequence.findMediaByNames", Map("names" -> names.asJava), offset, limit)
             .map(Media.from(_))
 
+    def findByVideoSequenceName(name: String): Seq[Media] =
+        findMedia("VideoSequence.findMediaByName", Map("name" -> name))
+
+    // The single lookups go through the video reference, whose entity and queries may be in the second-level cache
+    private lazy val videoReferenceDao = new VideoReferenceDAOImpl(entityManager)
+
+    def findByVideoReferenceUuid(uuid: UUID): Option[Media] =
+        videoReferenceDao.findByUUID(uuid).map(Media.from(_))
+
+    def findVersionedByVideoReferenceUuid(uuid: UUID): Option[(ResourceVersion, Media)] =
+        entityManager
+            .createNamedQuery("VideoSequence.findVersionedMediaByVideoReferenceUUID")
+            .setParameter("uuid", uuid)
+            .getResultList
+            .asScala
+            .headOption
+            .map(_.asInstanceOf[Array[Object]])
+            .map(row =>
+                // The video sequence, video and video reference, in the order of VideoReference.findMediaVersion
+                val times = row.toSeq.tail.map(t => Option(t.asInstanceOf[java.util.Date]).map(_.toInstant))
+                ResourceVersion.from(times) -> Media.from(row(0).asInstanceOf[MediaDTO])
+            )
+
+    def findBySha512(sha512: Array[Byte]): Option[Media] =
+        videoReferenceDao.findBySha512(sha512).map(Media.from(_))
+
+    def findByURI(uri: URI): Option[Media] =
+        videoReferenceDao.findByURI(uri).map(Media.from(_))
+
+    def findByVideoReferenceUuids(uuids: Iterable[UUID]): Seq[Media] =
+        findMediaIn("VideoSequence.findMediaByVideoReferenceUUIDs", uuids).map(Media.from(_))
+
+    def findByURIs(uris: Iterable[URI]): Seq[Media] =
+        findMediaIn("VideoSequence.findMediaByURIs", uris, "uris").map(Media.from(_))
+
+    def findBySha512s(sha512s: Iterable[Array[Byte]]): Seq[Media] =
+        // Seek the sha512_prefix index, then drop the rows that only share the prefix
+        val wanted   = sha512s.map(ByteArrayConverter.encode).toSet
+        val prefixes = sha512s.flatMap(s => Option(VideoReferenceEntity.sha512Prefix(s)))
+        findMediaIn("VideoSequence.findMediaBySha512Prefixes", prefixes, "prefixes")
+            .map(Media.from(_))
+            .filter(_.sha512.exists(s => wanted.contains(ByteArrayConverter.encode(s))))
+
+    def findByVideoName(name: String): Seq[Media] =
+        findMedia("VideoSequence.findMediaByVideoName", Map("name" -> name))
+
+    def findByFileName(name: String, matchType: FileNameMatch, limit: Int): Seq[Media] =
+        val queryName = matchType match
+            case FileNameMatch.Suffix => "VideoSequence.findMediaByReversedFileNamePattern"
+            case _                    => "VideoSequence.findMediaByFileNamePattern"
+        findByNamedQuery[MediaDTO](queryName, Map("pattern" -> matchType.pattern(name)), limit = Some(limit))
+            .map(Media.from(_))
+
+    def findByCameraIdAndTimestamp(cameraId: String, timestamp: Instant, window: Duration): Seq[Media] =
+        findMedia(
+            "VideoSequence.findMediaByCameraIDAndTimestamp",
+            Map("cameraID" -> cameraId, "startDate" -> timestamp.minus(window.dividedBy(2)), "timestamp" -> timestamp)
+        )
+
+    def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant): Seq[Media] =
+        findMedia(
+            "VideoSequence.findMediaByCameraIDAndTimestamps",
+            Map("cameraID" -> cameraId, "startDate" -> startTime, "endDate" -> endTime)
+        )
+
+    def findByCameraIdCovering(cameraId: String, from: Instant, to: Instant, window: Duration): Seq[Media] =
+        findMedia(
+            "VideoSequence.findMediaByCameraIDCovering",
+            Map(
+                "cameraID"    -> cameraId,
+                "startDate"   -> from.minus(window.dividedBy(2)),
+                "endDate"     -> to,
+                "earliestEnd" -> from
+            )
+        )
+
+    private def findMedia(queryName: String, namedParameters: Map[String, Any]): Seq[Media] =
+        findByNamedQuery[MediaDTO](queryName, namedParameters).map(Media.from(_))
+
+    def foreachMedia(fetchSize: Int)(f: Media => Unit): Long =
+        val query = entityManager
+            .createNamedQuery("VideoSequence.findAllMedia", classOf[MediaDTO])
+            .unwrap(classOf[Query[MediaDTO]])
+            .setFetchSize(fetchSize)
+            .setReadOnly(true)
+        Using.resource(query.scroll(ScrollMode.FORWARD_ONLY)) { results =>
+            var n = 0L
+            while results.next() do
+                f(Media.from(results.get()))
+                n = n + 1
+            n
+        }
+
+    def findLatestRevision(): Long =
+        entityManager.createNativeQuery("SELECT MAX(REV) FROM REVINFO").getSingleResult match
+            case null      => 0L
+            case n: Number => n.longValue()
+            case x         => x.toString.toLong
+
+    def findChanges(after: Long, limit: Int, settledBefore: Instant): MediaChangePage =
+        val cutoff    = settledBefore.toEpochMilli
+        val revisions = entityManager
+            .createNativeQuery("SELECT REV, REVTSTMP FROM REVINFO WHERE REV > ?1 ORDER BY REV")
+            .setParameter(1, after)
+            .setMaxResults(limit)
+            .getResultList
+            .asScala
+            .map(_.asInstanceOf[Array[Object]])
+            .map(row => row(0).asInstanceOf[Number].longValue() -> row(1).asInstanceOf[Number].longValue())
+            .takeWhile((_, timestamp) => timestamp < cutoff)
+            .toMap
+
+        if revisions.isEmpty then MediaChangePage(Nil, after)
+        else
+            val first = revisions.keys.min
+            val last  = revisions.keys.max
+
+            // A change to a video reference is reported as is. A change to its video or video sequence is reported as
+            // an update of every media that it currently holds. Creates and deletes of the parents are skipped as
+            // Envers records a row for each video reference that is cascaded with them.
+            val own       = auditedChanges(classOf[VideoReferenceEntity], first, last)
+            val videos    = auditedChanges(classOf[VideoEntity], first, last).filter(_._3 == RevisionType.MOD)
+            val sequences = auditedChanges(classOf[VideoSequenceEntity], first, last).filter(_._3 == RevisionType.MOD)
+
+            val current = (
+                findMediaIn("VideoSequence.findMediaByVideoReferenceUUIDs", own.map(_._2)) ++
+                    findMediaIn("VideoSequence.findMediaByVideoUUIDs", videos.map(_._2)) ++
+                    findMediaIn("VideoSequence.findMediaByUUIDs", sequences.map(_._2))
+            ).map(Media.from(_))
+
+            val byVideoReference = current.flatMap(m => m.video_reference_uuid.map(_ -> m)).toMap
+            val byVideo          = current.groupBy(_.video_uuid)
+            val bySequence       = current.groupBy(_.video_sequence_uuid)
+
+            def propagated(
+                changes: Seq[(Long, UUID, RevisionType)],
+                media: Map[Option[UUID], Seq[Media]]
+            ): Seq[(Long, UUID, String)] =
+                for
+                    (rev, uuid, _) <- changes
+                    m              <- media.getOrElse(Some(uuid), Nil)
+                    vrUuid         <- m.video_reference_uuid
+                yield (rev, vrUuid, MediaChange.Updated)
+
+            val direct = own.map((rev, uuid, revType) =>
+                val change = revType match
+                    case RevisionType.ADD => MediaChange.Created
+                    case RevisionType.DEL => MediaChange.Deleted
+                    case _                => MediaChange.Updated
+                (rev, uuid, change)
+            )
+
+            // The video reference's own change wins when it and a parent change in the same revision
+            val changes = (direct ++ propagated(videos, byVideo) ++ propagated(sequences, bySequence))
+                .distinctBy((rev, uuid, _) => (rev, uuid))
+                .sortBy((rev, uuid, _) => (rev, uuid.toString))
+                .map((rev, uuid, change) =>
+                    MediaChange(
+                        rev,
+                        Instant.ofEpochMilli(revisions(rev)),
+                        change,
+                        uuid,
+                        if change == MediaChange.Deleted then None else byVideoReference.get(uuid)
+                    )
+                )
+
+            // Revisions that changed no media are read past too, so the next page doesn't read them again
+            MediaChangePage(changes.toList, last)
+
+    /** @return (revision, entity id, revision type) of every audit row of an entity between two revisions */
+    private def auditedChanges(entityClass: Class[?], first: Long, last: Long): Seq[(Long, UUID, RevisionType)] =
+        AuditReaderFactory
+            .get(entityManager)
+            .createQuery()
+            .forRevisionsOfEntity(entityClass, false, true)
+            .add(AuditEntity.revisionNumber().between(first.toInt, last.toInt))
+            .addProjection(AuditEntity.revisionNumber())
+            .addProjection(AuditEntity.id())
+            .addProjection(AuditEntity.revisionType())
+            .getResultList
+            .asScala
+            .toSeq
+            .map(_.asInstanceOf[Array[Object]])
+            .map(row =>
+                (
+                    row(0).asInstanceOf[Number].longValue(),
+                    row(1).asInstanceOf[UUID],
+                    row(2).asInstanceOf[RevisionType]
+                )
+            )
+
+    private def findMediaIn(name: String, values: Iterable[Any], parameter: String = "uuids"): List[MediaDTO] =
+        values
+            .toSeq
+            .distinct
+            .grouped(BaseDAO.MaxInParameters)
+            .flatMap(chunk => findByNamedQuery[MediaDTO](name, Map(parameter -> chunk.asJava)))
+            .toList
+
     def findByNamedQuery[B](
         name: String,
         namedParameters: Map[String, Any] = Map.empty,
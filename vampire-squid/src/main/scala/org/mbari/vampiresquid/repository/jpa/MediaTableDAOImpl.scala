@@ -0,0 +1,160 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import org.hibernate.Session
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.etc.jdbc.Databases
+import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter
+
+import java.net.URI
+import java.sql.{Connection, PreparedStatement, ResultSet}
+import java.time.{Duration, Instant, LocalDateTime, OffsetDateTime, ZoneOffset}
+import java.util.UUID
+import scala.util.Using
+
+/**
+ * A [[MediaDAO]] whose lookups read the denormalized `media` table (see the V1.7.0 migration) with plain JDBC. A media
+ * is a single indexed row there, so no entities are hydrated and no joins are run. The table is maintained by
+ * triggers in the same transaction as every write, so it is never behind the entity tables. The finders return the
+ * same media, in the same order, as those of [[MediaDAOImpl]]. Everything else is inherited.
+ */
+class MediaTableDAOImpl(videoSequenceDao: VideoSequenceDAOImpl) extends MediaDAOImpl(videoSequenceDao):
+
+    import MediaTableDAOImpl.*
+
+    override def findByVideoReferenceUuid(uuid: UUID): Option[Media] =
+        query(s"$Select WHERE video_reference_uuid = ?", Seq(uuid)).headOption
+
+    override def findBySha512(sha512: Array[Byte]): Option[Media] =
+        query(s"$Select WHERE sha512 = ?", Seq(ByteArrayConverter.encode(sha512))).headOption
+
+    override def findByURI(uri: URI): Option[Media] =
+        query(s"$Select WHERE uri = ?", Seq(uri.toString)).headOption
+
+    override def findByVideoReferenceUuids(uuids: Iterable[UUID]): Seq[Media] =
+        queryIn("video_reference_uuid", uuids)
+
+    override def findByURIs(uris: Iterable[URI]): Seq[Media] =
+        queryIn("uri", uris.map(_.toString))
+
+    override def findBySha512s(sha512s: Iterable[Array[Byte]]): Seq[Media] =
+        queryIn("sha512", sha512s.map(ByteArrayConverter.encode))
+
+    override def findByVideoSequenceName(name: String): Seq[Media] =
+        query(s"$Select WHERE video_sequence_name = ? ORDER BY start_time, uri", Seq(name))
+
+    override def findByVideoName(name: String): Seq[Media] =
+        query(s"$Select WHERE video_name = ? ORDER BY uri", Seq(name))
+
+    override def findByCameraIdAndTimestamp(cameraId: String, timestamp: Instant, window: Duration): Seq[Media] =
+        findByCameraIdCovering(cameraId, timestamp, timestamp, window)
+
+    override def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant): Seq[Media] =
+        query(
+            s"$Select WHERE camera_id = ? AND start_time BETWEEN ? AND ? ORDER BY start_time, uri",
+            Seq(cameraId, startTime, endTime)
+        )
+
+    // media has no end_time. The index bounds the rows by start_time and the end is checked here
+    override def findByCameraIdCovering(cameraId: String, from: Instant, to: Instant, window: Duration): Seq[Media] =
+        query(
+            s"$Select WHERE camera_id = ? AND start_time BETWEEN ? AND ? AND duration_millis IS NOT NULL " +
+                "ORDER BY start_time, uri",
+            Seq(cameraId, from.minus(window.dividedBy(2)), to)
+        ).filter(m =>
+            m.start_timestamp.zip(m.duration_millis).exists((start, millis) => !start.plusMillis(millis).isBefore(from))
+        )
+
+    private def queryIn(column: String, values: Iterable[Any]): Seq[Media] =
+        values
+            .toSeq
+            .distinct
+            .grouped(BaseDAO.MaxInParameters)
+            .flatMap(chunk => query(s"$Select WHERE $column IN (${chunk.map(_ => "?").mkString(", ")})", chunk))
+            .toSeq
+
+    private def query(sql: String, params: Seq[Any]): Seq[Media] =
+        entityManager
+            .unwrap(classOf[Session])
+            .doReturningWork((connection: Connection) =>
+                val sqlServer = isSqlServer(connection)
+                Using.resource(connection.prepareStatement(sql)) { statement =>
+                    for (p, i) <- params.zipWithIndex do bind(statement, i + 1, p, sqlServer)
+                    Using.resource(statement.executeQuery()) { rows =>
+                        val media = Seq.newBuilder[Media]
+                        while rows.next() do media += toMedia(rows, sqlServer)
+                        media.result()
+                    }
+                }
+            )
+
+object MediaTableDAOImpl:
+
+    /** The columns of media, in the order read by [[toMedia]] */
+    private val Select =
+        "SELECT video_sequence_uuid, video_uuid, video_reference_uuid, video_sequence_name, camera_id, video_name, " +
+            "uri, start_time, duration_millis, container, video_codec, audio_codec, width, height, frame_rate, " +
+            "size_bytes, description, video_sequence_description, video_description, sha512 FROM media"
+
+    private def isSqlServer(connection: Connection): Boolean =
+        Databases.typeFromUrl(connection.getMetaData.getURL) == Databases.DatabaseType.SQLServer
+
+    /**
+     * SQL Server stores uuids as uniqueidentifier and timestamps as datetimeoffset. PostgreSQL stores uuids natively
+     * and timestamps as UTC without a time zone, like Hibernate does.
+     */
+    private def bind(statement: PreparedStatement, i: Int, value: Any, sqlServer: Boolean): Unit =
+        value match
+            case uuid: UUID       =>
+                if sqlServer then statement.setString(i, uuid.toString) else statement.setObject(i, uuid)
+            case instant: Instant =>
+                if sqlServer then statement.setObject(i, instant.atOffset(ZoneOffset.UTC))
+                else statement.setObject(i, LocalDateTime.ofInstant(instant, ZoneOffset.UTC))
+            case s: String        => statement.setString(i, s)
+            case x                => statement.setObject(i, x)
+
+    private def toMedia(rows: ResultSet, sqlServer: Boolean): Media =
+        // number is called with the value just read, e.g. number(rows.getLong(9))
+        def uuid(i: Int)    = Option(rows.getString(i)).map(UUID.fromString)
+        def string(i: Int)  = Option(rows.getString(i))
+        def number[A](a: A) = if rows.wasNull() then None else Some(a)
+        val start =
+            if sqlServer then Option(rows.getObject(8, classOf[OffsetDateTime])).map(_.toInstant)
+            else Option(rows.getObject(8, classOf[LocalDateTime])).map(_.toInstant(ZoneOffset.UTC))
+        Media(
+            video_sequence_uuid = uuid(1),
+            video_uuid = uuid(2),
+            video_reference_uuid = uuid(3),
+            video_sequence_name = string(4),
+            camera_id = string(5),
+            video_name = string(6),
+            uri = string(7).map(URI.create),
+            start_timestamp = start,
+            duration_millis = number(rows.getLong(9)),
+            container = string(10),
+            video_codec = string(11),
+            audio_codec = string(12),
+            width = number(rows.getInt(13)),
+            height = number(rows.getInt(14)),
+            frame_rate = number(rows.getDouble(15)),
+            size_bytes = number(rows.getLong(16)),
+            description = string(17),
+            video_sequence_description = string(18),
+            video_description = string(19),
+            sha512 = string(20).map(ByteArrayConverter.decode)
+        )
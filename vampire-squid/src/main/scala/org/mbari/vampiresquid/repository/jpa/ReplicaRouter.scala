@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import io.prometheus.metrics.core.metrics.GaugeWithCallback
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import jakarta.persistence.EntityManagerFactory
+import org.mbari.vampiresquid.ReplicaParams
+import org.mbari.vampiresquid.etc.jdk.Logging.given
+
+import java.time.Duration
+import java.util.concurrent.{Executors, TimeUnit}
+import scala.util.Using
+import scala.util.control.NonFatal
+
+/**
+ * Decides whether read-only transactions can use a read replica. The replica's lag is measured every
+ * `lagCheckInterval`. The replica is used while its last measured lag is within `maxLag`. When the lag can't be
+ * measured (e.g. the replica is down) reads go to the primary until the next successful measurement.
+ *
+ * @param replica
+ *   The factory for the replica
+ * @param maxLag
+ *   The largest lag at which the replica is still used
+ * @param measureLag
+ *   Measures how far the replica is behind the primary. Exceptions count as "unknown".
+ */
+class ReplicaRouter(val replica: EntityManagerFactory, maxLag: Duration, measureLag: () => Duration):
+
+    private val log = System.getLogger(getClass.getName)
+
+    @volatile private var lag: Option[Duration] = None
+
+    /** The last measured lag. None if it has not been measured yet or the last measurement failed */
+    def currentLag: Option[Duration] = lag
+
+    def isCaughtUp: Boolean = lag.exists(_.compareTo(maxLag) <= 0)
+
+    /** @return The replica if reads can use it */
+    def available: Option[EntityManagerFactory] = if isCaughtUp then Some(replica) else None
+
+    /** Measures the lag once. Called periodically once the router is started */
+    def refresh(): Unit =
+        val wasCaughtUp = isCaughtUp
+        lag =
+            try Some(measureLag())
+            catch
+                case NonFatal(e) =>
+                    log.atDebug.withCause(e).log("Unable to measure the lag of the read replica")
+                    None
+        if wasCaughtUp != isCaughtUp then
+            if isCaughtUp then log.atInfo.log(s"Read-only transactions use the replica (lag = ${lag.orNull})")
+            else log.atWarn.log(s"Read-only transactions use the primary (replica lag = ${lag.getOrElse("unknown")})")
+
+    def start(interval: Duration): Unit =
+        val scheduler = Executors.newSingleThreadScheduledExecutor(r =>
+            val thread = new Thread(r, "replica-lag-check")
+            thread.setDaemon(true)
+            thread
+        )
+        scheduler.scheduleWithFixedDelay(() => refresh(), 0, interval.toMillis, TimeUnit.MILLISECONDS)
+
+    /**
+     * Registers `vampiresquid_replica_lag_seconds` (absent while unknown) and `vampiresquid_replica_in_use` (1 when
+     * read-only transactions use the replica, otherwise 0)
+     */
+    def register(registry: PrometheusRegistry): Unit =
+        GaugeWithCallback
+            .builder()
+            .name("vampiresquid_replica_lag_seconds")
+            .help("Last measured replication lag of the read replica")
+            .callback(cb => lag.foreach(d => cb.call(d.toMillis / 1000.0)))
+            .register(registry)
+        GaugeWithCallback
+            .builder()
+            .name("vampiresquid_replica_in_use")
+            .help("1 if read-only transactions use the read replica, 0 if they use the primary")
+            .callback(cb => cb.call(if isCaughtUp then 1.0 else 0.0))
+            .register(registry)
+
+object ReplicaRouter:
+
+    /**
+     * Seconds since the last replayed transaction, or 0 if everything received has been replayed (an idle primary
+     * does not make a replica lag). NULL if the replica has never replayed anything.
+     */
+    private val PostgresLagSql =
+        """SELECT CASE
+          |    WHEN NOT pg_is_in_recovery() OR pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0
+          |    ELSE EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp())
+          |END""".stripMargin
+
+    /** For databases whose lag we can't read. A successful query means the replica is up */
+    private val PingSql = "SELECT 1"
+
+    /** Creates the replica's factory and starts measuring its lag */
+    def apply(params: ReplicaParams): ReplicaRouter =
+        val log        = System.getLogger(classOf[ReplicaRouter].getName)
+        val emf        = EntityManagerFactories.replica(params)
+        val isPostgres = params.database.url.startsWith("jdbc:postgresql:")
+        if !isPostgres then
+            log.atWarn.log("The lag of the read replica can only be measured for PostgreSQL. It is used while it is up")
+        val router = new ReplicaRouter(emf, params.maxLag, () => measureLag(emf, isPostgres))
+        router.start(params.lagCheckInterval)
+        router
+
+    private def measureLag(emf: EntityManagerFactory, isPostgres: Boolean): Duration =
+        Using.resource(emf.createEntityManager()) { entityManager =>
+            val sql = if isPostgres then PostgresLagSql else PingSql
+            entityManager.createNativeQuery(sql).getSingleResult match
+                case n: Number if isPostgres => Duration.ofMillis(math.round(n.doubleValue() * 1000))
+                case null                    => throw new IllegalStateException("The replica has not replayed any WAL")
+                case _                       => Duration.ZERO
+        }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import io.prometheus.metrics.core.metrics.CounterWithCallback
+import io.prometheus.metrics.model.registry.PrometheusRegistry
+import jakarta.persistence.EntityManagerFactory
+import org.hibernate.SessionFactory
+import org.hibernate.stat.{CacheRegionStatistics, Statistics}
+import org.mbari.vampiresquid.repository.jpa.entity.CacheRegions
+
+import scala.util.Try
+
+/**
+ * Exposes the hit, miss and put counts of each Hibernate second-level cache region, and of the query cache, as
+ * counters labelled with the region name. Nothing is reported unless the cache (and so Hibernate's statistics) is
+ * enabled.
+ */
+object SecondLevelCacheMetrics:
+
+    /** Label used for the query cache, which is reported alongside the entity and collection regions */
+    val QueryResultsRegion = "query-results"
+
+    /**
+     * @param registry
+     *   The registry used to scrape the metrics (e.g. `Endpoints.prometheusMetrics.registry`)
+     * @param entityManagerFactory
+     *   The factory whose statistics should be reported
+     */
+    def register(registry: PrometheusRegistry, entityManagerFactory: => EntityManagerFactory): Unit =
+
+        def statistics: Option[Statistics] =
+            Try(entityManagerFactory.unwrap(classOf[SessionFactory]).getStatistics)
+                .toOption
+                .filter(_.isStatisticsEnabled)
+
+        def regions(s: Statistics): Seq[(String, CacheRegionStatistics)] =
+            for
+                r  <- CacheRegions.ALL.toSeq
+                rs <- Try(s.getCacheRegionStatistics(r)).toOption.flatMap(Option(_))
+            yield (r, rs)
+
+        def counter(
+            name: String,
+            help: String,
+            region: CacheRegionStatistics => Long,
+            query: Statistics => Long
+        ): Unit =
+            CounterWithCallback
+                .builder()
+                .name(name)
+                .help(help)
+                .labelNames("region")
+                .callback(cb =>
+                    statistics.foreach(s =>
+                        regions(s).foreach((r, rs) => cb.call(region(rs).toDouble, r))
+                        cb.call(query(s).toDouble, QueryResultsRegion)
+                    )
+                )
+                .register(registry)
+
+        counter(
+            "vampiresquid_l2_cache_hits",
+            "Number of second-level cache lookups that found an entry",
+            _.getHitCount,
+            _.getQueryCacheHitCount
+        )
+        counter(
+            "vampiresquid_l2_cache_misses",
+            "Number of second-level cache lookups that had to go to the database",
+            _.getMissCount,
+            _.getQueryCacheMissCount
+        )
+        counter(
+            "vampiresquid_l2_cache_puts",
+            "Number of entries put in the second-level cache",
+            _.getPutCount,
+            _.getQueryCachePutCount
+        )
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import jakarta.persistence.EntityManager
+
+/**
+ * A request-scoped set of DAOs that all share one EntityManager (and so one connection and one transaction). Closing
+ * the unit of work closes the EntityManager for all of them.
+ *
+ * @param entityManager
+ *   The EntityManager shared by the DAOs
+ */
+class UnitOfWork(val entityManager: EntityManager) extends AutoCloseable:
+
+    lazy val videoSequenceDAO: VideoSequenceDAOImpl = new VideoSequenceDAOImpl(entityManager)
+
+    lazy val videoDAO: VideoDAOImpl = new VideoDAOImpl(entityManager)
+
+    lazy val videoReferenceDAO: VideoReferenceDAOImpl = new VideoReferenceDAOImpl(entityManager)
+
+    lazy val mediaDAO: MediaDAOImpl = new MediaDAOImpl(videoSequenceDAO)
+
+    override def close(): Unit =
+        if entityManager.isOpen then entityManager.close()
@@ -18,6 +18,7 @@ package org.mbari.vampiresquid.repository.jpa
 
 import jakarta.persistence.EntityManager
 import org.mbari.vampiresquid.Constants
+import org.mbari.vampiresquid.domain.{PageCursor, ResourceVersion}
 import org.mbari.vampiresquid.repository.VideoDAO
 import org.mbari.vampiresquid.repository.jpa.entity.{NameAndDate, VideoEntity}
 
@@ -32,9 +33,15 @@ import scala.jdk.CollectionConverters.*
  */
 class VideoDAOImpl(entityManager: EntityManager) extends BaseDAO[VideoEntity](entityManager) with VideoDAO[VideoEntity]:
 
+    override def findVersion(uuid: UUID): Option[ResourceVersion] =
+        findVersionByNamedQuery("Video.findVersion", uuid)
+
     override def findByName(name: String): Option[VideoEntity] =
         findByNamedQuery("Video.findByName", Map("name" -> name)).headOption
 
+    override def findByNames(names: Iterable[String]): Iterable[VideoEntity] =
+        findByNamedQueryIn("Video.findByNames", "names", names)
+
     override def findByVideoSequenceUUID(uuid: UUID): Iterable[VideoEntity] =
         findByNamedQuery("Video.findByVideoSequenceUUID", Map("uuid" -> uuid))
 
@@ -45,15 +52,8 @@ class VideoDAOImpl(entityManager: EntityManager) extends BaseDAO[VideoEntity](en
         timestamp: Instant,
         window: Duration = Constants.DEFAULT_DURATION_WINDOW
     ): Iterable[VideoEntity] =
-        val halfRange    = window.dividedBy(2)
-        val startDate    = timestamp.minus(halfRange)
-        val endDate      = timestamp.plus(halfRange)
-        val videos       = findByNamedQuery(
-            "Video.findBetweenDates",
-            Map("startDate" -> startDate, "endDate" -> endDate)
-        )
-        val hasTimestamp = containsTimestamp(_: VideoEntity, timestamp)
-        videos.filter(hasTimestamp)
+        val startDate = timestamp.minus(window.dividedBy(2))
+        findByNamedQuery("Video.findByTimestamp", Map("startDate" -> startDate, "timestamp" -> timestamp))
 
     override def findBetweenTimestamps(t0: Instant, t1: Instant): Iterable[VideoEntity] =
         findByNamedQuery("Video.findBetweenDates", Map("startDate" -> t0, "endDate" -> t1))
@@ -61,18 +61,20 @@ class VideoDAOImpl(entityManager: EntityManager) extends BaseDAO[VideoEntity](en
     override def findAll(offset: Int, limit: Int): Iterable[VideoEntity] =
         findByNamedQuery("Video.findAll", offset = Some(offset), limit = Some(limit))
 
+    override def findAllAfter(cursor: Option[PageCursor], limit: Int): Iterable[VideoEntity] =
+        cursor match
+            case None    => findAll(0, limit)
+            case Some(c) =>
+                findByNamedQuery(
+                    "Video.findAllAfter",
+                    Map("start" -> Instant.parse(c.key), "uuid" -> c.uuid),
+                    limit = Some(limit)
+                )
+
     override def deleteByUUID(primaryKey: UUID): Unit =
         val video = findByUUID(primaryKey)
         video.foreach(v => delete(v))
 
-    private def containsTimestamp(video: VideoEntity, timestamp: Instant): Boolean =
-        val startDate = video.getStart()
-        val endDate   = video.getStart.plus(video.getDuration())
-
-        startDate.equals(timestamp) ||
-        endDate.equals(timestamp) ||
-        (startDate.isBefore(timestamp) && endDate.isAfter(timestamp))
-
     override def findAllNames(): Iterable[String] =
         entityManager
             .createNamedQuery("Video.findAllNames")
@@ -17,13 +17,14 @@
 package org.mbari.vampiresquid.repository.jpa
 
 import jakarta.persistence.EntityManager
+import org.mbari.vampiresquid.domain.{FileNameMatch, PageCursor, ResourceVersion}
 import org.mbari.vampiresquid.repository.VideoReferenceDAO
 import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
 
 import java.net.URI
+import java.time.Duration
 import java.util.UUID
 import scala.jdk.CollectionConverters.*
-import scala.util.control.NonFatal
 
 /**
  * @author
@@ -34,18 +35,50 @@ class VideoReferenceDAOImpl(entityManager: EntityManager)
     extends BaseDAO[VideoReferenceEntity](entityManager)
     with VideoReferenceDAO[VideoReferenceEntity]:
 
+    override def findVersion(uuid: UUID): Option[ResourceVersion] =
+        findVersionByNamedQuery("VideoReference.findVersion", uuid)
+
+    override def findMediaVersion(uuid: UUID): Option[ResourceVersion] =
+        findVersionByNamedQuery("VideoReference.findMediaVersion", uuid)
+
     override def findByVideoUUID(uuid: UUID): Iterable[VideoReferenceEntity] =
         findByNamedQuery("VideoReference.findByVideoUUID", Map("uuid" -> uuid))
 
     override def findByURI(uri: URI): Option[VideoReferenceEntity] =
         findByNamedQuery("VideoReference.findByURI", Map("uri" -> uri)).headOption
 
+    override def findByURIs(uris: Iterable[URI]): Iterable[VideoReferenceEntity] =
+        findByNamedQueryIn("VideoReference.findByURIs", "uris", uris)
+
     override def findByFileName(filename: String): Iterable[VideoReferenceEntity] =
-        findByNamedQuery("VideoReference.findByFileName", Map("filename" -> s"%$filename"))
+        // A name with a path can't be matched against the filename index
+        if filename.contains('/') then
+            findByNamedQuery("VideoReference.findByFileName", Map("filename" -> s"%$filename"))
+        else findByFileNamePattern(filename, FileNameMatch.Suffix, None)
+
+    override def findByFileName(name: String, matchType: FileNameMatch, limit: Int): Iterable[VideoReferenceEntity] =
+        findByFileNamePattern(name, matchType, Some(limit))
+
+    private def findByFileNamePattern(
+        name: String,
+        matchType: FileNameMatch,
+        limit: Option[Int]
+    ): List[VideoReferenceEntity] =
+        val queryName = matchType match
+            case FileNameMatch.Suffix => "VideoReference.findByReversedFileNamePattern"
+            case _                    => "VideoReference.findByFileNamePattern"
+        findByNamedQuery(queryName, Map("pattern" -> matchType.pattern(name)), limit = limit)
 
     override def findAll(offset: Int, limit: Int): Iterable[VideoReferenceEntity] =
         findByNamedQuery("VideoReference.findAll", offset = Some(offset), limit = Some(limit))
 
+    override def findAllAfter(cursor: Option[PageCursor], limit: Int): Iterable[VideoReferenceEntity] =
+        cursor match
+            case None    => findAll(0, limit)
+            // uris are unique so the uuid isn't needed to break ties
+            case Some(c) =>
+                findByNamedQuery("VideoReference.findAllAfter", Map("uri" -> URI.create(c.key)), limit = Some(limit))
+
     override def findAllURIs(): Iterable[URI] =
         val query = entityManager.createNamedQuery("VideoReference.findAllURIs")
         query
@@ -54,31 +87,43 @@ class VideoReferenceDAOImpl(entityManager: EntityManager)
             .map(_.toString)
             .map(URI.create)
 
+    /**
+     * Finds the video references whose video overlaps the video of the given reference, including the reference
+     * itself. The search is an index range scan on (video_sequence_uuid, start_time): a video can only overlap if it
+     * starts before the end of the interval and no earlier than the longest video in the sequence before its start.
+     */
     def findConcurrent(uuid: UUID): Iterable[VideoReferenceEntity] =
         findByUUID(uuid) match
             case None                 => Nil
             case Some(videoReference) =>
-                val video     = videoReference.getVideo
-                val startDate = video.getStart
-                val endDate   = startDate.plus(video.getDuration)
-                val siblings  = video.getVideoSequence.getVideoReferences.asScala
-
-                def filterSiblings(vr: VideoReferenceEntity): Boolean =
-                    try
-                        val s = vr.getVideo.getStart
-                        if s == null then false
-                        else
-                            val e = s.plus(vr.getVideo.getDuration)
-                            s.equals(startDate) ||
-                            e.equals(endDate) ||
-                            (s.isAfter(startDate) && s.isBefore(endDate)) ||
-                            (e.isAfter(startDate) && e.isBefore(endDate)) ||
-                            (s.isBefore(startDate) && e.isAfter(endDate))
-                    catch
-                        case NonFatal(e) =>
-                            false // Can occur if duration is null
-
-                siblings.filter(filterSiblings)
+                val video             = videoReference.getVideo
+                val videoSequenceUuid = video.getVideoSequence.getUuid
+                val startDate         = video.getStart
+                val endDate           = startDate.plus(Option(video.getDuration).getOrElse(Duration.ZERO))
+                findMaxDuration(videoSequenceUuid) match
+                    case None          => Nil
+                    case Some(longest) =>
+                        findByNamedQuery(
+                            "VideoReference.findConcurrent",
+                            Map(
+                                "videoSequenceUuid" -> videoSequenceUuid,
+                                "earliestStart"     -> startDate.minus(longest),
+                                "startDate"         -> startDate,
+                                "endDate"           -> endDate
+                            )
+                        )
+
+    /** The longest video duration in a video sequence. Read from the (video_sequence_uuid, duration_millis) index */
+    private def findMaxDuration(videoSequenceUuid: UUID): Option[Duration] =
+        entityManager
+            .createNamedQuery("Video.findMaxDurationByVideoSequenceUUID")
+            .setParameter("uuid", videoSequenceUuid)
+            .getResultList
+            .asScala
+            .headOption
+            .collect:
+                case d: Duration => d
+                case n: Number   => Duration.ofMillis(n.longValue())
 
     override def deleteByUUID(primaryKey: UUID): Unit =
         val videoReference = findByUUID(primaryKey)
@@ -86,4 +131,10 @@ class VideoReferenceDAOImpl(entityManager: EntityManager)
 
     override def findBySha512(sha: Array[Byte]): Option[VideoReferenceEntity] =
         // val shaEncoded = Base64.getEncoder.encodeToString(sha)
-        findByNamedQuery("VideoReference.findBySha512", Map("sha512" -> sha)).headOption
+        // The prefix is indexed. A checksum too short to have one is compared in full
+        Option(VideoReferenceEntity.sha512Prefix(sha)) match
+            case Some(prefix) =>
+                findByNamedQuery("VideoReference.findBySha512Prefix", Map("prefix" -> prefix, "sha512" -> sha))
+                    .headOption
+            case None         =>
+                findByNamedQuery("VideoReference.findBySha512", Map("sha512" -> sha)).headOption
@@ -18,6 +18,7 @@ package org.mbari.vampiresquid.repository.jpa
 
 import jakarta.persistence.{EntityManager, Transient}
 import org.mbari.vampiresquid.Constants
+import org.mbari.vampiresquid.domain.{PageCursor, ResourceVersion}
 import org.mbari.vampiresquid.repository.VideoSequenceDAO
 import org.mbari.vampiresquid.repository.jpa.entity.VideoSequenceEntity
 import org.slf4j.LoggerFactory
@@ -25,7 +26,6 @@ import org.slf4j.LoggerFactory
 import java.time.{Duration, Instant}
 import java.util.UUID
 import scala.jdk.CollectionConverters.*
-import scala.util.Try
 
 /**
  * @author
@@ -39,6 +39,9 @@ class VideoSequenceDAOImpl(entityManager: EntityManager)
     @Transient
     private val log = LoggerFactory.getLogger(getClass)
 
+    override def findVersion(uuid: UUID): Option[ResourceVersion] =
+        findVersionByNamedQuery("VideoSequence.findVersion", uuid)
+
     override def findEmptyNames(): Iterable[String] = 
         val query = entityManager.createNamedQuery("VideoSequence.listEmpty", classOf[VideoSequenceEntity])
         query
@@ -53,6 +56,9 @@ class VideoSequenceDAOImpl(entityManager: EntityManager)
     override def findByName(name: String): Option[VideoSequenceEntity] =
         findByNamedQuery("VideoSequence.findByName", Map("name" -> name)).headOption
 
+    override def findByNames(names: Iterable[String]): Iterable[VideoSequenceEntity] =
+        findByNamedQueryIn("VideoSequence.findByNames", "names", names)
+
     override def findByVideoUUID(uuid: UUID): Option[VideoSequenceEntity] =
         findByNamedQuery("VideoSequence.findByVideoUUID", Map("uuid" -> uuid)).headOption
 
@@ -65,90 +71,62 @@ class VideoSequenceDAOImpl(entityManager: EntityManager)
      * @param window
      *   A search window that so that the actual search is timestamp +/- (range / 2)
      * @return
+     *   The video sequences that have a video spanning the timestamp, with their videos fetched
      */
     override def findByTimestamp(
         timestamp: Instant,
         window: Duration = Constants.DEFAULT_DURATION_WINDOW
     ): Iterable[VideoSequenceEntity] =
-        val halfRange = window.dividedBy(2)
-        val startDate = timestamp.minus(halfRange)
-        val endDate   = timestamp.plus(halfRange)
-
-        val videoSequences = findByNamedQuery(
-            "VideoSequence.findBetweenDates",
-            Map("startDate" -> startDate, "endDate" -> endDate)
-        )
-
-        if log.isDebugEnabled then
-            val info = videoSequences
-                .flatMap(_.getVideos().asScala)
-                .map(v => s"\t${v.getName()} at ${v.getStart()} for ${v.getDuration()}")
-                .mkString("\n")
-            val s    =
-                s"""
-           | Found ${videoSequences.size} VideoSequences between $startDate and $endDate
-           | $info
-         """.stripMargin
-            log.debug(s)
-
-        val hasTimestamp =
-            containsTimestamp(_: VideoSequenceEntity, timestamp) // Partially apply the function to timestamp
-
-        videoSequences.filter(hasTimestamp).toSet
+        findContaining("VideoSequence.findByTimestamp", timestamp, window)
 
     override def findByNameAndTimestamp(
         name: String,
         timestamp: Instant,
         window: Duration = Constants.DEFAULT_DURATION_WINDOW
     ): Iterable[VideoSequenceEntity] =
-        val halfRange      = window.dividedBy(2)
-        val startDate      = timestamp.minus(halfRange)
-        val endDate        = timestamp.plus(halfRange)
-        val videoSequences = findByNamedQuery(
-            "VideoSequence.findByNameAndBetweenDates",
-            Map("startDate" -> startDate, "endDate" -> endDate, "name" -> name)
-        )
-
-        val hasTimestamp =
-            containsTimestamp(_: VideoSequenceEntity, timestamp) // Partially apply the function to timestamp
-
-        videoSequences.filter(hasTimestamp).toSet
+        findContaining("VideoSequence.findByNameAndTimestamp", timestamp, window, Map("name" -> name))
 
     override def findByCameraIDAndTimestamp(
         cameraID: String,
         timestamp: Instant,
         window: Duration = Constants.DEFAULT_DURATION_WINDOW
     ): Iterable[VideoSequenceEntity] =
-        val halfRange = window.dividedBy(2)
-        val startDate = timestamp.minus(halfRange)
-        val endDate   = timestamp.plus(halfRange)
-
-        val videoSequences = findByNamedQuery(
-            "VideoSequence.findByCameraIDAndBetweenDates",
-            Map("startDate" -> startDate, "endDate" -> endDate, "cameraID" -> cameraID)
-        )
-
-        val hasTimestamp =
-            containsTimestamp(_: VideoSequenceEntity, timestamp) // Partially apply the function to timestamp
-
-        videoSequences.filter(hasTimestamp).toSet
+        findContaining("VideoSequence.findByCameraIDAndTimestamp", timestamp, window, Map("cameraID" -> cameraID))
 
     override def deleteByUUID(primaryKey: UUID): Unit =
         findByUUID(primaryKey).foreach(delete)
 
-    private def containsTimestamp(vs: VideoSequenceEntity, timestamp: Instant): Boolean =
-        vs.getVideos()
-            .asScala
-            .map(v => (v.getStart, Try(v.getStart.plus(v.getDuration())).getOrElse(v.getStart())))
-            .exists { case (a, b) =>
-                a.equals(timestamp) ||
-                b.equals(timestamp) ||
-                (a.isBefore(timestamp) && b.isAfter(timestamp))
-            }
+    /**
+     * Runs one of the timestamp containment queries. The overlap test (start <= timestamp <= end_time) is done by the
+     * database. A video can only contain the timestamp if it started before it, so the window only bounds the start
+     * from below, which keeps the scan on the start_time index short.
+     */
+    private def findContaining(
+        queryName: String,
+        timestamp: Instant,
+        window: Duration,
+        namedParameters: Map[String, Any] = Map.empty
+    ): Iterable[VideoSequenceEntity] =
+        val startDate      = timestamp.minus(window.dividedBy(2))
+        val videoSequences = findByNamedQuery(
+            queryName,
+            namedParameters ++ Map("startDate" -> startDate, "timestamp" -> timestamp)
+        ).toSet
+
+        if log.isDebugEnabled then
+            log.debug(s"Found ${videoSequences.size} VideoSequences containing $timestamp using $queryName")
+
+        videoSequences
 
     override def findAll(offset: Int, limit: Int): Iterable[VideoSequenceEntity] =
         findByNamedQuery("VideoSequence.findAll", offset = Some(offset), limit = Some(limit))
 
+    override def findAllAfter(cursor: Option[PageCursor], limit: Int): Iterable[VideoSequenceEntity] =
+        cursor match
+            case None    => findAll(0, limit)
+            // names are unique so the uuid isn't needed to break ties
+            case Some(c) => findByNamedQuery("VideoSequence.findAllAfter", Map("name" -> c.key), limit = Some(limit))
+
     override def findAllNames(): Iterable[String] =
         entityManager
             .createNamedQuery("VideoSequence.findAllNames")
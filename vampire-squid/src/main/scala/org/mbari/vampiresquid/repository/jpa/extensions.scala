@@ -16,12 +16,14 @@
 
 package org.mbari.vampiresquid.repository.jpa
 
-import jakarta.persistence.{EntityManager, FlushModeType}
+import jakarta.persistence.{EntityManager, EntityManagerFactory, FlushModeType}
 import org.slf4j.LoggerFactory
+import org.mbari.vampiresquid.AppConfig
 import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.metrics.RequestTimings
 
-
-import scala.concurrent.{ExecutionContext, Future}
+import java.util.concurrent.{ConcurrentHashMap, Semaphore}
+import scala.concurrent.{blocking, ExecutionContext, Future}
 import scala.util.control.NonFatal
 
 /**
@@ -35,9 +37,49 @@ object extensions:
 
     private val log = System.getLogger(getClass().getName)
 
+    /**
+     * Bounds the number of transactions that run at once on each connection pool to the size of that pool. With
+     * virtual threads there is no thread pool to do this, and thousands of threads parked on Hikari would time out
+     * rather than queue. The primary and the read replica have separate pools, so each factory gets its own permits.
+     */
+    private val permits = new ConcurrentHashMap[EntityManagerFactory, Semaphore]()
+
+    private def permitsFor(entityManager: EntityManager): Semaphore =
+        permits.computeIfAbsent(
+            entityManager.getEntityManagerFactory,
+            factory =>
+                val poolSize = Option(factory.getProperties.get("hibernate.hikari.maximumPoolSize"))
+                    .map(_.toString.toInt)
+                    .getOrElse(AppConfig.ExecutionParameters.databasePoolSize)
+                new Semaphore(poolSize, true)
+        )
+
+    /**
+     * Runs blocking database work. `blocking` lets the global pool add threads while this one waits on JDBC. It's a
+     * no-op on virtual threads.
+     */
+    private def withPermit[R](permits: Semaphore)(fn: => R): R =
+        blocking:
+            permits.acquire()
+            try fn
+            finally permits.release()
+
+    /**
+     * Runs a transaction in a Future. The time it waited to start (executor queue and permit) and the time it ran are
+     * added to the timings of the request that submitted it. The timings must be read on the submitting thread.
+     */
+    private def submit[R](entityManager: EntityManager)(fn: => R)(using ec: ExecutionContext): Future[R] =
+        val timings   = RequestTimings.current
+        val submitted = System.nanoTime()
+        Future:
+            withPermit(permitsFor(entityManager)):
+                val started = System.nanoTime()
+                try fn
+                finally timings.foreach(_.addTransaction(started - submitted, System.nanoTime() - started))
+
     extension (entityManager: EntityManager)
         def runTransaction[R](fn: EntityManager => R)(implicit ec: ExecutionContext): Future[R] =
-            Future:
+            submit(entityManager):
                 val transaction = entityManager.getTransaction
                 transaction.begin()
                 try
@@ -56,8 +98,7 @@ object extensions:
          * with a read-only database connection.
          */
         def runReadOnlyTransaction[R](fn: EntityManager => R)(implicit ec: ExecutionContext): Future[R] =
-            Future:
-                runReadOnlyTransactionSync(fn)
+            submit(entityManager)(runReadOnlyTransactionSync(fn))
 
         /**
          * Synchronous version of runReadOnlyTransaction. Sets flush mode to COMMIT (no auto-flush) and rolls back the
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.reactive
+
+import io.vertx.pgclient.{PgBuilder, PgConnectOptions, SslMode}
+import io.vertx.sqlclient.{Pool, PoolOptions, Row, Tuple}
+import org.mbari.vampiresquid.domain.{Media, ResourceVersion}
+import org.mbari.vampiresquid.etc.jdk.Logging.given
+import org.mbari.vampiresquid.etc.jpa.ByteArrayConverter
+import org.mbari.vampiresquid.repository.MediaReader
+import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
+import org.mbari.vampiresquid.{DatabaseParams, ReactiveParams}
+
+import java.net.{URI, URLDecoder}
+import java.nio.charset.StandardCharsets
+import java.time.{Duration, Instant, LocalDateTime, ZoneId}
+import java.util.UUID
+import scala.concurrent.{ExecutionContext, Future}
+import scala.jdk.CollectionConverters.*
+import scala.jdk.FutureConverters.*
+
+/**
+ * A [[MediaReader]] that uses the Vert.x reactive PostgreSQL client. It has its own connection pool, separate from
+ * the JDBC pool used by JPA, and reads the tables directly with the same joins as the `VideoSequence.findMedia*`
+ * named queries.
+ *
+ * The timestamp columns have no time zone. JDBC, and so Hibernate, writes them as local times in the JVM's default
+ * zone, which Main pins to UTC. The reader has to convert in that same zone.
+ *
+ * @param pool
+ *   The pool to read from. It is closed along with the reader.
+ * @param zone
+ *   The zone that timestamps were written in
+ */
+class PgMediaReader(pool: Pool, zone: ZoneId = ZoneId.systemDefault()) extends MediaReader:
+
+    import PgMediaReader.*
+
+    def findByVideoReferenceUuid(uuid: UUID): Future[Option[Media]] =
+        one(s"$Select WHERE r.uuid = $$1", Tuple.of(uuid))
+
+    def findMediaVersion(uuid: UUID): Future[Option[ResourceVersion]] =
+        query(s"SELECT $VersionColumns $From WHERE r.uuid = $$1", Tuple.of(uuid))
+            .map(_.headOption.map(toVersion(_, 0)))(using ExecutionContext.parasitic)
+
+    def findVersionedByVideoReferenceUuid(uuid: UUID): Future[Option[(ResourceVersion, Media)]] =
+        query(s"SELECT $Columns, $VersionColumns $From WHERE r.uuid = $$1", Tuple.of(uuid))
+            .map(_.headOption.map(row => toVersion(row, 20) -> toMedia(row, zone)))(using ExecutionContext.parasitic)
+
+    def findBySha512(sha512: Array[Byte]): Future[Option[Media]] =
+        val hex = ByteArrayConverter.encode(sha512)
+        Option(VideoReferenceEntity.sha512Prefix(sha512)) match
+            case Some(prefix) =>
+                one(s"$Select WHERE r.sha512_prefix = $$1 AND r.sha512 = $$2 LIMIT 1", Tuple.of(prefix, hex))
+            case None         => one(s"$Select WHERE r.sha512 = $$1 LIMIT 1", Tuple.of(hex))
+
+    def findByURI(uri: URI): Future[Option[Media]] =
+        one(s"$Select WHERE r.uri = $$1", Tuple.of(uri.toString))
+
+    def findByVideoSequenceName(name: String): Future[Seq[Media]] =
+        list(s"$Select WHERE s.name = $$1 ORDER BY v.start_time ASC, r.uri ASC", Tuple.of(name))
+
+    def findByVideoName(name: String): Future[Seq[Media]] =
+        list(s"$Select WHERE v.name = $$1 ORDER BY r.uri ASC", Tuple.of(name))
+
+    def findByCameraIdAndTimestamp(cameraId: String, timestamp: Instant, window: Duration): Future[Seq[Media]] =
+        list(
+            s"$Select WHERE s.camera_id = $$1 AND v.start_time BETWEEN $$2 AND $$3 AND v.end_time >= $$3 " +
+                "AND v.duration_millis IS NOT NULL ORDER BY v.start_time ASC, r.uri ASC",
+            Tuple.of(cameraId, local(timestamp.minus(window.dividedBy(2))), local(timestamp))
+        )
+
+    def findByCameraIdAndTimestamps(cameraId: String, startTime: Instant, endTime: Instant): Future[Seq[Media]] =
+        list(
+            s"$Select WHERE s.camera_id = $$1 AND v.start_time BETWEEN $$2 AND $$3 ORDER BY v.start_time ASC, r.uri ASC",
+            Tuple.of(cameraId, local(startTime), local(endTime))
+        )
+
+    override def close(): Unit = pool.close()
+
+    private def local(instant: Instant): LocalDateTime = LocalDateTime.ofInstant(instant, zone)
+
+    /** Reads the [[VersionColumns]], starting at column `first` */
+    private def toVersion(row: Row, first: Int): ResourceVersion =
+        ResourceVersion.from(
+            (first until first + 3).map(i => Option(row.getLocalDateTime(i)).map(_.atZone(zone).toInstant))
+        )
+
+    // Mapping rows is cheap, so it is done on the driver's thread rather than handed to another executor
+    private def list(sql: String, args: Tuple): Future[Seq[Media]] =
+        query(sql, args).map(_.map(toMedia(_, zone)).toSeq)(using ExecutionContext.parasitic)
+
+    private def one(sql: String, args: Tuple): Future[Option[Media]] =
+        query(sql, args).map(_.headOption.map(toMedia(_, zone)))(using ExecutionContext.parasitic)
+
+    private def query(sql: String, args: Tuple): Future[Iterable[Row]] =
+        pool
+            .preparedQuery(sql)
+            .execute(args)
+            .toCompletionStage
+            .asScala
+            .map(_.asScala)(using ExecutionContext.parasitic)
+
+object PgMediaReader:
+
+    private val log = System.getLogger(getClass.getName)
+
+    /** Same columns, in the same order, as the Media projection of the `VideoSequence.findMedia*` named queries */
+    private val Columns =
+        "s.uuid, v.uuid, r.uuid, s.name, s.camera_id, v.name, r.uri, v.start_time, v.duration_millis, " +
+            "r.container, r.video_codec, r.audio_codec, r.width, r.height, r.frame_rate, r.size_bytes, " +
+            "r.description, s.description, v.description, r.sha512"
+
+    private val From =
+        "FROM video_sequences s " +
+            "JOIN videos v ON v.video_sequence_uuid = s.uuid " +
+            "JOIN video_references r ON r.video_uuid = v.uuid"
+
+    private val Select = s"SELECT $Columns $From"
+
+    /** The columns that make up the version of a media, in the order of `VideoReference.findMediaVersion` */
+    private val VersionColumns = "s.last_updated_time, v.last_updated_time, r.last_updated_time"
+
+    /**
+     * Creates a reader if one is enabled in the configuration. Only PostgreSQL is supported, for any other database
+     * the reads stay on JPA.
+     *
+     * @return
+     *   None if the reactive reader is disabled or the database is not PostgreSQL
+     */
+    def create(database: DatabaseParams, reactive: ReactiveParams): Option[PgMediaReader] =
+        if !reactive.enabled then None
+        else if !database.url.startsWith("jdbc:postgresql:") then
+            log.atWarn
+                .log(s"database.reactive.enabled is set but ${database.url} is not PostgreSQL. Media reads use JPA")
+            None
+        else
+            val connectOptions = fromJdbcUrl(database.url)
+                .setUser(database.user)
+                .setPassword(database.password)
+                .setCachePreparedStatements(true)
+            val pool           = PgBuilder
+                .pool()
+                .`with`(new PoolOptions().setMaxSize(reactive.poolSize))
+                .connectingTo(connectOptions)
+                .build()
+            log.atInfo.log(s"Reading media with the reactive PostgreSQL client (pool size = ${reactive.poolSize})")
+            Some(new PgMediaReader(pool))
+
+    /**
+     * Vert.x rejects the query parameters that only the JDBC driver knows about, so they are taken off the URL before
+     * it is parsed. `sslmode`, `ssl=true`, `currentSchema` and `ApplicationName` are mapped to their Vert.x
+     * equivalents. Any other parameter only tunes the JDBC driver and is ignored.
+     *
+     * @param jdbcUrl
+     *   A `jdbc:postgresql://` URL
+     */
+    def fromJdbcUrl(jdbcUrl: String): PgConnectOptions =
+        val (base, query) = jdbcUrl.stripPrefix("jdbc:").split("\\?", 2) match
+            case Array(base, query) => (base, query)
+            case Array(base)        => (base, "")
+        val params        = query
+            .split("&")
+            .filter(_.nonEmpty)
+            .map(_.split("=", 2))
+            .map(kv => kv(0) -> URLDecoder.decode(kv.lift(1).getOrElse(""), StandardCharsets.UTF_8))
+            .toMap
+        val options       = PgConnectOptions.fromUri(base)
+        params.foreach:
+            case ("sslmode", mode)                              => options.setSslMode(SslMode.of(mode))
+            // pgjdbc verifies the server's certificate and host name when ssl=true
+            case ("ssl", "true") if !params.contains("sslmode") => options.setSslMode(SslMode.VERIFY_FULL)
+            case ("currentSchema", schema)                      => options.addProperty("search_path", schema)
+            case ("ApplicationName", name)                      => options.addProperty("application_name", name)
+            case (key, _)                                       =>
+                log.atDebug.log(s"Ignoring the JDBC-only parameter $key for the reactive PostgreSQL client")
+        options
+
+    private def toMedia(row: Row, zone: ZoneId): Media =
+        Media(
+            video_sequence_uuid = Option(row.getUUID(0)),
+            video_uuid = Option(row.getUUID(1)),
+            video_reference_uuid = Option(row.getUUID(2)),
+            video_sequence_name = Option(row.getString(3)),
+            camera_id = Option(row.getString(4)),
+            video_name = Option(row.getString(5)),
+            uri = Option(row.getString(6)).map(URI.create),
+            start_timestamp = Option(row.getLocalDateTime(7)).map(_.atZone(zone).toInstant),
+            duration_millis = Option(row.getLong(8)).map(_.longValue),
+            container = Option(row.getString(9)),
+            video_codec = Option(row.getString(10)),
+            audio_codec = Option(row.getString(11)),
+            width = Option(row.getInteger(12)).map(_.intValue),
+            height = Option(row.getInteger(13)).map(_.intValue),
+            frame_rate = Option(row.getDouble(14)).map(_.doubleValue),
+            size_bytes = Option(row.getLong(15)).map(_.longValue),
+            description = Option(row.getString(16)),
+            video_sequence_description = Option(row.getString(17)),
+            video_description = Option(row.getString(18)),
+            sha512 = Option(row.getString(19)).map(ByteArrayConverter.decode)
+        )
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.controllers
+
+import org.mbari.vampiresquid.domain.Media
+
+import java.time.{Duration, Instant}
+
+class MediaControllerSweepSuite extends munit.FunSuite:
+
+    private val t0     = Instant.parse("2024-06-01T00:00:00Z")
+    private val window = Duration.ofHours(2)
+
+    private def media(name: String, startMinutes: Long, durationMinutes: Long): Media =
+        Media(
+            video_name = Some(name),
+            start_timestamp = Some(t0.plus(Duration.ofMinutes(startMinutes))),
+            duration_millis = Some(Duration.ofMinutes(durationMinutes).toMillis)
+        )
+
+    private def at(minutes: Long): Instant = t0.plus(Duration.ofMinutes(minutes))
+
+    private def names(results: Seq[(Int, List[Media])]): Map[Int, Set[String]] =
+        results.map((k, ms) => k -> ms.flatMap(_.video_name).toSet).toMap
+
+    test("sweep matches each timestamp to the media that contain it"):
+        val ms = Seq(media("a", 0, 10), media("b", 5, 10), media("c", 20, 10))
+        val ts = Seq(at(-1), at(0), at(7), at(10), at(12), at(16), at(25), at(40)).zipWithIndex
+        val xs = MediaController.sweep(ms, ts, window)
+        assertEquals(xs.map(_._1), ts.map(_._2))
+        assertEquals(
+            names(xs),
+            Map(
+                0 -> Set.empty[String],
+                1 -> Set("a"),
+                2 -> Set("a", "b"),
+                3 -> Set("a", "b"),
+                4 -> Set("b"),
+                5 -> Set.empty[String],
+                6 -> Set("c"),
+                7 -> Set.empty[String]
+            )
+        )
+
+    test("sweep ignores media that started more than half the window before the timestamp"):
+        val ms = Seq(media("long", 0, 300), media("short", 90, 60))
+        val xs = MediaController.sweep(ms, Seq(at(30), at(100), at(130)).zipWithIndex, window)
+        assertEquals(names(xs), Map(0 -> Set("long"), 1 -> Set("short"), 2 -> Set("short")))
+
+    test("sweep handles repeated timestamps and media without a duration"):
+        val ms = Seq(Media(video_name = Some("none"), start_timestamp = Some(at(0))), media("a", 0, 10))
+        val xs = MediaController.sweep(ms, Seq((at(5), "x"), (at(5), "y")), window)
+        assertEquals(xs.map((k, found) => (k, found.flatMap(_.video_name))), Seq(("x", List("a")), ("y", List("a"))))
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+class FileNameMatchSuite extends munit.FunSuite:
+
+    test("pattern"):
+        assertEquals(FileNameMatch.Prefix.pattern("D0123"), "D0123%")
+        assertEquals(FileNameMatch.Suffix.pattern(".mov"), "vom.%")
+        assertEquals(FileNameMatch.Contains.pattern("0123"), "%0123%")
+
+    test("pattern matches wildcards literally"):
+        assertEquals(FileNameMatch.Prefix.pattern("100%_[a]!"), "100!%!_![a]!!%")
+
+    test("parse"):
+        assertEquals(FileNameMatch.parse("prefix"), Some(FileNameMatch.Prefix))
+        assertEquals(FileNameMatch.parse("SUFFIX"), Some(FileNameMatch.Suffix))
+        assertEquals(FileNameMatch.parse("contains"), Some(FileNameMatch.Contains))
+        assertEquals(FileNameMatch.parse("regex"), None)
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import java.time.Instant
+import java.util.UUID
+
+class PageCursorSuite extends munit.FunSuite:
+
+    test("encode/decode"):
+        val cursors = Seq(
+            PageCursor(Instant.parse("2026-01-02T03:04:05.678Z").toString, UUID.randomUUID()),
+            PageCursor("http://foo.org/bar baz/ünïcode?a=b&c=d", UUID.randomUUID()),
+            PageCursor("", UUID.randomUUID())
+        )
+        for c <- cursors do
+            val token = c.encode
+            assert(token.forall(ch => ch.isLetterOrDigit || ch == '-' || ch == '_'), s"$token is not URL safe")
+            assertEquals(PageCursor.decode(token), Right(c))
+
+    test("decode rejects garbage"):
+        assert(PageCursor.decode("not a cursor!").isLeft)
+        assert(PageCursor.decode("").isLeft)
+        assert(PageCursor.decode(java.util.Base64.getUrlEncoder.encodeToString("short".getBytes)).isLeft)
+
+    test("decode rejects a key that isn't the sort key of the list"):
+        val uuid = UUID.randomUUID()
+        val good = PageCursor(Instant.parse("2026-01-02T03:04:05.678Z").toString, uuid).encode
+        val bad  = PageCursor("2026-13-45 tampered", uuid).encode
+        assert(PageCursor.decode(good, PageCursor.isInstant).isRight)
+        assert(PageCursor.decode(bad, PageCursor.isInstant).isLeft)
+        assert(PageCursor.decode(bad).isRight)
+        assert(PageCursor.decode(PageCursor("http://foo.org/a b", uuid).encode, PageCursor.isUri).isLeft)
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.domain
+
+import org.mbari.vampiresquid.endpoints.{Endpoints, Preconditions}
+import org.mbari.vampiresquid.etc.tapir.TapirCodecs
+import sttp.tapir.Endpoint
+import sttp.tapir.server.ServerEndpoint
+
+import java.time.Instant
+import scala.concurrent.Future
+
+class ResourceVersionSuite extends munit.FunSuite:
+
+    private val endpoints = new Endpoints:
+        override def all: List[Endpoint[?, ?, ?, ?, ?]]        = Nil
+        override def allImpl: List[ServerEndpoint[Any, Future]] = Nil
+
+    private val t0 = Instant.parse("2024-03-01T12:00:00.250Z")
+    private val t1 = Instant.parse("2024-03-01T12:00:05Z")
+
+    test("from"):
+        val v = ResourceVersion.from(Seq(Some(t0), None, Some(t1)), Seq(2L, 0L))
+        assertEquals(v.lastModified, t1)
+        assertEquals(v.etag, "\"%x-0-%x-2-0\"".format(t0.toEpochMilli, t1.toEpochMilli))
+
+    test("from changes when a child is removed"):
+        val a = ResourceVersion.from(Seq(Some(t0), Some(t1)), Seq(2L))
+        val b = ResourceVersion.from(Seq(Some(t0), Some(t1)), Seq(1L))
+        assertNotEquals(a.etag, b.etag)
+
+    test("from with no times"):
+        assertEquals(ResourceVersion.from(Seq(None)).lastModified, Instant.EPOCH)
+
+    test("isNotModified with If-None-Match"):
+        val v = ResourceVersion.from(Seq(Some(t0)))
+        assert(endpoints.isNotModified(Preconditions(ifNoneMatch = Some(v.etag)), v))
+        assert(endpoints.isNotModified(Preconditions(ifNoneMatch = Some("*")), v))
+        assert(!endpoints.isNotModified(Preconditions(ifNoneMatch = Some("\"0\"")), v))
+
+    test("isNotModified with If-Modified-Since"):
+        val v = ResourceVersion.from(Seq(Some(t0)))
+        // HTTP dates have second precision, so the 250 ms are dropped
+        val same  = TapirCodecs.encodeHttpDate(t0)
+        val older = TapirCodecs.encodeHttpDate(t0.minusSeconds(1))
+        assert(endpoints.isNotModified(Preconditions(ifModifiedSince = Some(same)), v))
+        assert(!endpoints.isNotModified(Preconditions(ifModifiedSince = Some(older)), v))
+        assert(!endpoints.isNotModified(Preconditions(ifModifiedSince = Some("yesterday")), v))
+
+    test("If-None-Match takes precedence over If-Modified-Since"):
+        val v = ResourceVersion.from(Seq(Some(t0)))
+        val p = Preconditions(Some("\"0\""), Some(TapirCodecs.encodeHttpDate(t0)))
+        assert(!endpoints.isNotModified(p, v))
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.endpoints
+
+import io.circe.parser.decode
+import io.circe.syntax.*
+import org.mbari.vampiresquid.domain.{Media, NotFound}
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
+import org.mbari.vampiresquid.etc.cbor.CborEncoder
+import org.mbari.vampiresquid.etc.circe.CirceCodecs
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
+import org.mbari.vampiresquid.etc.sdk.FutureUtil.join
+import sttp.client3.*
+import sttp.client3.testing.SttpBackendStub
+import sttp.model.{HeaderNames, MediaType, StatusCode}
+import sttp.tapir.server.ServerEndpoint
+import sttp.tapir.server.stub.TapirStubInterpreter
+import sttp.tapir.{stringToPath, Endpoint}
+
+import scala.concurrent.{ExecutionContext, Future}
+
+class EndpointsSuite extends munit.FunSuite:
+
+    given ExecutionContext = ExecutionContext.global
+
+    private val endpoints = new Endpoints:
+        override def all: List[Endpoint[?, ?, ?, ?, ?]]        = Nil
+        override def allImpl: List[ServerEndpoint[Any, Future]] = Nil
+    import endpoints.given // Schema[Media]
+
+    private val media = List(Media(video_name = Some("a"), width = Some(1920)))
+
+    private val backend = TapirStubInterpreter(SttpBackendStub.asynchronousFuture)
+        .whenServerEndpointRunLogic(
+            endpoints
+                .openEndpoint
+                .get
+                .in("media")
+                .out(endpoints.jsonOrCborBody[List[Media]])
+                .serverLogic[Future](_ => endpoints.handleErrors(Future.successful(media)))
+        )
+        .whenServerEndpointRunLogic(
+            endpoints
+                .openEndpoint
+                .get
+                .in("media" / "missing")
+                .out(endpoints.jsonOrCborBody[Media])
+                .serverLogic[Future](_ => endpoints.handleOption(Future.successful(None)))
+        )
+        .backend()
+
+    test("jsonOrCborBody answers with CBOR when it is accepted and with circe's JSON otherwise"):
+        val cbor = basicRequest
+            .get(uri"http://test.com/media")
+            .header(HeaderNames.Accept, "application/cbor")
+            .response(asByteArray)
+            .send(backend)
+            .join
+        assertEquals(cbor.contentType, Some("application/cbor"))
+        assertEquals(cbor.body.map(_.toSeq), Right(CborEncoder.encode(media).toSeq))
+
+        val json = basicRequest.get(uri"http://test.com/media").send(backend).join
+        assert(json.contentType.exists(_.startsWith(MediaType.ApplicationJson.toString)))
+        assertEquals(json.body, Right(CirceCodecs.CustomPrinter.print(media.asJson)))
+
+    test("an error is sent as JSON even when CBOR is accepted"):
+        val response = basicRequest
+            .get(uri"http://test.com/media/missing")
+            .header(HeaderNames.Accept, "application/cbor")
+            .send(backend)
+            .join
+        assertEquals(response.code, StatusCode.NotFound)
+        assert(response.contentType.exists(_.startsWith(MediaType.ApplicationJson.toString)))
+        assertEquals(response.body.swap.map(decode[NotFound](_)), Right(Right(NotFound("Not found"))))
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.endpoints
+
+import org.mbari.vampiresquid.repository.jpa.entity.VideoReferenceEntity
+
+import java.util.{Base64, HexFormat}
+
+class MediaEndpointsSuite extends munit.FunSuite:
+
+    private val sha512 = Array.tabulate[Byte](64)(i => (i * 7 - 128).toByte)
+
+    test("decodeSha512 accepts hex and base64"):
+        val hex    = HexFormat.of().formatHex(sha512)
+        val base64 = Base64.getEncoder.encodeToString(sha512)
+        assertEquals(MediaEndpoints.decodeSha512(hex).map(_.toSeq), Some(sha512.toSeq))
+        assertEquals(MediaEndpoints.decodeSha512(hex.toUpperCase).map(_.toSeq), Some(sha512.toSeq))
+        assertEquals(MediaEndpoints.decodeSha512(base64).map(_.toSeq), Some(sha512.toSeq))
+
+    test("decodeSha512 rejects text that is not a sha512"):
+        assertEquals(MediaEndpoints.decodeSha512("not a checksum"), None)
+        assertEquals(MediaEndpoints.decodeSha512(HexFormat.of().formatHex(sha512.take(32))), None)
+
+    test("sha512Prefix matches the database's reading of the first 16 hex characters"):
+        // ('x' || substr(sha512, 1, 16))::bit(64)::bigint in PostgreSQL
+        val hex      = HexFormat.of().formatHex(sha512)
+        val expected = java.lang.Long.parseUnsignedLong(hex.take(16), 16)
+        assertEquals(VideoReferenceEntity.sha512Prefix(sha512).longValue, expected)
+        assertEquals(VideoReferenceEntity.sha512Prefix(sha512.take(7)), null)
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.endpoints
+
+import io.vertx.core.Future as VertxFuture
+import io.vertx.core.buffer.Buffer
+import io.vertx.core.http.HttpServerResponse
+import io.vertx.ext.web.RoutingContext
+import org.mbari.vampiresquid.controllers.MediaController
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonEncoder
+import org.mbari.vampiresquid.etc.sdk.FutureUtil.join
+
+import java.io.ByteArrayOutputStream
+import java.lang.reflect.{InvocationHandler, Proxy}
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.concurrent.{CancellationException, ConcurrentHashMap}
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.{ExecutionContext, Future, Promise}
+import scala.util.Try
+
+class MediaExportHandlerSuite extends munit.FunSuite:
+
+    private given ExecutionContext = ExecutionContext.global
+
+    private val t0 = Instant.parse("2024-06-01T00:00:00Z")
+
+    private def media(i: Int): Media =
+        Media(
+            video_sequence_name = Some("seq"),
+            video_name = Some(s"video-$i"),
+            uri = Some(URI.create(s"http://www.mbari.org/movies/$i.mp4")),
+            start_timestamp = Some(t0.plusSeconds(i))
+        )
+
+    /**
+     * A MediaController that walks `n` media without a database. `visited` completes with the result of the walk.
+     */
+    private class StubController(n: Int) extends MediaController(null):
+        val visited = Promise[Long]()
+        val calls   = new AtomicInteger()
+
+        override def foreachMedia(fetchSize: Int)(f: Media => Unit)(implicit ec: ExecutionContext): Future[Long] =
+            val walk = Future {
+                for i <- 0 until n do
+                    calls.incrementAndGet()
+                    f(media(i))
+                n.toLong
+            }
+            visited.completeWith(walk)
+            walk
+
+    /**
+     * Records what the handler writes. The client is treated as gone once `disconnectAfterWrites` writes have been
+     * made.
+     */
+    private class FakeResponse(disconnectAfterWrites: Int = Int.MaxValue):
+        val body    = new ByteArrayOutputStream()
+        val ended   = Promise[Unit]()
+        val writes  = new AtomicInteger()
+        val headers = new ConcurrentHashMap[String, String]()
+
+        private val handler: InvocationHandler = (proxy, method, args) =>
+            method.getName match
+                case "write"                          =>
+                    body.synchronized(body.write(args(0).asInstanceOf[Buffer].getBytes))
+                    writes.incrementAndGet()
+                    VertxFuture.succeededFuture()
+                case "end"                            =>
+                    ended.trySuccess(())
+                    VertxFuture.succeededFuture()
+                case "putHeader"                      =>
+                    headers.put(args(0).toString, args(1).toString)
+                    proxy
+                case "closed"                         => Boolean.box(writes.get() >= disconnectAfterWrites)
+                case "writeQueueFull" | "headWritten" => Boolean.box(false)
+                case "reset"                          => VertxFuture.succeededFuture()
+                case _                                => proxy
+
+        val response: HttpServerResponse = Proxy
+            .newProxyInstance(getClass.getClassLoader, Array(classOf[HttpServerResponse]), handler)
+            .asInstanceOf[HttpServerResponse]
+
+        def lines: List[String] =
+            body.synchronized(new String(body.toByteArray, StandardCharsets.UTF_8)).split("\n").toList
+
+    private def routingContext(response: HttpServerResponse): RoutingContext =
+        val handler: InvocationHandler = (_, method, _) =>
+            if method.getName == "response" then response
+            else throw new UnsupportedOperationException(method.getName)
+        Proxy
+            .newProxyInstance(getClass.getClassLoader, Array(classOf[RoutingContext]), handler)
+            .asInstanceOf[RoutingContext]
+
+    test("export writes one JSON line per media in chunks"):
+        val controller = StubController(50)
+        val response   = FakeResponse()
+        MediaExportHandler(controller, chunkBytes = 512).handle(routingContext(response.response))
+        response.ended.future.join
+        assertEquals(controller.visited.future.join, 50L)
+        assertEquals(response.headers.get("Content-Type"), MediaExportHandler.ContentType)
+        val expected = (0 until 50).map(i => new String(JsonEncoder.encode(media(i)), StandardCharsets.UTF_8)).toList
+        assertEquals(response.lines, expected)
+        assert(response.writes.get() > 1, "Expected the export to be written in more than one chunk")
+
+    test("export stops walking the media when the client disconnects"):
+        val controller = StubController(10000)
+        val response   = FakeResponse(disconnectAfterWrites = 2)
+        MediaExportHandler(controller, chunkBytes = 512).handle(routingContext(response.response))
+        val result = Try(controller.visited.future.join)
+        assert(result.failed.toOption.exists(_.isInstanceOf[CancellationException]), s"Unexpected result: $result")
+        assert(controller.calls.get() < 10000, "The walk should stop once the client has gone")
+        assertEquals(response.writes.get(), 2)
+        assert(!response.ended.isCompleted, "The response should not be ended after a disconnect")
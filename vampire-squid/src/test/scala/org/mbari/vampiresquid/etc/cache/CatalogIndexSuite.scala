@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cache
+
+import org.mbari.vampiresquid.CatalogIndexParams
+import org.mbari.vampiresquid.domain.Media
+
+import java.time.{Duration, Instant}
+import java.util.concurrent.atomic.AtomicInteger
+import scala.collection.immutable.{TreeMap, TreeSet}
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.Duration as SDuration
+import scala.concurrent.{Await, Future, Promise}
+
+class CatalogIndexSuite extends munit.FunSuite:
+
+    import CatalogIndex.{Catalog, Snapshot}
+
+    private val params = CatalogIndexParams(enabled = true, ttl = Duration.ofMinutes(1))
+    private val t0     = Instant.parse("2026-01-01T00:00:00Z")
+
+    private val catalog = Catalog(
+        TreeSet("b-seq", "a-seq"),
+        TreeSet("camera-b", "camera-a"),
+        TreeMap("video-b" -> t0, "video-a" -> t0.plusSeconds(60))
+    )
+
+    private def await[T](f: Future[T]): T = Await.result(f, SDuration(2, "seconds"))
+
+    test("getOrLoad loads once and serves sorted snapshots"):
+        val index = new CatalogIndex(params)
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            catalog
+
+        val c = await(index.getOrLoad(load))
+        assertEquals(c.videoSequenceNamesSnapshot.values, List("a-seq", "b-seq"))
+        assertEquals(c.cameraIdsSnapshot.values, List("camera-a", "camera-b"))
+        assertEquals(c.videoNamesSnapshot.values, List("video-a", "video-b"))
+        assertEquals(c.videoNamesAndStartsSnapshot.values.map(_._1), List("video-b", "video-a"))
+        await(index.getOrLoad(load))
+        assertEquals(calls.get(), 1)
+
+    test("concurrent loads are shared"):
+        val index   = new CatalogIndex(params)
+        val calls   = new AtomicInteger(0)
+        val promise = Promise[Catalog]()
+        def load    =
+            calls.incrementAndGet()
+            promise.future
+
+        val a = index.getOrLoad(load)
+        val b = index.getOrLoad(load)
+        promise.success(catalog)
+        assertEquals(await(a), catalog)
+        assertEquals(await(b), catalog)
+        assertEquals(calls.get(), 1)
+
+    test("creates are added to the snapshot without a reload"):
+        val index = new CatalogIndex(params)
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            catalog
+
+        val before = await(index.getOrLoad(load))
+        index.videoSequenceCreated("c-seq", "camera-a")
+        index.videoCreated("video-c", t0.plusSeconds(120))
+        index.mediaCreated(
+            Media(
+                video_sequence_name = Some("0-seq"),
+                camera_id = Some("camera-0"),
+                video_name = Some("video-0"),
+                start_timestamp = Some(t0.minusSeconds(60))
+            )
+        )
+        val after  = await(index.getOrLoad(load))
+        assertEquals(calls.get(), 1)
+        assertEquals(after.videoSequenceNamesSnapshot.values, List("0-seq", "a-seq", "b-seq", "c-seq"))
+        assertEquals(after.cameraIdsSnapshot.values, List("camera-0", "camera-a", "camera-b"))
+        assertEquals(after.videoNamesAndStartsSnapshot.values.head, ("video-0", t0.minusSeconds(60)))
+        assertNotEquals(after.videoSequenceNamesSnapshot.etag, before.videoSequenceNamesSnapshot.etag)
+
+    test("invalidate forces a reload"):
+        val index = new CatalogIndex(params)
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            catalog
+
+        await(index.getOrLoad(load))
+        index.invalidate()
+        await(index.getOrLoad(load))
+        await(index.getOrLoad(load))
+        assertEquals(calls.get(), 2)
+
+    test("a write during a load makes the loaded catalog stale"):
+        val index   = new CatalogIndex(params)
+        val calls   = new AtomicInteger(0)
+        val promise = Promise[Catalog]()
+        def load    =
+            if calls.incrementAndGet() == 1 then promise.future else Future.successful(catalog)
+
+        val f = index.getOrLoad(load)
+        index.videoSequenceCreated("c-seq", "camera-c")
+        promise.success(catalog)
+        await(f)
+        await(index.getOrLoad(load))
+        assertEquals(calls.get(), 2)
+
+    test("a load that throws does not block later reads"):
+        val index = new CatalogIndex(params)
+        val calls = new AtomicInteger(0)
+        def load  =
+            if calls.incrementAndGet() == 1 then throw new IllegalStateException("No connection")
+            else Future.successful(catalog)
+
+        intercept[IllegalStateException](await(index.getOrLoad(load)))
+        assertEquals(await(index.getOrLoad(load)), catalog)
+        assertEquals(calls.get(), 2)
+
+    test("a disabled index always loads"):
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            catalog
+
+        await(CatalogIndex.Disabled.getOrLoad(load))
+        await(CatalogIndex.Disabled.getOrLoad(load))
+        assertEquals(calls.get(), 2)
+
+    test("equal lists have equal etags"):
+        val a = Snapshot(List("a", "b"))
+        assertEquals(a.etag, Snapshot(List("a", "b")).etag)
+        assertNotEquals(a.etag, Snapshot(List("a", "c")).etag)
+        assert(a.etag.startsWith("\"") && a.etag.endsWith("\""))
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cache
+
+import org.mbari.vampiresquid.MediaCacheParams
+import org.mbari.vampiresquid.domain.{Media, ResourceVersion}
+
+import java.net.URI
+import java.time.{Duration, Instant}
+import java.util.UUID
+import java.util.concurrent.atomic.AtomicInteger
+import scala.concurrent.ExecutionContext.Implicits.global
+import scala.concurrent.duration.Duration as SDuration
+import scala.concurrent.{Await, Future, Promise}
+import scala.util.Random
+
+class MediaCacheSuite extends munit.FunSuite:
+
+    private val params = MediaCacheParams(enabled = true, maxSize = 100, ttl = Duration.ofMinutes(1))
+
+    private def newMedia(): Media =
+        Media(
+            video_sequence_uuid = Some(UUID.randomUUID()),
+            video_uuid = Some(UUID.randomUUID()),
+            video_reference_uuid = Some(UUID.randomUUID()),
+            uri = Some(URI.create(s"http://www.mbari.org/${UUID.randomUUID()}.mp4")),
+            sha512 = Some(Random.nextBytes(64))
+        )
+
+    private def await[T](f: Future[T]): T = Await.result(f, SDuration(2, "seconds"))
+
+    test("getOrLoad caches found media under all of its keys"):
+        val cache = new MediaCache(params)
+        val media = newMedia()
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            Some(media)
+
+        val key   = MediaCache.Key.VideoReferenceUuid(media.videoReferenceUuid)
+        assertEquals(await(cache.getOrLoad(key)(load)), Some(media))
+        assertEquals(await(cache.getOrLoad(MediaCache.Key.Uri(media.uri.get))(load)), Some(media))
+        assertEquals(await(cache.getOrLoad(MediaCache.Key.sha512(media.sha512.get))(load)), Some(media))
+        assertEquals(calls.get(), 1)
+
+    test("getOrLoad does not cache missing media"):
+        val cache = new MediaCache(params)
+        val key   = MediaCache.Key.VideoReferenceUuid(UUID.randomUUID())
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            None
+        await(cache.getOrLoad(key)(load))
+        await(cache.getOrLoad(key)(load))
+        assertEquals(calls.get(), 2)
+
+    test("invalidate by video sequence, video and video reference"):
+        val cache = new MediaCache(params)
+        val m0    = newMedia()
+        val m1    = newMedia().copy(video_sequence_uuid = m0.video_sequence_uuid)
+        val m2    = newMedia()
+        Seq(m0, m1, m2).foreach(cache.put)
+        assertEquals(cache.size, 9L)
+
+        cache.invalidateVideoSequence(m0.videoSequenceUuid)
+        assertEquals(cache.size, 3L)
+
+        cache.invalidateVideo(m2.videoUuid)
+        assertEquals(cache.size, 0L)
+
+        cache.put(m0)
+        cache.invalidateVideoReference(m0.videoReferenceUuid)
+        assertEquals(cache.size, 0L)
+
+    test("invalidation follows a media that moved to another video"):
+        val cache = new MediaCache(params)
+        val m0    = newMedia()
+        val moved = m0.copy(video_uuid = Some(UUID.randomUUID()))
+        val m1    = newMedia().copy(video_sequence_uuid = m0.video_sequence_uuid)
+        cache.put(m0)
+        cache.put(moved)
+        cache.put(m1)
+        assertEquals(cache.size, 6L)
+
+        cache.invalidateVideo(moved.videoUuid)
+        assertEquals(cache.size, 3L)
+        assertEquals(
+            await(cache.getOrLoad(MediaCache.Key.Uri(m1.uri.get))(Future.failed(new IllegalStateException))),
+            Some(m1)
+        )
+
+    test("getOrLoadVersioned only serves a media cached with the current version"):
+        val calls = new AtomicInteger(0)
+        def load(v: ResourceVersion, m: Media) = Future:
+            calls.incrementAndGet()
+            Some(v -> m)
+
+        val cache = new MediaCache(params)
+        val media = newMedia()
+        val uuid  = media.videoReferenceUuid
+        val v0    = ResourceVersion.from(Seq(Some(Instant.EPOCH)))
+        val v1    = ResourceVersion.from(Seq(Some(Instant.EPOCH.plusSeconds(1))))
+
+        // A media cached by an unversioned lookup has no version to send
+        cache.put(media)
+        assertEquals(await(cache.getOrLoadVersioned(uuid, v0)(load(v0, media))), Some(v0 -> media))
+        assertEquals(await(cache.getOrLoadVersioned(uuid, v0)(load(v0, media))), Some(v0 -> media))
+        assertEquals(calls.get(), 1)
+
+        val changed = media.copy(description = Some("Changed"))
+        assertEquals(await(cache.getOrLoadVersioned(uuid, v1)(load(v1, changed))), Some(v1 -> changed))
+        assertEquals(calls.get(), 2)
+        // The other keys of the media now hold the changed one too
+        val byUri = cache.getOrLoad(MediaCache.Key.Uri(media.uri.get))(Future.failed(new IllegalStateException))
+        assertEquals(await(byUri), Some(changed))
+
+    test("a load that overlaps an invalidation is not cached"):
+        val cache   = new MediaCache(params)
+        val media   = newMedia()
+        val key     = MediaCache.Key.VideoReferenceUuid(media.videoReferenceUuid)
+        val promise = Promise[Option[Media]]()
+        val f       = cache.getOrLoad(key)(promise.future)
+        cache.invalidateVideoReference(media.videoReferenceUuid)
+        promise.success(Some(media))
+        await(f)
+        assertEquals(cache.size, 0L)
+
+    test("a disabled cache always loads"):
+        val cache = MediaCache.Disabled
+        val media = newMedia()
+        val calls = new AtomicInteger(0)
+        def load  = Future:
+            calls.incrementAndGet()
+            Some(media)
+        val key   = MediaCache.Key.Uri(media.uri.get)
+        await(cache.getOrLoad(key)(load))
+        await(cache.getOrLoad(key)(load))
+        assertEquals(calls.get(), 2)
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.cbor
+
+import org.mbari.vampiresquid.domain.Media
+import org.mbari.vampiresquid.etc.cbor.CborCodecs.given
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.{given, *}
+
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.{HexFormat, UUID}
+
+class CborWriterSuite extends munit.FunSuite:
+
+    private val hex = HexFormat.of()
+
+    private def write(f: CborWriter => CborWriter): String = hex.formatHex(f(CborWriter()).toByteArray)
+
+    // Examples from RFC 8949 Appendix A
+    test("integers use the shortest form"):
+        assertEquals(write(_.long(0)), "00")
+        assertEquals(write(_.long(23)), "17")
+        assertEquals(write(_.long(24)), "1818")
+        assertEquals(write(_.long(100)), "1864")
+        assertEquals(write(_.long(1000)), "1903e8")
+        assertEquals(write(_.long(1000000)), "1a000f4240")
+        assertEquals(write(_.long(1000000000000L)), "1b000000e8d4a51000")
+        assertEquals(write(_.long(-1)), "20")
+        assertEquals(write(_.long(-100)), "3863")
+        assertEquals(write(_.long(-1000)), "3903e7")
+
+    test("floats are 32 bits when that loses nothing"):
+        assertEquals(write(_.double(1.5)), "fa3fc00000")
+        assertEquals(write(_.double(100000.0)), "fa47c35000")
+        assertEquals(write(_.double(1.1)), "fb3ff199999999999a")
+        assertEquals(write(_.double(1.0e300)), "fb7e37e43c8800759c")
+
+    test("strings and bytes"):
+        assertEquals(write(_.string("")), "60")
+        assertEquals(write(_.string("IETF")), "6449455446")
+        assertEquals(write(_.string("ü")), "62c3bc")
+        assertEquals(write(_.bytes(Array[Byte](1, 2, 3, 4))), "4401020304")
+
+    test("instants are epoch seconds, with any fraction kept exactly"):
+        assertEquals(write(_.instant(Instant.ofEpochSecond(1363896240))), "c11a514b67b0")
+        assertEquals(write(_.instant(Instant.ofEpochSecond(1363896240, 500000000))), "d903e9a2011a514b67b0221901f4")
+        assertEquals(write(_.instant(Instant.ofEpochSecond(1363896240, 1))), "d903e9a2011a514b67b02801")
+
+    test("instants with milliseconds round trip"):
+        val instants = List(
+            Instant.parse("2025-11-05T23:15:08.001Z"),
+            Instant.parse("2025-11-05T23:15:08.999Z"),
+            Instant.parse("1969-12-31T23:59:59.123Z"),
+            Instant.parse("2100-01-01T00:00:00.010Z"),
+            Instant.ofEpochMilli(1730848508123L)
+        )
+        for i <- instants do assertEquals(readInstant(CborWriter().instant(i).toByteArray), i)
+
+    /** Reads back the two forms that CborWriter.instant writes */
+    private def readInstant(bytes: Array[Byte]): Instant =
+        var pos = 0
+        def head(): (Int, Long) =
+            val initial  = bytes(pos) & 0xff
+            pos += 1
+            val info     = initial & 0x1f
+            val n        = if info < 24 then 0 else 1 << (info - 24)
+            var argument = if info < 24 then info.toLong else 0L
+            for _ <- 0 until n do
+                argument = (argument << 8) | (bytes(pos) & 0xff)
+                pos += 1
+            (initial >> 5, argument)
+        def integer(): Long =
+            val (major, argument) = head()
+            if major == 0 then argument else -1 - argument
+        head() match
+            case (6, 1L)    => Instant.ofEpochSecond(integer())
+            case (6, 1001L) =>
+                assertEquals(head(), (5, 2L))
+                val fields = Map(integer() -> integer(), integer() -> integer())
+                val nanos  = fields.get(-3).map(_ * 1000000).orElse(fields.get(-9)).getOrElse(0L)
+                Instant.ofEpochSecond(fields(1), nanos)
+            case other      => fail(s"Not an instant: $other")
+
+    test("uuids are 16 bytes"):
+        val uuid = UUID.fromString("6a1c5f3e-8f7a-4a25-9a3a-6f1f2b1b7f01")
+        assertEquals(write(_.uuid(uuid)), "d82550" + uuid.toString.replace("-", ""))
+
+    test("arrays and maps"):
+        assertEquals(hex.formatHex(CborEncoder.encode(List(1, 2, 3))), "83010203")
+        assertEquals(write(_.startMap().field("a", 1).endMap()), "bf616101ff")
+
+    test("media leaves out absent fields"):
+        val media = Media(video_name = Some("a"), width = Some(1920))
+        val name  = hex.formatHex("video_name".getBytes(StandardCharsets.US_ASCII))
+        val width = hex.formatHex("width".getBytes(StandardCharsets.US_ASCII))
+        assertEquals(hex.formatHex(CborEncoder.encode(media)), s"bf6a${name}6161" + s"65${width}190780" + "ff")
+
+    test("media is smaller than its JSON"):
+        val media = Media(
+            video_sequence_uuid = Some(UUID.randomUUID()),
+            video_uuid = Some(UUID.randomUUID()),
+            video_reference_uuid = Some(UUID.randomUUID()),
+            video_sequence_name = Some("Doc Ricketts 1472"),
+            camera_id = Some("Doc Ricketts"),
+            video_name = Some("Doc Ricketts 1472 20251105T231508Z"),
+            uri = Some(URI.create("https://m3.shore.mbari.org/videos/M3/master/DocRicketts/2025/11/1472/D1472.mov")),
+            start_timestamp = Some(Instant.parse("2025-11-05T23:15:08Z")),
+            duration_millis = Some(300050),
+            container = Some("video/quicktime"),
+            video_codec = Some("prores"),
+            width = Some(3840),
+            height = Some(2160),
+            frame_rate = Some(59.94005994005994),
+            size_bytes = Some(64185148974L),
+            sha512 = Some(Array.tabulate[Byte](64)(_.toByte))
+        )
+        val json = media.stringify.getBytes(StandardCharsets.UTF_8)
+        val cbor = CborEncoder.encode(media)
+        assert(cbor.length < json.length * 0.8, s"${cbor.length} bytes of CBOR vs ${json.length} of JSON")
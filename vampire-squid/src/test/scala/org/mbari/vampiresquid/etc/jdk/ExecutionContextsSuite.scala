@@ -0,0 +1,39 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.jdk
+
+import org.mbari.vampiresquid.ExecutionMode
+
+import scala.concurrent.duration.DurationInt
+import scala.concurrent.{Await, Future}
+
+class ExecutionContextsSuite extends munit.FunSuite:
+
+    test("parse"):
+        assertEquals(ExecutionMode.parse("global"), ExecutionMode.Global)
+        assertEquals(ExecutionMode.parse(" Virtual "), ExecutionMode.Virtual)
+        intercept[IllegalArgumentException](ExecutionMode.parse("fibers"))
+
+    test("virtual"):
+        val ec        = ExecutionContexts(ExecutionMode.Virtual)
+        val isVirtual = Await.result(Future(Thread.currentThread().isVirtual)(using ec), 2.seconds)
+        assert(isVirtual)
+
+    test("global"):
+        val ec        = ExecutionContexts(ExecutionMode.Global)
+        val isVirtual = Await.result(Future(Thread.currentThread().isVirtual)(using ec), 2.seconds)
+        assert(!isVirtual)
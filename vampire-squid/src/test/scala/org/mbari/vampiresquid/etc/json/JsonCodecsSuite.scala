@@ -0,0 +1,137 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.json
+
+import io.circe.Encoder
+import io.circe.syntax.*
+import org.mbari.vampiresquid.domain.{CameraTimestampMedia, Media, Sha512Media, Video, VideoReference, VideoSequence}
+import org.mbari.vampiresquid.etc.circe.CirceCodecs
+import org.mbari.vampiresquid.etc.circe.CirceCodecs.given
+import org.mbari.vampiresquid.etc.json.JsonCodecs.given
+
+import java.net.URI
+import java.nio.charset.StandardCharsets
+import java.time.Instant
+import java.util.UUID
+import scala.util.Random
+
+/** JsonCodecs must write exactly what circe and CirceCodecs.CustomPrinter write */
+class JsonCodecsSuite extends munit.FunSuite:
+
+    private def assertSameAsCirce[A: Encoder: JsonEncoder](value: A)(using munit.Location): Unit =
+        // Compared after encoding to UTF-8, as the response is, so that lone surrogates become '?' on both sides
+        val circe = CirceCodecs.CustomPrinter.print(value.asJson).getBytes(StandardCharsets.UTF_8)
+        assertEquals(
+            new String(JsonEncoder.encode(value), StandardCharsets.UTF_8),
+            new String(circe, StandardCharsets.UTF_8)
+        )
+
+    private def media(random: Random, text: () => String): Media =
+        def maybe[A](a: => A): Option[A] = if random.nextInt(5) == 0 then None else Some(a)
+        Media(
+            video_sequence_uuid = maybe(UUID.randomUUID()),
+            video_uuid = maybe(UUID.randomUUID()),
+            video_reference_uuid = maybe(UUID.randomUUID()),
+            video_sequence_name = maybe(text()),
+            camera_id = maybe(text()),
+            video_name = maybe(text()),
+            uri = maybe(URI.create(s"http://m3.shore.mbari.org/videos/${random.nextInt()}.mov")),
+            start_timestamp = maybe(Instant.ofEpochSecond(random.nextInt().abs, random.nextInt(1000000000))),
+            duration_millis = maybe(random.nextLong()),
+            container = maybe(text()),
+            video_codec = maybe(text()),
+            audio_codec = maybe(text()),
+            width = maybe(random.nextInt()),
+            height = maybe(random.nextInt()),
+            frame_rate = maybe(random.nextDouble() * math.pow(10, random.nextInt(40) - 20)),
+            size_bytes = maybe(random.nextLong()),
+            description = maybe(text()),
+            video_sequence_description = maybe(text()),
+            video_description = maybe(text()),
+            sha512 = maybe(Array.fill[Byte](64)(random.nextInt(256).toByte))
+        )
+
+    private def videoReference(m: Media): VideoReference =
+        VideoReference(
+            UUID.randomUUID(),
+            m.uri.getOrElse(URI.create("urn:none")),
+            m.container,
+            m.video_codec,
+            m.audio_codec,
+            m.width,
+            m.height,
+            m.frame_rate,
+            m.size_bytes,
+            m.sha512,
+            m.description,
+            m.start_timestamp
+        )
+
+    test("empty media"):
+        assertSameAsCirce(Media())
+        assertSameAsCirce(List.empty[Media])
+
+    test("strings that need escaping"):
+        val texts = Seq(
+            "quote \" and backslash \\ and slash /",
+            "\b\f\n\r\t",
+            "\u0000\u0001\u001f\u007f\u0080\u0085\u009f ",
+            "Doc Ricketts ü 日本   ",
+            "emoji 🐙 octopus",
+            "lone \ud83d high and \udc19 low surrogates",
+            "\ud83d"
+        )
+        for t <- texts do assertSameAsCirce(Media(video_name = Some(t), description = Some(t)))
+
+    test("numbers"):
+        for d <- Seq(0.0, -0.0, 30.0, 59.94005994005994, 1e-7, 1e21, Double.MinPositiveValue, Double.MaxValue) do
+            assertSameAsCirce(Media(frame_rate = Some(d)))
+        for l <- Seq(0L, -1L, Long.MinValue, Long.MaxValue) do assertSameAsCirce(Media(size_bytes = Some(l)))
+        assertSameAsCirce(Media(width = Some(Int.MinValue), height = Some(Int.MaxValue)))
+
+    test("a frame rate that isn't finite is left out, as circe's null is dropped"):
+        for d <- Seq(Double.NaN, Double.PositiveInfinity, Double.NegativeInfinity) do
+            assertSameAsCirce(Media(video_name = Some("a"), frame_rate = Some(d)))
+
+    test("random media, videos and video sequences"):
+        val random         = new Random(1472)
+        val alphabet       = "abc XYZ 019 \"\\/\n\t\u0000\u007f\u0085é日🐙"
+        def text(): String = Seq.fill(random.nextInt(12))(alphabet(random.nextInt(alphabet.length))).mkString
+        val ms             = List.fill(200)(media(random, text))
+        assertSameAsCirce(ms)
+        val videos = ms
+            .grouped(4)
+            .map(g =>
+                Video(
+                    UUID.randomUUID(),
+                    text(),
+                    Instant.ofEpochMilli(random.nextLong(4102444800000L)),
+                    g.head.duration_millis,
+                    g.head.description,
+                    g.head.start_timestamp,
+                    g.map(videoReference)
+                )
+            )
+            .toList
+        assertSameAsCirce(videos)
+        val sequences = videos
+            .grouped(5)
+            .map(g => VideoSequence(UUID.randomUUID(), text(), text(), Some(text()), None, g))
+            .toList
+        assertSameAsCirce(sequences :+ VideoSequence(UUID.randomUUID(), "empty", "none"))
+        assertSameAsCirce(List(Sha512Media("abc", ms.take(3)), Sha512Media("def", Nil)))
+        assertSameAsCirce(List(CameraTimestampMedia("Ventana", Instant.EPOCH, ms.take(2))))
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.etc.metrics
+
+class RequestTimingsSuite extends munit.FunSuite:
+
+    test("withTimings sets the current timings only while it runs"):
+        val outer = new RequestTimings
+        val inner = new RequestTimings
+        assertEquals(RequestTimings.current, None)
+        RequestTimings.withTimings(outer):
+            assertEquals(RequestTimings.current, Some(outer))
+            RequestTimings.withTimings(inner):
+                assertEquals(RequestTimings.current, Some(inner))
+            assertEquals(RequestTimings.current, Some(outer))
+        assertEquals(RequestTimings.current, None)
+
+    test("withTimings restores the previous timings when it throws"):
+        val timings = new RequestTimings
+        intercept[IllegalStateException]:
+            RequestTimings.withTimings(timings)(throw new IllegalStateException("boom"))
+        assertEquals(RequestTimings.current, None)
+
+    test("accumulates"):
+        val timings = new RequestTimings
+        assertEquals(timings.logicDoneNanos, None)
+        timings.addTransaction(10, 100)
+        timings.addTransaction(5, 50)
+        timings.addConnectionWait(3)
+        timings.addJdbc(7)
+        timings.addStatement()
+        timings.addStatement()
+        timings.logicDone()
+        assertEquals(timings.transactions, 2L)
+        assertEquals(timings.transactionQueueNanos, 15L)
+        assertEquals(timings.transactionRunNanos, 150L)
+        assertEquals(timings.connectionWaitNanos, 3L)
+        assertEquals(timings.jdbcExecuteNanos, 7L)
+        assertEquals(timings.statements, 2L)
+        assert(timings.logicDoneNanos.isDefined)
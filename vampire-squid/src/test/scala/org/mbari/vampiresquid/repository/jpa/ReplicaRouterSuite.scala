@@ -0,0 +1,57 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.jpa
+
+import java.time.Duration
+
+class ReplicaRouterSuite extends munit.FunSuite:
+
+    private val maxLag = Duration.ofSeconds(10)
+
+    /** The factory is never used by the router itself, only handed out */
+    private def router(lag: () => Duration) = new ReplicaRouter(null, maxLag, lag)
+
+    test("uses the primary until the lag has been measured"):
+        val r = router(() => Duration.ZERO)
+        assert(!r.isCaughtUp)
+        assertEquals(r.currentLag, None)
+        r.refresh()
+        assert(r.isCaughtUp)
+        assertEquals(r.currentLag, Some(Duration.ZERO))
+
+    test("uses the replica while the lag is within the limit"):
+        var lag = maxLag
+        val r   = router(() => lag)
+        r.refresh()
+        assert(r.isCaughtUp)
+        lag = maxLag.plusMillis(1)
+        r.refresh()
+        assert(!r.isCaughtUp)
+        lag = Duration.ofSeconds(1)
+        r.refresh()
+        assert(r.isCaughtUp)
+
+    test("falls back to the primary when the lag can't be measured"):
+        var fail = false
+        val r    = router(() => if fail then throw new RuntimeException("replica is down") else Duration.ZERO)
+        r.refresh()
+        assert(r.isCaughtUp)
+        fail = true
+        r.refresh()
+        assert(!r.isCaughtUp)
+        assertEquals(r.currentLag, None)
+        assertEquals(r.available, None)
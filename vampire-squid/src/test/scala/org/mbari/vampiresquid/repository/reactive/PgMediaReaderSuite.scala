@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Monterey Bay Aquarium Research Institute
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.mbari.vampiresquid.repository.reactive
+
+import io.vertx.pgclient.SslMode
+
+class PgMediaReaderSuite extends munit.FunSuite:
+
+    test("fromJdbcUrl reads a URL without parameters"):
+        val options = PgMediaReader.fromJdbcUrl("jdbc:postgresql://db.mbari.org:5433/m3")
+        assertEquals(options.getHost, "db.mbari.org")
+        assertEquals(options.getPort, 5433)
+        assertEquals(options.getDatabase, "m3")
+        assertEquals(options.getSslMode, SslMode.DISABLE)
+
+    test("fromJdbcUrl maps the JDBC parameters that have a Vert.x equivalent"):
+        val options = PgMediaReader.fromJdbcUrl(
+            "jdbc:postgresql://db.mbari.org/m3?sslmode=verify-ca&currentSchema=media&ApplicationName=vampire%20squid"
+        )
+        assertEquals(options.getDatabase, "m3")
+        assertEquals(options.getSslMode, SslMode.VERIFY_CA)
+        assertEquals(options.getProperties.get("search_path"), "media")
+        assertEquals(options.getProperties.get("application_name"), "vampire squid")
+
+    test("fromJdbcUrl ignores the parameters that only the JDBC driver understands"):
+        val options = PgMediaReader.fromJdbcUrl(
+            "jdbc:postgresql://localhost/m3?prepareThreshold=0&reWriteBatchedInserts=true&ssl=true&loggerLevel=OFF"
+        )
+        assertEquals(options.getHost, "localhost")
+        assertEquals(options.getDatabase, "m3")
+        assertEquals(options.getSslMode, SslMode.VERIFY_FULL)
+        assert(!options.getProperties.containsKey("prepareThreshold"))
+        assert(!options.getProperties.containsKey("reWriteBatchedInserts"))
+
+    test("fromJdbcUrl lets sslmode win over ssl=true"):
+        val options = PgMediaReader.fromJdbcUrl("jdbc:postgresql://localhost/m3?ssl=true&sslmode=require")
+        assertEquals(options.getSslMode, SslMode.REQUIRE)